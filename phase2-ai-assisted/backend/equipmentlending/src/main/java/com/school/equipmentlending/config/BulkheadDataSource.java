@@ -0,0 +1,115 @@
+package com.school.equipmentlending.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection-pool bulkhead. With virtual threads there is no thread-pool limit in front of the
+ * pool any more, so thousands of requests can pile up waiting for a Hikari connection.
+ * This wrapper lets at most {@code permits} connections out at a time, queues at most
+ * {@code maxWaiters} callers for up to {@code acquireTimeoutMs}, and fails the rest fast with
+ * SQLTransientConnectionException (mapped to 503). Semaphore-based, so waiting never pins a carrier thread.
+ */
+public class BulkheadDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxPermits;
+    private final int maxWaiters;
+    private final long acquireTimeoutMs;
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public BulkheadDataSource(DataSource target, int permits, int maxWaiters, long acquireTimeoutMs) {
+        super(target);
+        this.permits = new Semaphore(permits, true);
+        this.maxPermits = permits;
+        this.maxWaiters = maxWaiters;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return guard(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return guard(() -> super.getConnection(username, password));
+    }
+
+    public int inUse() { return maxPermits - permits.availablePermits(); }
+
+    public int waiting() { return waiters.get(); }
+
+    public long rejectedCount() { return rejected.sum(); }
+
+    private void acquire() throws SQLException {
+        if (permits.tryAcquire()) return;
+
+        if (waiters.incrementAndGet() > maxWaiters) {
+            waiters.decrementAndGet();
+            rejected.increment();
+            throw new SQLTransientConnectionException("Database bulkhead full (" + maxWaiters + " waiting)");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + acquireTimeoutMs + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a database connection", ex);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private Connection guard(ConnectionSupplier supplier) throws SQLException {
+        Connection target;
+        try {
+            target = supplier.get();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                        try {
+                            target.close();
+                        } finally {
+                            permits.release();
+                        }
+                        return null;
+                    }
+                    if ("unwrap".equals(method.getName()) && ((Class<?>) args[0]).isInstance(target)) {
+                        return target;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getTargetException();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,56 @@
+package com.school.equipmentlending.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Wraps the application DataSource in a {@link BulkheadDataSource} when
+ * app.datasource.bulkhead.enabled=true (on by default in the "virtual" profile).
+ * Permits default to the Hikari pool size so the bulkhead, not Hikari, is where callers queue.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.bulkhead.enabled", havingValue = "true")
+public class DataSourceBulkheadConfig {
+
+    @Bean
+    static BeanPostProcessor dataSourceBulkheadPostProcessor(Environment env) {
+        int permits = env.getProperty("app.datasource.bulkhead.permits", Integer.class,
+                env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10));
+        int maxWaiters = env.getProperty("app.datasource.bulkhead.max-waiters", Integer.class, 200);
+        long timeoutMs = env.getProperty("app.datasource.bulkhead.acquire-timeout-ms", Long.class, 2000L);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // with a read replica, each pool behind the routing DataSource gets its own bulkhead
+                if (bean instanceof DataSource ds && !(bean instanceof BulkheadDataSource)
+                        && !(bean instanceof ReadWriteRoutingDataSource)) {
+                    return new BulkheadDataSource(ds, permits, maxWaiters, timeoutMs);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder dataSourceBulkheadMetrics(Map<String, DataSource> dataSources) {
+        return registry -> dataSources.forEach((name, dataSource) -> {
+            if (!(dataSource instanceof BulkheadDataSource bulkhead)) return;
+            Gauge.builder("db.bulkhead.in_use", bulkhead, BulkheadDataSource::inUse)
+                    .tag("datasource", name).register(registry);
+            Gauge.builder("db.bulkhead.waiting", bulkhead, BulkheadDataSource::waiting)
+                    .tag("datasource", name).register(registry);
+            FunctionCounter.builder("db.bulkhead.rejected", bulkhead, BulkheadDataSource::rejectedCount)
+                    .tag("datasource", name).register(registry);
+        });
+    }
+}
@@ -7,7 +7,7 @@ import com.school.equipmentlending.repository.UserRepository;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -16,7 +16,7 @@ import java.util.Set;
 public class DefaultAdminRunner {
 
     @Bean
-    CommandLineRunner createDefaultAdmin(UserRepository userRepo, RoleRepository roleRepo) {
+    CommandLineRunner createDefaultAdmin(UserRepository userRepo, RoleRepository roleRepo, PasswordEncoder passwordEncoder) {
         return args -> {
             String adminUsername = "admin";
             String adminPassword = "adminpass"; // change for real use
@@ -39,7 +39,7 @@ public class DefaultAdminRunner {
 
                 User admin = new User();
                 admin.setUsername(adminUsername);
-                admin.setPassword(new BCryptPasswordEncoder().encode(adminPassword));
+                admin.setPassword(passwordEncoder.encode(adminPassword));
                 Set<Role> roles = new HashSet<>();
                 roles.add(adminRole);
                 roles.add(userRole);
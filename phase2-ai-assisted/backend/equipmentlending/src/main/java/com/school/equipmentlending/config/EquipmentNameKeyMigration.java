@@ -0,0 +1,34 @@
+package com.school.equipmentlending.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills equipment.name_key for rows written before the column existed, so the bulk import's indexed
+ * name_key lookup finds them. Only rows without a key are touched, so this is safe to run on every start
+ * and on several nodes at once. Runs, like {@link IdGeneratorMigration}, once the schema is up to date and
+ * before the web server starts.
+ */
+@Component
+@DependsOn("entityManagerFactory")   // the schema update adds the column and its index
+public class EquipmentNameKeyMigration implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(EquipmentNameKeyMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EquipmentNameKeyMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        int filled = jdbcTemplate.update("update equipment set name_key = lower(trim(name))"
+                + " where name_key is null and name is not null");
+        if (filled > 0) logger.info("Filled name_key of {} equipment rows", filled);
+    }
+}
@@ -0,0 +1,63 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.model.IdGenerators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the id generator rows past the ids already in use, so rows created under the old
+ * AUTO_INCREMENT ids keep them and new rows never collide.
+ * Each generator row is raised to at least {@code max(id) + 1 + allocation size} (whether Hibernate reads the
+ * stored value as the top or the bottom of its next block); a row that is already higher is left alone,
+ * so this is safe to run on every start and on several nodes at once.
+ * Runs once all singletons exist (the schema is up to date) and before the web server and schedulers start.
+ */
+@Component
+@DependsOn("entityManagerFactory")   // the schema, including the generator table, is created or updated there
+public class IdGeneratorMigration implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String table : IdGenerators.TABLES) {
+            migrate(table);
+        }
+    }
+
+    void migrate(String table) {
+        Long maxId = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from " + table, Long.class);
+        long floor = (maxId == null ? 0 : maxId) + 1 + IdGenerators.ALLOCATION_SIZE;
+        if (raise(table, floor) > 0) {
+            logger.info("Id generator for {} moved to {} (max id {})", table, floor, maxId);
+            return;
+        }
+        Integer rows = jdbcTemplate.queryForObject("select count(*) from " + IdGenerators.TABLE
+                + " where " + IdGenerators.NAME_COLUMN + " = ?", Integer.class, table);
+        if (rows != null && rows > 0) return;   // already past the existing ids
+        try {
+            jdbcTemplate.update("insert into " + IdGenerators.TABLE + " (" + IdGenerators.NAME_COLUMN + ", "
+                    + IdGenerators.VALUE_COLUMN + ") values (?, ?)", table, floor);
+            logger.info("Id generator for {} starts at {} (max id {})", table, floor, maxId);
+        } catch (DuplicateKeyException ex) {
+            raise(table, floor);   // created concurrently by Hibernate or another node
+        }
+    }
+
+    private int raise(String table, long floor) {
+        return jdbcTemplate.update("update " + IdGenerators.TABLE + " set " + IdGenerators.VALUE_COLUMN + " = ?"
+                + " where " + IdGenerators.NAME_COLUMN + " = ? and " + IdGenerators.VALUE_COLUMN + " < ?",
+                floor, table, floor);
+    }
+}
@@ -0,0 +1,166 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.util.LatencyHistogram;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Times every public method of the listed service classes ({@code service.method}, tagged class/method/outcome,
+ * with p50/p99/p999) and the equipment row lock ({@code db.lock.wait}, {@code db.lock.failures}).
+ * The timing advice is put in front of any existing advice (e.g. @Transactional), so a service timer
+ * includes commit time. Histograms are built once per method and cached; recording is a map lookup plus
+ * one {@link LatencyHistogram#record(long)}.
+ */
+public class MethodMetricsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+
+    static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    // innermost timed service method on this thread, e.g. "BookingService.approveBooking"
+    private static final ThreadLocal<String> CURRENT_METHOD = new ThreadLocal<>();
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final DefaultPointcutAdvisor lockAdvisor;
+
+    public MethodMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry, Set<Class<?>> services) {
+        this.meterRegistry = meterRegistry;
+        this.advisor = new DefaultPointcutAdvisor(new ServiceMethodPointcut(services), new ServiceTimingInterceptor());
+        this.lockAdvisor = new DefaultPointcutAdvisor(new LockTimingInterceptor());
+        setBeforeExistingAdvisors(true);
+        setProxyTargetClass(true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // repository proxies are JDK proxies over SimpleJpaRepository, so they are matched by interface here
+        if (bean instanceof EquipmentRepository && bean instanceof Advised advised && !advised.isFrozen()) {
+            advised.addAdvisor(0, lockAdvisor);
+            return bean;
+        }
+        return super.postProcessAfterInitialization(bean, beanName);
+    }
+
+    /** The innermost timed service method running on this thread ({@code Class.method}), or null. */
+    public static String currentServiceMethod() {
+        return CURRENT_METHOD.get();
+    }
+
+    private static final class ServiceMethodPointcut extends StaticMethodMatcherPointcut {
+        private final Set<Class<?>> services;
+
+        ServiceMethodPointcut(Set<Class<?>> services) {
+            this.services = services;
+            setClassFilter(services::contains);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return services.contains(method.getDeclaringClass()) && Modifier.isPublic(method.getModifiers());
+        }
+    }
+
+    private final class ServiceTimingInterceptor implements MethodInterceptor {
+        private final ConcurrentHashMap<String, LatencyHistogram> byName = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Method, MethodTimers> timers = new ConcurrentHashMap<>();
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            MethodTimers timer = timers.get(method);
+            if (timer == null) {
+                timer = timers.computeIfAbsent(method, this::register);
+            }
+            String outer = CURRENT_METHOD.get();
+            CURRENT_METHOD.set(timer.name());
+            long start = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                timer.success().record(System.nanoTime() - start);
+                return result;
+            } catch (Throwable ex) {
+                timer.error().record(System.nanoTime() - start);
+                throw ex;
+            } finally {
+                if (outer == null) CURRENT_METHOD.remove();
+                else CURRENT_METHOD.set(outer);
+            }
+        }
+
+        private MethodTimers register(Method method) {
+            String className = method.getDeclaringClass().getSimpleName();
+            return new MethodTimers(className + '.' + method.getName(),
+                    serviceTimer(className, method.getName(), "success"),
+                    serviceTimer(className, method.getName(), "error"));
+        }
+
+        // overloads share one histogram, as they share one set of tags
+        private LatencyHistogram serviceTimer(String className, String methodName, String outcome) {
+            return byName.computeIfAbsent(className + '.' + methodName + '.' + outcome, k ->
+                    LatencyHistogram.register(meterRegistry.getObject(), "service.method", "Service method latency",
+                            Tags.of("class", className, "method", methodName, "outcome", outcome), PERCENTILES));
+        }
+    }
+
+    private record MethodTimers(String name, LatencyHistogram success, LatencyHistogram error) {
+    }
+
+    private final class LockTimingInterceptor implements MethodInterceptor {
+        private volatile LatencyHistogram acquired;
+        private volatile LatencyHistogram failed;
+        private volatile Counter failures;
+        private final ReentrantLock registerLock = new ReentrantLock();
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (!"findByIdForUpdate".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            if (acquired == null) register();
+            long start = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                acquired.record(System.nanoTime() - start);
+                return result;
+            } catch (PessimisticLockingFailureException ex) {
+                failed.record(System.nanoTime() - start);
+                failures.increment();
+                throw ex;
+            }
+        }
+
+        private void register() {
+            registerLock.lock();
+            try {
+                if (acquired != null) return;
+                MeterRegistry registry = meterRegistry.getObject();
+                failures = Counter.builder("db.lock.failures").tag("entity", "equipment")
+                        .description("Equipment row locks that timed out or deadlocked").register(registry);
+                failed = lockTimer(registry, "failed");
+                acquired = lockTimer(registry, "acquired");   // written last: readers check this field
+            } finally {
+                registerLock.unlock();
+            }
+        }
+
+        private LatencyHistogram lockTimer(MeterRegistry registry, String outcome) {
+            return LatencyHistogram.register(registry, "db.lock.wait",
+                    "Time to acquire the equipment row lock (findByIdForUpdate)",
+                    Tags.of("entity", "equipment", "outcome", outcome), PERCENTILES);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.service.BookingService;
+import com.school.equipmentlending.service.EquipmentService;
+import com.school.equipmentlending.service.LoanService;
+import com.school.equipmentlending.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Set;
+
+/**
+ * Hot-path instrumentation: service method timers, equipment lock wait, and SQL statements per request
+ * (with the per-request query budget / N+1 check).
+ * Everything is exported on /actuator/prometheus (ROLE_ADMIN, like the other actuator endpoints).
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    static MethodMetricsPostProcessor methodMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new MethodMetricsPostProcessor(meterRegistry,
+                Set.of(EquipmentService.class, BookingService.class, LoanService.class, UserService.class));
+    }
+
+    @Bean
+    FilterRegistrationBean<QueryCountFilter> queryCountFilter(MeterRegistry meterRegistry,
+                                                              @Value("${app.query-budget.mode:log}") String mode,
+                                                              @Value("${app.query-budget.default-max:30}") int defaultMax,
+                                                              @Value("${app.query-budget.repeat-threshold:10}") int repeatThreshold,
+                                                              @Value("${app.query-budget.endpoints:}") String endpoints) {
+        QueryBudget budget = new QueryBudget(QueryBudget.Mode.valueOf(mode.trim().toUpperCase()), defaultMax,
+                repeatThreshold, QueryBudget.parseEndpoints(endpoints));
+        FilterRegistrationBean<QueryCountFilter> registration = new FilterRegistrationBean<>(new QueryCountFilter(meterRegistry, budget));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,36 @@
+package com.school.equipmentlending.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-request SQL statement budget.
+ *
+ * @param mode            off (count only), log (warn) or fail (throw, for tests/CI)
+ * @param defaultMax      statements allowed per request when the endpoint has no override
+ * @param repeatThreshold a single statement run this many times in one request is reported as a likely N+1
+ * @param endpoints       overrides keyed by "METHOD /route/pattern"
+ */
+public record QueryBudget(Mode mode, int defaultMax, int repeatThreshold, Map<String, Integer> endpoints) {
+
+    public enum Mode { OFF, LOG, FAIL }
+
+    public int maxFor(String method, String uri) {
+        return endpoints.getOrDefault(method + ' ' + uri, defaultMax);
+    }
+
+    /** Parse overrides written as {@code "GET /api/loans=6, GET /api/equipments=3"}. */
+    public static Map<String, Integer> parseEndpoints(String spec) {
+        Map<String, Integer> endpoints = new HashMap<>();
+        if (spec == null || spec.isBlank()) return endpoints;
+        for (String entry : spec.split(",")) {
+            int eq = entry.lastIndexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Query budget override must look like 'METHOD /path=N': " + entry);
+            }
+            endpoints.put(entry.substring(0, eq).trim().replaceAll("\\s+", " "),
+                    Integer.parseInt(entry.substring(eq + 1).trim()));
+        }
+        return endpoints;
+    }
+}
@@ -0,0 +1,88 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.exception.QueryBudgetExceededException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how many SQL statements each request issued ({@code http.server.db.statements}, tagged with the
+ * matched route so cardinality stays bounded) and checks them against the {@link QueryBudget}:
+ * too many statements in total, or one statement repeated with different binds (a likely N+1),
+ * is logged or, in fail mode, thrown as {@link QueryBudgetExceededException}.
+ */
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+    private final QueryBudget budget;
+    private final ConcurrentHashMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    public QueryCountFilter(MeterRegistry meterRegistry, QueryBudget budget) {
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        StatementCounter.start();
+        StatementCounter.Tally tally;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            tally = StatementCounter.stop();
+        }
+
+        String method = request.getMethod();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        summaries.computeIfAbsent(method + ' ' + uri, k -> DistributionSummary
+                        .builder("http.server.db.statements")
+                        .description("SQL statements issued per request")
+                        .tags("method", method, "uri", uri)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry))
+                .record(tally.total());
+
+        if (budget.mode() != QueryBudget.Mode.OFF) {
+            check(method, uri, tally);
+        }
+    }
+
+    private void check(String method, String uri, StatementCounter.Tally tally) {
+        String problem = null;
+        String reason = null;
+        Map.Entry<String, Integer> top = tally.mostRepeated();
+        int max = budget.maxFor(method, uri);
+        if (top != null && top.getValue() >= budget.repeatThreshold()) {
+            reason = "repeated";
+            problem = "Possible N+1 on " + method + " " + uri + ": statement ran " + top.getValue()
+                    + " times with different binds: " + abbreviate(top.getKey());
+        } else if (tally.total() > max) {
+            reason = "budget";
+            problem = method + " " + uri + " issued " + tally.total() + " SQL statements (budget " + max + ")";
+        }
+        if (problem == null) return;
+
+        meterRegistry.counter("http.server.db.budget.exceeded", "method", method, "uri", uri, "reason", reason)
+                .increment();
+        if (budget.mode() == QueryBudget.Mode.FAIL) {
+            throw new QueryBudgetExceededException(problem);
+        }
+        logger.warn(problem);
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= 200 ? sql : sql.substring(0, 200) + "...";
+    }
+}
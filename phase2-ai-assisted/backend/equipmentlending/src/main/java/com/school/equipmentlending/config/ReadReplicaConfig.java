@@ -0,0 +1,108 @@
+package com.school.equipmentlending.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica support, on with app.datasource.replica.enabled=true. Replaces Boot's single pool with
+ * a primary pool (spring.datasource.*), a replica pool (app.datasource.replica.*) and a
+ * {@link ReadWriteRoutingDataSource} in front of them that JPA uses. Read-only transactions go to the
+ * replica unless it lags or the request needs read-your-writes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig implements WebMvcConfigurer {
+
+    private final Duration readYourWritesWindow;
+    private final int maxTrackedCallers;
+    private final ObjectProvider<ReplicaLagMonitor> lagMonitor;
+
+    public ReadReplicaConfig(@Value("${app.datasource.replica.read-your-writes-window:PT5S}") Duration readYourWritesWindow,
+                             @Value("${app.datasource.replica.read-your-writes-max-callers:10000}") int maxTrackedCallers,
+                             ObjectProvider<ReplicaLagMonitor> lagMonitor) {
+        this.readYourWritesWindow = readYourWritesWindow;
+        this.maxTrackedCallers = maxTrackedCallers;
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource ds = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("primary");
+        return ds;
+    }
+
+    @Bean
+    HikariDataSource replicaDataSource(DataSourceProperties primary, Environment env) {
+        HikariDataSource ds = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(env.getProperty("app.datasource.replica.driver-class-name", primary.determineDriverClassName()))
+                .url(env.getRequiredProperty("app.datasource.replica.url"))
+                .username(env.getProperty("app.datasource.replica.username", primary.determineUsername()))
+                .password(env.getProperty("app.datasource.replica.password", primary.determinePassword()))
+                .build();
+        ds.setPoolName("replica");
+        ds.setReadOnly(true);
+        ds.setMaximumPoolSize(env.getProperty("app.datasource.replica.maximum-pool-size", Integer.class, 10));
+        return ds;
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                        @Value("${app.datasource.replica.lag-query:}") String lagQuery,
+                                        @Value("${app.datasource.replica.max-lag:PT2S}") Duration maxLag) {
+        return new ReplicaLagMonitor(replica, lagQuery, maxLag);
+    }
+
+    @Bean
+    @Primary
+    ReadWriteRoutingDataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                          @Qualifier("replicaDataSource") DataSource replica,
+                                          ReplicaLagMonitor replicaLagMonitor) {
+        return new ReadWriteRoutingDataSource(primary, new ReplicaReadDataSource(replica, primary, replicaLagMonitor));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReadYourWritesInterceptor(lagMonitor.getObject(), readYourWritesWindow, maxTrackedCallers))
+                .addPathPatterns("/api/**");
+    }
+
+    @Bean
+    MeterBinder replicaRoutingMetrics(ReadWriteRoutingDataSource dataSource, ReplicaLagMonitor monitor) {
+        ReplicaReadDataSource reads = dataSource.getReplicaReads();
+        return registry -> {
+            FunctionCounter.builder("db.replica.reads", reads, ReplicaReadDataSource::replicaReadCount)
+                    .tag("target", "replica").tag("reason", "read_only")
+                    .description("Read-only transactions by the pool that served them").register(registry);
+            FunctionCounter.builder("db.replica.reads", reads, ReplicaReadDataSource::pinnedReadCount)
+                    .tag("target", "primary").tag("reason", "read_your_writes")
+                    .description("Read-only transactions by the pool that served them").register(registry);
+            FunctionCounter.builder("db.replica.reads", reads, ReplicaReadDataSource::laggingReadCount)
+                    .tag("target", "primary").tag("reason", "replica_lag")
+                    .description("Read-only transactions by the pool that served them").register(registry);
+            Gauge.builder("db.replica.lag", monitor, m -> m.lagNanos() / 1e9).baseUnit("seconds")
+                    .description("Last measured replica lag").register(registry);
+            Gauge.builder("db.replica.usable", monitor, m -> m.isUsable() ? 1 : 0).register(registry);
+        };
+    }
+}
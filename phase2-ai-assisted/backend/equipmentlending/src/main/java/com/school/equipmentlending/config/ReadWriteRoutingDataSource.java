@@ -0,0 +1,27 @@
+package com.school.equipmentlending.config;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * The application DataSource when a read replica is configured. Connections are lazy: the physical one
+ * is fetched at the first statement, after the transaction manager has marked the connection read-only
+ * or not, so @Transactional(readOnly = true) work goes to {@code reads} and everything else to the primary.
+ * The post-processors that wrap DataSources (slow-query log, bulkhead) leave this one alone, since they
+ * already wrap both pools behind it.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private final ReplicaReadDataSource reads;
+
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaReadDataSource reads) {
+        super(primary);
+        this.reads = reads;
+        setReadOnlyDataSource(reads);
+    }
+
+    public ReplicaReadDataSource getReplicaReads() {
+        return reads;
+    }
+}
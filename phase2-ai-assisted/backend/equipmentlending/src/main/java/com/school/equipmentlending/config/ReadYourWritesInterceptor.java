@@ -0,0 +1,78 @@
+package com.school.equipmentlending.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes on top of replica routing. Writes (anything but GET/HEAD/OPTIONS) run entirely on the
+ * primary, including the reads they make. A caller's reads stay on the primary for {@code window} plus the
+ * current replica lag after their last write, so e.g. GET /api/loans/my right after a borrow shows the
+ * new loan. Callers are keyed by authenticated username; state is per node.
+ */
+public class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final long windowNanos;
+    private final int maxTracked;
+
+    // username -> System.nanoTime() of the end of their last write
+    private final ConcurrentHashMap<String, Long> lastWrite = new ConcurrentHashMap<>();
+
+    public ReadYourWritesInterceptor(ReplicaLagMonitor lagMonitor, Duration window, int maxTracked) {
+        this.lagMonitor = lagMonitor;
+        this.windowNanos = window.toNanos();
+        this.maxTracked = maxTracked;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isRead(request) || wroteRecently(username(request))) {
+            ReplicaReadDataSource.pinToPrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaReadDataSource.unpin();
+        String username = username(request);
+        if (!isRead(request) && username != null) {
+            if (lastWrite.size() >= maxTracked) evictExpired();
+            if (lastWrite.size() >= maxTracked) lastWrite.clear();
+            lastWrite.put(username, System.nanoTime());
+        }
+    }
+
+    int trackedCallers() {
+        return lastWrite.size();
+    }
+
+    private boolean wroteRecently(String username) {
+        if (username == null) return false;
+        Long at = lastWrite.get(username);
+        if (at == null) return false;
+        if (System.nanoTime() - at <= windowNanos + lagMonitor.lagNanos()) return true;
+        lastWrite.remove(username, at);
+        return false;
+    }
+
+    private void evictExpired() {
+        long cutoff = System.nanoTime() - windowNanos - lagMonitor.lagNanos();
+        lastWrite.values().removeIf(at -> at - cutoff < 0);
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private static String username(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal == null ? null : principal.getName();
+    }
+}
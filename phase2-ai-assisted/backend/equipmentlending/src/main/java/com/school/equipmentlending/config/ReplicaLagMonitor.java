@@ -0,0 +1,75 @@
+package com.school.equipmentlending.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Tracks how far the read replica is behind the primary by running {@code lagQuery} on it, a query whose
+ * first column is the lag in seconds (e.g. read from a heartbeat table, or Seconds_Behind_Source).
+ * The replica is usable while the lag is at most {@code maxLag}; a NULL lag (replication stopped) or a
+ * failing probe makes it unusable until the next good probe. With no lag query the replica is assumed
+ * to be in sync, which is what a local setup without replication needs.
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagNanos;
+
+    private volatile long lagNanos;
+    private volatile boolean usable;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, Duration maxLag) {
+        this.replica = replica;
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.maxLagNanos = maxLag.toNanos();
+        this.usable = this.lagQuery == null;   // with a probe, trust the replica only once it has answered
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:1000}")
+    public void check() {
+        if (lagQuery == null) return;
+        Long lag = probe();
+        boolean nowUsable = lag != null && lag <= maxLagNanos;
+        if (lag != null) lagNanos = lag;
+        if (nowUsable != usable) {
+            if (nowUsable) logger.info("Read replica back in use (lag {} ms)", lagNanos / 1_000_000);
+            else logger.warn("Read replica unusable (lag {}), routing reads to the primary",
+                    lag == null ? "unknown" : lag / 1_000_000 + " ms");
+        }
+        usable = nowUsable;
+    }
+
+    public boolean isUsable() {
+        return usable;
+    }
+
+    /** Last measured lag (0 without a lag query). */
+    public long lagNanos() {
+        return lagNanos;
+    }
+
+    private Long probe() {
+        try (Connection c = replica.getConnection(); Statement s = c.createStatement()) {
+            s.setQueryTimeout(1);
+            try (ResultSet rs = s.executeQuery(lagQuery)) {
+                if (!rs.next()) return null;
+                double seconds = rs.getDouble(1);
+                return rs.wasNull() ? null : (long) (seconds * 1e9);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            logger.debug("Replica lag probe failed", ex);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.school.equipmentlending.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Where read-only transactions get their connection: the replica, unless the current request is pinned
+ * to the primary (it writes, or its caller wrote recently; see {@link ReadYourWritesInterceptor}) or the
+ * replica is too far behind ({@link ReplicaLagMonitor}).
+ */
+public class ReplicaReadDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final ReplicaLagMonitor lagMonitor;
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder pinnedReads = new LongAdder();
+    private final LongAdder laggingReads = new LongAdder();
+
+    public ReplicaReadDataSource(DataSource replica, DataSource primary, ReplicaLagMonitor lagMonitor) {
+        super(replica);
+        this.primary = primary;
+        this.lagMonitor = lagMonitor;
+    }
+
+    /** Send this thread's read-only transactions to the primary until {@link #unpin()}. */
+    public static void pinToPrimary() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (isPinned()) {
+            pinnedReads.increment();
+            return primary.getConnection();
+        }
+        if (!lagMonitor.isUsable()) {
+            laggingReads.increment();
+            return primary.getConnection();
+        }
+        replicaReads.increment();
+        return super.getConnection();
+    }
+
+    public long replicaReadCount() { return replicaReads.sum(); }
+
+    public long pinnedReadCount() { return pinnedReads.sum(); }
+
+    public long laggingReadCount() { return laggingReads.sum(); }
+}
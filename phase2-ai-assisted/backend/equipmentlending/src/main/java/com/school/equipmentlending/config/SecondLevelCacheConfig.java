@@ -0,0 +1,34 @@
+package com.school.equipmentlending.config;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import javax.cache.CacheManager;
+import java.io.IOException;
+
+/**
+ * Hibernate second-level cache (roles, equipment, User.roles and the role-by-name query), kept in an
+ * in-process Ehcache configured by ehcache.xml.
+ * The JCache manager is created here rather than looked up by Hibernate, so each application context owns
+ * (and closes) its own manager instead of sharing the JVM-wide default one.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    CacheManager hibernateCacheManager(@Value("${app.second-level-cache.config:classpath:ehcache.xml}") Resource config)
+            throws IOException {
+        return new EhcacheCachingProvider().getCacheManager(config.getURI(), getClass().getClassLoader());
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer secondLevelCacheManager(CacheManager hibernateCacheManager) {
+        return properties -> properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+    }
+}
@@ -1,23 +1,36 @@
 package com.school.equipmentlending.config;
 
+import com.school.equipmentlending.security.BoundedPasswordEncoder;
+import com.school.equipmentlending.security.CachingPasswordEncoder;
+import com.school.equipmentlending.security.CostUpgradingPasswordEncoder;
 import com.school.equipmentlending.security.JwtAuthFilter;
 import com.school.equipmentlending.security.JwtUtils;
+import com.school.equipmentlending.security.RateLimitFilter;
+import com.school.equipmentlending.security.RateLimitFilter.EndpointClass;
+import com.school.equipmentlending.security.TokenBucketLimiter;
 import com.school.equipmentlending.service.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 public class SecurityConfig {
@@ -31,22 +44,52 @@ public class SecurityConfig {
     }
 
     @Bean
-    public AuthenticationManager authenticationManager(HttpSecurity http) throws Exception {
+    public AuthenticationManager authenticationManager(HttpSecurity http, PasswordEncoder passwordEncoder) throws Exception {
         AuthenticationManagerBuilder authBuilder =
                 http.getSharedObject(AuthenticationManagerBuilder.class);
         authBuilder.userDetailsService(userDetailsService)
-                .passwordEncoder(passwordEncoder());
+                .passwordEncoder(passwordEncoder);
         return authBuilder.build();
     }
 
+    /**
+     * BCrypt at the configured cost, run on a bounded pool; threads = 0 means half the available cores.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordHashingPool(MeterRegistry meterRegistry,
+                                                      @Value("${app.security.bcrypt.strength:10}") int strength,
+                                                      @Value("${app.security.bcrypt.threads:0}") int threads,
+                                                      @Value("${app.security.bcrypt.queue-capacity:64}") int queueCapacity,
+                                                      @Value("${app.security.bcrypt.timeout-ms:5000}") long timeoutMs) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new CostUpgradingPasswordEncoder(strength), poolSize, queueCapacity,
+                timeoutMs, meterRegistry);
+    }
+
+    /**
+     * The one password encoder (login, signup, default admin): the hashing pool behind a short-lived
+     * cache of successful verifications.
+     */
+    @Bean
+    @Primary
+    public PasswordEncoder passwordEncoder(BoundedPasswordEncoder passwordHashingPool, MeterRegistry meterRegistry,
+                                           @Value("${app.security.password-cache.enabled:true}") boolean cacheEnabled,
+                                           @Value("${app.security.password-cache.ttl:PT5M}") Duration cacheTtl,
+                                           @Value("${app.security.password-cache.max-entries:10000}") int cacheMaxEntries) {
+        if (!cacheEnabled) return passwordHashingPool;
+        return new CachingPasswordEncoder(passwordHashingPool, cacheTtl, cacheMaxEntries, meterRegistry);
+    }
+
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public TokenBucketLimiter rateLimiter(@Value("${app.rate-limit.stripes:16}") int stripes,
+                                          @Value("${app.rate-limit.idle-eviction:PT10M}") Duration idleEviction) {
+        return new TokenBucketLimiter(stripes, idleEviction);
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        JwtAuthFilter jwtFilter = new JwtAuthFilter(jwtUtils, userDetailsService);
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokenBucketLimiter rateLimiter,
+                                                   MeterRegistry meterRegistry, Environment env) throws Exception {
+        JwtAuthFilter jwtFilter = new JwtAuthFilter(jwtUtils, userDetailsService, meterRegistry);
 
         http
                 .csrf(csrf -> csrf.disable())
@@ -55,6 +98,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/admin/**").hasAuthority("ROLE_ADMIN")
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
 
                         .requestMatchers(HttpMethod.GET, "/api/equipments/**").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/equipments/**").hasAuthority("ROLE_ADMIN")
@@ -68,15 +113,37 @@ public class SecurityConfig {
                 )
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
 
+        if (env.getProperty("app.rate-limit.enabled", Boolean.class, true)) {
+            http.addFilterBefore(rateLimitFilter(rateLimiter, meterRegistry, env), JwtAuthFilter.class);
+        }
+
         return http.build();
     }
 
+    /**
+     * Not a bean on purpose: a Filter bean would also be registered in the servlet container and run twice.
+     * Budgets come from app.rate-limit.{class} as "permits-per-second/burst"; blank = unlimited.
+     */
+    private RateLimitFilter rateLimitFilter(TokenBucketLimiter rateLimiter, MeterRegistry meterRegistry,
+                                            Environment env) {
+        Map<EndpointClass, TokenBucketLimiter.Budget> budgets = new EnumMap<>(EndpointClass.class);
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            String spec = env.getProperty("app.rate-limit." + endpointClass.propertyName(), "");
+            if (!spec.isBlank()) {
+                budgets.put(endpointClass, TokenBucketLimiter.Budget.parse(spec));
+            }
+        }
+        int maxCachedTokens = env.getProperty("app.rate-limit.max-cached-tokens", Integer.class, 10_000);
+        return new RateLimitFilter(rateLimiter, jwtUtils, budgets, maxCachedTokens, meterRegistry);
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
         config.setAllowedOrigins(List.of("http://localhost:5173"));
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of("*"));
+        config.setExposedHeaders(List.of("Idempotent-Replayed", "Retry-After"));
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,83 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.security.TokenBucketLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Slow-query log: wraps the application DataSource in a {@link SlowQueryDataSource} when
+ * app.slow-query.enabled=true (the default) and exposes the {@link SlowQueryLog} behind
+ * GET /api/admin/slow-queries. The wrapper is applied before the bulkhead one, so statement timing never
+ * includes waiting for a connection.
+ */
+@Configuration
+public class SlowQueryConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    SlowQueryLog slowQueryLog(@Value("${app.slow-query.threshold:PT0.2S}") Duration threshold,
+                              @Value("${app.slow-query.log-rate:5/20}") String logRate,
+                              @Value("${app.slow-query.queue-capacity:256}") int queueCapacity,
+                              @Value("${app.slow-query.max-statements:1000}") int maxStatements) {
+        return new SlowQueryLog(threshold, TokenBucketLimiter.Budget.parse(logRate), queueCapacity, maxStatements);
+    }
+
+    @Bean
+    static SlowQueryDataSourcePostProcessor slowQueryDataSourcePostProcessor(Environment env,
+                                                                             ObjectProvider<SlowQueryLog> slowQueryLog) {
+        return new SlowQueryDataSourcePostProcessor(env.getProperty("app.slow-query.enabled", Boolean.class, true),
+                slowQueryLog);
+    }
+
+    @Bean
+    MeterBinder slowQueryMetrics(SlowQueryLog slowQueryLog) {
+        return registry -> {
+            FunctionCounter.builder("db.slow_queries", slowQueryLog, SlowQueryLog::loggedCount)
+                    .tag("outcome", "logged").description("Slow statements written to the slow-query log")
+                    .register(registry);
+            FunctionCounter.builder("db.slow_queries", slowQueryLog, SlowQueryLog::rateLimitedCount)
+                    .tag("outcome", "rate_limited").description("Slow statements dropped by the log rate limit")
+                    .register(registry);
+            FunctionCounter.builder("db.slow_queries", slowQueryLog, SlowQueryLog::queueFullCount)
+                    .tag("outcome", "queue_full").description("Slow statements dropped because the log queue was full")
+                    .register(registry);
+            Gauge.builder("db.statements.tracked", slowQueryLog, SlowQueryLog::trackedStatements)
+                    .description("Distinct normalized statements in the slow-query table").register(registry);
+        };
+    }
+
+    /** Ordered, so it runs before the (unordered) bulkhead post-processor and wraps the pool directly. */
+    static final class SlowQueryDataSourcePostProcessor implements BeanPostProcessor, Ordered {
+        private final boolean enabled;
+        private final ObjectProvider<SlowQueryLog> slowQueryLog;
+
+        SlowQueryDataSourcePostProcessor(boolean enabled, ObjectProvider<SlowQueryLog> slowQueryLog) {
+            this.enabled = enabled;
+            this.slowQueryLog = slowQueryLog;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (enabled && bean instanceof DataSource ds && !(bean instanceof SlowQueryDataSource)
+                    && !(bean instanceof ReadWriteRoutingDataSource)) {
+                return new SlowQueryDataSource(ds, slowQueryLog.getObject());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.school.equipmentlending.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Times every JDBC statement and reports it to {@link SlowQueryLog}, with its bind values, the service
+ * method that issued it and the rows it returned or changed.
+ * A query's time is the execute call plus the time spent inside {@code ResultSet.next()}, so fetching a
+ * large result counts but the caller's own work between rows does not. It is reported when the result
+ * set or statement is closed, once the row count is known. A statement that fails (e.g. a lock timeout)
+ * is reported with rows = -1.
+ */
+public class SlowQueryDataSource extends DelegatingDataSource {
+
+    private static final Object[] NO_BINDS = new Object[0];
+
+    private final SlowQueryLog log;
+
+    public SlowQueryDataSource(DataSource target, SlowQueryLog log) {
+        super(target);
+        this.log = log;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection target) {
+        return proxy(Connection.class, new ConnectionHandler(target));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        if ("unwrap".equals(method.getName()) && ((Class<?>) args[0]).isInstance(target)) {
+            return target;
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = call(target, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement", "prepareCall" ->
+                        proxy(method.getReturnType(), new StatementHandler((Statement) result, (String) args[0]));
+                case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, null));
+                default -> result;
+            };
+        }
+    }
+
+    /** One execution whose result set is still being read. */
+    private static final class Execution {
+        final String sql;
+        final String serviceMethod;
+        long nanos;
+        long rows;
+
+        Execution(String sql, String serviceMethod, long nanos) {
+            this.sql = sql;
+            this.serviceMethod = serviceMethod;
+            this.nanos = nanos;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private String batchSql;
+        private Object[] binds = NO_BINDS;
+        private Execution open;
+
+        StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (preparedSql != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer index) {
+                finish();
+                bind(index, "setNull".equals(name) ? null : args[1]);
+                return call(target, method, args);
+            }
+            switch (name) {
+                case "execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+                     "executeBatch", "executeLargeBatch" -> {
+                    return execute(method, args);
+                }
+                case "getResultSet" -> {
+                    Object result = call(target, method, args);
+                    return open != null && result instanceof ResultSet rs ? wrap(rs, open) : result;
+                }
+                case "clearParameters" -> Arrays.fill(binds, null);
+                case "addBatch" -> {
+                    if (args != null && args.length == 1 && args[0] instanceof String sql) batchSql = sql;
+                }
+                case "close" -> finish();
+                default -> { }
+            }
+            return call(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finish();
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : preparedSql != null ? preparedSql : batchSql;
+            String serviceMethod = MethodMetricsPostProcessor.currentServiceMethod();
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(target, method, args);
+            } catch (Throwable ex) {
+                log.record(sql, System.nanoTime() - start, -1, binds, serviceMethod);
+                throw ex;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            if (result instanceof ResultSet rs) {
+                open = new Execution(sql, serviceMethod, elapsed);
+                return wrap(rs, open);
+            }
+            if (Boolean.TRUE.equals(result)) {
+                open = new Execution(sql, serviceMethod, elapsed);   // rows are counted via getResultSet()
+                return result;
+            }
+            log.record(sql, elapsed, rowsOf(result), binds, serviceMethod);
+            return result;
+        }
+
+        private long rowsOf(Object result) {
+            if (result instanceof Number n) return n.longValue();
+            if (result instanceof int[] counts) return Arrays.stream(counts).filter(c -> c > 0).asLongStream().sum();
+            if (result instanceof long[] counts) return Arrays.stream(counts).filter(c -> c > 0).sum();
+            return -1;
+        }
+
+        private void bind(int index, Object value) {
+            if (index > binds.length) {
+                binds = Arrays.copyOf(binds, index);   // sized once per statement, then reused
+            }
+            binds[index - 1] = value;
+        }
+
+        void finish() {
+            Execution execution = open;
+            if (execution == null) return;
+            open = null;
+            log.record(execution.sql, execution.nanos, execution.rows, binds, execution.serviceMethod);
+        }
+
+        private ResultSet wrap(ResultSet rs, Execution execution) {
+            return proxy(ResultSet.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next" -> {
+                        long start = System.nanoTime();
+                        Object hasRow = call(rs, method, args);
+                        execution.nanos += System.nanoTime() - start;
+                        if (Boolean.TRUE.equals(hasRow)) execution.rows++;
+                        return hasRow;
+                    }
+                    case "close" -> {
+                        if (open == execution) finish();
+                    }
+                    default -> { }
+                }
+                return call(rs, method, args);
+            });
+        }
+    }
+}
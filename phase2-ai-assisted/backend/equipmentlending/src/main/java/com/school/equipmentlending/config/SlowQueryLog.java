@@ -0,0 +1,240 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.security.TokenBucketLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per-statement timing table and slow-query log, fed by {@link SlowQueryDataSource}.
+ * Every statement adds to the totals of its normalized form (literals and IN lists collapsed to '?').
+ * Statements at or over the threshold are also written as one key=value line to the {@code slow-query}
+ * logger, with binds, rows and the issuing service method. Lines are written on a single background
+ * thread behind a bounded queue and a token bucket, so slow statements never wait on the log and a burst
+ * cannot flood it: lines over the rate or the queue are dropped and counted.
+ * Binds of statements on the users table are never kept or logged.
+ */
+public class SlowQueryLog {
+
+    private static final Logger slowLog = LoggerFactory.getLogger("slow-query");
+
+    static final String REDACTED = "<redacted>";
+    private static final int MAX_BIND_LENGTH = 64;
+    private static final int MAX_BINDS = 20;
+    private static final String SINK_KEY = "sink";
+
+    private static final Pattern USERS_TABLE = Pattern.compile("(?i)\\b(from|join|update|into)\\s+users\\b");
+    private static final Pattern LOCKING = Pattern.compile("(?i)\\bfor\\s+(update|share)\\b");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /** Running totals of one normalized statement. */
+    static final class StatementStats {
+        final String sql;
+        final boolean redacted;
+        final boolean locking;
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder slowCount = new LongAdder();
+        volatile Sample lastSlow;
+
+        StatementStats(String sql) {
+            this.sql = sql;
+            this.redacted = USERS_TABLE.matcher(sql).find();
+            this.locking = LOCKING.matcher(sql).find();
+        }
+
+        void add(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /** One slow execution, as logged. */
+    record Sample(Instant at, long nanos, long rows, String serviceMethod, String binds) {
+    }
+
+    private final long thresholdNanos;
+    private final int maxStatements;
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(1, Duration.ofDays(1));
+    private final TokenBucketLimiter.Budget logBudget;
+    private final ThreadPoolExecutor writer;
+
+    // raw SQL -> stats of its normalized form; Hibernate's SQL strings are few, so this is normally one lookup
+    private final ConcurrentHashMap<String, StatementStats> byRawSql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementStats> byNormalized = new ConcurrentHashMap<>();
+
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder queueFull = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public SlowQueryLog(Duration threshold, TokenBucketLimiter.Budget logBudget, int queueCapacity, int maxStatements) {
+        this.thresholdNanos = threshold.toNanos();
+        this.logBudget = logBudget;
+        this.maxStatements = maxStatements;
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "slow-query-log");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Account one execution of {@code sql}.
+     *
+     * @param rows          rows read or changed, -1 when the statement failed or the count is unknown
+     * @param binds         bind values by parameter index - 1; only read during this call
+     * @param serviceMethod {@code Class.method} that issued it, or null outside a timed service
+     */
+    public void record(String sql, long nanos, long rows, Object[] binds, String serviceMethod) {
+        if (sql == null) return;
+        StatementStats stats = statsFor(sql);
+        if (stats != null) stats.add(nanos);
+        if (nanos < thresholdNanos) return;
+
+        if (stats == null) stats = new StatementStats(normalize(sql));   // not tracked, but still logged
+        Sample sample = new Sample(Instant.now(), nanos, rows, serviceMethod,
+                stats.redacted ? REDACTED : formatBinds(binds));
+        stats.slowCount.increment();
+        stats.lastSlow = sample;
+        submit(stats, sample);
+    }
+
+    /** The {@code limit} normalized statements with the highest single execution time since startup. */
+    public List<SlowQueryDTO> slowest(int limit) {
+        return byNormalized.values().stream()
+                .sorted(Comparator.comparingLong((StatementStats s) -> s.maxNanos.get()).reversed())
+                .limit(Math.max(0, limit))
+                .map(this::toDto)
+                .toList();
+    }
+
+    public long loggedCount() { return logged.sum(); }
+
+    public long rateLimitedCount() { return rateLimited.sum(); }
+
+    public long queueFullCount() { return queueFull.sum(); }
+
+    /** Executions not added to the table because it already held {@code maxStatements} SQL strings. */
+    public long untrackedCount() { return untracked.sum(); }
+
+    public int trackedStatements() { return byNormalized.size(); }
+
+    public void shutdown() {
+        writer.shutdown();
+    }
+
+    /** Collapse whitespace, literals and IN lists, so executions that differ only in values share one entry. */
+    static String normalize(String sql) {
+        String s = STRING_LITERAL.matcher(sql).replaceAll("?");
+        s = NUMBER_LITERAL.matcher(s).replaceAll("?");
+        s = IN_LIST.matcher(s).replaceAll("(?)");
+        return WHITESPACE.matcher(s).replaceAll(" ").trim();
+    }
+
+    /** The first {@value #MAX_BINDS} binds, so an IN list or multi-row insert keeps the log line short. */
+    static String formatBinds(Object[] binds) {
+        int last = binds.length;
+        while (last > 0 && binds[last - 1] == null) last--;
+        StringBuilder out = new StringBuilder("[");
+        for (int i = 0; i < Math.min(last, MAX_BINDS); i++) {
+            if (i > 0) out.append(", ");
+            out.append(formatBind(binds[i]));
+        }
+        if (last > MAX_BINDS) out.append(", \u2026(+").append(last - MAX_BINDS).append(" more)");
+        return out.append(']').toString();
+    }
+
+    private static String formatBind(Object value) {
+        if (value == null) return "null";
+        if (value instanceof byte[] bytes) return "<" + bytes.length + " bytes>";
+        if (value instanceof InputStream || value instanceof Reader || value instanceof Blob || value instanceof Clob) {
+            return "<lob>";
+        }
+        String text = String.valueOf(value);
+        if (text.length() > MAX_BIND_LENGTH) text = text.substring(0, MAX_BIND_LENGTH) + "...";
+        return value instanceof CharSequence ? "'" + text + "'" : text;
+    }
+
+    private StatementStats statsFor(String sql) {
+        StatementStats stats = byRawSql.get(sql);
+        if (stats != null) return stats;
+        if (byRawSql.size() >= maxStatements) {
+            untracked.increment();
+            return null;
+        }
+        stats = byNormalized.computeIfAbsent(normalize(sql), StatementStats::new);
+        StatementStats raced = byRawSql.putIfAbsent(sql, stats);
+        return raced != null ? raced : stats;
+    }
+
+    private void submit(StatementStats stats, Sample sample) {
+        if (limiter.tryAcquire(SINK_KEY, logBudget) != 0) {
+            rateLimited.increment();
+            return;
+        }
+        try {
+            writer.execute(() -> write(stats, sample));
+        } catch (RejectedExecutionException ex) {
+            queueFull.increment();
+        }
+    }
+
+    private void write(StatementStats stats, Sample sample) {
+        slowLog.warn("slow_query duration_ms={} rows={} service={} locking={} statement=\"{}\" binds={}",
+                String.format(Locale.ROOT, "%.3f", millis(sample.nanos())), sample.rows(),
+                sample.serviceMethod() == null ? "-" : sample.serviceMethod(),
+                stats.locking, stats.sql, sample.binds());
+        logged.increment();
+    }
+
+    private SlowQueryDTO toDto(StatementStats stats) {
+        long count = stats.count.sum();
+        SlowQueryDTO dto = new SlowQueryDTO();
+        dto.setStatement(stats.sql);
+        dto.setLocking(stats.locking);
+        dto.setExecutions(count);
+        dto.setSlowExecutions(stats.slowCount.sum());
+        dto.setTotalMs(millis(stats.totalNanos.sum()));
+        dto.setMeanMs(count == 0 ? 0 : millis(stats.totalNanos.sum()) / count);
+        dto.setMaxMs(millis(stats.maxNanos.get()));
+        Sample last = stats.lastSlow;
+        if (last != null) {
+            dto.setLastSlowAt(last.at());
+            dto.setLastSlowRows(last.rows());
+            dto.setLastSlowServiceMethod(last.serviceMethod());
+            dto.setLastSlowBinds(last.binds());
+        }
+        return dto;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
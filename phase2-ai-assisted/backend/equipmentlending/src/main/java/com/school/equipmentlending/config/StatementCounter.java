@@ -0,0 +1,63 @@
+package com.school.equipmentlending.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread while a count is open, in total and
+ * per distinct SQL text. Hibernate sees SQL with '?' placeholders, so the same statement run with
+ * different binds (the N+1 shape) adds up under one key.
+ * Registered through hibernate.session_factory.statement_inspector, so Hibernate instantiates it;
+ * the tally itself lives in a thread-local, opened and closed by {@link QueryCountFilter}.
+ */
+public class StatementCounter implements StatementInspector {
+
+    /** Statements seen on one thread since {@link #start()}. */
+    public static final class Tally {
+        private int total;
+        private final Map<String, Integer> bySql = new HashMap<>();
+
+        public int total() { return total; }
+
+        /** The statement run most often, with its count; null when nothing ran. */
+        public Map.Entry<String, Integer> mostRepeated() {
+            Map.Entry<String, Integer> top = null;
+            for (Map.Entry<String, Integer> e : bySql.entrySet()) {
+                if (top == null || e.getValue() > top.getValue()) top = e;
+            }
+            return top;
+        }
+    }
+
+    private static final ThreadLocal<Tally> TALLY = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        Tally tally = TALLY.get();
+        if (tally != null) {
+            tally.total++;
+            tally.bySql.merge(sql, 1, Integer::sum);
+        }
+        return sql;
+    }
+
+    /** Start counting on this thread (resets any open count). */
+    public static void start() {
+        TALLY.set(new Tally());
+    }
+
+    /** Statements counted since {@link #start()}, or 0 when no count is open. */
+    public static int current() {
+        Tally tally = TALLY.get();
+        return tally == null ? 0 : tally.total;
+    }
+
+    /** Stop counting and return what was seen (empty when no count was open). */
+    public static Tally stop() {
+        Tally tally = TALLY.get();
+        TALLY.remove();
+        return tally == null ? new Tally() : tally;
+    }
+}
@@ -0,0 +1,53 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Adaptive concurrency limit for booking and loan writes (approve, reject, borrow, return, ...).
+ * Disabled with app.write-limit.enabled=false.
+ */
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final boolean writeLimitEnabled;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+
+    public WebMvcConfig(@Value("${app.write-limit.enabled:true}") boolean writeLimitEnabled,
+                        @Value("${app.write-limit.initial:10}") int initialLimit,
+                        @Value("${app.write-limit.min:2}") int minLimit,
+                        @Value("${app.write-limit.max:50}") int maxLimit,
+                        @Value("${app.write-limit.latency-threshold:PT0.5S}") Duration latencyThreshold,
+                        @Value("${app.write-limit.backoff-ratio:0.9}") double backoffRatio) {
+        this.writeLimitEnabled = writeLimitEnabled;
+        this.writeLimiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!writeLimitEnabled) return;
+        registry.addInterceptor(new WriteConcurrencyInterceptor(writeLimiter))
+                .addPathPatterns("/api/bookings/**", "/api/loans/**");
+    }
+
+    @Bean
+    MeterBinder writeLimitMetrics() {
+        return registry -> {
+            Gauge.builder("http.write.concurrency.limit", writeLimiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Current adaptive limit for booking/loan writes").register(registry);
+            Gauge.builder("http.write.concurrency.in_flight", writeLimiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .register(registry);
+            FunctionCounter.builder("http.write.concurrency.rejected", writeLimiter,
+                    AdaptiveConcurrencyLimiter::getRejectedCount).register(registry);
+        };
+    }
+}
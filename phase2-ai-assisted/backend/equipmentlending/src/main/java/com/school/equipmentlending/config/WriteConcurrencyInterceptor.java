@@ -0,0 +1,62 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.exception.GlobalExceptionHandler;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.util.AdaptiveConcurrencyLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Applies the adaptive write limit to state-changing requests (anything but GET/HEAD/OPTIONS) on the
+ * paths it is registered for. Reads pass straight through, so they keep their connections and latency
+ * while excess writes are refused with 503 + Retry-After instead of piling up on row locks.
+ */
+public class WriteConcurrencyInterceptor implements HandlerInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteConcurrencyInterceptor.class);
+
+    static final String STARTED_AT = WriteConcurrencyInterceptor.class.getName() + ".startedAt";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public WriteConcurrencyInterceptor(AdaptiveConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!isWrite(request)) return true;
+        if (!limiter.tryAcquire()) {
+            logger.debug("Write shed {} {} (limit {})", request.getMethod(), request.getRequestURI(), limiter.getLimit());
+            throw new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1,
+                    "Too many concurrent updates, please retry");
+        }
+        request.setAttribute(STARTED_AT, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object startedAt = request.getAttribute(STARTED_AT);
+        if (startedAt == null) return;
+        request.removeAttribute(STARTED_AT);
+        // GlobalExceptionHandler resolves every exception, so ex is normally null here: the handler
+        // flags lock and connection failures on the request instead
+        boolean dropped = Boolean.TRUE.equals(request.getAttribute(GlobalExceptionHandler.RESOURCE_EXHAUSTED))
+                || ex instanceof TransientDataAccessException
+                || ex instanceof CannotCreateTransactionException
+                || response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value();
+        limiter.release(System.nanoTime() - (Long) startedAt, dropped);
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !("GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method));
+    }
+}
@@ -1,14 +1,26 @@
 package com.school.equipmentlending.controller;
 
+import com.school.equipmentlending.config.SlowQueryLog;
+import com.school.equipmentlending.dto.BulkRoleRequest;
+import com.school.equipmentlending.dto.BulkRoleResult;
+import com.school.equipmentlending.dto.RosterImportResult;
+import com.school.equipmentlending.dto.SlowQueryDTO;
 import com.school.equipmentlending.model.Role;
 import com.school.equipmentlending.model.User;
 import com.school.equipmentlending.repository.RoleRepository;
 import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.service.RoleService;
+import com.school.equipmentlending.service.RosterImportService;
+import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.InputStream;
 import java.util.HashSet;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -16,10 +28,17 @@ public class AdminController {
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
     private final UserRepository userRepo;
     private final RoleRepository roleRepo;
+    private final SlowQueryLog slowQueryLog;
+    private final RosterImportService rosterImportService;
+    private final RoleService roleService;
 
-    public AdminController(UserRepository userRepo, RoleRepository roleRepo) {
+    public AdminController(UserRepository userRepo, RoleRepository roleRepo, SlowQueryLog slowQueryLog,
+                           RosterImportService rosterImportService, RoleService roleService) {
         this.userRepo = userRepo;
         this.roleRepo = roleRepo;
+        this.slowQueryLog = slowQueryLog;
+        this.rosterImportService = rosterImportService;
+        this.roleService = roleService;
     }
 
     /**
@@ -46,4 +65,38 @@ public class AdminController {
 
         return "User " + username + " promoted to ROLE_ADMIN";
     }
+
+    /**
+     * Grant or revoke one role for a list of usernames in a single statement; unknown usernames are
+     * reported, not treated as an error. A granted role that does not exist yet is created.
+     */
+    @PostMapping("/roles/bulk")
+    public BulkRoleResult bulkRoles(@Valid @RequestBody BulkRoleRequest request) {
+        return roleService.apply(request);
+    }
+
+    /**
+     * The slowest normalized SQL statements since startup, by worst single execution, with their totals
+     * and the binds, rows and service method of their last execution over app.slow-query.threshold.
+     */
+    @GetMapping("/slow-queries")
+    public List<SlowQueryDTO> slowQueries(@RequestParam(defaultValue = "20") int limit) {
+        return slowQueryLog.slowest(Math.min(limit, 200));
+    }
+
+    /**
+     * Create users in bulk from a CSV roster (username,password[,role]), streamed chunk by chunk.
+     * Existing usernames are skipped, never overwritten; the response counts every row by outcome.
+     */
+    @PostMapping(value = "/users/import", consumes = "text/csv")
+    public RosterImportResult importRoster(InputStream body) {
+        return rosterImportService.importRoster(body);
+    }
+
+    /** Progress of the running roster import, or the result of the last one. */
+    @GetMapping("/users/import")
+    public RosterImportResult rosterImportProgress() {
+        return rosterImportService.progress()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No roster import has run"));
+    }
 }
@@ -1,24 +1,33 @@
 package com.school.equipmentlending.controller;
 
+import com.school.equipmentlending.dto.AllocationPlanDTO;
+import com.school.equipmentlending.dto.ApprovalJobDTO;
+import com.school.equipmentlending.dto.AvailableSlotDTO;
 import com.school.equipmentlending.dto.BookingDecisionDTO;
 import com.school.equipmentlending.dto.BookingRequestDTO;
 import com.school.equipmentlending.dto.CreateBookingRequestDTO;
-import com.school.equipmentlending.mapper.BookingMapper;
-import com.school.equipmentlending.model.BookingRequest;
-import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.service.AllocationService;
+import com.school.equipmentlending.service.ApprovalJobService;
+import com.school.equipmentlending.service.AvailabilityService;
+import com.school.equipmentlending.service.BookingAllocator;
 import com.school.equipmentlending.service.BookingService;
+import com.school.equipmentlending.service.IdempotencyService;
+import com.school.equipmentlending.service.ReservationCommands;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/bookings")
@@ -27,17 +36,37 @@ public class BookingController {
     private static final Logger logger = LoggerFactory.getLogger(BookingController.class);
 
     private final BookingService bookingService;
-    private final BookingRequestRepository bookingRepo;
+    private final AvailabilityService availabilityService;
+    private final AllocationService allocationService;
+    private final IdempotencyService idempotencyService;
+    private final ApprovalJobService approvalJobService;
+    private final ReservationCommands reservationCommands;
 
-    public BookingController(BookingService bookingService, BookingRequestRepository bookingRepo) {
+    public BookingController(BookingService bookingService, AvailabilityService availabilityService,
+                             AllocationService allocationService, IdempotencyService idempotencyService,
+                             ApprovalJobService approvalJobService, ReservationCommands reservationCommands) {
         this.bookingService = bookingService;
-        this.bookingRepo = bookingRepo;
+        this.availabilityService = availabilityService;
+        this.allocationService = allocationService;
+        this.idempotencyService = idempotencyService;
+        this.approvalJobService = approvalJobService;
+        this.reservationCommands = reservationCommands;
     }
 
+    /**
+     * Create a booking. Clients retrying over a flaky network should send an Idempotency-Key header:
+     * a replay with the same key returns the original response instead of creating a duplicate.
+     */
     @PostMapping
     public ResponseEntity<?> createBooking(@Valid @RequestBody CreateBookingRequestDTO req,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
                                            Authentication authentication) {
         String username = authentication.getName();
+        return idempotencyService.execute("POST /api/bookings", username, idempotencyKey, req,
+                BookingRequestDTO.class, () -> doCreateBooking(username, req));
+    }
+
+    private ResponseEntity<Object> doCreateBooking(String username, CreateBookingRequestDTO req) {
         try {
             BookingRequestDTO dto = bookingService.createBooking(username, req);
             return ResponseEntity.ok(dto);
@@ -56,10 +85,27 @@ public class BookingController {
 
     @GetMapping("/my")
     public ResponseEntity<List<BookingRequestDTO>> myBookings(Authentication authentication) {
-        String username = authentication.getName();
-        List<BookingRequest> list = bookingRepo.findByRequester_Username(username);
-        List<BookingRequestDTO> dtos = list.stream().map(BookingMapper::toDTO).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(bookingService.getBookingsForUser(authentication.getName()));
+    }
+
+    /**
+     * Next available slots:
+     * GET /api/bookings/slots?equipmentId=1&quantity=2&durationMinutes=120&from=2025-01-10T08:00&limit=3
+     */
+    @GetMapping("/slots")
+    public ResponseEntity<List<AvailableSlotDTO>> nextAvailableSlots(
+            @RequestParam Long equipmentId,
+            @RequestParam(defaultValue = "1") int quantity,
+            @RequestParam long durationMinutes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(defaultValue = "3") int limit) {
+        // refuse before Duration.ofMinutes, which overflows on huge values
+        if (durationMinutes > AvailabilityService.MAX_SLOT_DURATION.toMinutes()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Duration must be at most " + AvailabilityService.MAX_SLOT_DURATION.toDays() + " days");
+        }
+        return ResponseEntity.ok(availabilityService.findNextSlots(
+                equipmentId, quantity, Duration.ofMinutes(durationMinutes), from, limit));
     }
 
     /* ---------------- Admin endpoints (approve/reject/list pending) ---------------- */
@@ -71,24 +117,45 @@ public class BookingController {
         if (!isAdmin) {
             return ResponseEntity.status(403).build();
         }
-        List<BookingRequest> list = bookingRepo.findByStatus(com.school.equipmentlending.model.BookingStatus.PENDING);
-        return ResponseEntity.ok(list.stream().map(BookingMapper::toDTO).collect(Collectors.toList()));
+        return ResponseEntity.ok(bookingService.getPendingBookings());
     }
 
+    /**
+     * Approve a booking. With {@code async=true} the approval is queued behind others for the same equipment
+     * and the response is 202 with a job to poll at GET /api/bookings/jobs/{jobId}.
+     */
     @PostMapping("/{id}/approve")
-    public ResponseEntity<BookingRequestDTO> approveBooking(@PathVariable Long id,
-                                                            @RequestBody(required = false) BookingDecisionDTO decision,
-                                                            Authentication authentication) {
+    public ResponseEntity<?> approveBooking(@PathVariable Long id,
+                                            @RequestBody(required = false) BookingDecisionDTO decision,
+                                            @RequestParam(defaultValue = "false") boolean async,
+                                            Authentication authentication) {
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
         if (!isAdmin) {
             return ResponseEntity.status(403).build();
         }
         String admin = authentication.getName();
-        BookingRequestDTO dto = bookingService.approveBooking(id, admin, decision == null ? null : decision.getAdminNote());
+        String note = decision == null ? null : decision.getAdminNote();
+        if (async) {
+            ApprovalJobDTO job = approvalJobService.submit(id, admin, note);
+            return ResponseEntity.accepted().location(URI.create("/api/bookings/jobs/" + job.getJobId())).body(job);
+        }
+        BookingRequestDTO dto = reservationCommands.approve(id, admin, note);
         return ResponseEntity.ok(dto);
     }
 
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ApprovalJobDTO> approvalJob(@PathVariable String jobId, Authentication authentication) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        if (!isAdmin) {
+            return ResponseEntity.status(403).build();
+        }
+        return approvalJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Approval job not found: " + jobId));
+    }
+
     @PostMapping("/{id}/reject")
     public ResponseEntity<BookingRequestDTO> rejectBooking(@PathVariable Long id,
                                                            @RequestBody(required = false) BookingDecisionDTO decision,
@@ -102,4 +169,37 @@ public class BookingController {
         BookingRequestDTO dto = bookingService.rejectBooking(id, admin, decision == null ? null : decision.getAdminNote());
         return ResponseEntity.ok(dto);
     }
+
+    /**
+     * Preview the optimal allocation of PENDING bookings for one equipment or a whole category:
+     * GET /api/bookings/allocation?equipmentId=3&objective=COUNT
+     */
+    @GetMapping("/allocation")
+    public ResponseEntity<AllocationPlanDTO> previewAllocation(@RequestParam(required = false) Long equipmentId,
+                                                               @RequestParam(required = false) String category,
+                                                               @RequestParam(defaultValue = "COUNT") BookingAllocator.Objective objective,
+                                                               Authentication authentication) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        if (!isAdmin) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(allocationService.preview(equipmentId, category, objective));
+    }
+
+    /** Recompute and commit the allocation in one transaction. */
+    @PostMapping("/allocation")
+    public ResponseEntity<AllocationPlanDTO> commitAllocation(@RequestParam(required = false) Long equipmentId,
+                                                              @RequestParam(required = false) String category,
+                                                              @RequestParam(defaultValue = "COUNT") BookingAllocator.Objective objective,
+                                                              @RequestParam(defaultValue = "false") boolean rejectUnselected,
+                                                              Authentication authentication) {
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        if (!isAdmin) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(allocationService.commit(equipmentId, category, objective,
+                rejectUnselected, authentication.getName()));
+    }
 }
@@ -1,19 +1,26 @@
 package com.school.equipmentlending.controller;
 
 import com.school.equipmentlending.dto.EquipmentDTO;
+import com.school.equipmentlending.dto.EquipmentImportResult;
 import com.school.equipmentlending.dto.EquipmentRequest;
+import com.school.equipmentlending.dto.ReservationStateDTO;
 import com.school.equipmentlending.mapper.EquipmentMapper;
 import com.school.equipmentlending.model.Equipment;
 import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.service.EquipmentImportService;
 import com.school.equipmentlending.service.EquipmentService;
+import com.school.equipmentlending.service.ReservationCommands;
 import com.school.equipmentlending.exception.ResourceNotFoundException;
 
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -25,11 +32,17 @@ public class EquipmentController {
 
     private final EquipmentService equipmentService;
     private final EquipmentRepository equipmentRepository;
+    private final EquipmentImportService equipmentImportService;
+    private final ReservationCommands reservationCommands;
 
     public EquipmentController(EquipmentService equipmentService,
-                               EquipmentRepository equipmentRepository) {
+                               EquipmentRepository equipmentRepository,
+                               EquipmentImportService equipmentImportService,
+                               ReservationCommands reservationCommands) {
         this.equipmentService = equipmentService;
         this.equipmentRepository = equipmentRepository;
+        this.equipmentImportService = equipmentImportService;
+        this.reservationCommands = reservationCommands;
     }
 
     /** Dashboard: list all with availability */
@@ -65,6 +78,12 @@ public class EquipmentController {
         return ResponseEntity.ok(equipmentService.getById(id));
     }
 
+    /** Units reserved and free right now (served from memory when the actor reservation engine is on) */
+    @GetMapping("/{id}/availability")
+    public ResponseEntity<ReservationStateDTO> getCurrentAvailability(@PathVariable Long id) {
+        return ResponseEntity.ok(reservationCommands.currentState(id));
+    }
+
     @PostMapping
     public ResponseEntity<EquipmentDTO> createEquipment(@Valid @RequestBody EquipmentRequest req) {
         logger.info("Creating new equipment: {}", req.getName());
@@ -72,6 +91,20 @@ public class EquipmentController {
         return ResponseEntity.ok(dto);
     }
 
+    /**
+     * Bulk upsert from a streamed upload:
+     * POST /api/equipments/import with Content-Type text/csv (header row: name,category,condition,quantity,available)
+     * or application/x-ndjson (one EquipmentRequest JSON object per line).
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<EquipmentImportResult> importEquipments(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) {
+        EquipmentImportService.Format format = contentType.isCompatibleWith(MediaType.APPLICATION_NDJSON)
+                ? EquipmentImportService.Format.NDJSON : EquipmentImportService.Format.CSV;
+        logger.info("Importing equipments ({})", format);
+        return ResponseEntity.ok(equipmentImportService.importEquipment(body, format));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<EquipmentDTO> updateEquipment(@PathVariable Long id, @Valid @RequestBody EquipmentRequest req) {
         logger.info("Updating equipment id: {}", id);
@@ -2,7 +2,11 @@ package com.school.equipmentlending.controller;
 
 import com.school.equipmentlending.dto.BorrowRequest;
 import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.LoanReturnResult;
+import com.school.equipmentlending.dto.ReturnBatchRequest;
+import com.school.equipmentlending.service.IdempotencyService;
 import com.school.equipmentlending.service.LoanService;
+import com.school.equipmentlending.service.ReservationCommands;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,19 +22,26 @@ public class LoanController {
 
     private static final Logger logger = LoggerFactory.getLogger(LoanController.class);
     private final LoanService loanService;
+    private final IdempotencyService idempotencyService;
+    private final ReservationCommands reservationCommands;
 
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, IdempotencyService idempotencyService,
+                          ReservationCommands reservationCommands) {
         this.loanService = loanService;
+        this.idempotencyService = idempotencyService;
+        this.reservationCommands = reservationCommands;
     }
 
     /**
-     * Immediate borrow (authenticated users)
+     * Immediate borrow (authenticated users). Supports the Idempotency-Key header for safe retries.
      */
     @PostMapping("/borrow")
-    public ResponseEntity<LoanResponse> borrowNow(@Valid @RequestBody BorrowRequest req, Authentication authentication) {
+    public ResponseEntity<LoanResponse> borrowNow(@Valid @RequestBody BorrowRequest req,
+                                                  @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                                  Authentication authentication) {
         String username = authentication.getName();
-        LoanResponse res = loanService.borrowNow(username, req);
-        return ResponseEntity.ok(res);
+        return idempotencyService.execute("POST /api/loans/borrow", username, idempotencyKey, req,
+                LoanResponse.class, () -> ResponseEntity.ok(reservationCommands.borrow(username, req)));
     }
 
     /**
@@ -40,7 +51,30 @@ public class LoanController {
     public ResponseEntity<LoanResponse> returnLoan(@PathVariable Long loanId, Authentication authentication) {
         String username = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        LoanResponse res = loanService.markLoanReturned(loanId, username, isAdmin);
+        LoanResponse res = reservationCommands.returnLoan(loanId, username, isAdmin);
+        return ResponseEntity.ok(res);
+    }
+
+    /**
+     * Return several loans in one call, e.g. a lab assistant scanning items back in (borrower or admin).
+     * Responds with one outcome per distinct loan id, in request order.
+     */
+    @PostMapping("/return-batch")
+    public ResponseEntity<List<LoanReturnResult>> returnBatch(@Valid @RequestBody ReturnBatchRequest req,
+                                                              Authentication authentication) {
+        String username = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        return ResponseEntity.ok(loanService.returnLoans(req.getLoanIds(), username, isAdmin));
+    }
+
+    /**
+     * Cancel a loan that has not started yet (borrower or admin)
+     */
+    @PostMapping("/{loanId}/cancel")
+    public ResponseEntity<LoanResponse> cancelLoan(@PathVariable Long loanId, Authentication authentication) {
+        String username = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+        LoanResponse res = loanService.cancelLoan(loanId, username, isAdmin);
         return ResponseEntity.ok(res);
     }
 
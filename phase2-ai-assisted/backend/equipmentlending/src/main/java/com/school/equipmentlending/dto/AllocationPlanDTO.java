@@ -0,0 +1,58 @@
+package com.school.equipmentlending.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the batch allocation solver, per equipment.
+ * Returned both by the preview and by the commit (committed == true).
+ */
+public class AllocationPlanDTO {
+    private String objective;
+    private boolean committed;
+    private List<EquipmentAllocation> equipment = new ArrayList<>();
+
+    public String getObjective() { return objective; }
+    public void setObjective(String objective) { this.objective = objective; }
+
+    public boolean isCommitted() { return committed; }
+    public void setCommitted(boolean committed) { this.committed = committed; }
+
+    public List<EquipmentAllocation> getEquipment() { return equipment; }
+    public void setEquipment(List<EquipmentAllocation> equipment) { this.equipment = equipment; }
+
+    public int getTotalSelected() {
+        return equipment.stream().mapToInt(e -> e.getSelectedBookingIds().size()).sum();
+    }
+
+    public int getTotalSelectedUnits() {
+        return equipment.stream().mapToInt(EquipmentAllocation::getSelectedUnits).sum();
+    }
+
+    public static class EquipmentAllocation {
+        private Long equipmentId;
+        private String equipmentName;
+        private int capacity;
+        private int pendingCount;
+        private List<Long> selectedBookingIds = new ArrayList<>();
+        private int selectedUnits;
+
+        public Long getEquipmentId() { return equipmentId; }
+        public void setEquipmentId(Long equipmentId) { this.equipmentId = equipmentId; }
+
+        public String getEquipmentName() { return equipmentName; }
+        public void setEquipmentName(String equipmentName) { this.equipmentName = equipmentName; }
+
+        public int getCapacity() { return capacity; }
+        public void setCapacity(int capacity) { this.capacity = capacity; }
+
+        public int getPendingCount() { return pendingCount; }
+        public void setPendingCount(int pendingCount) { this.pendingCount = pendingCount; }
+
+        public List<Long> getSelectedBookingIds() { return selectedBookingIds; }
+        public void setSelectedBookingIds(List<Long> selectedBookingIds) { this.selectedBookingIds = selectedBookingIds; }
+
+        public int getSelectedUnits() { return selectedUnits; }
+        public void setSelectedUnits(int selectedUnits) { this.selectedUnits = selectedUnits; }
+    }
+}
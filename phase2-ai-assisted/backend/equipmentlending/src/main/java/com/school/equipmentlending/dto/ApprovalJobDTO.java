@@ -0,0 +1,55 @@
+package com.school.equipmentlending.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status of an asynchronous booking approval. {@code booking} is set once the job succeeded;
+ * {@code httpStatus} and {@code message} say why it failed, as the synchronous endpoint would have.
+ */
+public class ApprovalJobDTO {
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private String jobId;
+    private Long bookingId;
+    private Long equipmentId;
+    private State state;
+    private Integer httpStatus;
+    private String message;
+    private BookingRequestDTO booking;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public ApprovalJobDTO() {}
+
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+
+    public Long getBookingId() { return bookingId; }
+    public void setBookingId(Long bookingId) { this.bookingId = bookingId; }
+
+    public Long getEquipmentId() { return equipmentId; }
+    public void setEquipmentId(Long equipmentId) { this.equipmentId = equipmentId; }
+
+    public State getState() { return state; }
+    public void setState(State state) { this.state = state; }
+
+    public Integer getHttpStatus() { return httpStatus; }
+    public void setHttpStatus(Integer httpStatus) { this.httpStatus = httpStatus; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public BookingRequestDTO getBooking() { return booking; }
+    public void setBooking(BookingRequestDTO booking) { this.booking = booking; }
+
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
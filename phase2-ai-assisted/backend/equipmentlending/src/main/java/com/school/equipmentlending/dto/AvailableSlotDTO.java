@@ -0,0 +1,35 @@
+package com.school.equipmentlending.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A window in which the requested quantity can be booked.
+ * freeUntil is the end of the surrounding free gap (null = no later reservation blocks it).
+ */
+public class AvailableSlotDTO {
+    private LocalDateTime startAt;
+    private LocalDateTime endAt;
+    private LocalDateTime freeUntil;
+    private int availableUnits; // minimum free units over the whole gap
+
+    public AvailableSlotDTO() {}
+
+    public AvailableSlotDTO(LocalDateTime startAt, LocalDateTime endAt, LocalDateTime freeUntil, int availableUnits) {
+        this.startAt = startAt;
+        this.endAt = endAt;
+        this.freeUntil = freeUntil;
+        this.availableUnits = availableUnits;
+    }
+
+    public LocalDateTime getStartAt() { return startAt; }
+    public void setStartAt(LocalDateTime startAt) { this.startAt = startAt; }
+
+    public LocalDateTime getEndAt() { return endAt; }
+    public void setEndAt(LocalDateTime endAt) { this.endAt = endAt; }
+
+    public LocalDateTime getFreeUntil() { return freeUntil; }
+    public void setFreeUntil(LocalDateTime freeUntil) { this.freeUntil = freeUntil; }
+
+    public int getAvailableUnits() { return availableUnits; }
+    public void setAvailableUnits(int availableUnits) { this.availableUnits = availableUnits; }
+}
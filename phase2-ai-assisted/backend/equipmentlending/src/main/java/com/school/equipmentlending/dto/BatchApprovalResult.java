@@ -0,0 +1,19 @@
+package com.school.equipmentlending.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of approving several bookings of one equipment under a single lock.
+ */
+public class BatchApprovalResult {
+    private final List<Long> approved = new ArrayList<>();
+    private final List<Long> skippedByPolicy = new ArrayList<>();
+    private final List<Long> skippedNoCapacity = new ArrayList<>();
+    private final List<Long> notPending = new ArrayList<>();
+
+    public List<Long> getApproved() { return approved; }
+    public List<Long> getSkippedByPolicy() { return skippedByPolicy; }
+    public List<Long> getSkippedNoCapacity() { return skippedNoCapacity; }
+    public List<Long> getNotPending() { return notPending; }
+}
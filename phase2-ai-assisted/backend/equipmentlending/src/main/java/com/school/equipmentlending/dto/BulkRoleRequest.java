@@ -0,0 +1,31 @@
+package com.school.equipmentlending.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/** Grant or revoke one role for a list of usernames (POST /api/admin/roles/bulk). */
+public class BulkRoleRequest {
+
+    public enum Action { GRANT, REVOKE }
+
+    @NotNull(message = "action is required (GRANT or REVOKE)")
+    private Action action;
+
+    @NotBlank(message = "role is required")
+    private String role;
+
+    @NotEmpty(message = "usernames are required")
+    private List<String> usernames;
+
+    public Action getAction() { return action; }
+    public void setAction(Action action) { this.action = action; }
+
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+
+    public List<String> getUsernames() { return usernames; }
+    public void setUsernames(List<String> usernames) { this.usernames = usernames; }
+}
@@ -0,0 +1,35 @@
+package com.school.equipmentlending.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk role change. matched = usernames that exist; changed = users that actually gained
+ * (or lost) the role, so users who already had it (or never had it) count as matched but not changed.
+ */
+public class BulkRoleResult {
+    private BulkRoleRequest.Action action;
+    private String role;
+    private int requested;
+    private int matched;
+    private int changed;
+    private List<String> unknownUsernames = new ArrayList<>();
+
+    public BulkRoleRequest.Action getAction() { return action; }
+    public void setAction(BulkRoleRequest.Action action) { this.action = action; }
+
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+
+    public int getRequested() { return requested; }
+    public void setRequested(int requested) { this.requested = requested; }
+
+    public int getMatched() { return matched; }
+    public void setMatched(int matched) { this.matched = matched; }
+
+    public int getChanged() { return changed; }
+    public void setChanged(int changed) { this.changed = changed; }
+
+    public List<String> getUnknownUsernames() { return unknownUsernames; }
+    public void setUnknownUsernames(List<String> unknownUsernames) { this.unknownUsernames = unknownUsernames; }
+}
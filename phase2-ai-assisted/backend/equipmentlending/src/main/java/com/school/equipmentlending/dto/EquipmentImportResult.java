@@ -0,0 +1,40 @@
+package com.school.equipmentlending.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk equipment import. Rows are counted by outcome; rejected rows are listed with their
+ * line number (1-based, header included) up to a limit, after which only the count grows.
+ */
+public class EquipmentImportResult {
+
+    private long rows;
+    private long created;
+    private long updated;
+    private long rejected;
+    private long elapsedMs;
+    private boolean errorsTruncated;
+    private List<ImportRowError> errors = new ArrayList<>();
+
+    public long getRows() { return rows; }
+    public void setRows(long rows) { this.rows = rows; }
+
+    public long getCreated() { return created; }
+    public void setCreated(long created) { this.created = created; }
+
+    public long getUpdated() { return updated; }
+    public void setUpdated(long updated) { this.updated = updated; }
+
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public boolean isErrorsTruncated() { return errorsTruncated; }
+    public void setErrorsTruncated(boolean errorsTruncated) { this.errorsTruncated = errorsTruncated; }
+
+    public List<ImportRowError> getErrors() { return errors; }
+    public void setErrors(List<ImportRowError> errors) { this.errors = errors; }
+}
@@ -0,0 +1,34 @@
+package com.school.equipmentlending.dto;
+
+/**
+ * Outcome of one loan in a batch return. {@code loan} is set when the loan was returned.
+ */
+public class LoanReturnResult {
+
+    public enum Outcome { RETURNED, OVERDUE, NOT_FOUND, NOT_ALLOWED, NOT_ACTIVE }
+
+    private Long loanId;
+    private Outcome outcome;
+    private String message;
+    private LoanResponse loan;
+
+    public LoanReturnResult() {}
+
+    public LoanReturnResult(Long loanId, Outcome outcome, String message) {
+        this.loanId = loanId;
+        this.outcome = outcome;
+        this.message = message;
+    }
+
+    public Long getLoanId() { return loanId; }
+    public void setLoanId(Long loanId) { this.loanId = loanId; }
+
+    public Outcome getOutcome() { return outcome; }
+    public void setOutcome(Outcome outcome) { this.outcome = outcome; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public LoanResponse getLoan() { return loan; }
+    public void setLoan(LoanResponse loan) { this.loan = loan; }
+}
@@ -0,0 +1,45 @@
+package com.school.equipmentlending.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Units of an equipment held by active loans right now. {@code version} counts the reservation
+ * engine's committed batches for the equipment; it is null when the state was read from the database.
+ */
+public class ReservationStateDTO {
+    private Long equipmentId;
+    private int capacity;
+    private int reservedNow;
+    private int availableNow;
+    private LocalDateTime asOf;
+    private Long version;
+
+    public ReservationStateDTO() {}
+
+    public ReservationStateDTO(Long equipmentId, int capacity, int reservedNow, LocalDateTime asOf, Long version) {
+        this.equipmentId = equipmentId;
+        this.capacity = capacity;
+        this.reservedNow = reservedNow;
+        this.availableNow = Math.max(0, capacity - reservedNow);
+        this.asOf = asOf;
+        this.version = version;
+    }
+
+    public Long getEquipmentId() { return equipmentId; }
+    public void setEquipmentId(Long equipmentId) { this.equipmentId = equipmentId; }
+
+    public int getCapacity() { return capacity; }
+    public void setCapacity(int capacity) { this.capacity = capacity; }
+
+    public int getReservedNow() { return reservedNow; }
+    public void setReservedNow(int reservedNow) { this.reservedNow = reservedNow; }
+
+    public int getAvailableNow() { return availableNow; }
+    public void setAvailableNow(int availableNow) { this.availableNow = availableNow; }
+
+    public LocalDateTime getAsOf() { return asOf; }
+    public void setAsOf(LocalDateTime asOf) { this.asOf = asOf; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+}
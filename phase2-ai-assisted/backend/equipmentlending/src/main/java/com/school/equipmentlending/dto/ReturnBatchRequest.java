@@ -0,0 +1,25 @@
+package com.school.equipmentlending.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * DTO for returning several loans at once (barcode check-in at the end of a class).
+ * Used in POST /api/loans/return-batch
+ */
+public class ReturnBatchRequest {
+
+    @NotEmpty(message = "loanIds is required")
+    @Size(max = 500, message = "at most 500 loans per batch")
+    private List<Long> loanIds;
+
+    public List<Long> getLoanIds() {
+        return loanIds;
+    }
+
+    public void setLoanIds(List<Long> loanIds) {
+        this.loanIds = loanIds;
+    }
+}
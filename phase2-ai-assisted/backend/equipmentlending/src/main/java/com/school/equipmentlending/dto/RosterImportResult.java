@@ -0,0 +1,75 @@
+package com.school.equipmentlending.dto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress, then outcome, of a bulk roster import. Rows are counted by outcome: created, skipped (the
+ * username already exists) or rejected (invalid, repeated in the upload, or not saved). Skipped and
+ * rejected rows are listed with their line number up to a limit, after which only the counts grow.
+ * hashingMs is the wall time spent hashing passwords, the bulk of an import.
+ */
+public class RosterImportResult {
+    private boolean running;
+    private Instant startedAt;
+    private long rows;
+    private long created;
+    private long skipped;
+    private long rejected;
+    private long elapsedMs;
+    private long hashingMs;
+    private double usersPerSecond;
+    private boolean errorsTruncated;
+    private List<ImportRowError> errors = new ArrayList<>();
+
+    /** Copy for the progress endpoint, so readers never see the list the import is still appending to. */
+    public RosterImportResult snapshot() {
+        RosterImportResult copy = new RosterImportResult();
+        copy.running = running;
+        copy.startedAt = startedAt;
+        copy.rows = rows;
+        copy.created = created;
+        copy.skipped = skipped;
+        copy.rejected = rejected;
+        copy.elapsedMs = elapsedMs;
+        copy.hashingMs = hashingMs;
+        copy.usersPerSecond = usersPerSecond;
+        copy.errorsTruncated = errorsTruncated;
+        copy.errors = new ArrayList<>(errors);
+        return copy;
+    }
+
+    public boolean isRunning() { return running; }
+    public void setRunning(boolean running) { this.running = running; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public long getRows() { return rows; }
+    public void setRows(long rows) { this.rows = rows; }
+
+    public long getCreated() { return created; }
+    public void setCreated(long created) { this.created = created; }
+
+    public long getSkipped() { return skipped; }
+    public void setSkipped(long skipped) { this.skipped = skipped; }
+
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public long getHashingMs() { return hashingMs; }
+    public void setHashingMs(long hashingMs) { this.hashingMs = hashingMs; }
+
+    public double getUsersPerSecond() { return usersPerSecond; }
+    public void setUsersPerSecond(double usersPerSecond) { this.usersPerSecond = usersPerSecond; }
+
+    public boolean isErrorsTruncated() { return errorsTruncated; }
+    public void setErrorsTruncated(boolean errorsTruncated) { this.errorsTruncated = errorsTruncated; }
+
+    public List<ImportRowError> getErrors() { return errors; }
+    public void setErrors(List<ImportRowError> errors) { this.errors = errors; }
+}
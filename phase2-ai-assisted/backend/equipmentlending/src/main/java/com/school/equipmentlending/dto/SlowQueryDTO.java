@@ -0,0 +1,57 @@
+package com.school.equipmentlending.dto;
+
+import java.time.Instant;
+
+/**
+ * Timing of one normalized SQL statement since startup, as listed by GET /api/admin/slow-queries.
+ * The lastSlow* fields describe its most recent execution over the slow-query threshold (null if none);
+ * binds are "<redacted>" for statements on the users table.
+ */
+public class SlowQueryDTO {
+    private String statement;
+    private boolean locking;        // SELECT ... FOR UPDATE/SHARE: time is mostly row-lock wait
+    private long executions;
+    private long slowExecutions;
+    private double totalMs;
+    private double meanMs;
+    private double maxMs;
+    private Instant lastSlowAt;
+    private Long lastSlowRows;
+    private String lastSlowServiceMethod;
+    private String lastSlowBinds;
+
+    public SlowQueryDTO() {}
+
+    public String getStatement() { return statement; }
+    public void setStatement(String statement) { this.statement = statement; }
+
+    public boolean isLocking() { return locking; }
+    public void setLocking(boolean locking) { this.locking = locking; }
+
+    public long getExecutions() { return executions; }
+    public void setExecutions(long executions) { this.executions = executions; }
+
+    public long getSlowExecutions() { return slowExecutions; }
+    public void setSlowExecutions(long slowExecutions) { this.slowExecutions = slowExecutions; }
+
+    public double getTotalMs() { return totalMs; }
+    public void setTotalMs(double totalMs) { this.totalMs = totalMs; }
+
+    public double getMeanMs() { return meanMs; }
+    public void setMeanMs(double meanMs) { this.meanMs = meanMs; }
+
+    public double getMaxMs() { return maxMs; }
+    public void setMaxMs(double maxMs) { this.maxMs = maxMs; }
+
+    public Instant getLastSlowAt() { return lastSlowAt; }
+    public void setLastSlowAt(Instant lastSlowAt) { this.lastSlowAt = lastSlowAt; }
+
+    public Long getLastSlowRows() { return lastSlowRows; }
+    public void setLastSlowRows(Long lastSlowRows) { this.lastSlowRows = lastSlowRows; }
+
+    public String getLastSlowServiceMethod() { return lastSlowServiceMethod; }
+    public void setLastSlowServiceMethod(String lastSlowServiceMethod) { this.lastSlowServiceMethod = lastSlowServiceMethod; }
+
+    public String getLastSlowBinds() { return lastSlowBinds; }
+    public void setLastSlowBinds(String lastSlowBinds) { this.lastSlowBinds = lastSlowBinds; }
+}
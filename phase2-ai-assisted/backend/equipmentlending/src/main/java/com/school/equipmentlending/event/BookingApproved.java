@@ -0,0 +1,12 @@
+package com.school.equipmentlending.event;
+
+/**
+ * A booking was approved by an admin, the auto-approval engine or a waitlist promotion, creating {@code loanId}.
+ */
+public record BookingApproved(Long bookingId, Long equipmentId, Long loanId, int quantity) implements DomainEvent {
+
+    @Override
+    public Long aggregateId() {
+        return bookingId;
+    }
+}
@@ -0,0 +1,17 @@
+package com.school.equipmentlending.event;
+
+import com.school.equipmentlending.model.BookingStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * A booking request was created; {@code status} is where it landed (PENDING, WAITLISTED or REJECTED).
+ */
+public record BookingCreated(Long bookingId, Long equipmentId, Long requesterId, BookingStatus status,
+                             LocalDateTime startAt, LocalDateTime endAt, int quantity) implements DomainEvent {
+
+    @Override
+    public Long aggregateId() {
+        return bookingId;
+    }
+}
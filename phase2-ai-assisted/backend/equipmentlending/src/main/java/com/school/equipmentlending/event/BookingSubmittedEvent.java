@@ -0,0 +1,9 @@
+package com.school.equipmentlending.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when a booking request enters the PENDING queue.
+ */
+public record BookingSubmittedEvent(Long bookingId, Long equipmentId, LocalDateTime startAt, LocalDateTime createdAt) {
+}
@@ -0,0 +1,13 @@
+package com.school.equipmentlending.event;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Published when units of an equipment become free over [from, until) — a loan returned,
+ * cancelled or an overdue loan resolved. {@code until == null} means open-ended.
+ * {@code releasedAt} is the wall-clock time of the release, used for promotion latency.
+ */
+public record CapacityReleasedEvent(Long equipmentId, LocalDateTime from, LocalDateTime until,
+                                    String reason, Instant releasedAt) {
+}
@@ -0,0 +1,8 @@
+package com.school.equipmentlending.event;
+
+/**
+ * Published inside the transaction that grants a booking as a loan, while the equipment lock is held.
+ * Lets in-memory reservation state of the equipment know that it is out of date.
+ */
+public record CapacityReservedEvent(Long equipmentId) {
+}
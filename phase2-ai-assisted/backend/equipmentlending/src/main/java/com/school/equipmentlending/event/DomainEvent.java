@@ -0,0 +1,17 @@
+package com.school.equipmentlending.event;
+
+/**
+ * A state change other parts of the system may react to. Recorded in the outbox in the transaction that
+ * made the change and delivered to {@link DomainEventConsumer}s after it commits, at least once.
+ * The outbox stores the simple class name as the type, so renaming a record orphans its stored events.
+ */
+public sealed interface DomainEvent
+        permits BookingCreated, BookingApproved, LoanCreated, LoanReturned, EquipmentChanged {
+
+    /** Id of the booking, loan or equipment the event is about. */
+    Long aggregateId();
+
+    default String type() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,17 @@
+package com.school.equipmentlending.event;
+
+import java.util.List;
+
+/**
+ * Receives domain events after their transaction committed, on its own thread, in commit order and in
+ * batches. Delivery is at least once: after a crash or a failed acknowledgement an event can arrive again.
+ * A batch that throws is retried a few times (app.outbox.consumer-max-attempts) and then skipped.
+ * Spring beans implementing this are subscribed to the bus automatically.
+ */
+public interface DomainEventConsumer {
+
+    /** Consumer name, used for its thread and metric tags. */
+    String name();
+
+    void onEvents(List<EventEnvelope> events) throws Exception;
+}
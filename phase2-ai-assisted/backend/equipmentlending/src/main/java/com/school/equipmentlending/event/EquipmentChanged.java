@@ -0,0 +1,15 @@
+package com.school.equipmentlending.event;
+
+/**
+ * An equipment item was created, edited or deleted through the equipment API, or created or updated by a bulk
+ * import (one event per item and chunk).
+ */
+public record EquipmentChanged(Long equipmentId, Change change) implements DomainEvent {
+
+    public enum Change { CREATED, UPDATED, DELETED }
+
+    @Override
+    public Long aggregateId() {
+        return equipmentId;
+    }
+}
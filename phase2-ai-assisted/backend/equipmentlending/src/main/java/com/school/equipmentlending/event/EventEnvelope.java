@@ -0,0 +1,10 @@
+package com.school.equipmentlending.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * A domain event as delivered on the bus. {@code outboxId} identifies the event across redeliveries,
+ * so consumers that must not act twice can deduplicate on it.
+ */
+public record EventEnvelope(Long outboxId, LocalDateTime recordedAt, DomainEvent event) {
+}
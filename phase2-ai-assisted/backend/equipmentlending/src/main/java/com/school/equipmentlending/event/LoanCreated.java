@@ -0,0 +1,15 @@
+package com.school.equipmentlending.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * A loan now holds units of an equipment over [borrowedAt, dueAt); {@code dueAt == null} means open-ended.
+ */
+public record LoanCreated(Long loanId, Long equipmentId, Long borrowerId, int quantity,
+                          LocalDateTime borrowedAt, LocalDateTime dueAt) implements DomainEvent {
+
+    @Override
+    public Long aggregateId() {
+        return loanId;
+    }
+}
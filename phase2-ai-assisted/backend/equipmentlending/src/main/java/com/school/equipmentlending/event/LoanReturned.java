@@ -0,0 +1,17 @@
+package com.school.equipmentlending.event;
+
+import com.school.equipmentlending.model.LoanStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * A loan was handed back; {@code status} is RETURNED or OVERDUE (returned late).
+ */
+public record LoanReturned(Long loanId, Long equipmentId, LoanStatus status, LocalDateTime returnedAt)
+        implements DomainEvent {
+
+    @Override
+    public Long aggregateId() {
+        return loanId;
+    }
+}
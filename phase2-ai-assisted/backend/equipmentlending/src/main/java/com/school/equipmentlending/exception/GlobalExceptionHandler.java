@@ -1,10 +1,16 @@
 package com.school.equipmentlending.exception;
 
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -15,6 +21,12 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+    /**
+     * Request attribute set when a request failed for lack of a resource (row lock, connection, query
+     * timeout). The write limiter reads it in afterCompletion, where the handled exception is no longer visible.
+     */
+    public static final String RESOURCE_EXHAUSTED = GlobalExceptionHandler.class.getName() + ".resourceExhausted";
+
     @ExceptionHandler(ResourceNotFoundException.class)
     public ResponseEntity<?> handleResourceNotFound(ResourceNotFoundException ex, WebRequest request) {
         return buildErrorResponse(ex.getMessage(), HttpStatus.NOT_FOUND, request);
@@ -22,6 +34,10 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<?> handleResponseStatus(ResponseStatusException ex, WebRequest request) {
+        // services translate lock timeouts into 409 "please try again", keeping the original as the cause
+        if (ex.getCause() instanceof PessimisticLockingFailureException) {
+            markResourceExhausted(request);
+        }
         return buildErrorResponse(ex.getReason(), (HttpStatus) ex.getStatusCode(), request);
     }
 
@@ -39,11 +55,47 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(ex.getMessage(), HttpStatus.CONFLICT, request);
     }
 
+    /**
+     * Return 409 Conflict when a row lock could not be acquired in time, same as the services that
+     * translate it themselves.
+     */
+    @ExceptionHandler(PessimisticLockingFailureException.class)
+    public ResponseEntity<?> handleLockFailure(PessimisticLockingFailureException ex, WebRequest request) {
+        markResourceExhausted(request);
+        return buildErrorResponse("Could not acquire lock, please try again", HttpStatus.CONFLICT, request);
+    }
+
+    /**
+     * Return 429/503 with Retry-After when a request was shed to protect the server.
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<?> handleOverloaded(ServiceOverloadedException ex, WebRequest request) {
+        ResponseEntity<?> error = buildErrorResponse(ex.getMessage(), ex.getStatus(), request);
+        return ResponseEntity.status(error.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error.getBody());
+    }
+
+    /**
+     * Return 503 when no database connection could be obtained (pool or connection bulkhead exhausted),
+     * so clients back off and retry instead of treating it as a server bug.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class,
+            QueryTimeoutException.class})
+    public ResponseEntity<?> handleDatabaseUnavailable(RuntimeException ex, WebRequest request) {
+        markResourceExhausted(request);
+        return buildErrorResponse("Service busy, please retry", HttpStatus.SERVICE_UNAVAILABLE, request);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<?> handleGeneric(Exception ex, WebRequest request) {
         return buildErrorResponse(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, request);
     }
 
+    private static void markResourceExhausted(WebRequest request) {
+        request.setAttribute(RESOURCE_EXHAUSTED, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+    }
+
     private ResponseEntity<?> buildErrorResponse(String message, HttpStatus status, WebRequest request) {
         Map<String, Object> body = new HashMap<>();
         body.put("timestamp", LocalDateTime.now());
@@ -0,0 +1,11 @@
+package com.school.equipmentlending.exception;
+
+/**
+ * Thrown by QueryCountFilter when app.query-budget.mode=fail and a request issued more SQL statements than
+ * its budget, or repeated one statement often enough to look like an N+1. Meant for tests and CI.
+ */
+public class QueryBudgetExceededException extends RuntimeException {
+    public QueryBudgetExceededException(String message) {
+        super(message);
+    }
+}
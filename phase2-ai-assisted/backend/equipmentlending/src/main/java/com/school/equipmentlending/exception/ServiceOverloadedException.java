@@ -0,0 +1,23 @@
+package com.school.equipmentlending.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when work is shed to protect the server (429 Too Many Requests or 503 Service Unavailable).
+ * Mapped by GlobalExceptionHandler with a Retry-After header.
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(HttpStatus status, long retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() { return status; }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
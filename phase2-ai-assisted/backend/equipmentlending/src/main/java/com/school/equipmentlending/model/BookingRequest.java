@@ -4,11 +4,17 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "booking_requests")
+@Table(name = "booking_requests", indexes = {
+        // per-equipment status queues (pending / waitlist in FIFO order)
+        @Index(name = "idx_booking_equipment_status_created", columnList = "equipment_id, status, created_at")
+})
 public class BookingRequest {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "booking_request_ids")
+    @TableGenerator(name = "booking_request_ids", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "booking_requests",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     // Which equipment is requested
@@ -3,6 +3,7 @@ package com.school.equipmentlending.model;
 
 public enum BookingStatus {
     PENDING,
+    WAITLISTED, // not enough capacity in the window when it was requested
     APPROVED,
     REJECTED,
     CANCELLED
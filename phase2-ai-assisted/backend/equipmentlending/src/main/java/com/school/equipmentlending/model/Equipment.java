@@ -1,19 +1,33 @@
 package com.school.equipmentlending.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Entity
-@Table(name = "equipment")
+@Table(name = "equipment", indexes = {
+        @Index(name = "idx_equipment_name_key", columnList = "name_key")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "equipment")
 public class Equipment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "equipment_ids")
+    @TableGenerator(name = "equipment_ids", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "equipment",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
     private String name;
 
+    // trimmed, lower-cased name: bulk import matches on it with a plain, indexed IN (see nameKey())
+    @Column(name = "name_key")
+    private String nameKey;
+
     private String category;
 
     // e.g. "NEW", "GOOD", "FAIR", "POOR"
@@ -36,6 +50,7 @@ public class Equipment {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        this.nameKey = nameKey(name);
         // ensure available is consistent with quantity at creation
         this.available = this.quantity > 0;
     }
@@ -45,7 +60,17 @@ public class Equipment {
     public void setId(Long id) { this.id = id; }
 
     public String getName() { return name; }
-    public void setName(String name) { this.name = name; }
+    public void setName(String name) {
+        this.name = name;
+        this.nameKey = nameKey(name);
+    }
+
+    public String getNameKey() { return nameKey; }
+
+    /** The case-insensitive match key of an equipment name; null for null. */
+    public static String nameKey(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
 
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
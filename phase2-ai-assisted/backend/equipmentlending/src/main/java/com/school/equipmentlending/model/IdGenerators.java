@@ -0,0 +1,23 @@
+package com.school.equipmentlending.model;
+
+import java.util.List;
+
+/**
+ * Table-based id generation for the entities written in bulk (equipment, loans, booking requests, users,
+ * outbox events).
+ * IDENTITY ids are only known after each INSERT runs, which disables JDBC batching; these ids are handed
+ * out from blocks of {@link #ALLOCATION_SIZE} reserved in {@link #TABLE}, one row per entity table.
+ */
+public final class IdGenerators {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "table_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    /** Entity tables with a generator row; the row is named after the table. */
+    public static final List<String> TABLES = List.of("equipment", "loans", "booking_requests", "users", "outbox_events");
+
+    private IdGenerators() {
+    }
+}
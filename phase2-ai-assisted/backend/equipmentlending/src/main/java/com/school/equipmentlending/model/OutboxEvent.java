@@ -0,0 +1,83 @@
+package com.school.equipmentlending.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
+
+/**
+ * A domain event written in the same transaction as the change it describes (transactional outbox).
+ * {@code dispatchedAt} is set once every consumer has handled it; rows still null after a crash, or after a
+ * consumer gave up on them, are picked up again by the relay's recovery sweep. {@code deliveryFailures} counts
+ * those give-ups; past the relay's limit the row is dead-lettered ({@code deadLetteredAt}) and left for an
+ * operator, never marked dispatched.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_dispatched", columnList = "dispatched_at, id")
+})
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "outbox_ids")
+    @TableGenerator(name = "outbox_ids", table = IdGenerators.TABLE, pkColumnName = IdGenerators.NAME_COLUMN,
+            valueColumnName = IdGenerators.VALUE_COLUMN, pkColumnValue = "outbox_events",
+            allocationSize = IdGenerators.ALLOCATION_SIZE)
+    private Long id;
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String type;
+
+    @Column(name = "aggregate_id")
+    private Long aggregateId;
+
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "dispatched_at")
+    private LocalDateTime dispatchedAt;
+
+    @ColumnDefault("0")
+    @Column(name = "delivery_failures", nullable = false)
+    private int deliveryFailures;
+
+    @Column(name = "dead_lettered_at")
+    private LocalDateTime deadLetteredAt;
+
+    public OutboxEvent() {}
+
+    public OutboxEvent(String type, Long aggregateId, String payload, LocalDateTime createdAt) {
+        this.type = type;
+        this.aggregateId = aggregateId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public Long getAggregateId() { return aggregateId; }
+    public void setAggregateId(Long aggregateId) { this.aggregateId = aggregateId; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getDispatchedAt() { return dispatchedAt; }
+    public void setDispatchedAt(LocalDateTime dispatchedAt) { this.dispatchedAt = dispatchedAt; }
+
+    public int getDeliveryFailures() { return deliveryFailures; }
+    public void setDeliveryFailures(int deliveryFailures) { this.deliveryFailures = deliveryFailures; }
+
+    public LocalDateTime getDeadLetteredAt() { return deadLetteredAt; }
+    public void setDeadLetteredAt(LocalDateTime deadLetteredAt) { this.deadLetteredAt = deadLetteredAt; }
+}
@@ -2,12 +2,57 @@ package com.school.equipmentlending.repository;
 
 import com.school.equipmentlending.model.BookingRequest;
 import com.school.equipmentlending.model.BookingStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookingRequestRepository extends JpaRepository<BookingRequest, Long> {
+    // list endpoints map equipment and requester of every booking: fetch them in the same query (no N+1)
+    @EntityGraph(attributePaths = {"equipment", "requester", "requester.roles"})
     List<BookingRequest> findByRequester_Username(String username);
+
+    @EntityGraph(attributePaths = {"equipment", "requester", "requester.roles"})
     List<BookingRequest> findByStatus(BookingStatus status);
     List<BookingRequest> findByEquipment_IdAndStatus(Long equipmentId, BookingStatus status);
+
+    /**
+     * WAITLISTED bookings of an equipment whose window overlaps [from, until), oldest first (FIFO).
+     */
+    @Query("""
+      SELECT b FROM BookingRequest b
+      WHERE b.equipment.id = :equipmentId
+        AND b.status = 'WAITLISTED'
+        AND b.startAt < :until
+        AND b.endAt > :from
+      ORDER BY b.createdAt, b.id
+    """)
+    List<BookingRequest> findWaitlistedOverlapping(@Param("equipmentId") Long equipmentId,
+                                                   @Param("from") LocalDateTime from,
+                                                   @Param("until") LocalDateTime until);
+
+    /**
+     * Booking row with a write lock (SELECT ... FOR UPDATE). A locking read sees the latest committed
+     * status even under REPEATABLE READ, so approvals re-check PENDING with it after taking the
+     * equipment lock. Always lock the equipment first.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BookingRequest b WHERE b.id = :id")
+    Optional<BookingRequest> findByIdForUpdate(@Param("id") Long id);
+
+    /** Several bookings with write locks, in id order; see {@link #findByIdForUpdate}. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM BookingRequest b WHERE b.id IN :ids ORDER BY b.id")
+    List<BookingRequest> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /** Equipment of a booking without loading the booking (routes approval jobs to their equipment's queue). */
+    @Query("SELECT b.equipment.id FROM BookingRequest b WHERE b.id = :id")
+    Optional<Long> findEquipmentIdById(@Param("id") Long id);
 }
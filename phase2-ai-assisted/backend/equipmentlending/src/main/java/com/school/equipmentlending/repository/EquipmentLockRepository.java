@@ -0,0 +1,23 @@
+package com.school.equipmentlending.repository;
+
+import com.school.equipmentlending.model.Equipment;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface EquipmentLockRepository {
+
+    /**
+     * Load the equipment row with a pessimistic write lock (SELECT ... FOR UPDATE).
+     * The row is the source of truth for capacity checks, so it is always read from the database and
+     * the second-level cache entry for it is evicted; the next unlocked read caches the fresh state.
+     */
+    Optional<Equipment> findByIdForUpdate(Long id);
+
+    /**
+     * Lock every equipment row of a category (case-insensitive) in id order, in one statement, with the
+     * same cache bypass as {@link #findByIdForUpdate}. Id order matches single-row locking callers, so
+     * the two cannot deadlock.
+     */
+    List<Equipment> findAllByCategoryForUpdate(String category);
+}
@@ -0,0 +1,52 @@
+package com.school.equipmentlending.repository;
+
+import com.school.equipmentlending.model.Equipment;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Locked equipment reads. READ_WRITE cache entries of an unversioned entity are never overwritten by a
+ * load, so a locked read cannot refresh a stale entry (e.g. a quantity changed on another node or by
+ * hand); it evicts it instead.
+ */
+class EquipmentLockRepositoryImpl implements EquipmentLockRepository {
+
+    private final EntityManager entityManager;
+
+    EquipmentLockRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<Equipment> findByIdForUpdate(Long id) {
+        Optional<Equipment> equipment = entityManager
+                .createQuery("SELECT e FROM Equipment e WHERE e.id = :id", Equipment.class)
+                .setParameter("id", id)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS)
+                .setHint("jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS)
+                .getResultStream()
+                .findFirst();
+        entityManager.getEntityManagerFactory().getCache().evict(Equipment.class, id);
+        return equipment;
+    }
+
+    @Override
+    public List<Equipment> findAllByCategoryForUpdate(String category) {
+        List<Equipment> equipment = entityManager
+                .createQuery("SELECT e FROM Equipment e WHERE LOWER(e.category) = LOWER(:category) ORDER BY e.id",
+                        Equipment.class)
+                .setParameter("category", category)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS)
+                .setHint("jakarta.persistence.cache.storeMode", CacheStoreMode.BYPASS)
+                .getResultList();
+        equipment.forEach(e -> entityManager.getEntityManagerFactory().getCache().evict(Equipment.class, e.getId()));
+        return equipment;
+    }
+}
@@ -1,16 +1,15 @@
 package com.school.equipmentlending.repository;
 
 import com.school.equipmentlending.model.Equipment;
-import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface EquipmentRepository extends JpaRepository<Equipment, Long> {
+public interface EquipmentRepository extends JpaRepository<Equipment, Long>, EquipmentLockRepository {
 
     // case-insensitive category
     List<Equipment> findByCategoryIgnoreCase(String category);
@@ -31,7 +30,7 @@ public interface EquipmentRepository extends JpaRepository<Equipment, Long> {
 
     Optional<Equipment> findById(Long id);
 
-    @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT e FROM Equipment e WHERE e.id = :id")
-    Optional<Equipment> findByIdForUpdate(@Param("id") Long id);
+    // bulk import: candidates for upsert, matched on the indexed name_key (callers pass Equipment.nameKey values)
+    @Query("SELECT e FROM Equipment e WHERE e.nameKey IN :keys")
+    List<Equipment> findByNameKeyIn(@Param("keys") Collection<String> keys);
 }
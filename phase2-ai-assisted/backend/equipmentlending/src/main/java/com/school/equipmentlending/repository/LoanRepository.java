@@ -2,19 +2,55 @@ package com.school.equipmentlending.repository;
 
 import com.school.equipmentlending.model.Loan;
 import com.school.equipmentlending.model.LoanStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface LoanRepository extends JpaRepository<Loan, Long> {
 
+    // list endpoints map equipment and borrower of every loan: fetch them in the same query (no N+1)
+    @EntityGraph(attributePaths = {"equipment", "borrower", "borrower.roles"})
     List<Loan> findByBorrower_Username(String username);
 
+    @EntityGraph(attributePaths = {"equipment", "borrower", "borrower.roles"})
     List<Loan> findByStatus(LoanStatus status);
 
+    @Override
+    @EntityGraph(attributePaths = {"equipment", "borrower", "borrower.roles"})
+    List<Loan> findAll();
+
+    @EntityGraph(attributePaths = {"equipment", "borrower"})
+    List<Loan> findByIdIn(Collection<Long> ids);
+
+    /** Equipment of a loan without loading the loan (routes returns to their equipment's reservation actor). */
+    @Query("SELECT l.equipment.id FROM Loan l WHERE l.id = :id")
+    Optional<Long> findEquipmentIdById(@Param("id") Long id);
+
+    /**
+     * Batch return: every still-active loan among {@code ids} becomes RETURNED, or OVERDUE when it is past due,
+     * in one statement. Loans already returned or cancelled are left alone and not counted.
+     * Clears the persistence context, so loans loaded before are detached afterwards.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+      UPDATE Loan l
+      SET l.returnedAt = :now,
+          l.status = CASE WHEN l.dueAt IS NOT NULL AND l.dueAt < :now
+                          THEN com.school.equipmentlending.model.LoanStatus.OVERDUE
+                          ELSE com.school.equipmentlending.model.LoanStatus.RETURNED END
+      WHERE l.id IN :ids
+        AND l.status = 'BORROWED'
+        AND l.returnedAt IS NULL
+    """)
+    int markReturned(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
     @Query("""
       SELECT COALESCE(SUM(l.quantity), 0)
       FROM Loan l
@@ -38,6 +74,33 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     Long sumCurrentlyReserved(@Param("equipmentId") Long equipmentId,
                               @Param("now") LocalDateTime now);
 
+    /** {@link #sumCurrentlyReserved} for many equipments in one grouped query; ids without loans are absent. */
+    @Query("""
+      SELECT new com.school.equipmentlending.repository.ReservedUnits(l.equipment.id, SUM(l.quantity))
+      FROM Loan l
+      WHERE l.equipment.id IN :equipmentIds
+        AND l.status = 'BORROWED'
+        AND l.borrowedAt < :now
+        AND (l.dueAt IS NULL OR l.dueAt > :now)
+      GROUP BY l.equipment.id
+    """)
+    List<ReservedUnits> sumCurrentlyReservedByEquipment(@Param("equipmentIds") Collection<Long> equipmentIds,
+                                                        @Param("now") LocalDateTime now);
+
+    /**
+     * Active reservations of an equipment that are still open at or after {@code from}.
+     * Feeds the in-memory ReservationProfile (one indexed query instead of probing sums per window).
+     */
+    @Query("""
+      SELECT new com.school.equipmentlending.repository.ReservationInterval(l.borrowedAt, l.dueAt, l.quantity)
+      FROM Loan l
+      WHERE l.equipment.id = :equipmentId
+        AND l.status = 'BORROWED'
+        AND (l.dueAt IS NULL OR l.dueAt > :from)
+    """)
+    List<ReservationInterval> findActiveReservations(@Param("equipmentId") Long equipmentId,
+                                                     @Param("from") LocalDateTime from);
+
     /**
      * Return true if any Loan references the given equipment id.
      * This is used to prevent deleting equipment that has related loans.
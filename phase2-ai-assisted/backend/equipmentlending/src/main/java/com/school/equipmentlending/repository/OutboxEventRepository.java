@@ -0,0 +1,58 @@
+package com.school.equipmentlending.repository;
+
+import com.school.equipmentlending.model.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Recovery sweep: undispatched, not dead-lettered events recorded before {@code before}, in id order after
+     * {@code afterId}.
+     */
+    @Query("""
+      SELECT e FROM OutboxEvent e
+      WHERE e.dispatchedAt IS NULL
+        AND e.deadLetteredAt IS NULL
+        AND e.id > :afterId
+        AND e.createdAt < :before
+      ORDER BY e.id
+    """)
+    List<OutboxEvent> findUndispatched(@Param("afterId") Long afterId,
+                                       @Param("before") LocalDateTime before,
+                                       Pageable page);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.dispatchedAt = :now WHERE e.id IN :ids")
+    int markDispatched(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * A consumer gave up on these events: count the failure and dead-letter the rows that reached
+     * {@code deadLetterAfter} failures. They stay undispatched either way.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+      UPDATE OutboxEvent e
+      SET e.deliveryFailures = e.deliveryFailures + 1,
+          e.deadLetteredAt = CASE WHEN e.deliveryFailures + 1 >= :deadLetterAfter THEN :now ELSE NULL END
+      WHERE e.id IN :ids
+    """)
+    int recordDeliveryFailure(@Param("ids") Collection<Long> ids,
+                              @Param("deadLetterAfter") int deadLetterAfter,
+                              @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.dispatchedAt < :cutoff")
+    int deleteDispatchedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,10 @@
+package com.school.equipmentlending.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of an active loan: the window it reserves and how many units.
+ * dueAt == null means the reservation is open-ended.
+ */
+public record ReservationInterval(LocalDateTime borrowedAt, LocalDateTime dueAt, int quantity) {
+}
@@ -0,0 +1,7 @@
+package com.school.equipmentlending.repository;
+
+/**
+ * Units of one equipment held by active loans at a point in time (grouped sum projection).
+ */
+public record ReservedUnits(Long equipmentId, Long units) {
+}
@@ -0,0 +1,100 @@
+package com.school.equipmentlending.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers successful password verifications for a short time so that rapid re-logins skip BCrypt.
+ * Entries are keyed by SHA-256(pepper, stored hash, raw password); the pepper is random per process
+ * and never leaves memory, so the cache holds nothing that can be checked offline. A changed or
+ * re-hashed password has a different stored hash and therefore never hits an old entry.
+ * Failed verifications are never cached. The map holds at most {@code maxEntries} entries.
+ */
+public class CachingPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final byte[] pepper = new byte[32];
+    private final ConcurrentHashMap<String, Long> verified = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachingPasswordEncoder(PasswordEncoder delegate, Duration ttl, int maxEntries, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        new SecureRandom().nextBytes(pepper);
+        this.hits = meterRegistry.counter("security.password.cache", "result", "hit");
+        this.misses = meterRegistry.counter("security.password.cache", "result", "miss");
+        meterRegistry.gaugeMapSize("security.password.cache.size", Tags.empty(), verified);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+        String key = key(rawPassword, encodedPassword);
+        long now = System.nanoTime();
+        Long expiresAt = verified.get(key);
+        if (expiresAt != null && expiresAt - now > 0) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        boolean ok = delegate.matches(rawPassword, encodedPassword);
+        if (ok) {
+            remember(key, now);
+        } else if (expiresAt != null) {
+            verified.remove(key);
+        }
+        return ok;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    int size() {
+        return verified.size();
+    }
+
+    private void remember(String key, long now) {
+        if (verified.size() >= maxEntries) {
+            verified.values().removeIf(exp -> exp - now <= 0);
+            if (verified.size() >= maxEntries) return;   // still full of live entries: just don't cache
+        }
+        verified.put(key, now + ttlNanos);
+    }
+
+    private String key(CharSequence rawPassword, String encodedPassword) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(pepper);
+            md.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.school.equipmentlending.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt at the configured cost, reporting stored hashes made at any other cost as needing an upgrade.
+ * Spring's DaoAuthenticationProvider then re-hashes the password on the next successful login and saves
+ * it through UserDetailsPasswordService, so the cost can be tuned up or down without resetting passwords.
+ */
+public class CostUpgradingPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_PREFIX = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+
+    public CostUpgradingPasswordEncoder(int strength) {
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return bcrypt.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return bcrypt.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int cost = costOf(encodedPassword);
+        return cost > 0 && cost != strength;
+    }
+
+    public int getStrength() { return strength; }
+
+    /** Cost factor of a BCrypt hash, or -1 if it is not one. */
+    public static int costOf(String encodedPassword) {
+        if (encodedPassword == null) return -1;
+        Matcher m = BCRYPT_PREFIX.matcher(encodedPassword);
+        return m.find() ? Integer.parseInt(m.group(1)) : -1;
+    }
+}
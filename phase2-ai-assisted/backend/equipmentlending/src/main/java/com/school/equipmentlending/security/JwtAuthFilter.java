@@ -1,6 +1,9 @@
 package com.school.equipmentlending.security;
 
 import com.school.equipmentlending.service.UserDetailsServiceImpl;
+import com.school.equipmentlending.util.LatencyHistogram;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,9 +23,17 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private final JwtUtils jwtUtils;
     private final UserDetailsServiceImpl userDetailsService;
 
-    public JwtAuthFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService) {
+    // time spent in this filter only (token check + user lookup), by outcome
+    private final LatencyHistogram authenticatedTimer;
+    private final LatencyHistogram anonymousTimer;
+    private final LatencyHistogram invalidTimer;
+
+    public JwtAuthFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService, MeterRegistry meterRegistry) {
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.authenticatedTimer = filterTimer(meterRegistry, "authenticated");
+        this.anonymousTimer = filterTimer(meterRegistry, "anonymous");
+        this.invalidTimer = filterTimer(meterRegistry, "invalid");
     }
 
     @Override
@@ -30,6 +41,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
 
+        long start = System.nanoTime();
+        LatencyHistogram outcome = anonymousTimer;
         String header = request.getHeader("Authorization");
         String token = null;
 
@@ -38,7 +51,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         }
 
         try {
-            if (token != null && jwtUtils.validateToken(token)) {
+            if (token != null && !jwtUtils.validateToken(token)) {
+                outcome = invalidTimer;
+            } else if (token != null) {
                 String username = jwtUtils.getUsernameFromToken(token);
 
                 // Only set authentication if not already set
@@ -53,6 +68,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
                     // set in context
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    outcome = authenticatedTimer;
 
                     // DEBUG logging to show what Spring now sees
                     List<String> auths = userDetails.getAuthorities().stream()
@@ -61,10 +77,18 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                 }
             }
         } catch (Exception ex) {
+            outcome = invalidTimer;
             logger.debug("JwtAuthFilter - token processing failed: " + ex.getMessage());
             // do not block the chain here; invalid token will result in unauthenticated request
         }
 
+        outcome.record(System.nanoTime() - start);
+
         filterChain.doFilter(request, response);
     }
+
+    private static LatencyHistogram filterTimer(MeterRegistry meterRegistry, String outcome) {
+        return LatencyHistogram.register(meterRegistry, "security.jwt.filter",
+                "JWT validation and user lookup per request", Tags.of("outcome", outcome), 0.5, 0.99, 0.999);
+    }
 }
@@ -0,0 +1,29 @@
+package com.school.equipmentlending.security;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The rules a new password must meet, shared by signup and the roster import so neither path can create
+ * an account the other would refuse. BCrypt only hashes the first 72 bytes, so longer passwords are
+ * refused rather than silently truncated.
+ */
+public final class PasswordPolicy {
+
+    public static final int MIN_LENGTH = 8;
+    public static final int MAX_BYTES = 72;
+
+    private PasswordPolicy() {
+    }
+
+    /** Why {@code password} is not acceptable, or null when it is. */
+    public static String violation(String password) {
+        if (password == null || password.isEmpty()) return "password is required";
+        if (password.codePointCount(0, password.length()) < MIN_LENGTH) {
+            return "password must be at least " + MIN_LENGTH + " characters";
+        }
+        if (password.getBytes(StandardCharsets.UTF_8).length > MAX_BYTES) {
+            return "password must be at most " + MAX_BYTES + " bytes";
+        }
+        return null;
+    }
+}
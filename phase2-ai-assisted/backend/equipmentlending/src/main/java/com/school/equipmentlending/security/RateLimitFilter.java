@@ -0,0 +1,141 @@
+package com.school.equipmentlending.security;
+
+import com.school.equipmentlending.security.TokenBucketLimiter.Budget;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-caller rate limiting, placed in front of {@link JwtAuthFilter} so a flood is rejected before
+ * any user lookup. Callers are keyed by JWT subject when the request carries a valid bearer token
+ * (so one user is limited across all their tokens and IPs), otherwise by client IP. Each endpoint
+ * class has its own budget; requests outside {@code /api} are never limited.
+ * A rejected request gets 429 with a Retry-After header in whole seconds.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /** Endpoint classes with separate budgets, named as in {@code app.rate-limit.<name>}. */
+    public enum EndpointClass {
+        AUTH("auth"), SEARCH("search"), WRITE("write"), READ("read");
+
+        private final String propertyName;
+        private final String keyPrefix;
+
+        EndpointClass(String propertyName) {
+            this.propertyName = propertyName;
+            this.keyPrefix = propertyName + ':';
+        }
+
+        public String propertyName() {
+            return propertyName;
+        }
+    }
+
+    private final TokenBucketLimiter limiter;
+    private final JwtUtils jwtUtils;
+    private final Map<EndpointClass, Budget> budgets;
+    private final int maxCachedTokens;
+
+    // bearer token -> verified subject, so the signature is checked once per token, not per request
+    private final ConcurrentHashMap<String, String> tokenSubjects = new ConcurrentHashMap<>();
+
+    private final Map<EndpointClass, Counter> allowed = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+
+    public RateLimitFilter(TokenBucketLimiter limiter, JwtUtils jwtUtils, Map<EndpointClass, Budget> budgets,
+                           int maxCachedTokens, MeterRegistry meterRegistry) {
+        this.limiter = limiter;
+        this.jwtUtils = jwtUtils;
+        this.budgets = new EnumMap<>(budgets);
+        this.maxCachedTokens = maxCachedTokens;
+        for (EndpointClass c : EndpointClass.values()) {
+            allowed.put(c, meterRegistry.counter("http.ratelimit.requests", "class", c.propertyName, "outcome", "allowed"));
+            rejected.put(c, meterRegistry.counter("http.ratelimit.requests", "class", c.propertyName, "outcome", "rejected"));
+        }
+        Gauge.builder("http.ratelimit.buckets", limiter, TokenBucketLimiter::size)
+                .description("Live rate-limit buckets").register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        Budget budget = endpointClass == null ? null : budgets.get(endpointClass);
+        if (budget == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = limiter.tryAcquire(endpointClass.keyPrefix + callerKey(request), budget);
+        if (waitNanos == 0) {
+            allowed.get(endpointClass).increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        rejected.get(endpointClass).increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        logger.debug("Rate limit exceeded class=" + endpointClass.propertyName + " path=" + request.getRequestURI());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"timestamp\":\"" + LocalDateTime.now()
+                + "\",\"status\":429,\"error\":\"Too Many Requests\""
+                + ",\"message\":\"Rate limit exceeded, retry in " + retryAfterSeconds + "s\""
+                + ",\"path\":\"" + request.getRequestURI().replace("\"", "") + "\"}");
+    }
+
+    static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/")) return null;
+        if (path.startsWith("/api/auth/")) return EndpointClass.AUTH;
+
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return path.startsWith("/api/equipments/search") ? EndpointClass.SEARCH : EndpointClass.READ;
+        }
+        if ("OPTIONS".equals(method)) return null;
+        return EndpointClass.WRITE;
+    }
+
+    private String callerKey(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith("Bearer ")) {
+            String subject = subjectOf(header.substring(7));
+            if (subject != null) return "u:" + subject;
+        }
+        // behind a proxy, server.forward-headers-strategy makes getRemoteAddr() the real client
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private String subjectOf(String token) {
+        String subject = tokenSubjects.get(token);
+        if (subject != null) return subject;
+        try {
+            subject = jwtUtils.getUsernameFromToken(token);
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;   // invalid or expired: limit by IP, JwtAuthFilter leaves it unauthenticated
+        }
+        if (subject != null) {
+            if (tokenSubjects.size() >= maxCachedTokens) tokenSubjects.clear();
+            tokenSubjects.put(token, subject);
+        }
+        return subject;
+    }
+}
@@ -0,0 +1,134 @@
+package com.school.equipmentlending.security;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free token buckets, one per key, held in a striped set of concurrent maps.
+ * Each bucket is a single {@link AtomicLong} (GCRA "theoretical arrival time"): taking a token is one
+ * CAS, refilling is implicit in the clock, and a bucket whose arrival time is in the past is full,
+ * so it can be dropped without changing behaviour. Idle buckets are swept one stripe at a time,
+ * piggy-backed on normal traffic, so there is no background thread and no global pause.
+ */
+public class TokenBucketLimiter {
+
+    /** Sustained rate and burst size of one bucket. */
+    public record Budget(double permitsPerSecond, int burst) {
+
+        public Budget {
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+            }
+        }
+
+        /** Parse {@code "<permits-per-second>/<burst>"}, e.g. {@code "20/40"}. */
+        public static Budget parse(String spec) {
+            String[] parts = spec.trim().split("/");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Rate limit budget must look like <permits-per-second>/<burst>: " + spec);
+            }
+            return new Budget(Double.parseDouble(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+
+        long intervalNanos() {
+            return (long) (1_000_000_000L / permitsPerSecond);
+        }
+    }
+
+    private static final class Bucket {
+        final AtomicLong tat;
+
+        Bucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Bucket>[] stripes;
+    private final int mask;
+    private final long idleNanos;
+    private final long sweepEveryNanos;
+    private final LongSupplier clock;
+    private final AtomicLong nextSweepAt;
+    private final AtomicInteger sweepCursor = new AtomicInteger();
+
+    public TokenBucketLimiter(int stripes, Duration idleEviction) {
+        this(stripes, idleEviction, System::nanoTime);
+    }
+
+    @SuppressWarnings("unchecked")
+    TokenBucketLimiter(int stripes, Duration idleEviction, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ConcurrentHashMap[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ConcurrentHashMap<>();
+        }
+        this.mask = size - 1;
+        this.idleNanos = idleEviction.toNanos();
+        // every stripe gets visited about once per idle period
+        this.sweepEveryNanos = Math.max(1, idleNanos / size);
+        this.clock = clock;
+        this.nextSweepAt = new AtomicLong(clock.getAsLong() + sweepEveryNanos);
+    }
+
+    /**
+     * Take one token from {@code key}'s bucket.
+     *
+     * @return 0 when allowed, otherwise how many nanoseconds until a token is available
+     */
+    public long tryAcquire(String key, Budget budget) {
+        long now = clock.getAsLong();
+        maybeSweep(now);
+
+        long interval = budget.intervalNanos();
+        long tolerance = interval * budget.burst();
+        Bucket bucket = stripes[spread(key.hashCode()) & mask].computeIfAbsent(key, k -> new Bucket(now));
+        while (true) {
+            long tat = bucket.tat.get();
+            long next = Math.max(tat, now) + interval;
+            long wait = next - now - tolerance;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.tat.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /** Number of live buckets across all stripes. */
+    public int size() {
+        int total = 0;
+        for (ConcurrentHashMap<String, Bucket> stripe : stripes) {
+            total += stripe.size();
+        }
+        return total;
+    }
+
+    /** Drop buckets that have been full for longer than the idle period, in every stripe. */
+    public void evictIdle() {
+        long now = clock.getAsLong();
+        for (ConcurrentHashMap<String, Bucket> stripe : stripes) {
+            sweep(stripe, now);
+        }
+    }
+
+    private void maybeSweep(long now) {
+        long due = nextSweepAt.get();
+        if (now - due < 0 || !nextSweepAt.compareAndSet(due, now + sweepEveryNanos)) {
+            return;
+        }
+        sweep(stripes[sweepCursor.getAndIncrement() & mask], now);
+    }
+
+    private void sweep(ConcurrentHashMap<String, Bucket> stripe, long now) {
+        // a racing acquire on a removed bucket costs at most one token, never a wrong rejection
+        stripe.values().removeIf(b -> now - b.tat.get() > idleNanos);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
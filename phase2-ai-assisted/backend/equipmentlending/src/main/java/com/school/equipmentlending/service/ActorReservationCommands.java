@@ -0,0 +1,587 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AvailableSlotDTO;
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.dto.BorrowRequest;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.event.CapacityReservedEvent;
+import com.school.equipmentlending.event.LoanCreated;
+import com.school.equipmentlending.exception.BadRequestException;
+import com.school.equipmentlending.exception.ResourceNotFoundException;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.mapper.BookingMapper;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.ReservationInterval;
+import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.util.KeyedSerialExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Single-writer reservation engine (app.reservation.engine=actor). Each equipment gets an actor that keeps
+ * its reservation profile in memory and applies borrow, return and approve commands on the equipment's lane,
+ * one batch at a time: commands arriving while a batch is being written wait in the actor's mailbox and make
+ * up the next batch. A busy equipment then costs one locked transaction per batch instead of one per request,
+ * and capacity checks read the profile instead of summing loans.
+ * <p>
+ * Callers are answered only after their batch has committed, so an acknowledged loan is never lost.
+ * Each batch still locks the equipment row, which keeps it serialized with writers outside the engine
+ * (waitlist promotion, auto-approval, batch returns, cancellations); those mark the actor stale and its
+ * next batch reloads from the loans table — the same load that rebuilds state after a restart or a failed
+ * batch. Invalidation is in-process, so the engine is for single-node deployments only.
+ */
+@Service
+@ConditionalOnProperty(name = "app.reservation.engine", havingValue = "actor")
+public class ActorReservationCommands implements ReservationCommands {
+
+    private static final Logger logger = LoggerFactory.getLogger(ActorReservationCommands.class);
+
+    private final LoanService loanService;
+    private final BookingService bookingService;
+    private final AvailabilityService availabilityService;
+    private final EquipmentRepository equipmentRepo;
+    private final LoanRepository loanRepo;
+    private final BookingRequestRepository bookingRepo;
+    private final UserRepository userRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DomainEventOutbox outbox;
+    private final TransactionTemplate tx;
+    private final KeyedSerialExecutor<Long> lanes;
+    private final int batchSize;
+    private final int maxQueued;
+    private final Duration requestTimeout;
+    private final Duration reloadInterval;
+    private final Duration snapshotTtl;
+    private final Duration idleTimeout;
+
+    private final Map<Long, Actor> actors = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // set while a lane writes a batch, so the engine ignores the events its own writes publish
+    private final ThreadLocal<Boolean> inBatch = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final DistributionSummary batchSizes;
+    private final Timer commitTimer;
+    private final Counter reloads;
+    private final Counter failedBatches;
+    private final Counter rejected;
+
+    public ActorReservationCommands(LoanService loanService,
+                                    BookingService bookingService,
+                                    AvailabilityService availabilityService,
+                                    EquipmentRepository equipmentRepo,
+                                    LoanRepository loanRepo,
+                                    BookingRequestRepository bookingRepo,
+                                    UserRepository userRepo,
+                                    ApplicationEventPublisher eventPublisher,
+                                    DomainEventOutbox outbox,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.reservation.workers:4}") int workers,
+                                    @Value("${app.reservation.batch-size:64}") int batchSize,
+                                    @Value("${app.reservation.max-queued:10000}") int maxQueued,
+                                    @Value("${app.reservation.request-timeout:PT10S}") Duration requestTimeout,
+                                    @Value("${app.reservation.reload-interval:PT10M}") Duration reloadInterval,
+                                    @Value("${app.reservation.snapshot-ttl:PT30S}") Duration snapshotTtl,
+                                    @Value("${app.reservation.idle-timeout:PT30M}") Duration idleTimeout) {
+        this.loanService = loanService;
+        this.bookingService = bookingService;
+        this.availabilityService = availabilityService;
+        this.equipmentRepo = equipmentRepo;
+        this.loanRepo = loanRepo;
+        this.bookingRepo = bookingRepo;
+        this.userRepo = userRepo;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+        this.tx = new TransactionTemplate(transactionManager);
+        // an actor has at most one drain queued, so its lane never holds more than one task
+        this.lanes = new KeyedSerialExecutor<>("reservation-actor", workers, 1);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxQueued = maxQueued;
+        this.requestTimeout = requestTimeout;
+        this.reloadInterval = reloadInterval;
+        this.snapshotTtl = snapshotTtl;
+        this.idleTimeout = idleTimeout;
+
+        this.batchSizes = DistributionSummary.builder("reservation.actor.batch")
+                .description("Commands written per reservation actor transaction")
+                .register(meterRegistry);
+        this.commitTimer = meterRegistry.timer("reservation.actor.commit");
+        this.reloads = meterRegistry.counter("reservation.actor.reloads");
+        this.failedBatches = meterRegistry.counter("reservation.actor.failures");
+        this.rejected = meterRegistry.counter("reservation.actor.rejected");
+        Gauge.builder("reservation.actor.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("reservation.actors", actors, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    public LoanResponse borrow(String username, BorrowRequest req) {
+        User borrower = userRepo.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + username));
+        int quantity = (req.getQuantity() == null || req.getQuantity() < 1) ? 1 : req.getQuantity();
+        return (LoanResponse) submit(req.getEquipmentId(), new Borrow(borrower, quantity, req.getDays()));
+    }
+
+    @Override
+    public LoanResponse returnLoan(Long loanId, String username, boolean isAdmin) {
+        Long equipmentId = loanRepo.findEquipmentIdById(loanId)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + loanId));
+        return (LoanResponse) submit(equipmentId, new Return(loanId, username, isAdmin));
+    }
+
+    @Override
+    public BookingRequestDTO approve(Long bookingId, String adminUsername, String adminNote) {
+        Long equipmentId = bookingRepo.findEquipmentIdById(bookingId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Booking not found with id " + bookingId));
+        return (BookingRequestDTO) submit(equipmentId, new Approve(bookingId, adminUsername, adminNote));
+    }
+
+    /** The actor's state after its last batch, without touching the database or the actor's lane. */
+    @Override
+    public ReservationStateDTO currentState(Long equipmentId) {
+        Actor actor = actors.get(equipmentId);
+        ReservationStateDTO snapshot = actor == null ? null : actor.snapshot;
+        if (snapshot != null && snapshot.getAsOf().isAfter(LocalDateTime.now().minus(snapshotTtl))) {
+            return snapshot;
+        }
+        return availabilityService.currentState(equipmentId);
+    }
+
+    /** A booking was granted outside the engine, under the equipment lock: reload before the next decision. */
+    @EventListener
+    public void onCapacityReserved(CapacityReservedEvent event) {
+        if (!inBatch.get()) markStale(event.equipmentId());
+    }
+
+    /** Units were released outside the engine (batch returns, cancellations) and that release is committed. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCapacityReleased(CapacityReleasedEvent event) {
+        if (!inBatch.get()) markStale(event.equipmentId());
+    }
+
+    /** Drop actors that have had no commands for {@code idle-timeout}; they reload on their next command. */
+    @Scheduled(fixedDelayString = "${app.reservation.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Long equipmentId : actors.keySet()) {
+            actors.computeIfPresent(equipmentId, (id, actor) -> actor.inFlight.get() == 0
+                    && now - actor.lastUsedNanos > idleTimeout.toNanos() ? null : actor);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.shutdown(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private Object submit(Long equipmentId, Command command) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1,
+                    "Too many reservation requests queued, please retry");
+        }
+        // mailbox add and eviction both run under the key's map entry, so a command never lands in a dropped actor
+        Actor actor = actors.compute(equipmentId, (id, existing) -> {
+            Actor a = existing != null ? existing : new Actor(id);
+            a.inFlight.incrementAndGet();
+            a.mailbox.add(command);
+            return a;
+        });
+        schedule(actor);
+        return await(command);
+    }
+
+    private Object await(Command command) {
+        try {
+            return command.future.get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            if (command.taken.compareAndSet(false, true)) {
+                // still in the mailbox: withdrawn, so it will never be applied and the client may safely retry
+                throw new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1,
+                        "Reservation queue is busy, please retry");
+            }
+            try {
+                return command.future.join();   // already being written: its outcome is moments away
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            }
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted waiting for reservation");
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        return cause instanceof RuntimeException re ? re : new IllegalStateException(cause);
+    }
+
+    private void markStale(Long equipmentId) {
+        Actor actor = actors.get(equipmentId);
+        if (actor != null) {
+            actor.stale = true;
+            actor.snapshot = null;
+        }
+    }
+
+    private void schedule(Actor actor) {
+        if (actor.scheduled.compareAndSet(false, true)) {
+            lanes.execute(actor.equipmentId, () -> drain(actor));
+        }
+    }
+
+    /** One lane turn: take up to {@code batch-size} commands from the mailbox and write them together. */
+    private void drain(Actor actor) {
+        List<Command> batch = new ArrayList<>();
+        try {
+            Command next;
+            while (batch.size() < batchSize && (next = actor.mailbox.poll()) != null) {
+                queued.decrementAndGet();
+                if (next.taken.compareAndSet(false, true)) {
+                    batch.add(next);
+                } else {
+                    actor.inFlight.decrementAndGet();   // its caller stopped waiting
+                }
+            }
+            if (batch.isEmpty()) return;
+            if (write(actor, batch) == Outcome.FAILED && batch.size() > 1) {
+                // find the command that broke the batch: the others get their own transactions
+                for (Command command : batch) write(actor, List.of(command));
+            }
+            for (Command command : batch) command.complete();
+        } finally {
+            actor.lastUsedNanos = System.nanoTime();
+            actor.inFlight.addAndGet(-batch.size());
+            actor.scheduled.set(false);
+            if (!actor.mailbox.isEmpty()) schedule(actor);
+        }
+    }
+
+    /** Apply and commit one batch. When it is rolled back its commands carry the failure. */
+    private Outcome write(Actor actor, List<Command> batch) {
+        long started = System.nanoTime();
+        inBatch.set(Boolean.TRUE);
+        try {
+            LocalDateTime now = tx.execute(status -> apply(actor, batch));
+            actor.version++;
+            publishSnapshot(actor, now);
+            batchSizes.record(batch.size());
+            return Outcome.COMMITTED;
+        } catch (RuntimeException ex) {
+            // the profile holds the rolled-back decisions: rebuild it from the loans table next time
+            actor.stale = true;
+            actor.snapshot = null;
+            failedBatches.increment();
+            if (ex instanceof PessimisticLockingFailureException) {
+                logger.warn("Lock failed writing {} reservation commands of equipment {}",
+                        batch.size(), actor.equipmentId, ex);
+                RuntimeException failure = new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Could not acquire lock, please try again", ex);
+                for (Command command : batch) command.fail(failure);
+                return Outcome.LOCK_FAILED;   // splitting would only wait for the lock again
+            }
+            logger.error("Writing {} reservation commands of equipment {} failed", batch.size(), actor.equipmentId, ex);
+            RuntimeException failure = new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Reservation could not be saved, please retry");
+            for (Command command : batch) command.fail(failure);
+            return Outcome.FAILED;
+        } finally {
+            inBatch.remove();
+            commitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Decide every command of the batch against the profile and stage its writes. Returns the batch clock. */
+    private LocalDateTime apply(Actor actor, List<Command> batch) {
+        Equipment equipment = equipmentRepo.findByIdForUpdate(actor.equipmentId).orElse(null);
+        if (equipment == null) {
+            actor.stale = true;
+            for (Command command : batch) {
+                command.fail(new ResourceNotFoundException("Equipment not found with id " + actor.equipmentId));
+            }
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (actor.stale || actor.profile == null || actor.profile.getCapacity() != equipment.getQuantity()
+                || System.nanoTime() - actor.loadedAtNanos > reloadInterval.toNanos()) {
+            actor.stale = false;   // cleared first: an invalidation from here on forces another load
+            actor.profile = availabilityService.loadProfile(equipment, now);
+            actor.profileFrom = now;
+            actor.borrowedHere.clear();
+            actor.loadedAtNanos = System.nanoTime();
+            reloads.increment();
+        }
+
+        List<Long> bookingIds = new ArrayList<>();
+        List<Long> loanIds = new ArrayList<>();
+        for (Command command : batch) {
+            if (command instanceof Approve a) bookingIds.add(a.bookingId);
+            if (command instanceof Return r) loanIds.add(r.loanId);
+        }
+        Map<Long, BookingRequest> bookings = bookingIds.isEmpty() ? Map.of() : bookingRepo.findAllById(bookingIds)
+                .stream().collect(Collectors.toMap(BookingRequest::getId, Function.identity()));
+        Map<Long, Loan> loans = loanIds.isEmpty() ? Map.of() : loanRepo.findByIdIn(loanIds)
+                .stream().collect(Collectors.toMap(Loan::getId, Function.identity()));
+
+        Release release = new Release();
+        for (Command command : batch) {
+            command.reset();
+            switch (command) {
+                case Borrow b -> borrow(actor, equipment, b, now);
+                case Return r -> returnLoan(actor, loans.get(r.loanId), r, now, release);
+                case Approve a -> approve(actor, equipment, bookings.get(a.bookingId), a);
+            }
+        }
+
+        if (release.any) {
+            equipment.setAvailable(equipment.getQuantity() - reservedAt(actor.profile, now) > 0);
+            eventPublisher.publishEvent(new CapacityReleasedEvent(equipment.getId(), now,
+                    release.until, "returned", Instant.now()));
+        }
+        return now;
+    }
+
+    private void borrow(Actor actor, Equipment equipment, Borrow cmd, LocalDateTime now) {
+        if (cmd.quantity > equipment.getQuantity()) {
+            cmd.fail(new BadRequestException("Requested quantity exceeds total inventory (" + equipment.getQuantity() + ")"));
+            return;
+        }
+        LocalDateTime dueAt = cmd.days != null && cmd.days > 0 ? now.plusDays(cmd.days) : null;
+        int available = actor.profile.availableUnits(now, dueAt == null ? now.plusYears(100) : dueAt);
+        if (available < cmd.quantity) {
+            cmd.fail(new BadRequestException("Not enough units available now. Available: " + available
+                    + ", requested: " + cmd.quantity));
+            return;
+        }
+
+        Loan loan = new Loan();
+        loan.setEquipment(equipment);
+        loan.setBorrower(cmd.borrower);
+        loan.setBorrowedAt(now);
+        loan.setDueAt(dueAt);
+        loan.setQuantity(cmd.quantity);
+        loan.setStatus(LoanStatus.BORROWED);
+        loanRepo.save(loan);   // insert is batched with the rest of the batch at commit
+        outbox.record(new LoanCreated(loan.getId(), equipment.getId(), cmd.borrower.getId(), cmd.quantity, now, dueAt));
+        adjust(actor, now, dueAt, cmd.quantity);
+        actor.borrowedHere.put(loan.getId(), new ReservationInterval(now, dueAt, cmd.quantity));
+        cmd.result = loanService.toResponse(loan);
+    }
+
+    private void returnLoan(Actor actor, Loan loan, Return cmd, LocalDateTime now, Release release) {
+        if (loan == null) {
+            cmd.fail(new ResourceNotFoundException("Loan not found with id " + cmd.loanId));
+            return;
+        }
+        boolean isBorrower = loan.getBorrower() != null && cmd.username.equals(loan.getBorrower().getUsername());
+        if (!isBorrower && !cmd.isAdmin) {
+            cmd.fail(new BadRequestException("Only borrower or admin can mark this loan returned"));
+            return;
+        }
+        String refusal = LoanService.returnRefusal(loan);
+        if (refusal != null) {
+            cmd.fail(new BadRequestException(refusal));
+            return;
+        }
+
+        LocalDateTime dueAt = loan.getDueAt();
+        boolean overdue = loanService.applyReturn(loan, now);
+        // release the window exactly as it was reserved: the database may hand back rounded timestamps
+        ReservationInterval reserved = actor.borrowedHere.remove(loan.getId());
+        if (reserved != null) {
+            adjust(actor, reserved.borrowedAt(), reserved.dueAt(), -reserved.quantity());
+        } else {
+            adjust(actor, loan.getBorrowedAt(), dueAt, -loan.getQuantity());
+        }
+        release.add(overdue ? null : dueAt);
+        cmd.result = loanService.toResponse(loan);
+    }
+
+    private void approve(Actor actor, Equipment equipment, BookingRequest booking, Approve cmd) {
+        if (booking == null) {
+            cmd.fail(new ResponseStatusException(HttpStatus.NOT_FOUND, "Booking not found with id " + cmd.bookingId));
+            return;
+        }
+        if (booking.getStatus() != BookingStatus.PENDING) {
+            cmd.fail(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING bookings can be approved"));
+            return;
+        }
+
+        LocalDateTime start = booking.getStartAt();
+        LocalDateTime end = booking.getEndAt();
+        int requested = booking.getQuantityRequested();
+        // a window that began before the profile was loaded also needs the loans that ended since
+        ReservationProfile profile = start.isBefore(actor.profileFrom)
+                ? availabilityService.loadProfile(equipment, start) : actor.profile;
+        int available = profile.availableUnits(start, end);
+        if (available < requested) {
+            bookingService.recordApprovalOutcome(false);
+            List<AvailableSlotDTO> next = profile.findSlots(start, Duration.between(start, end), requested, 1);
+            cmd.fail(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Not enough units available. Available: " + available + ", requested: " + requested
+                            + (next.isEmpty() ? "" : ". Next available slot: " + next.get(0).getStartAt()
+                            + " to " + next.get(0).getEndAt())));
+            return;
+        }
+
+        bookingService.grant(booking, equipment, cmd.adminNote == null ? "Approved by " + cmd.adminUsername : cmd.adminNote);
+        bookingService.recordApprovalOutcome(true);
+        adjust(actor, start, end, requested);
+        cmd.result = BookingMapper.toDTO(booking);
+    }
+
+    /** Add (or with a negative quantity remove) a loan window, if it is one the profile tracks. */
+    private static void adjust(Actor actor, LocalDateTime start, LocalDateTime end, int quantity) {
+        // the profile only holds loans still open when it was loaded (LoanRepository#findActiveReservations)
+        if (end == null || end.isAfter(actor.profileFrom)) {
+            actor.profile.reserve(start, end, quantity);
+        }
+    }
+
+    private static int reservedAt(ReservationProfile profile, LocalDateTime at) {
+        return profile.maxReserved(at, at.plusNanos(1));
+    }
+
+    private void publishSnapshot(Actor actor, LocalDateTime now) {
+        if (now == null || actor.profile == null) return;
+        actor.snapshot = new ReservationStateDTO(actor.equipmentId, actor.profile.getCapacity(),
+                reservedAt(actor.profile, now), now, actor.version);
+        if (actor.stale) actor.snapshot = null;   // invalidated while committing
+    }
+
+    private static final class Actor {
+        final Long equipmentId;
+        final Queue<Command> mailbox = new ConcurrentLinkedQueue<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile boolean stale = true;
+        volatile ReservationStateDTO snapshot;
+        volatile long lastUsedNanos = System.nanoTime();
+        // owned by the equipment's lane
+        ReservationProfile profile;
+        LocalDateTime profileFrom;
+        final Map<Long, ReservationInterval> borrowedHere = new HashMap<>();   // loans borrowed since the load
+        long loadedAtNanos;
+        long version;
+
+        Actor(Long equipmentId) {
+            this.equipmentId = equipmentId;
+        }
+    }
+
+    private enum Outcome { COMMITTED, LOCK_FAILED, FAILED }
+
+    /** Capacity released by the returns of one batch: from the batch clock until the latest due date. */
+    private static final class Release {
+        boolean any;
+        LocalDateTime until;   // null = open-ended
+
+        void add(LocalDateTime dueAt) {
+            until = !any ? dueAt : (until == null || dueAt == null ? null : (dueAt.isAfter(until) ? dueAt : until));
+            any = true;
+        }
+    }
+
+    private abstract static sealed class Command permits Borrow, Return, Approve {
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final AtomicBoolean taken = new AtomicBoolean();
+        Object result;
+        RuntimeException error;
+
+        void reset() {
+            result = null;
+            error = null;
+        }
+
+        void fail(RuntimeException ex) {
+            result = null;
+            error = ex;
+        }
+
+        void complete() {
+            if (error != null) future.completeExceptionally(error);
+            else future.complete(result);
+        }
+    }
+
+    private static final class Borrow extends Command {
+        final User borrower;
+        final int quantity;
+        final Integer days;
+
+        Borrow(User borrower, int quantity, Integer days) {
+            this.borrower = borrower;
+            this.quantity = quantity;
+            this.days = days;
+        }
+    }
+
+    private static final class Return extends Command {
+        final Long loanId;
+        final String username;
+        final boolean isAdmin;
+
+        Return(Long loanId, String username, boolean isAdmin) {
+            this.loanId = loanId;
+            this.username = username;
+            this.isAdmin = isAdmin;
+        }
+    }
+
+    private static final class Approve extends Command {
+        final Long bookingId;
+        final String adminUsername;
+        final String adminNote;
+
+        Approve(Long bookingId, String adminUsername, String adminNote) {
+            this.bookingId = bookingId;
+            this.adminUsername = adminUsername;
+            this.adminNote = adminNote;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AllocationPlanDTO;
+import com.school.equipmentlending.dto.BatchApprovalResult;
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.model.BookingStatus;
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Admin "allocate" operation: pick the best set of PENDING bookings per equipment
+ * (see BookingAllocator), preview it, then commit it in one transaction.
+ */
+@Service
+public class AllocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllocationService.class);
+
+    private final BookingRequestRepository bookingRepo;
+    private final EquipmentRepository equipmentRepo;
+    private final LoanRepository loanRepo;
+    private final BookingService bookingService;
+
+    public AllocationService(BookingRequestRepository bookingRepo,
+                             EquipmentRepository equipmentRepo,
+                             LoanRepository loanRepo,
+                             BookingService bookingService) {
+        this.bookingRepo = bookingRepo;
+        this.equipmentRepo = equipmentRepo;
+        this.loanRepo = loanRepo;
+        this.bookingService = bookingService;
+    }
+
+    /** Compute the allocation without changing anything. */
+    @Transactional(readOnly = true)
+    public AllocationPlanDTO preview(Long equipmentId, String category, BookingAllocator.Objective objective) {
+        AllocationPlanDTO plan = newPlan(objective);
+        for (Equipment equipment : resolveEquipment(equipmentId, category)) {
+            plan.getEquipment().add(solve(equipment, objective));
+        }
+        return plan;
+    }
+
+    /**
+     * Recompute the allocation under the equipment locks and approve the selected bookings.
+     * All equipment is locked in id order, before anything else is read, to avoid deadlocks with
+     * concurrent approvals and so the pending bookings are read after every lock is held.
+     * When rejectUnselected is true the remaining PENDING bookings are rejected.
+     */
+    @Transactional
+    public AllocationPlanDTO commit(Long equipmentId, String category, BookingAllocator.Objective objective,
+                                    boolean rejectUnselected, String adminUsername) {
+        AllocationPlanDTO plan = newPlan(objective);
+        plan.setCommitted(true);
+
+        for (Equipment equipment : lockEquipment(equipmentId, category)) {
+            AllocationPlanDTO.EquipmentAllocation allocation = solve(equipment, objective);
+
+            BatchApprovalResult result = bookingService.approveBatch(equipment.getId(),
+                    allocation.getSelectedBookingIds(), b -> true, adminUsername);
+            if (result.getApproved().size() != allocation.getSelectedBookingIds().size()) {
+                // cannot happen while we hold the lock; refuse to commit a partial plan
+                throw new IllegalStateException("Allocation for equipment " + equipment.getId()
+                        + " no longer fits, please preview again");
+            }
+
+            if (rejectUnselected) {
+                Set<Long> selected = new HashSet<>(allocation.getSelectedBookingIds());
+                bookingRepo.findByEquipment_IdAndStatus(equipment.getId(), BookingStatus.PENDING).stream()
+                        .filter(b -> !selected.contains(b.getId()))
+                        .forEach(b -> bookingService.rejectBooking(b.getId(), adminUsername,
+                                "Not selected in allocation by " + adminUsername));
+            }
+            plan.getEquipment().add(allocation);
+        }
+
+        logger.info("Admin {} committed {} allocation: {} bookings / {} units approved",
+                adminUsername, objective, plan.getTotalSelected(), plan.getTotalSelectedUnits());
+        return plan;
+    }
+
+    private AllocationPlanDTO.EquipmentAllocation solve(Equipment equipment, BookingAllocator.Objective objective) {
+        List<BookingRequest> pending = bookingRepo.findByEquipment_IdAndStatus(equipment.getId(), BookingStatus.PENDING);
+
+        AllocationPlanDTO.EquipmentAllocation allocation = new AllocationPlanDTO.EquipmentAllocation();
+        allocation.setEquipmentId(equipment.getId());
+        allocation.setEquipmentName(equipment.getName());
+        allocation.setCapacity(equipment.getQuantity());
+        allocation.setPendingCount(pending.size());
+        if (pending.isEmpty()) return allocation;
+
+        LocalDateTime from = pending.stream().map(BookingRequest::getStartAt)
+                .min(Comparator.naturalOrder()).orElseThrow();
+        List<Long> selected = BookingAllocator.allocate(equipment.getQuantity(),
+                loanRepo.findActiveReservations(equipment.getId(), from), pending, objective);
+
+        Map<Long, BookingRequest> byId = pending.stream()
+                .collect(Collectors.toMap(BookingRequest::getId, Function.identity()));
+        allocation.setSelectedBookingIds(selected);
+        allocation.setSelectedUnits(selected.stream().mapToInt(id -> byId.get(id).getQuantityRequested()).sum());
+        return allocation;
+    }
+
+    private List<Equipment> resolveEquipment(Long equipmentId, String category) {
+        if (equipmentId != null) {
+            return List.of(equipmentRepo.findById(equipmentId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Equipment not found with id " + equipmentId)));
+        }
+        if (category != null && !category.isBlank()) {
+            return equipmentRepo.findByCategoryIgnoreCase(category).stream()
+                    .sorted(Comparator.comparing(Equipment::getId))
+                    .toList();
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "equipmentId or category is required");
+    }
+
+    // the first statement of commit: a plain read before the locks would pin a REPEATABLE READ snapshot
+    private List<Equipment> lockEquipment(Long equipmentId, String category) {
+        if (equipmentId != null) {
+            return List.of(equipmentRepo.findByIdForUpdate(equipmentId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Equipment not found with id " + equipmentId)));
+        }
+        if (category != null && !category.isBlank()) {
+            return equipmentRepo.findAllByCategoryForUpdate(category);
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "equipmentId or category is required");
+    }
+
+    private static AllocationPlanDTO newPlan(BookingAllocator.Objective objective) {
+        AllocationPlanDTO plan = new AllocationPlanDTO();
+        plan.setObjective(objective.name());
+        return plan;
+    }
+}
@@ -0,0 +1,225 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.ApprovalJobDTO;
+import com.school.equipmentlending.dto.ApprovalJobDTO.State;
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.util.KeyedSerialExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous booking approval. A job is queued on its equipment's lane and the admin gets the job id
+ * right away; approvals of one equipment then run one after another, so they never wait on each other's
+ * equipment row lock, while different equipments are approved in parallel on a few workers.
+ * Each job runs {@link BookingService#approveBooking} unchanged, so outcomes match the synchronous endpoint.
+ * Lock conflicts and temporary unavailability (no connection, overload) put the job back in its lane up to
+ * {@code max-attempts} times; if they persist the job fails with 503, as the synchronous endpoint would answer.
+ * <p>
+ * Jobs live in memory on the node that accepted them and are dropped {@code retention} after they finish.
+ */
+@Service
+public class ApprovalJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApprovalJobService.class);
+
+    private final BookingService bookingService;
+    private final BookingRequestRepository bookingRepo;
+    private final KeyedSerialExecutor<Long> lanes;
+    private final int queueCapacity;
+    private final int maxAttempts;
+    private final Duration retention;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer waitTimer;
+    private final Timer runTimer;
+
+    public ApprovalJobService(BookingService bookingService,
+                              BookingRequestRepository bookingRepo,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.booking.async-approval.workers:4}") int workers,
+                              @Value("${app.booking.async-approval.queue-capacity:1000}") int queueCapacity,
+                              @Value("${app.booking.async-approval.max-attempts:3}") int maxAttempts,
+                              @Value("${app.booking.async-approval.retention:PT15M}") Duration retention) {
+        this.bookingService = bookingService;
+        this.bookingRepo = bookingRepo;
+        this.lanes = new KeyedSerialExecutor<>("approval-worker", workers, 16);
+        this.queueCapacity = queueCapacity;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retention = retention;
+
+        this.succeeded = meterRegistry.counter("booking.approval.jobs", "outcome", "succeeded");
+        this.failed = meterRegistry.counter("booking.approval.jobs", "outcome", "failed");
+        this.rejected = meterRegistry.counter("booking.approval.jobs", "outcome", "rejected");
+        this.waitTimer = Timer.builder("booking.approval.job.wait")
+                .description("Time an approval job waited in its equipment queue")
+                .register(meterRegistry);
+        this.runTimer = meterRegistry.timer("booking.approval.job.run");
+        Gauge.builder("booking.approval.jobs.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("booking.approval.jobs.active_equipment", lanes, KeyedSerialExecutor::activeKeys)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue the approval of {@code bookingId}. Unknown bookings are refused here (404); every other
+     * outcome, including "not PENDING" and "not enough units", is reported through the job.
+     *
+     * @throws ServiceOverloadedException 503 when {@code queue-capacity} jobs are already waiting
+     */
+    public ApprovalJobDTO submit(Long bookingId, String adminUsername, String adminNote) {
+        Long equipmentId = bookingRepo.findEquipmentIdById(bookingId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Booking not found with id " + bookingId));
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1,
+                    "Too many approvals queued, please retry");
+        }
+        Job job = new Job(UUID.randomUUID().toString(), bookingId, equipmentId, adminUsername, adminNote);
+        jobs.put(job.id, job);
+        lanes.execute(equipmentId, () -> run(job));
+        logger.info("Admin {} queued approval of booking {} as job {}", adminUsername, bookingId, job.id);
+        return job.toDTO();
+    }
+
+    public Optional<ApprovalJobDTO> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::toDTO);
+    }
+
+    /** Forget finished jobs older than the retention. */
+    @Scheduled(fixedDelayString = "${app.booking.async-approval.purge-interval-ms:60000}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lanes.shutdown(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run(Job job) {
+        queued.decrementAndGet();
+        job.attempts++;
+        job.state = State.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        waitTimer.record(System.nanoTime() - job.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+        try {
+            BookingRequestDTO booking = runTimer.recordCallable(
+                    () -> bookingService.approveBooking(job.bookingId, job.adminUsername, job.adminNote));
+            job.booking = booking;
+            job.finish(State.SUCCEEDED, HttpStatus.OK.value(), null);
+            succeeded.increment();
+        } catch (ResponseStatusException ex) {
+            if ((ex.getStatusCode() == HttpStatus.CONFLICT || ex.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE)
+                    && job.attempts < maxAttempts) {
+                // lock held by the synchronous path or another node: back of the line and try again
+                requeue(job);
+                return;
+            }
+            job.finish(State.FAILED, ex.getStatusCode().value(), ex.getReason());
+            failed.increment();
+        } catch (CannotCreateTransactionException | DataAccessResourceFailureException | QueryTimeoutException
+                 | ServiceOverloadedException ex) {
+            // pool or bulkhead exhausted, database briefly away: not the booking's fault, so try again later
+            if (job.attempts < maxAttempts) {
+                logger.warn("Approval job {} for booking {} hit a temporary failure (attempt {}), requeued: {}",
+                        job.id, job.bookingId, job.attempts, ex.getMessage());
+                requeue(job);
+                return;
+            }
+            logger.warn("Approval job {} for booking {} gave up after {} attempts", job.id, job.bookingId,
+                    job.attempts, ex);
+            job.finish(State.FAILED, HttpStatus.SERVICE_UNAVAILABLE.value(), "Service busy, please retry");
+            failed.increment();
+        } catch (Exception ex) {
+            logger.error("Approval job {} for booking {} failed", job.id, job.bookingId, ex);
+            job.finish(State.FAILED, HttpStatus.INTERNAL_SERVER_ERROR.value(), "Unexpected error occurred");
+            failed.increment();
+        }
+    }
+
+    private void requeue(Job job) {
+        job.state = State.QUEUED;
+        job.enqueuedAtNanos = System.nanoTime();
+        queued.incrementAndGet();
+        lanes.execute(job.equipmentId, () -> run(job));
+    }
+
+    // written by one lane at a time, read by status polls
+    private static final class Job {
+        final String id;
+        final Long bookingId;
+        final Long equipmentId;
+        final String adminUsername;
+        final String adminNote;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        volatile long enqueuedAtNanos = System.nanoTime();
+        volatile int attempts;
+        volatile State state = State.QUEUED;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile Integer httpStatus;
+        volatile String message;
+        volatile BookingRequestDTO booking;
+
+        Job(String id, Long bookingId, Long equipmentId, String adminUsername, String adminNote) {
+            this.id = id;
+            this.bookingId = bookingId;
+            this.equipmentId = equipmentId;
+            this.adminUsername = adminUsername;
+            this.adminNote = adminNote;
+        }
+
+        void finish(State outcome, int status, String reason) {
+            httpStatus = status;
+            message = reason;
+            finishedAt = LocalDateTime.now();
+            state = outcome;   // last: a poll that sees the final state sees the rest too
+        }
+
+        ApprovalJobDTO toDTO() {
+            ApprovalJobDTO dto = new ApprovalJobDTO();
+            dto.setState(state);
+            dto.setJobId(id);
+            dto.setBookingId(bookingId);
+            dto.setEquipmentId(equipmentId);
+            dto.setHttpStatus(httpStatus);
+            dto.setMessage(message);
+            dto.setBooking(booking);
+            dto.setSubmittedAt(submittedAt);
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BatchApprovalResult;
+import com.school.equipmentlending.event.BookingSubmittedEvent;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.model.BookingStatus;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in background approver (app.booking.auto-approval.enabled).
+ * Keeps PENDING bookings in a priority queue ordered by startAt, then createdAt, fed by
+ * BookingSubmittedEvent after commit, so the pending table is only read once at startup.
+ * Each tick drains a micro-batch and approves it per equipment with one lock and one
+ * capacity computation (BookingService.approveBatch). Bookings that fail the policy are left
+ * PENDING for an admin; bookings that do not fit are parked per equipment and queued again
+ * when a CapacityReleasedEvent frees units of that equipment.
+ */
+@Service
+public class AutoApprovalEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(AutoApprovalEngine.class);
+
+    static final String APPROVER = "auto-approval";
+
+    private static final Comparator<Queued> ORDER = Comparator
+            .comparing(Queued::startAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Queued::createdAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Queued::bookingId);
+
+    private final BookingService bookingService;
+    private final BookingRequestRepository bookingRepo;
+    private final boolean enabled;
+    private final int batchSize;
+    private final AutoApprovalPolicy policy;
+
+    private final PriorityBlockingQueue<Queued> queue = new PriorityBlockingQueue<>(64, ORDER);
+    private final Set<Long> queuedIds = ConcurrentHashMap.newKeySet();
+    // skipped for capacity, by equipment; still in queuedIds so they are not queued twice
+    private final Map<Long, Map<Long, Queued>> parked = new ConcurrentHashMap<>();
+    // releases seen per equipment, so a release racing a batch still requeues what the batch parks
+    private final Map<Long, AtomicLong> releases = new ConcurrentHashMap<>();
+
+    private final Counter approved;
+    private final Counter skippedPolicy;
+    private final Counter skippedCapacity;
+    private final Counter skippedStale;
+    private final Timer queueLag;
+    private final Timer batchTimer;
+
+    public AutoApprovalEngine(BookingService bookingService,
+                              BookingRequestRepository bookingRepo,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.booking.auto-approval.enabled:false}") boolean enabled,
+                              @Value("${app.booking.auto-approval.batch-size:100}") int batchSize,
+                              @Value("${app.booking.auto-approval.max-quantity:0}") int maxQuantity,
+                              @Value("${app.booking.auto-approval.categories:}") List<String> categories,
+                              @Value("${app.booking.auto-approval.roles:}") List<String> roles) {
+        this.bookingService = bookingService;
+        this.bookingRepo = bookingRepo;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.policy = new AutoApprovalPolicy(maxQuantity, categories, roles);
+
+        this.approved = meterRegistry.counter("booking.auto_approval.approved");
+        this.skippedPolicy = meterRegistry.counter("booking.auto_approval.skipped", "reason", "policy");
+        this.skippedCapacity = meterRegistry.counter("booking.auto_approval.skipped", "reason", "capacity");
+        this.skippedStale = meterRegistry.counter("booking.auto_approval.skipped", "reason", "stale");
+        this.queueLag = Timer.builder("booking.auto_approval.queue.lag")
+                .description("Time a booking waited in the auto-approval queue")
+                .register(meterRegistry);
+        this.batchTimer = meterRegistry.timer("booking.auto_approval.batch");
+        meterRegistry.gauge("booking.auto_approval.queue.size", queue, PriorityBlockingQueue::size);
+        meterRegistry.gauge("booking.auto_approval.queue.oldest.seconds", this, AutoApprovalEngine::oldestWaitSeconds);
+        meterRegistry.gauge("booking.auto_approval.parked.size", this, AutoApprovalEngine::parkedSize);
+    }
+
+    /** Seed the queue from the database once; afterwards it is maintained from events. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPending() {
+        if (!enabled) return;
+        List<BookingRequest> pending = bookingRepo.findByStatus(BookingStatus.PENDING);
+        pending.forEach(b -> enqueue(b.getId(), b.getEquipment().getId(), b.getStartAt(), b.getCreatedAt()));
+        logger.info("Auto-approval enabled: {} pending bookings queued", pending.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingSubmitted(BookingSubmittedEvent event) {
+        if (!enabled) return;
+        enqueue(event.bookingId(), event.equipmentId(), event.startAt(), event.createdAt());
+    }
+
+    /** Units of an equipment were freed: give its capacity-skipped bookings another pass. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCapacityReleased(CapacityReleasedEvent event) {
+        if (!enabled) return;
+        releases.computeIfAbsent(event.equipmentId(), k -> new AtomicLong()).incrementAndGet();
+        requeueParked(event.equipmentId());
+    }
+
+    @Scheduled(fixedDelayString = "${app.booking.auto-approval.interval-ms:2000}")
+    public void drain() {
+        if (!enabled || queue.isEmpty()) return;
+
+        List<Queued> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+
+        // keep priority order inside each equipment group
+        Map<Long, List<Queued>> byEquipment = new LinkedHashMap<>();
+        for (Queued q : batch) {
+            byEquipment.computeIfAbsent(q.equipmentId(), k -> new ArrayList<>()).add(q);
+        }
+
+        long now = System.nanoTime();
+        for (Map.Entry<Long, List<Queued>> group : byEquipment.entrySet()) {
+            List<Long> ids = group.getValue().stream().map(Queued::bookingId).toList();
+            long releasesBefore = releaseCount(group.getKey());
+            try {
+                BatchApprovalResult result = batchTimer.recordCallable(
+                        () -> bookingService.approveBatch(group.getKey(), ids, policy, APPROVER));
+                approved.increment(result.getApproved().size());
+                skippedPolicy.increment(result.getSkippedByPolicy().size());
+                skippedCapacity.increment(result.getSkippedNoCapacity().size());
+                skippedStale.increment(result.getNotPending().size());
+                Set<Long> noCapacity = Set.copyOf(result.getSkippedNoCapacity());
+                group.getValue().forEach(q -> {
+                    queueLag.record(now - q.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+                    if (noCapacity.contains(q.bookingId())) {
+                        park(q);
+                    } else {
+                        queuedIds.remove(q.bookingId());
+                    }
+                });
+                if (!noCapacity.isEmpty() && releaseCount(group.getKey()) != releasesBefore) {
+                    requeueParked(group.getKey());
+                }
+            } catch (ResponseStatusException ex) {
+                if (ex.getStatusCode() == HttpStatus.CONFLICT || ex.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                    // lock contention or a shed request: retry on the next tick
+                    queue.addAll(group.getValue());
+                } else {
+                    logger.warn("Auto-approval of equipment {} failed: {}", group.getKey(), ex.getReason());
+                    group.getValue().forEach(q -> queuedIds.remove(q.bookingId()));
+                }
+            } catch (CannotCreateTransactionException | DataAccessResourceFailureException | QueryTimeoutException
+                     | ServiceOverloadedException ex) {
+                // pool or bulkhead exhausted, database briefly away: the bookings are still PENDING, try again
+                logger.warn("Auto-approval of equipment {} hit a temporary failure, requeued: {}",
+                        group.getKey(), ex.getMessage());
+                queue.addAll(group.getValue());
+            } catch (Exception ex) {
+                logger.error("Auto-approval of equipment {} failed", group.getKey(), ex);
+                group.getValue().forEach(q -> queuedIds.remove(q.bookingId()));
+            }
+        }
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    /** Bookings waiting for a capacity release before their next pass. */
+    public int parkedSize() {
+        return parked.values().stream().mapToInt(Map::size).sum();
+    }
+
+    void enqueue(Long bookingId, Long equipmentId, LocalDateTime startAt, LocalDateTime createdAt) {
+        if (queuedIds.add(bookingId)) {
+            queue.add(new Queued(bookingId, equipmentId, startAt, createdAt, System.nanoTime()));
+        }
+    }
+
+    private void park(Queued q) {
+        // compute is atomic with the remove in requeueParked, so a booking never lands in a map already taken
+        parked.compute(q.equipmentId(), (k, waiting) -> {
+            Map<Long, Queued> m = waiting == null ? new ConcurrentHashMap<>() : waiting;
+            m.put(q.bookingId(), q);
+            return m;
+        });
+    }
+
+    private void requeueParked(Long equipmentId) {
+        Map<Long, Queued> waiting = parked.remove(equipmentId);
+        if (waiting == null) return;
+        long now = System.nanoTime();
+        waiting.values().forEach(q -> queue.add(new Queued(q.bookingId(), q.equipmentId(), q.startAt(),
+                q.createdAt(), now)));
+        logger.debug("Requeued {} bookings of equipment {} after capacity release", waiting.size(), equipmentId);
+    }
+
+    private long releaseCount(Long equipmentId) {
+        AtomicLong count = releases.get(equipmentId);
+        return count == null ? 0 : count.get();
+    }
+
+    private double oldestWaitSeconds() {
+        long now = System.nanoTime();
+        long oldest = queue.stream().mapToLong(Queued::enqueuedAtNanos).min().orElse(now);
+        return (now - oldest) / 1e9;
+    }
+
+    record Queued(Long bookingId, Long equipmentId, LocalDateTime startAt, LocalDateTime createdAt,
+                  long enqueuedAtNanos) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.model.Role;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Which PENDING bookings the auto-approval engine may approve without a human.
+ * Empty category / role sets mean "any"; maxQuantity <= 0 means no limit.
+ */
+public class AutoApprovalPolicy implements Predicate<BookingRequest> {
+
+    private final int maxQuantity;
+    private final Set<String> categories;
+    private final Set<String> roles;
+
+    public AutoApprovalPolicy(int maxQuantity, Collection<String> categories, Collection<String> roles) {
+        this.maxQuantity = maxQuantity;
+        this.categories = normalize(categories, true);
+        this.roles = normalize(roles, false);
+    }
+
+    @Override
+    public boolean test(BookingRequest booking) {
+        if (maxQuantity > 0 && booking.getQuantityRequested() > maxQuantity) return false;
+
+        if (!categories.isEmpty()) {
+            String category = booking.getEquipment() == null ? null : booking.getEquipment().getCategory();
+            if (category == null || !categories.contains(category.trim().toLowerCase(Locale.ROOT))) return false;
+        }
+
+        if (!roles.isEmpty()) {
+            if (booking.getRequester() == null || booking.getRequester().getRoles() == null) return false;
+            return booking.getRequester().getRoles().stream()
+                    .map(Role::getName)
+                    .anyMatch(roles::contains);
+        }
+        return true;
+    }
+
+    private static Set<String> normalize(Collection<String> values, boolean lowerCase) {
+        if (values == null) return Set.of();
+        return values.stream()
+                .filter(v -> v != null && !v.isBlank())
+                .map(String::trim)
+                .map(v -> lowerCase ? v.toLowerCase(Locale.ROOT) : v)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
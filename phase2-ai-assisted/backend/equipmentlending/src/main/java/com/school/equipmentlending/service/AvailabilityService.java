@@ -0,0 +1,92 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AvailableSlotDTO;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Capacity queries over the per-equipment reservation profile.
+ */
+@Service
+public class AvailabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityService.class);
+
+    static final int MAX_SLOTS = 20;
+    // longer searches are not bookings anyone makes, and unbounded ones overflow the date arithmetic
+    public static final Duration MAX_SLOT_DURATION = Duration.ofDays(28);
+
+    private final EquipmentRepository equipmentRepo;
+    private final LoanRepository loanRepo;
+
+    public AvailabilityService(EquipmentRepository equipmentRepo, LoanRepository loanRepo) {
+        this.equipmentRepo = equipmentRepo;
+        this.loanRepo = loanRepo;
+    }
+
+    /** Build the reservation profile of an equipment from {@code from} onwards (one query). */
+    public ReservationProfile loadProfile(Equipment equipment, LocalDateTime from) {
+        return ReservationProfile.of(equipment.getQuantity(),
+                loanRepo.findActiveReservations(equipment.getId(), from));
+    }
+
+    /** Units of the equipment held by active loans right now (two queries). */
+    @Transactional(readOnly = true)
+    public ReservationStateDTO currentState(Long equipmentId) {
+        Equipment equipment = equipmentRepo.findById(equipmentId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Equipment not found with id " + equipmentId));
+        LocalDateTime now = LocalDateTime.now();
+        Long reserved = loanRepo.sumCurrentlyReserved(equipmentId, now);
+        return new ReservationStateDTO(equipmentId, equipment.getQuantity(),
+                reserved == null ? 0 : reserved.intValue(), now, null);
+    }
+
+    /**
+     * Earliest windows (at most {@code limit}) from {@code from} where {@code quantity} units
+     * are free for {@code duration}.
+     */
+    @Transactional(readOnly = true)
+    public List<AvailableSlotDTO> findNextSlots(Long equipmentId, int quantity, Duration duration,
+                                                LocalDateTime from, int limit) {
+        if (quantity < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be at least 1");
+        }
+        if (duration == null || duration.isZero() || duration.isNegative()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Duration must be positive");
+        }
+        if (duration.compareTo(MAX_SLOT_DURATION) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Duration must be at most " + MAX_SLOT_DURATION.toDays() + " days");
+        }
+        if (limit < 1 || limit > MAX_SLOTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SLOTS);
+        }
+
+        Equipment equipment = equipmentRepo.findById(equipmentId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Equipment not found with id " + equipmentId));
+
+        if (quantity > equipment.getQuantity()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Requested quantity (" + quantity + ") exceeds total inventory (" + equipment.getQuantity() + ")");
+        }
+
+        LocalDateTime start = from == null ? LocalDateTime.now() : from;
+        List<AvailableSlotDTO> slots = loadProfile(equipment, start).findSlots(start, duration, quantity, limit);
+        logger.debug("Slot search equipmentId={} qty={} duration={} -> {} slots", equipmentId, quantity, duration, slots.size());
+        return slots;
+    }
+}
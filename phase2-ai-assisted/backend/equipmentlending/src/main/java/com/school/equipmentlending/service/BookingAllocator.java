@@ -0,0 +1,88 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.repository.ReservationInterval;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses which competing PENDING bookings of one equipment to approve so that capacity
+ * is never exceeded at any instant, given the loans already holding units.
+ * <p>
+ * Interval scheduling with capacity: candidates are taken greedily and accepted when the
+ * peak reserved level over their window (segment tree range-max) leaves room, then their
+ * units are added (range-add). Sorting by end time maximises the number of approvals for
+ * unit-size requests (the classic earliest-finish argument); UNITS favours large requests
+ * first and is a heuristic, as the weighted variant is a knapsack problem.
+ */
+public final class BookingAllocator {
+
+    public enum Objective { COUNT, UNITS }
+
+    private BookingAllocator() {}
+
+    /** Ids of the bookings to approve, in the order they were accepted. */
+    public static List<Long> allocate(int capacity, Collection<ReservationInterval> existing,
+                                      List<BookingRequest> pending, Objective objective) {
+        List<BookingRequest> candidates = pending.stream()
+                .filter(b -> b.getQuantityRequested() <= capacity && b.getEndAt().isAfter(b.getStartAt()))
+                .sorted(order(objective))
+                .toList();
+        if (candidates.isEmpty()) return List.of();
+
+        // compress all window boundaries; segment i is [times[i], times[i + 1])
+        LocalDateTime[] times = boundaries(existing, candidates);
+        int segments = times.length - 1;
+        CapacitySegmentTree tree = new CapacitySegmentTree(segments);
+
+        for (ReservationInterval r : existing) {
+            int l = index(times, r.borrowedAt());
+            int h = r.dueAt() == null ? segments - 1 : index(times, r.dueAt()) - 1;
+            tree.add(l, h, r.quantity());
+        }
+
+        List<Long> accepted = new ArrayList<>();
+        for (BookingRequest b : candidates) {
+            int l = index(times, b.getStartAt());
+            int h = index(times, b.getEndAt()) - 1;
+            if (tree.max(l, h) + b.getQuantityRequested() <= capacity) {
+                tree.add(l, h, b.getQuantityRequested());
+                accepted.add(b.getId());
+            }
+        }
+        return accepted;
+    }
+
+    private static Comparator<BookingRequest> order(Objective objective) {
+        Comparator<BookingRequest> byEnd = Comparator.comparing(BookingRequest::getEndAt);
+        Comparator<BookingRequest> bySize = Comparator.comparingInt(BookingRequest::getQuantityRequested);
+        Comparator<BookingRequest> fifo = Comparator.comparing(BookingRequest::getCreatedAt,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<BookingRequest> byId = Comparator.comparing(BookingRequest::getId);
+        return objective == Objective.UNITS
+                ? bySize.reversed().thenComparing(byEnd).thenComparing(fifo).thenComparing(byId)
+                : byEnd.thenComparing(bySize).thenComparing(fifo).thenComparing(byId);
+    }
+
+    private static LocalDateTime[] boundaries(Collection<ReservationInterval> existing, List<BookingRequest> candidates) {
+        List<LocalDateTime> all = new ArrayList<>(2 * (existing.size() + candidates.size()));
+        for (BookingRequest b : candidates) {
+            all.add(b.getStartAt());
+            all.add(b.getEndAt());
+        }
+        for (ReservationInterval r : existing) {
+            all.add(r.borrowedAt());
+            if (r.dueAt() != null) all.add(r.dueAt());
+        }
+        return all.stream().sorted().distinct().toArray(LocalDateTime[]::new);
+    }
+
+    private static int index(LocalDateTime[] times, LocalDateTime t) {
+        return Arrays.binarySearch(times, t);
+    }
+}
@@ -1,22 +1,41 @@
 package com.school.equipmentlending.service;
 
+import com.school.equipmentlending.dto.AvailableSlotDTO;
+import com.school.equipmentlending.dto.BatchApprovalResult;
 import com.school.equipmentlending.dto.BookingRequestDTO;
 import com.school.equipmentlending.dto.CreateBookingRequestDTO;
+import com.school.equipmentlending.event.BookingApproved;
+import com.school.equipmentlending.event.BookingCreated;
+import com.school.equipmentlending.event.BookingSubmittedEvent;
+import com.school.equipmentlending.event.CapacityReservedEvent;
+import com.school.equipmentlending.event.LoanCreated;
 import com.school.equipmentlending.mapper.BookingMapper;
 import com.school.equipmentlending.model.*;
 import com.school.equipmentlending.repository.BookingRequestRepository;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
 import com.school.equipmentlending.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Service
 public class BookingService {
@@ -27,19 +46,46 @@ public class BookingService {
     private final EquipmentRepository equipmentRepo;
     private final UserRepository userRepo;
     private final LoanRepository loanRepo;
+    private final AvailabilityService availabilityService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DomainEventOutbox outbox;
+
+    // approval outcomes: booking.approval{outcome=approved|insufficient_capacity|lock_failed|rejected}
+    private final Counter approvedCounter;
+    private final Counter insufficientCounter;
+    private final Counter lockFailedCounter;
+    private final Counter rejectedCounter;
+
+    // when false, requests that cannot fit at creation time are rejected as infeasible instead of waitlisted
+    @Value("${app.booking.waitlist-enabled:true}")
+    private boolean waitlistEnabled = true;
 
     public BookingService(BookingRequestRepository bookingRepo,
                           EquipmentRepository equipmentRepo,
                           UserRepository userRepo,
-                          LoanRepository loanRepo) {
+                          LoanRepository loanRepo,
+                          AvailabilityService availabilityService,
+                          ApplicationEventPublisher eventPublisher,
+                          DomainEventOutbox outbox,
+                          MeterRegistry meterRegistry) {
         this.bookingRepo = bookingRepo;
         this.equipmentRepo = equipmentRepo;
         this.userRepo = userRepo;
         this.loanRepo = loanRepo;
+        this.availabilityService = availabilityService;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
+        this.approvedCounter = meterRegistry.counter("booking.approval", "outcome", "approved");
+        this.insufficientCounter = meterRegistry.counter("booking.approval", "outcome", "insufficient_capacity");
+        this.lockFailedCounter = meterRegistry.counter("booking.approval", "outcome", "lock_failed");
+        this.rejectedCounter = meterRegistry.counter("booking.approval", "outcome", "rejected");
     }
 
     /**
-     * Create a booking request (PENDING)
+     * Create a booking request.
+     * A lock-free capacity check against active loans decides the initial status:
+     * PENDING if the window currently has room, otherwise WAITLISTED (or REJECTED when the waitlist is disabled),
+     * so admins never pay for a locked approval that is bound to fail.
      */
     @Transactional
     public BookingRequestDTO createBooking(String username, CreateBookingRequestDTO req) {
@@ -80,10 +126,28 @@ public class BookingService {
         booking.setStartAt(req.getStartAt());
         booking.setEndAt(req.getEndAt());
         booking.setQuantityRequested(req.getQuantityRequested());
-        booking.setStatus(BookingStatus.PENDING);
+
+        ReservationProfile profile = availabilityService.loadProfile(equipment, req.getStartAt());
+        int availableUnits = profile.availableUnits(req.getStartAt(), req.getEndAt());
+        if (availableUnits >= req.getQuantityRequested()) {
+            booking.setStatus(BookingStatus.PENDING);
+        } else {
+            String reason = "only " + Math.max(0, availableUnits) + " of " + equipment.getQuantity()
+                    + " units free in the requested window"
+                    + nextSlotHint(profile, req.getQuantityRequested(), req.getStartAt(), req.getEndAt());
+            booking.setStatus(waitlistEnabled ? BookingStatus.WAITLISTED : BookingStatus.REJECTED);
+            booking.setAdminNote((waitlistEnabled ? "Waitlisted: " : "Infeasible: ") + reason);
+        }
 
         BookingRequest saved = bookingRepo.save(booking);
-        logger.info("Booking created id={} by {} for equipmentId={}", saved.getId(), username, equipment.getId());
+        logger.info("Booking created id={} by {} for equipmentId={} status={}",
+                saved.getId(), username, equipment.getId(), saved.getStatus());
+        outbox.record(new BookingCreated(saved.getId(), equipment.getId(), requester.getId(), saved.getStatus(),
+                saved.getStartAt(), saved.getEndAt(), saved.getQuantityRequested()));
+        if (saved.getStatus() == BookingStatus.PENDING) {
+            eventPublisher.publishEvent(new BookingSubmittedEvent(
+                    saved.getId(), equipment.getId(), saved.getStartAt(), saved.getCreatedAt()));
+        }
         return BookingMapper.toDTO(saved);
     }
 
@@ -94,53 +158,147 @@ public class BookingService {
     public BookingRequestDTO approveBooking(Long bookingId, String adminUsername, String adminNote) {
         logger.info("Admin {} approving booking {}", adminUsername, bookingId);
 
-        BookingRequest booking = bookingRepo.findById(bookingId)
+        Long equipmentId = bookingRepo.findEquipmentIdById(bookingId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                         "Booking not found with id " + bookingId));
 
-        if (booking.getStatus() != BookingStatus.PENDING) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING bookings can be approved");
-        }
-
-        LocalDateTime start = booking.getStartAt();
-        LocalDateTime end = booking.getEndAt();
-        int requested = booking.getQuantityRequested();
-
         try {
-            Equipment equipment = equipmentRepo.findByIdForUpdate(booking.getEquipment().getId())
+            Equipment equipment = equipmentRepo.findByIdForUpdate(equipmentId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
-                            "Equipment not found with id " + booking.getEquipment().getId()));
+                            "Equipment not found with id " + equipmentId));
 
-            Long reserved = loanRepo.sumOverlappingReserved(equipment.getId(), start, end);
-            long reservedQty = (reserved == null ? 0L : reserved);
-            long availableUnits = equipment.getQuantity() - reservedQty;
+            // read the booking only under the lock: a racing approver may have granted it meanwhile
+            BookingRequest booking = bookingRepo.findByIdForUpdate(bookingId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Booking not found with id " + bookingId));
+            if (booking.getStatus() != BookingStatus.PENDING) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only PENDING bookings can be approved");
+            }
 
-            logger.debug("Equipment id={} total={}, reserved={}, available={}, requested={}",
-                    equipment.getId(), equipment.getQuantity(), reservedQty, availableUnits, requested);
+            LocalDateTime start = booking.getStartAt();
+            LocalDateTime end = booking.getEndAt();
+            int requested = booking.getQuantityRequested();
+
+            ReservationProfile profile = availabilityService.loadProfile(equipment, start);
+            int availableUnits = profile.availableUnits(start, end);
+
+            logger.debug("Equipment id={} total={}, available={}, requested={}",
+                    equipment.getId(), equipment.getQuantity(), availableUnits, requested);
 
             if (availableUnits < requested) {
+                insufficientCounter.increment();
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                        "Not enough units available. Available: " + availableUnits + ", requested: " + requested);
+                        "Not enough units available. Available: " + availableUnits + ", requested: " + requested
+                                + nextSlotHint(profile, requested, start, end));
             }
 
-            Loan loan = new Loan();
-            loan.setEquipment(equipment);
-            loan.setBorrower(booking.getRequester());
-            loan.setBorrowedAt(start);
-            loan.setDueAt(end);
-            loan.setQuantity(requested);
-            loan.setStatus(LoanStatus.BORROWED);
-            loanRepo.save(loan);
-
-            booking.setStatus(BookingStatus.APPROVED);
-            booking.setAdminNote(adminNote == null ? "Approved by " + adminUsername : adminNote);
-            bookingRepo.save(booking);
-
+            grant(booking, equipment, adminNote == null ? "Approved by " + adminUsername : adminNote);
+            approvedCounter.increment();
             return BookingMapper.toDTO(booking);
 
         } catch (PessimisticLockingFailureException ex) {
+            lockFailedCounter.increment();
             logger.warn("Lock failed approving booking {}", bookingId, ex);
-            throw new ResponseStatusException(HttpStatus.CONFLICT, "Could not acquire lock, please try again");
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Could not acquire lock, please try again", ex);
+        }
+    }
+
+    /**
+     * Approve several PENDING bookings of one equipment under a single equipment lock.
+     * The reservation profile is loaded once and updated in memory as bookings are granted,
+     * so each booking costs no extra capacity query. Bookings are considered in the given order.
+     */
+    @Transactional
+    public BatchApprovalResult approveBatch(Long equipmentId, List<Long> bookingIds,
+                                            Predicate<BookingRequest> policy, String approver) {
+        BatchApprovalResult result = new BatchApprovalResult();
+        if (bookingIds.isEmpty()) return result;
+
+        try {
+            Equipment equipment = equipmentRepo.findByIdForUpdate(equipmentId)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                            "Equipment not found with id " + equipmentId));
+
+            Map<Long, BookingRequest> byId = bookingRepo.findAllByIdForUpdate(bookingIds).stream()
+                    .collect(Collectors.toMap(BookingRequest::getId, Function.identity()));
+            LocalDateTime from = byId.values().stream()
+                    .map(BookingRequest::getStartAt)
+                    .min(Comparator.naturalOrder())
+                    .orElse(LocalDateTime.now());
+            ReservationProfile profile = availabilityService.loadProfile(equipment, from);
+
+            for (Long id : bookingIds) {
+                BookingRequest booking = byId.get(id);
+                if (booking == null || booking.getStatus() != BookingStatus.PENDING
+                        || !equipmentId.equals(booking.getEquipment().getId())) {
+                    result.getNotPending().add(id);
+                } else if (!policy.test(booking)) {
+                    result.getSkippedByPolicy().add(id);
+                } else if (profile.availableUnits(booking.getStartAt(), booking.getEndAt()) < booking.getQuantityRequested()) {
+                    result.getSkippedNoCapacity().add(id);
+                } else {
+                    grant(booking, equipment, "Approved by " + approver);
+                    profile.reserve(booking.getStartAt(), booking.getEndAt(), booking.getQuantityRequested());
+                    result.getApproved().add(id);
+                }
+            }
+            approvedCounter.increment(result.getApproved().size());
+            insufficientCounter.increment(result.getSkippedNoCapacity().size());
+            logger.info("Batch approval equipmentId={} by {}: approved={} policy={} capacity={} stale={}",
+                    equipmentId, approver, result.getApproved().size(), result.getSkippedByPolicy().size(),
+                    result.getSkippedNoCapacity().size(), result.getNotPending().size());
+            return result;
+
+        } catch (PessimisticLockingFailureException ex) {
+            lockFailedCounter.increment();
+            logger.warn("Lock failed batch-approving equipment {}", equipmentId, ex);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Could not acquire lock, please try again", ex);
+        }
+    }
+
+    /**
+     * Promote WAITLISTED bookings of one equipment whose windows overlap the released range [from, until).
+     * Runs under the equipment lock and re-reads the waitlist after locking, so concurrent passes for the
+     * same release are idempotent. Order is FIFO by createdAt; a booking that still does not fit keeps its
+     * place, and later bookings overlapping its window are not allowed to jump ahead of it.
+     */
+    @Transactional
+    public List<Long> promoteWaitlisted(Long equipmentId, LocalDateTime from, LocalDateTime until) {
+        List<Long> promoted = new ArrayList<>();
+        try {
+            Equipment equipment = equipmentRepo.findByIdForUpdate(equipmentId).orElse(null);
+            if (equipment == null) return promoted;
+
+            LocalDateTime end = until == null ? from.plusYears(100) : until;
+            List<BookingRequest> waitlist = bookingRepo.findWaitlistedOverlapping(equipmentId, from, end);
+            if (waitlist.isEmpty()) return promoted;
+
+            LocalDateTime profileFrom = waitlist.stream()
+                    .map(BookingRequest::getStartAt)
+                    .min(Comparator.naturalOrder())
+                    .orElse(from);
+            ReservationProfile profile = availabilityService.loadProfile(equipment, profileFrom);
+
+            List<BookingRequest> stillWaiting = new ArrayList<>();
+            for (BookingRequest booking : waitlist) {
+                boolean blockedByEarlier = stillWaiting.stream().anyMatch(w ->
+                        w.getStartAt().isBefore(booking.getEndAt()) && w.getEndAt().isAfter(booking.getStartAt()));
+                if (blockedByEarlier
+                        || profile.availableUnits(booking.getStartAt(), booking.getEndAt()) < booking.getQuantityRequested()) {
+                    stillWaiting.add(booking);
+                    continue;
+                }
+                grant(booking, equipment, "Promoted from waitlist");
+                profile.reserve(booking.getStartAt(), booking.getEndAt(), booking.getQuantityRequested());
+                promoted.add(booking.getId());
+            }
+            logger.info("Waitlist pass equipmentId={} window=[{}, {}): promoted={} waiting={}",
+                    equipmentId, from, until, promoted.size(), stillWaiting.size());
+            return promoted;
+
+        } catch (PessimisticLockingFailureException ex) {
+            logger.warn("Lock failed promoting waitlist of equipment {}", equipmentId, ex);
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Could not acquire lock, please try again", ex);
         }
     }
 
@@ -160,6 +318,52 @@ public class BookingService {
         booking.setStatus(BookingStatus.REJECTED);
         booking.setAdminNote(adminNote == null ? "Rejected by " + adminUsername : adminNote);
         bookingRepo.save(booking);
+        rejectedCounter.increment();
         return BookingMapper.toDTO(booking);
     }
+
+    @Transactional(readOnly = true)
+    public List<BookingRequestDTO> getBookingsForUser(String username) {
+        return bookingRepo.findByRequester_Username(username).stream().map(BookingMapper::toDTO).collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookingRequestDTO> getPendingBookings() {
+        return bookingRepo.findByStatus(BookingStatus.PENDING).stream().map(BookingMapper::toDTO).collect(Collectors.toList());
+    }
+
+    /** Materialise an approved booking as a BORROWED loan over its window. Caller holds the equipment lock. */
+    void grant(BookingRequest booking, Equipment equipment, String note) {
+        Loan loan = new Loan();
+        loan.setEquipment(equipment);
+        loan.setBorrower(booking.getRequester());
+        loan.setBorrowedAt(booking.getStartAt());
+        loan.setDueAt(booking.getEndAt());
+        loan.setQuantity(booking.getQuantityRequested());
+        loan.setStatus(LoanStatus.BORROWED);
+        loanRepo.save(loan);
+
+        booking.setStatus(BookingStatus.APPROVED);
+        booking.setAdminNote(note);
+        bookingRepo.save(booking);
+
+        outbox.record(new LoanCreated(loan.getId(), equipment.getId(), booking.getRequester().getId(),
+                loan.getQuantity(), loan.getBorrowedAt(), loan.getDueAt()));
+        outbox.record(new BookingApproved(booking.getId(), equipment.getId(), loan.getId(), loan.getQuantity()));
+        eventPublisher.publishEvent(new CapacityReservedEvent(equipment.getId()));
+    }
+
+    /** Count approvals decided outside {@link #approveBooking} (the actor reservation engine). */
+    void recordApprovalOutcome(boolean approved) {
+        (approved ? approvedCounter : insufficientCounter).increment();
+    }
+
+    /**
+     * Suffix for "not enough units" errors pointing at the next window that would fit, read from the
+     * profile the capacity check already loaded (no further query).
+     */
+    private static String nextSlotHint(ReservationProfile profile, int quantity, LocalDateTime start, LocalDateTime end) {
+        AvailableSlotDTO slot = profile.nextSlot(start, Duration.between(start, end), quantity);
+        return slot == null ? "" : ". Next available slot: " + slot.getStartAt() + " to " + slot.getEndAt();
+    }
 }
@@ -0,0 +1,62 @@
+package com.school.equipmentlending.service;
+
+/**
+ * Segment tree over n elementary time segments with lazy range-add and range-max.
+ * Used by the allocation solver to test and commit "qty units over [l, r]" in O(log n).
+ */
+class CapacitySegmentTree {
+
+    private final int n;
+    private final long[] max;
+    private final long[] lazy;
+
+    CapacitySegmentTree(int n) {
+        this.n = Math.max(1, n);
+        this.max = new long[4 * this.n];
+        this.lazy = new long[4 * this.n];
+    }
+
+    /** Add v to every segment in [l, r] (inclusive). */
+    void add(int l, int r, long v) {
+        if (l > r) return;
+        add(1, 0, n - 1, l, r, v);
+    }
+
+    /** Maximum over segments [l, r] (inclusive). */
+    long max(int l, int r) {
+        if (l > r) return 0;
+        return max(1, 0, n - 1, l, r);
+    }
+
+    private void add(int node, int lo, int hi, int l, int r, long v) {
+        if (r < lo || hi < l) return;
+        if (l <= lo && hi <= r) {
+            max[node] += v;
+            lazy[node] += v;
+            return;
+        }
+        push(node);
+        int mid = (lo + hi) >>> 1;
+        add(2 * node, lo, mid, l, r, v);
+        add(2 * node + 1, mid + 1, hi, l, r, v);
+        max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+    }
+
+    private long max(int node, int lo, int hi, int l, int r) {
+        if (r < lo || hi < l) return Long.MIN_VALUE;
+        if (l <= lo && hi <= r) return max[node];
+        push(node);
+        int mid = (lo + hi) >>> 1;
+        return Math.max(max(2 * node, lo, mid, l, r), max(2 * node + 1, mid + 1, hi, l, r));
+    }
+
+    private void push(int node) {
+        if (lazy[node] != 0) {
+            for (int child = 2 * node; child <= 2 * node + 1; child++) {
+                max[child] += lazy[node];
+                lazy[child] += lazy[node];
+            }
+            lazy[node] = 0;
+        }
+    }
+}
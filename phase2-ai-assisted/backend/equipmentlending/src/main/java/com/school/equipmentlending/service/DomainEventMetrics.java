@@ -0,0 +1,34 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.event.DomainEventConsumer;
+import com.school.equipmentlending.event.EventEnvelope;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Activity analytics off the request path: counts delivered domain events as {@code domain.events{type}}.
+ * Redeliveries are counted again, which is acceptable for trend dashboards.
+ */
+@Component
+public class DomainEventMetrics implements DomainEventConsumer {
+
+    private final MeterRegistry meterRegistry;
+
+    public DomainEventMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String name() {
+        return "metrics";
+    }
+
+    @Override
+    public void onEvents(List<EventEnvelope> events) {
+        for (EventEnvelope envelope : events) {
+            meterRegistry.counter("domain.events", "type", envelope.event().type()).increment();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.event.DomainEvent;
+import com.school.equipmentlending.event.EventEnvelope;
+import com.school.equipmentlending.model.OutboxEvent;
+import com.school.equipmentlending.repository.OutboxEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes domain events to the outbox table inside the caller's transaction, so an event exists exactly when
+ * the change it describes was committed. Consumers never run inside that transaction: once it commits, the
+ * recorded events are handed to the {@link OutboxRelay} in memory (no polling delay); if that hand-off is
+ * lost, the relay's recovery sweep finds the rows instead.
+ */
+@Component
+public class DomainEventOutbox {
+
+    private final OutboxEventRepository outboxRepo;
+    private final ObjectMapper objectMapper;
+    private final OutboxRelay relay;
+
+    public DomainEventOutbox(OutboxEventRepository outboxRepo, ObjectMapper objectMapper, OutboxRelay relay) {
+        this.outboxRepo = outboxRepo;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+    }
+
+    /** Record {@code event} in the current transaction; there must be one. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(DomainEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize " + event.type(), ex);
+        }
+        OutboxEvent row = outboxRepo.save(new OutboxEvent(event.type(), event.aggregateId(), payload, LocalDateTime.now()));
+        recordedInThisTransaction().add(new EventEnvelope(row.getId(), row.getCreatedAt(), event));
+    }
+
+    // one list and one synchronization per transaction, however many events it records
+    @SuppressWarnings("unchecked")
+    private List<EventEnvelope> recordedInThisTransaction() {
+        List<EventEnvelope> recorded = (List<EventEnvelope>) TransactionSynchronizationManager.getResource(this);
+        if (recorded != null) return recorded;
+
+        List<EventEnvelope> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.committed(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(DomainEventOutbox.this);
+            }
+        });
+        return created;
+    }
+}
@@ -0,0 +1,452 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.dto.EquipmentImportResult;
+import com.school.equipmentlending.dto.EquipmentRequest;
+import com.school.equipmentlending.dto.ImportRowError;
+import com.school.equipmentlending.event.EquipmentChanged;
+import com.school.equipmentlending.mapper.EquipmentMapper;
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.util.CsvRecordReader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk equipment import (POST /api/equipments/import) from a CSV or NDJSON stream.
+ * The upload is never held in memory: the request thread reads it record by record into chunks, parser
+ * workers turn each chunk into {@link EquipmentRequest}s and validate them, and a single writer upserts
+ * the valid rows one chunk per transaction, in upload order. Stages are joined by bounded queues, so a
+ * slow database slows the reading of the upload instead of filling the heap.
+ * Rows are matched to existing equipment on name and category (case-insensitive); a match is updated
+ * like PUT /api/equipments/{id} (absent fields are kept), anything else is created. Each chunk records one
+ * {@link EquipmentChanged} per item it created or updated in the same transaction, like the single-item API.
+ * Committed chunks stay committed if a later chunk fails or the upload breaks off. One import runs at a time.
+ */
+@Service
+public class EquipmentImportService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(EquipmentImportService.class);
+
+    public enum Format { CSV, NDJSON }
+
+    static final List<String> CSV_COLUMNS = List.of("name", "category", "condition", "quantity", "available");
+
+    private static final long POLL_MS = 100;
+
+    /** Upload records before parsing; {@code text} is one CSV record or one JSON line. */
+    private record RawRecord(long line, String text) {
+    }
+
+    /** A parsed row: either a valid request or the reason it was rejected. */
+    private record ParsedRow(long line, EquipmentRequest request, String error) {
+    }
+
+    /** A slice of the upload; seq orders chunks so the writer applies them in upload order. */
+    private record Chunk<T>(long seq, List<T> rows) {
+    }
+
+    private static final Chunk<?> END = new Chunk<>(-1, List.of());
+
+    private final EquipmentRepository equipmentRepository;
+    private final DomainEventOutbox outbox;
+    private final TransactionTemplate tx;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int workers;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final int maxErrors;
+    private final ThreadPoolExecutor executor;
+    private final ReentrantLock running = new ReentrantLock();
+
+    private final LongAdder createdRows = new LongAdder();
+    private final LongAdder updatedRows = new LongAdder();
+    private final LongAdder rejectedRows = new LongAdder();
+
+    public EquipmentImportService(EquipmentRepository equipmentRepository,
+                                  DomainEventOutbox outbox,
+                                  PlatformTransactionManager transactionManager,
+                                  Validator validator,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.equipment-import.workers:2}") int workers,
+                                  @Value("${app.equipment-import.chunk-size:500}") int chunkSize,
+                                  @Value("${app.equipment-import.queue-capacity:8}") int queueCapacity,
+                                  @Value("${app.equipment-import.max-errors:1000}") int maxErrors) {
+        this.equipmentRepository = equipmentRepository;
+        this.outbox = outbox;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.workers = Math.max(1, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxErrors = maxErrors;
+        AtomicInteger seq = new AtomicInteger();
+        // parser workers plus the writer of the (single) running import
+        this.executor = new ThreadPoolExecutor(this.workers + 1, this.workers + 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),   // only ever holds the stages of an import whose predecessor is winding down
+                r -> {
+                    Thread t = new Thread(r, "equipment-import-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** Import an upload; blocks until every row is written or rejected. */
+    public EquipmentImportResult importEquipment(InputStream upload, Format format) {
+        if (!running.tryLock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another equipment import is running");
+        }
+        try {
+            return new ImportRun(format).run(upload);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("equipment.import.rows", createdRows, LongAdder::sum).tag("outcome", "created")
+                .description("Rows written by bulk equipment imports").register(registry);
+        FunctionCounter.builder("equipment.import.rows", updatedRows, LongAdder::sum).tag("outcome", "updated")
+                .description("Rows written by bulk equipment imports").register(registry);
+        FunctionCounter.builder("equipment.import.rows", rejectedRows, LongAdder::sum).tag("outcome", "rejected")
+                .description("Rows written by bulk equipment imports").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /** State of one import: the two queues, the abort flag and the result the writer fills in. */
+    private final class ImportRun {
+        private final Format format;
+        private final BlockingQueue<Chunk<RawRecord>> raw = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Chunk<ParsedRow>> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        private final EquipmentImportResult result = new EquipmentImportResult();
+        private volatile boolean aborted;
+        private volatile RuntimeException failure;   // first unexpected error of a worker or the writer
+        private Map<String, Integer> columns;
+        private long rowsRead;
+
+        ImportRun(Format format) {
+            this.format = format;
+        }
+
+        EquipmentImportResult run(InputStream upload) {
+            long start = System.nanoTime();
+            List<Future<?>> stages = new ArrayList<>();
+            try {
+                for (int i = 0; i < workers; i++) stages.add(executor.submit(() -> stage(this::parseLoop)));
+                stages.add(executor.submit(() -> stage(this::writeLoop)));
+                read(upload);
+                for (Future<?> stage : stages) stage.get();
+            } catch (IOException ex) {
+                abort(stages);
+                logger.warn("Equipment import aborted after {} rows: upload broke off", rowsRead, ex);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Upload broke off after " + rowsRead + " rows; committed rows were kept");
+            } catch (ExecutionException | CancellationException ex) {
+                abort(stages);
+                if (failure != null) throw failure;
+                throw new IllegalStateException("Equipment import stage failed", ex);
+            } catch (InterruptedException ex) {
+                abort(stages);
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Equipment import interrupted");
+            } catch (RuntimeException ex) {
+                abort(stages);
+                throw ex;
+            }
+            result.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            logger.info("Equipment import: {} rows, {} created, {} updated, {} rejected in {} ms", result.getRows(),
+                    result.getCreated(), result.getUpdated(), result.getRejected(), result.getElapsedMs());
+            return result;
+        }
+
+        private void abort(List<Future<?>> stages) {
+            aborted = true;
+            stages.forEach(stage -> stage.cancel(true));
+        }
+
+        /** Runs a worker or writer loop; an unexpected error aborts the whole import instead of stalling it. */
+        private void stage(Runnable loop) {
+            try {
+                loop.run();
+            } catch (CancellationException ex) {
+                // aborted by another stage or the reader
+            } catch (RuntimeException ex) {
+                if (failure == null) failure = ex;
+                aborted = true;
+                throw ex;
+            }
+        }
+
+        // ---------- stage 1: read (request thread) ----------
+
+        private void read(InputStream upload) throws IOException, InterruptedException {
+            CsvRecordReader reader = new CsvRecordReader(upload, format == Format.CSV);
+            List<RawRecord> chunk = new ArrayList<>(chunkSize);
+            long seq = 0;
+            String record;
+            while ((record = reader.next()) != null) {
+                if (format == Format.CSV && columns == null) {
+                    columns = header(record);
+                    continue;
+                }
+                rowsRead++;
+                chunk.add(new RawRecord(reader.line(), record));
+                if (chunk.size() == chunkSize) {
+                    put(raw, new Chunk<>(seq++, chunk));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) put(raw, new Chunk<>(seq, chunk));
+            result.setRows(rowsRead);
+            for (int i = 0; i < workers; i++) put(raw, end());
+        }
+
+        private Map<String, Integer> header(String line) {
+            Map<String, Integer> index = new HashMap<>();
+            List<String> names = CsvRecordReader.split(line);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i) == null ? "" : names.get(i).trim().toLowerCase(Locale.ROOT);
+                if (CSV_COLUMNS.contains(name)) index.putIfAbsent(name, i);
+            }
+            if (!index.containsKey("name") || !index.containsKey("quantity")) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "CSV header must name the columns; name and quantity are required, known columns: "
+                                + String.join(",", CSV_COLUMNS));
+            }
+            return index;
+        }
+
+        // ---------- stage 2: parse + validate (workers) ----------
+
+        private void parseLoop() {
+            try {
+                while (true) {
+                    Chunk<RawRecord> chunk = take(raw);
+                    if (chunk == END) break;
+                    List<ParsedRow> rows = new ArrayList<>(chunk.rows().size());
+                    for (RawRecord record : chunk.rows()) rows.add(parse(record));
+                    put(parsed, new Chunk<>(chunk.seq(), rows));
+                }
+                put(parsed, end());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private ParsedRow parse(RawRecord record) {
+            EquipmentRequest req;
+            try {
+                req = format == Format.CSV ? fromCsv(CsvRecordReader.split(record.text())) : fromJson(record.text());
+            } catch (IllegalArgumentException ex) {
+                return new ParsedRow(record.line(), null, ex.getMessage());
+            }
+            String violations = validator.validate(req).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            return violations.isEmpty()
+                    ? new ParsedRow(record.line(), req, null)
+                    : new ParsedRow(record.line(), null, violations);
+        }
+
+        private EquipmentRequest fromCsv(List<String> fields) {
+            EquipmentRequest req = new EquipmentRequest();
+            req.setName(column(fields, "name"));
+            req.setCategory(column(fields, "category"));
+            req.setCondition(column(fields, "condition"));
+            String quantity = column(fields, "quantity");
+            if (quantity != null) {
+                try {
+                    req.setQuantity(Integer.parseInt(quantity));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("quantity must be a whole number, got '" + quantity + "'");
+                }
+            }
+            String available = column(fields, "available");
+            if (available != null) {
+                if (!available.equalsIgnoreCase("true") && !available.equalsIgnoreCase("false")) {
+                    throw new IllegalArgumentException("available must be true or false, got '" + available + "'");
+                }
+                req.setAvailable(Boolean.parseBoolean(available));
+            }
+            return req;
+        }
+
+        private String column(List<String> fields, String name) {
+            Integer i = columns.get(name);
+            if (i == null || i >= fields.size()) return null;
+            String value = fields.get(i);
+            return value == null || value.isBlank() ? null : value.trim();
+        }
+
+        private EquipmentRequest fromJson(String line) {
+            try {
+                return objectMapper.readValue(line, EquipmentRequest.class);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalArgumentException("invalid JSON: " + ex.getOriginalMessage());
+            }
+        }
+
+        // ---------- stage 3: write (single writer, upload order) ----------
+
+        private void writeLoop() {
+            Map<Long, Chunk<ParsedRow>> early = new HashMap<>();   // chunks that overtook an earlier one
+            long next = 0;
+            int ended = 0;
+            try {
+                while (ended < workers) {
+                    Chunk<ParsedRow> chunk = take(parsed);
+                    if (chunk == END) {
+                        ended++;
+                        continue;
+                    }
+                    early.put(chunk.seq(), chunk);
+                    for (Chunk<ParsedRow> ready; (ready = early.remove(next)) != null; next++) {
+                        write(ready.rows());
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(List<ParsedRow> rows) {
+            List<ParsedRow> valid = new ArrayList<>(rows.size());
+            for (ParsedRow row : rows) {
+                if (row.error() != null) reject(row.line(), row.error());
+                else valid.add(row);
+            }
+            if (valid.isEmpty()) return;
+            try {
+                int[] counts = tx.execute(status -> upsert(valid));
+                result.setCreated(result.getCreated() + counts[0]);
+                result.setUpdated(result.getUpdated() + counts[1]);
+                createdRows.add(counts[0]);
+                updatedRows.add(counts[1]);
+            } catch (RuntimeException ex) {
+                logger.warn("Equipment import: chunk starting at line {} not saved", valid.get(0).line(), ex);
+                for (ParsedRow row : valid) reject(row.line(), "not saved: " + ex.getMessage());
+            }
+        }
+
+        private void reject(long line, String message) {
+            result.setRejected(result.getRejected() + 1);
+            rejectedRows.increment();
+            if (result.getErrors().size() < maxErrors) {
+                result.getErrors().add(new ImportRowError(line, message));
+            } else {
+                result.setErrorsTruncated(true);
+            }
+        }
+
+        // ---------- queue plumbing: blocking, but gives up once the import is aborted ----------
+
+        private <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (aborted) throw new CancellationException("Equipment import aborted");
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            T item;
+            while ((item = queue.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                if (aborted) throw new CancellationException("Equipment import aborted");
+            }
+            return item;
+        }
+    }
+
+    /**
+     * One chunk's rows in one transaction; returns {created, updated}. Later rows win within a chunk, and each
+     * item gets a single event however many rows touched it (CREATED if the chunk created it).
+     */
+    private int[] upsert(List<ParsedRow> rows) {
+        List<String> names = rows.stream()
+                .map(row -> Equipment.nameKey(row.request().getName()))
+                .distinct()
+                .toList();
+        Map<String, Equipment> byKey = new HashMap<>();
+        for (Equipment e : equipmentRepository.findByNameKeyIn(names)) {
+            byKey.merge(key(e.getName(), e.getCategory()), e, (a, b) -> a.getId() <= b.getId() ? a : b);
+        }
+        List<Equipment> inserts = new ArrayList<>();
+        Map<Long, Equipment> changed = new LinkedHashMap<>();   // existing items updated by this chunk
+        int created = 0;
+        int updated = 0;
+        for (ParsedRow row : rows) {
+            EquipmentRequest req = row.request();
+            String key = key(req.getName(), req.getCategory());
+            Equipment existing = byKey.get(key);
+            if (existing != null) {
+                EquipmentMapper.applyUpdate(existing, req);
+                if (existing.getId() != null) changed.put(existing.getId(), existing);
+                updated++;
+            } else {
+                Equipment e = EquipmentMapper.fromRequest(req);
+                byKey.put(key, e);
+                inserts.add(e);
+                created++;
+            }
+        }
+        // ids come from the table generator on persist; the outbox rows are flushed in the same JDBC batches
+        for (Equipment e : equipmentRepository.saveAll(inserts)) {
+            outbox.record(new EquipmentChanged(e.getId(), EquipmentChanged.Change.CREATED));
+        }
+        for (Long id : changed.keySet()) {
+            outbox.record(new EquipmentChanged(id, EquipmentChanged.Change.UPDATED));
+        }
+        return new int[]{created, updated};
+    }
+
+    private static String key(String name, String category) {
+        return Equipment.nameKey(name) + '\u0000'
+                + (category == null ? "" : category.trim().toLowerCase(Locale.ROOT));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Chunk<T> end() {
+        return (Chunk<T>) END;
+    }
+}
@@ -2,37 +2,72 @@ package com.school.equipmentlending.service;
 
 import com.school.equipmentlending.dto.EquipmentDTO;
 import com.school.equipmentlending.dto.EquipmentRequest;
+import com.school.equipmentlending.event.EquipmentChanged;
 import com.school.equipmentlending.exception.ResourceNotFoundException;
 import com.school.equipmentlending.mapper.EquipmentMapper;
 import com.school.equipmentlending.model.Equipment;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.ReservedUnits;
+import com.school.equipmentlending.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
-public class EquipmentService {
+public class EquipmentService implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(EquipmentService.class);
 
     private final EquipmentRepository equipmentRepository;
     private final LoanRepository loanRepository;
+    private final DomainEventOutbox outbox;
+    // catalog reads run read-only (so they can go to a replica); the transaction wraps only the shared
+    // computation, so coalesced waiters do not hold a connection while they wait
+    private final TransactionTemplate readOnlyTx;
 
-    public EquipmentService(EquipmentRepository equipmentRepository, LoanRepository loanRepository) {
+    // identical concurrent catalog reads (e.g. everyone opening the dashboard at 8:00) share one computation
+    private final SingleFlight<CatalogQuery, List<EquipmentDTO>> catalogFlights = new SingleFlight<>();
+    private final LongAdder coalesceTimeouts = new LongAdder();
+
+    @Value("${app.catalog.coalesce.enabled:true}")
+    private boolean coalesceEnabled = true;
+
+    @Value("${app.catalog.coalesce.timeout-ms:2000}")
+    private long coalesceTimeoutMs = 2000;
+
+    public EquipmentService(EquipmentRepository equipmentRepository, LoanRepository loanRepository,
+                            PlatformTransactionManager transactionManager, DomainEventOutbox outbox) {
         this.equipmentRepository = equipmentRepository;
         this.loanRepository = loanRepository;
+        this.outbox = outbox;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
     }
 
     /** Return all equipment DTOs with computed availableUnits. */
     public List<EquipmentDTO> getAllEquipment() {
-        LocalDateTime now = LocalDateTime.now();
-        return equipmentRepository.findAll().stream()
-                .map(e -> toDtoWithAvailability(e, now))
-                .collect(Collectors.toList());
+        return coalesce(CatalogQuery.ALL, () -> {
+            LocalDateTime now = LocalDateTime.now();
+            return toDtosWithAvailability(equipmentRepository.findAll(), now);
+        });
     }
 
     /**
@@ -41,19 +76,28 @@ public class EquipmentService {
      * - available: if true, only return items with availableUnits > 0; if false, only those with availableUnits == 0
      */
     public List<EquipmentDTO> search(String q, String category, Boolean available) {
+        // category matching and text search are case-insensitive, so differently-cased calls can share a result;
+        // the search runs on the normalised key so every caller sharing it gets the same computation
+        CatalogQuery query = CatalogQuery.of(q, category, available);
+        return coalesce(query, () -> doSearch(query));
+    }
+
+    private List<EquipmentDTO> doSearch(CatalogQuery query) {
         LocalDateTime now = LocalDateTime.now();
+        String q = query.q();
+        String category = query.category();
+        Boolean available = query.available();
 
         // Fetch initial list based on category
         List<Equipment> list;
-        if (category != null && !category.isBlank()) {
+        if (category != null) {
             list = equipmentRepository.findByCategoryIgnoreCase(category);
         } else {
             list = equipmentRepository.findAll();
         }
 
         // Convert and filter
-        return list.stream()
-                .map(e -> toDtoWithAvailability(e, now))
+        return toDtosWithAvailability(list, now).stream()
                 .filter(dto -> {
 
                     if (available != null) {
@@ -61,11 +105,10 @@ public class EquipmentService {
                         if (!available && dto.getAvailableUnits() > 0) return false;
                     }
 
-                    if (q != null && !q.isBlank()) {
-                        String query = q.toLowerCase();
-                        return dto.getName().toLowerCase().contains(query)
-                                || (dto.getCategory() != null && dto.getCategory().toLowerCase().contains(query))
-                                || (dto.getName() != null && dto.getName().toLowerCase().contains(query));
+                    if (q != null) {
+                        return dto.getName().toLowerCase().contains(q)
+                                || (dto.getCategory() != null && dto.getCategory().toLowerCase().contains(q))
+                                || (dto.getName() != null && dto.getName().toLowerCase().contains(q));
                     }
 
                     return true;
@@ -78,23 +121,28 @@ public class EquipmentService {
         return search(null, null,true);
     }
 
+    @Transactional(readOnly = true)
     public EquipmentDTO getById(Long id) {
         Equipment e = equipmentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Equipment not found with id " + id));
         return toDtoWithAvailability(e, LocalDateTime.now());
     }
 
+    @Transactional
     public EquipmentDTO createEquipment(EquipmentRequest req) {
         Equipment e = EquipmentMapper.fromRequest(req);
         Equipment saved = equipmentRepository.save(e);
+        outbox.record(new EquipmentChanged(saved.getId(), EquipmentChanged.Change.CREATED));
         return toDtoWithAvailability(saved, LocalDateTime.now());
     }
 
+    @Transactional
     public EquipmentDTO updateEquipment(Long id, EquipmentRequest req) {
         Equipment equipment = equipmentRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Equipment not found with id " + id));
         EquipmentMapper.applyUpdate(equipment, req);
         Equipment saved = equipmentRepository.save(equipment);
+        outbox.record(new EquipmentChanged(id, EquipmentChanged.Change.UPDATED));
         return toDtoWithAvailability(saved, LocalDateTime.now());
     }
 
@@ -102,6 +150,7 @@ public class EquipmentService {
      * Delete equipment only if it exists and no loans reference it.
      * If loans exist, throws IllegalStateException which is mapped to HTTP 409 by the global handler.
      */
+    @Transactional
     public void deleteEquipment(Long id) {
         if (!equipmentRepository.existsById(id)) {
             throw new ResourceNotFoundException("Equipment not found with id " + id);
@@ -115,11 +164,63 @@ public class EquipmentService {
         }
 
         equipmentRepository.deleteById(id);
+        outbox.record(new EquipmentChanged(id, EquipmentChanged.Change.DELETED));
+    }
+
+    /** Collapse ratio and timeouts of the catalog single-flight (bound automatically by Spring Boot). */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("equipment.catalog.calls", catalogFlights, SingleFlight::leaderCount)
+                .tag("role", "leader")
+                .description("Catalog queries that hit the database")
+                .register(registry);
+        FunctionCounter.builder("equipment.catalog.calls", catalogFlights, SingleFlight::followerCount)
+                .tag("role", "follower")
+                .description("Catalog queries served by an identical in-flight query")
+                .register(registry);
+        FunctionCounter.builder("equipment.catalog.coalesce.timeouts", coalesceTimeouts, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("equipment.catalog.coalesce.ratio", this, EquipmentService::collapseRatio)
+                .description("Share of catalog queries that were collapsed into another one")
+                .register(registry);
+    }
+
+    double collapseRatio() {
+        long followers = catalogFlights.followerCount();
+        long total = followers + catalogFlights.leaderCount();
+        return total == 0 ? 0.0 : (double) followers / total;
+    }
+
+    private List<EquipmentDTO> coalesce(CatalogQuery query, Supplier<List<EquipmentDTO>> computation) {
+        Supplier<List<EquipmentDTO>> loader = () -> readOnlyTx.execute(status -> computation.get());
+        if (!coalesceEnabled) return loader.get();
+        try {
+            return catalogFlights.execute(query, loader, Duration.ofMillis(coalesceTimeoutMs));
+        } catch (SingleFlight.FlightTimeoutException ex) {
+            // the shared computation is stuck; do not make every waiter fail with it
+            coalesceTimeouts.increment();
+            logger.warn("Catalog query {} timed out waiting for in-flight call, running it directly", query);
+            return loader.get();
+        }
     }
 
     private EquipmentDTO toDtoWithAvailability(Equipment e, LocalDateTime when) {
+        return toDto(e, loanRepository.sumCurrentlyReserved(e.getId(), when));
+    }
+
+    /** Catalog lists: reserved units of all items come from one grouped query instead of one per item. */
+    private List<EquipmentDTO> toDtosWithAvailability(List<Equipment> list, LocalDateTime when) {
+        if (list.isEmpty()) return new ArrayList<>();
+        Map<Long, Long> reserved = loanRepository.sumCurrentlyReservedByEquipment(
+                        list.stream().map(Equipment::getId).collect(Collectors.toList()), when).stream()
+                .collect(Collectors.toMap(ReservedUnits::equipmentId, ReservedUnits::units));
+        return list.stream()
+                .map(e -> toDto(e, reserved.get(e.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private EquipmentDTO toDto(Equipment e, Long reserved) {
         EquipmentDTO dto = EquipmentMapper.toDTO(e);
-        Long reserved = loanRepository.sumCurrentlyReserved(e.getId(), when);
         int reservedQty = reserved == null ? 0 : reserved.intValue();
         int availableUnits = e.getQuantity() - reservedQty;
         if (availableUnits < 0) availableUnits = 0;
@@ -127,4 +228,18 @@ public class EquipmentService {
         dto.setAvailable(availableUnits > 0);
         return dto;
     }
+
+    /** Normalised catalog query parameters: blank means absent, text is trimmed and lower-cased. */
+    record CatalogQuery(String q, String category, Boolean available) {
+
+        static final CatalogQuery ALL = new CatalogQuery(null, null, null);
+
+        static CatalogQuery of(String q, String category, Boolean available) {
+            return new CatalogQuery(normalise(q), normalise(category), available);
+        }
+
+        private static String normalise(String s) {
+            return s == null || s.isBlank() ? null : s.trim().toLowerCase(Locale.ROOT);
+        }
+    }
 }
@@ -0,0 +1,145 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.model.IdempotencyRecord;
+import com.school.equipmentlending.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for non-idempotent POSTs.
+ * The first request with a key runs the action and, if it succeeds (2xx), its response is stored
+ * for the TTL; replays get that response back without re-running the action. Concurrent duplicates
+ * on this node share one execution (SingleFlight); duplicates on other nodes see the claim and get 409.
+ * Keys are scoped per endpoint and user. Reusing a key with a different body is rejected with 422.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final SingleFlight<String, ResponseEntity<?>> inFlight = new SingleFlight<>();
+
+    public IdempotencyService(IdempotencyStore store,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl:PT24H}") Duration ttl) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Run {@code action} at most once per (scope, username, key).
+     * Without a key the action simply runs.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ResponseEntity<T> execute(String scope, String username, String key, Object request,
+                                         Class<? extends T> responseType, Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String storeKey = scope + "|" + username + "|" + key;
+        String fingerprint = fingerprint(request);
+        // same key with a different body is not collapsed: it goes to the store and is rejected there
+        return (ResponseEntity<T>) inFlight.execute(storeKey + "|" + fingerprint,
+                () -> executeOnce(storeKey, fingerprint, responseType, action));
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        int purged = store.purgeExpired(LocalDateTime.now());
+        if (purged > 0) {
+            logger.debug("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private <T> ResponseEntity<?> executeOnce(String storeKey, String fingerprint, Class<? extends T> responseType,
+                                              Supplier<ResponseEntity<T>> action) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<IdempotencyRecord> existing = store.find(storeKey, now);
+        if (existing.isPresent()) {
+            return replay(existing.get(), fingerprint, responseType);
+        }
+        if (!store.claim(new IdempotencyRecord(storeKey, fingerprint, now, now.plus(ttl)), now)) {
+            return store.find(storeKey, now)
+                    .map(r -> replay(r, fingerprint, responseType))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT,
+                            "A request with this " + HEADER + " is still being processed"));
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error ex) {
+            store.release(storeKey);
+            throw ex;
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            try {
+                String body = response.getBody() == null ? null : objectMapper.writeValueAsString(response.getBody());
+                store.complete(storeKey, response.getStatusCode().value(), body);
+            } catch (JsonProcessingException ex) {
+                logger.warn("Response for idempotency key {} cannot be stored for replay", storeKey, ex);
+                store.release(storeKey);
+            }
+        } else {
+            store.release(storeKey);
+        }
+        return response;
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String fingerprint, Class<?> responseType) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+        }
+        if (!record.isCompleted()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still being processed");
+        }
+        logger.info("Replaying stored response for idempotency key {}", record.getKey());
+        try {
+            Object body = record.getResponseBody() == null ? null
+                    : objectMapper.readValue(record.getResponseBody(), responseType);
+            return ResponseEntity.status(record.getStatusCode()).header(REPLAYED_HEADER, "true").body(body);
+        } catch (JsonProcessingException ex) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Stored response cannot be replayed");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot fingerprint request", ex);
+        }
+    }
+}
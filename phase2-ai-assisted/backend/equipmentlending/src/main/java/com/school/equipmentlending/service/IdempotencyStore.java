@@ -0,0 +1,27 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.IdempotencyRecord;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Storage for Idempotency-Key outcomes. Selected by app.idempotency.store
+ * (memory = single node, jdbc = shared table for several nodes).
+ */
+public interface IdempotencyStore {
+
+    /** Unexpired record for the key, completed or still claimed. */
+    Optional<IdempotencyRecord> find(String key, LocalDateTime now);
+
+    /** Atomically claim the key; false if another request holds or completed it. */
+    boolean claim(IdempotencyRecord claim, LocalDateTime now);
+
+    /** Store the response of a claimed key so that replays can return it. */
+    void complete(String key, int statusCode, String responseBody);
+
+    /** Drop a claim whose request failed, so the client may retry with the same key. */
+    void release(String key);
+
+    int purgeExpired(LocalDateTime now);
+}
@@ -0,0 +1,57 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.IdempotencyRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-local store (default). Entries expire after the configured TTL and are purged periodically.
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final ConcurrentHashMap<String, IdempotencyRecord> records = new ConcurrentHashMap<>();
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key, LocalDateTime now) {
+        IdempotencyRecord r = records.get(key);
+        return r == null || !r.getExpiresAt().isAfter(now) ? Optional.empty() : Optional.of(r);
+    }
+
+    @Override
+    public boolean claim(IdempotencyRecord claim, LocalDateTime now) {
+        IdempotencyRecord winner = records.compute(claim.getKey(),
+                (k, existing) -> existing == null || !existing.getExpiresAt().isAfter(now) ? claim : existing);
+        return winner == claim;
+    }
+
+    @Override
+    public void complete(String key, int statusCode, String responseBody) {
+        records.computeIfPresent(key, (k, r) -> {
+            r.setStatusCode(statusCode);
+            r.setResponseBody(responseBody);
+            return r;
+        });
+    }
+
+    @Override
+    public void release(String key) {
+        records.computeIfPresent(key, (k, r) -> r.isCompleted() ? r : null);
+    }
+
+    @Override
+    public int purgeExpired(LocalDateTime now) {
+        int before = records.size();
+        records.values().removeIf(r -> !r.getExpiresAt().isAfter(now));
+        return before - records.size();
+    }
+
+    int size() {
+        return records.size();
+    }
+}
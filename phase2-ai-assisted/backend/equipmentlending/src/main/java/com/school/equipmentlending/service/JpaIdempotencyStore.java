@@ -0,0 +1,58 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.IdempotencyRecord;
+import com.school.equipmentlending.repository.IdempotencyRecordRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Shared store on the idempotency_keys table, for deployments with more than one node.
+ * The primary key on the idempotency key makes claims atomic across nodes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.idempotency.store", havingValue = "jdbc")
+public class JpaIdempotencyStore implements IdempotencyStore {
+
+    private final IdempotencyRecordRepository repo;
+
+    public JpaIdempotencyStore(IdempotencyRecordRepository repo) {
+        this.repo = repo;
+    }
+
+    @Override
+    public Optional<IdempotencyRecord> find(String key, LocalDateTime now) {
+        return repo.findById(key).filter(r -> r.getExpiresAt().isAfter(now));
+    }
+
+    @Override
+    public boolean claim(IdempotencyRecord claim, LocalDateTime now) {
+        repo.findById(claim.getKey())
+                .filter(r -> !r.getExpiresAt().isAfter(now))
+                .ifPresent(repo::delete);
+        try {
+            repo.saveAndFlush(claim);
+            return true;
+        } catch (DataIntegrityViolationException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void complete(String key, int statusCode, String responseBody) {
+        repo.complete(key, statusCode, responseBody);
+    }
+
+    @Override
+    public void release(String key) {
+        repo.releaseClaim(key);
+    }
+
+    @Override
+    public int purgeExpired(LocalDateTime now) {
+        return repo.deleteExpired(now);
+    }
+}
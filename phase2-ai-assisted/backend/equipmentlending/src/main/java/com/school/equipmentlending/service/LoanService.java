@@ -2,19 +2,34 @@ package com.school.equipmentlending.service;
 
 import com.school.equipmentlending.dto.BorrowRequest;
 import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.LoanReturnResult;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.event.LoanCreated;
+import com.school.equipmentlending.event.LoanReturned;
 import com.school.equipmentlending.exception.BadRequestException;
 import com.school.equipmentlending.exception.ResourceNotFoundException;
 import com.school.equipmentlending.model.*;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.ReservedUnits;
 import com.school.equipmentlending.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,13 +40,19 @@ public class LoanService {
     private final LoanRepository loanRepo;
     private final EquipmentRepository equipmentRepo;
     private final UserRepository userRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DomainEventOutbox outbox;
 
     public LoanService(LoanRepository loanRepo,
                        EquipmentRepository equipmentRepo,
-                       UserRepository userRepo) {
+                       UserRepository userRepo,
+                       ApplicationEventPublisher eventPublisher,
+                       DomainEventOutbox outbox) {
         this.loanRepo = loanRepo;
         this.equipmentRepo = equipmentRepo;
         this.userRepo = userRepo;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox;
     }
 
     /**
@@ -82,6 +103,8 @@ public class LoanService {
         loan.setStatus(LoanStatus.BORROWED);
         Loan saved = loanRepo.save(loan);
         logger.info("Loan created id={} for user={} equipmentId={} qty={}", saved.getId(), username, equipment.getId(), qtyRequested);
+        outbox.record(new LoanCreated(saved.getId(), equipment.getId(), saved.getBorrower().getId(),
+                qtyRequested, now, dueAt));
 
         return toResponse(saved);
     }
@@ -101,46 +124,193 @@ public class LoanService {
             throw new BadRequestException("Only borrower or admin can mark this loan returned");
         }
 
-        if (loan.getReturnedAt() != null) {
-            throw new BadRequestException("Loan already returned");
+        String refusal = returnRefusal(loan);
+        if (refusal != null) {
+            throw new BadRequestException(refusal);
         }
 
         LocalDateTime now = LocalDateTime.now();
-        loan.setReturnedAt(now);
+        LocalDateTime dueAt = loan.getDueAt();
+        boolean overdue = applyReturn(loan, now);
+        loanRepo.save(loan);
+        logger.info("Loan {} marked returned by {}", loanId, username);
+
+        refreshAvailableFlag(loan.getEquipment(), now);
+
+        // an overdue loan resolved late frees the unit from now on; otherwise the rest of its window is freed
+        publishRelease(loan.getEquipment(), now, overdue ? null : dueAt, overdue ? "overdue-resolved" : "returned");
 
-        if (loan.getDueAt() != null && now.isAfter(loan.getDueAt())) {
-            loan.setStatus(LoanStatus.OVERDUE);
-        } else {
-            loan.setStatus(LoanStatus.RETURNED);
+        return toResponse(loan);
+    }
+
+    /**
+     * Return several loans at once (barcode check-in). Same rules as {@link #markLoanReturned} per loan, but
+     * the loans are read with one query and updated with one statement, availability is recomputed once per
+     * distinct equipment and each equipment gets a single capacity release. A loan that cannot be returned
+     * gets its own outcome instead of failing the batch; duplicate ids are reported once.
+     */
+    @Transactional
+    public List<LoanReturnResult> returnLoans(List<Long> loanIds, String username, boolean isAdmin) {
+        List<Long> ids = loanIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        logger.info("User {} returning {} loans (isAdmin={})", username, ids.size(), isAdmin);
+
+        Map<Long, Loan> byId = loanRepo.findByIdIn(ids).stream()
+                .collect(Collectors.toMap(Loan::getId, Function.identity()));
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, LoanReturnResult> results = new LinkedHashMap<>();
+        List<Loan> returning = new ArrayList<>();
+        for (Long id : ids) {
+            Loan loan = byId.get(id);
+            String refusal = loan == null ? null : returnRefusal(loan);
+            if (loan == null) {
+                results.put(id, new LoanReturnResult(id, LoanReturnResult.Outcome.NOT_FOUND, "Loan not found with id " + id));
+            } else if (!isAdmin && (loan.getBorrower() == null || !username.equals(loan.getBorrower().getUsername()))) {
+                results.put(id, new LoanReturnResult(id, LoanReturnResult.Outcome.NOT_ALLOWED,
+                        "Only borrower or admin can mark this loan returned"));
+            } else if (refusal != null) {
+                results.put(id, new LoanReturnResult(id, LoanReturnResult.Outcome.NOT_ACTIVE, refusal));
+            } else {
+                results.put(id, null);   // keeps the caller's order
+                returning.add(loan);
+            }
         }
+        if (returning.isEmpty()) return new ArrayList<>(results.values());
 
-        loanRepo.save(loan);
-        logger.info("Loan {} marked returned by {}", loanId, username);
+        int updated = loanRepo.markReturned(returning.stream().map(Loan::getId).collect(Collectors.toList()), now);
+        if (updated != returning.size()) {
+            // another request returned some of them in between; nothing here is committed, a retry reports them
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Some loans were returned concurrently, please retry");
+        }
 
-        // Update equipment.available flag to reflect current reservations
-        Equipment equipment = loan.getEquipment();
-        Long reservedNow = loanRepo.sumCurrentlyReserved(equipment.getId(), now);
-        int reservedQty = reservedNow == null ? 0 : reservedNow.intValue();
-        boolean avail = (equipment.getQuantity() - reservedQty) > 0;
-        equipment.setAvailable(avail);
-        equipmentRepo.save(equipment);
+        // the loans are detached now: mirror the update for the response without writing them again
+        Map<Long, Equipment> equipments = new LinkedHashMap<>();
+        Map<Long, LocalDateTime> releaseUntil = new LinkedHashMap<>();
+        for (Loan loan : returning) {
+            boolean overdue = loan.getDueAt() != null && now.isAfter(loan.getDueAt());
+            loan.setReturnedAt(now);
+            loan.setStatus(overdue ? LoanStatus.OVERDUE : LoanStatus.RETURNED);
+            LoanReturnResult result = new LoanReturnResult(loan.getId(),
+                    overdue ? LoanReturnResult.Outcome.OVERDUE : LoanReturnResult.Outcome.RETURNED, null);
+            result.setLoan(toResponse(loan));
+            results.put(loan.getId(), result);
+            outbox.record(new LoanReturned(loan.getId(), loan.getEquipment().getId(), loan.getStatus(), now));
+
+            Long equipmentId = loan.getEquipment().getId();
+            equipments.putIfAbsent(equipmentId, loan.getEquipment());
+            // one release per equipment covering all its returned windows; null = open-ended
+            LocalDateTime until = overdue ? null : loan.getDueAt();
+            if (!releaseUntil.containsKey(equipmentId)) {
+                releaseUntil.put(equipmentId, until);
+            } else {
+                LocalDateTime current = releaseUntil.get(equipmentId);
+                releaseUntil.put(equipmentId, current == null || until == null ? null
+                        : (until.isAfter(current) ? until : current));
+            }
+        }
+        logger.info("{} loans returned by {} across {} equipments", returning.size(), username, equipments.size());
+
+        refreshAvailableFlags(equipments.keySet(), now);
+        releaseUntil.forEach((equipmentId, until) ->
+                publishRelease(equipments.get(equipmentId), now, until, "returned"));
 
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Cancel a loan that has not started yet (e.g. an approved booking that is no longer needed).
+     * Only borrower or admin allowed. Its reserved window is released to the waitlist.
+     */
+    @Transactional
+    public LoanResponse cancelLoan(Long loanId, String username, boolean isAdmin) {
+        logger.info("User {} cancelling loan {} (isAdmin={})", username, loanId, isAdmin);
+
+        Loan loan = loanRepo.findById(loanId)
+                .orElseThrow(() -> new ResourceNotFoundException("Loan not found with id " + loanId));
+
+        boolean isBorrower = loan.getBorrower() != null && username.equals(loan.getBorrower().getUsername());
+        if (!isBorrower && !isAdmin) {
+            throw new BadRequestException("Only borrower or admin can cancel this loan");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (loan.getStatus() != LoanStatus.BORROWED || loan.getReturnedAt() != null) {
+            throw new BadRequestException("Only active loans can be cancelled");
+        }
+        if (!loan.getBorrowedAt().isAfter(now)) {
+            throw new BadRequestException("Loan has already started; return it instead");
+        }
+
+        loan.setStatus(LoanStatus.CANCELLED);
+        loanRepo.save(loan);
+        logger.info("Loan {} cancelled by {}", loanId, username);
+
+        publishRelease(loan.getEquipment(), loan.getBorrowedAt(), loan.getDueAt(), "cancelled");
         return toResponse(loan);
     }
 
+    @Transactional(readOnly = true)
     public List<LoanResponse> getLoansForUser(String username) {
         return loanRepo.findByBorrower_Username(username).stream().map(this::toResponse).collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<LoanResponse> getAllLoans() {
         return loanRepo.findAll().stream().map(this::toResponse).collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<LoanResponse> getActiveLoans() {
         return loanRepo.findByStatus(LoanStatus.BORROWED).stream().map(this::toResponse).collect(Collectors.toList());
     }
 
-    private LoanResponse toResponse(Loan loan) {
+    /**
+     * Why a loan cannot be returned, or null when it can. Only an active loan (BORROWED, not yet returned) is
+     * returnable; a cancelled loan never held its units, so returning it would release capacity twice. Shared
+     * by the single, batch and actor return paths, and matches {@link LoanRepository#markReturned}.
+     */
+    static String returnRefusal(Loan loan) {
+        if (loan.getReturnedAt() != null) return "Loan already returned";
+        if (loan.getStatus() != LoanStatus.BORROWED) return "Loan is " + loan.getStatus();
+        return null;
+    }
+
+    /**
+     * Close a loan at {@code now}: RETURNED, or OVERDUE when it is past due, and record the event.
+     * Returns whether it was overdue. Callers have checked that the loan is still active.
+     */
+    boolean applyReturn(Loan loan, LocalDateTime now) {
+        boolean overdue = loan.getDueAt() != null && now.isAfter(loan.getDueAt());
+        loan.setReturnedAt(now);
+        loan.setStatus(overdue ? LoanStatus.OVERDUE : LoanStatus.RETURNED);
+        outbox.record(new LoanReturned(loan.getId(), loan.getEquipment().getId(), loan.getStatus(), now));
+        return overdue;
+    }
+
+    // Update equipment.available flag to reflect current reservations
+    private void refreshAvailableFlag(Equipment equipment, LocalDateTime now) {
+        Long reservedNow = loanRepo.sumCurrentlyReserved(equipment.getId(), now);
+        int reservedQty = reservedNow == null ? 0 : reservedNow.intValue();
+        boolean avail = (equipment.getQuantity() - reservedQty) > 0;
+        equipment.setAvailable(avail);
+        equipmentRepo.save(equipment);
+    }
+
+    // Same as refreshAvailableFlag for many equipments: one grouped sum, and only changed flags are written
+    private void refreshAvailableFlags(Collection<Long> equipmentIds, LocalDateTime now) {
+        Map<Long, Long> reserved = loanRepo.sumCurrentlyReservedByEquipment(equipmentIds, now).stream()
+                .collect(Collectors.toMap(ReservedUnits::equipmentId, ReservedUnits::units));
+        for (Equipment equipment : equipmentRepo.findAllById(equipmentIds)) {
+            long reservedQty = reserved.getOrDefault(equipment.getId(), 0L);
+            equipment.setAvailable(equipment.getQuantity() - reservedQty > 0);
+        }
+    }
+
+    private void publishRelease(Equipment equipment, LocalDateTime from, LocalDateTime until, String reason) {
+        eventPublisher.publishEvent(new CapacityReleasedEvent(equipment.getId(), from, until, reason, Instant.now()));
+    }
+
+    LoanResponse toResponse(Loan loan) {
         LoanResponse r = new LoanResponse();
         r.setId(loan.getId());
         if (loan.getEquipment() != null) {
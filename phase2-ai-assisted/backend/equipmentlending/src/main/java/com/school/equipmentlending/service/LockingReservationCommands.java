@@ -0,0 +1,48 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.dto.BorrowRequest;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default engine: every command is its own transaction in {@link LoanService} / {@link BookingService},
+ * serialized with other writers of the equipment by the database.
+ */
+@Component
+@ConditionalOnProperty(name = "app.reservation.engine", havingValue = "locking", matchIfMissing = true)
+public class LockingReservationCommands implements ReservationCommands {
+
+    private final LoanService loanService;
+    private final BookingService bookingService;
+    private final AvailabilityService availabilityService;
+
+    public LockingReservationCommands(LoanService loanService, BookingService bookingService,
+                                      AvailabilityService availabilityService) {
+        this.loanService = loanService;
+        this.bookingService = bookingService;
+        this.availabilityService = availabilityService;
+    }
+
+    @Override
+    public LoanResponse borrow(String username, BorrowRequest req) {
+        return loanService.borrowNow(username, req);
+    }
+
+    @Override
+    public LoanResponse returnLoan(Long loanId, String username, boolean isAdmin) {
+        return loanService.markLoanReturned(loanId, username, isAdmin);
+    }
+
+    @Override
+    public BookingRequestDTO approve(Long bookingId, String adminUsername, String adminNote) {
+        return bookingService.approveBooking(bookingId, adminUsername, adminNote);
+    }
+
+    @Override
+    public ReservationStateDTO currentState(Long equipmentId) {
+        return availabilityService.currentState(equipmentId);
+    }
+}
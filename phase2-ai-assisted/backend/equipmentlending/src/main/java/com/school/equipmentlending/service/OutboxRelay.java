@@ -0,0 +1,340 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.event.DomainEvent;
+import com.school.equipmentlending.event.DomainEventConsumer;
+import com.school.equipmentlending.event.EventEnvelope;
+import com.school.equipmentlending.model.OutboxEvent;
+import com.school.equipmentlending.repository.OutboxEventRepository;
+import com.school.equipmentlending.util.RingBufferBus;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Moves committed outbox events onto an in-process {@link RingBufferBus} that fans them out to every
+ * {@link DomainEventConsumer}. A single relay thread is the bus's only producer. It takes events handed over
+ * right after their transaction commits, and periodically sweeps the table for events older than the
+ * recovery grace that are still undispatched (a crash, a failed acknowledgement, another node that died).
+ * A row is marked dispatched only once every consumer has passed its sequence without giving up on it, so
+ * delivery is at least once. When a consumer fails a batch on every attempt, the bus still moves on, but the
+ * batch's rows are left undispatched with a delivery failure counted: the sweep relays them again (to every
+ * consumer, which must therefore be idempotent) until they get through or reach {@code dead-letter-after}
+ * failures, when they are dead-lettered and no longer swept.
+ * <p>
+ * Lag: {@code event.bus.lag{consumer}} (events behind the relay), {@code outbox.relay.lag} (age of the oldest
+ * event not yet handled by all consumers) and {@code outbox.delivery.latency{consumer}} (record to handled).
+ */
+@Service
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final long ACK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long RETRY_BACKOFF_MS = 200;
+
+    @SuppressWarnings("unchecked")
+    static final Map<String, Class<? extends DomainEvent>> TYPES = Arrays.stream(DomainEvent.class.getPermittedSubclasses())
+            .collect(Collectors.toMap(Class::getSimpleName, c -> (Class<? extends DomainEvent>) c));
+
+    private final OutboxEventRepository outboxRepo;
+    private final ObjectMapper objectMapper;
+    private final RingBufferBus<EventEnvelope> bus;
+    private final boolean enabled;
+    private final Duration sweepInterval;
+    private final Duration recoveryGrace;
+    private final Duration retention;
+    private final int sweepBatch;
+    private final int maxAttempts;
+    private final int deadLetterAfter;
+
+    private final ConcurrentLinkedQueue<EventEnvelope> committed = new ConcurrentLinkedQueue<>();
+    // outbox ids a consumer gave up on; added before the consumer's sequence passes them
+    private final ConcurrentLinkedQueue<Long> givenUp = new ConcurrentLinkedQueue<>();
+    private final LongAdder relayed = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder unreadable = new LongAdder();
+    private final LongAdder undeliveredCount = new LongAdder();
+
+    // owned by the relay thread
+    private final ArrayDeque<InFlight> inFlight = new ArrayDeque<>();
+    private final Set<Long> inFlightIds = new HashSet<>();
+    private final Set<Long> undelivered = new HashSet<>();
+
+    private volatile Thread relayThread;
+    private volatile boolean running;
+    private volatile boolean sweepRequested = true;
+    private volatile LocalDateTime oldestInFlight;
+
+    public OutboxRelay(OutboxEventRepository outboxRepo,
+                       ObjectMapper objectMapper,
+                       List<DomainEventConsumer> consumers,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.outbox.relay-enabled:true}") boolean enabled,
+                       @Value("${app.outbox.ring-size:1024}") int ringSize,
+                       @Value("${app.outbox.consumer-batch:64}") int consumerBatch,
+                       @Value("${app.outbox.consumer-max-attempts:5}") int maxAttempts,
+                       @Value("${app.outbox.dead-letter-after:10}") int deadLetterAfter,
+                       @Value("${app.outbox.sweep-interval:PT5S}") Duration sweepInterval,
+                       @Value("${app.outbox.sweep-batch:500}") int sweepBatch,
+                       @Value("${app.outbox.recovery-grace:PT30S}") Duration recoveryGrace,
+                       @Value("${app.outbox.retention:PT24H}") Duration retention) {
+        this.outboxRepo = outboxRepo;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.deadLetterAfter = Math.max(1, deadLetterAfter);
+        this.sweepInterval = sweepInterval;
+        this.sweepBatch = sweepBatch;
+        this.recoveryGrace = recoveryGrace;
+        this.retention = retention;
+        this.bus = new RingBufferBus<>("event-bus", ringSize, consumerBatch);
+
+        for (DomainEventConsumer consumer : consumers) {
+            Timer latency = Timer.builder("outbox.delivery.latency").tag("consumer", consumer.name())
+                    .description("Time from recording a domain event to its consumer handling it")
+                    .register(meterRegistry);
+            bus.subscribe(consumer.name(), batch -> deliver(consumer, batch, latency));
+            Gauge.builder("event.bus.lag", bus, b -> b.lag(consumer.name())).tag("consumer", consumer.name())
+                    .description("Events published on the bus the consumer has not handled yet")
+                    .register(meterRegistry);
+            FunctionCounter.builder("outbox.delivery.failures", bus, b -> b.failures(consumer.name()))
+                    .tag("consumer", consumer.name())
+                    .description("Event batches the consumer failed on every attempt, left for redelivery")
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("outbox.events", relayed, LongAdder::sum).tag("state", "relayed")
+                .description("Outbox events by relay stage").register(meterRegistry);
+        FunctionCounter.builder("outbox.events", dispatched, LongAdder::sum).tag("state", "dispatched")
+                .description("Outbox events by relay stage").register(meterRegistry);
+        FunctionCounter.builder("outbox.events", unreadable, LongAdder::sum).tag("state", "unreadable")
+                .description("Outbox events by relay stage").register(meterRegistry);
+        FunctionCounter.builder("outbox.events", undeliveredCount, LongAdder::sum).tag("state", "undelivered")
+                .description("Outbox events by relay stage").register(meterRegistry);
+        Gauge.builder("outbox.relay.lag", this, OutboxRelay::lagSeconds).baseUnit("seconds")
+                .description("Age of the oldest relayed event not yet handled by every consumer")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || running) return;
+        running = true;
+        bus.start();
+        Thread thread = new Thread(this::run, "outbox-relay");
+        thread.setDaemon(true);
+        relayThread = thread;
+        thread.start();
+        logger.info("Outbox relay started: consumers={} ring={}", bus.consumers(), bus.capacity());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) return;
+        running = false;
+        Thread thread = relayThread;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        bus.stop(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /** Events whose transaction just committed (called by {@link DomainEventOutbox}). */
+    void committed(List<EventEnvelope> events) {
+        if (!enabled || events.isEmpty()) return;
+        committed.addAll(events);
+        wakeUp();
+    }
+
+    /** Run a recovery sweep now instead of at the next interval. */
+    public void requestSweep() {
+        sweepRequested = true;
+        wakeUp();
+    }
+
+    /** True when no committed event is waiting to be relayed or acknowledged. */
+    public boolean isIdle() {
+        return committed.isEmpty() && oldestInFlight == null && !sweepRequested;
+    }
+
+    /** Delete dispatched rows older than the retention. */
+    @Scheduled(fixedDelayString = "${app.outbox.purge-interval-ms:600000}")
+    public void purgeDispatched() {
+        int deleted = outboxRepo.deleteDispatchedBefore(LocalDateTime.now().minus(retention));
+        if (deleted > 0) logger.info("Purged {} dispatched outbox events", deleted);
+    }
+
+    private void run() {
+        long nextSweep = System.nanoTime();
+        while (running) {
+            try {
+                relayCommitted();
+                acknowledge();
+                if (sweepRequested || System.nanoTime() - nextSweep >= 0) {
+                    sweepRequested = false;
+                    nextSweep = System.nanoTime() + sweepInterval.toNanos();
+                    sweep();
+                }
+            } catch (RuntimeException ex) {
+                // e.g. the database is unavailable: unacknowledged rows stay undispatched for a later sweep
+                logger.error("Outbox relay pass failed", ex);
+            }
+            if (!committed.isEmpty() || sweepRequested) continue;
+            long untilSweep = Math.max(nextSweep - System.nanoTime(), ACK_INTERVAL_NANOS);
+            LockSupport.parkNanos(this, inFlight.isEmpty() ? untilSweep : ACK_INTERVAL_NANOS);
+        }
+    }
+
+    private void relayCommitted() {
+        EventEnvelope envelope;
+        while ((envelope = committed.poll()) != null) {
+            publish(envelope);
+        }
+    }
+
+    private void sweep() {
+        LocalDateTime before = LocalDateTime.now().minus(recoveryGrace);
+        long afterId = 0;
+        int recovered = 0;
+        while (running) {
+            List<OutboxEvent> page = outboxRepo.findUndispatched(afterId, before, PageRequest.of(0, sweepBatch));
+            List<Long> broken = new ArrayList<>();
+            for (OutboxEvent row : page) {
+                afterId = row.getId();
+                DomainEvent event = read(row);
+                if (event == null) {
+                    broken.add(row.getId());
+                } else if (publish(new EventEnvelope(row.getId(), row.getCreatedAt(), event))) {
+                    recovered++;
+                }
+            }
+            if (!broken.isEmpty()) {
+                // never deliverable: do not sweep them forever
+                outboxRepo.markDispatched(broken, LocalDateTime.now());
+            }
+            acknowledge();
+            if (page.size() < sweepBatch) break;
+        }
+        if (recovered > 0) logger.info("Outbox sweep relayed {} undispatched events", recovered);
+    }
+
+    private boolean publish(EventEnvelope envelope) {
+        if (!inFlightIds.add(envelope.outboxId())) return false;   // already on the bus
+        long sequence = bus.publish(envelope);
+        inFlight.add(new InFlight(sequence, envelope.outboxId(), envelope.recordedAt()));
+        if (oldestInFlight == null) oldestInFlight = envelope.recordedAt();
+        relayed.increment();
+        return true;
+    }
+
+    private void acknowledge() {
+        long consumed = bus.consumed();
+        // read after consumed: every give-up for a sequence up to it is in the queue by now
+        Long failed;
+        while ((failed = givenUp.poll()) != null) {
+            undelivered.add(failed);
+        }
+        List<Long> ids = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        while (!inFlight.isEmpty() && inFlight.peek().sequence() <= consumed) {
+            InFlight done = inFlight.poll();
+            inFlightIds.remove(done.outboxId());
+            (undelivered.remove(done.outboxId()) ? failedIds : ids).add(done.outboxId());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!failedIds.isEmpty()) {
+            // not dispatched: the sweep relays them again unless this was their last chance
+            for (int from = 0; from < failedIds.size(); from += sweepBatch) {
+                outboxRepo.recordDeliveryFailure(failedIds.subList(from, Math.min(failedIds.size(), from + sweepBatch)),
+                        deadLetterAfter, now);
+            }
+            undeliveredCount.add(failedIds.size());
+            logger.warn("{} outbox events left undispatched after a consumer gave up on them (dead-lettered after {} failures)",
+                    failedIds.size(), deadLetterAfter);
+        }
+        if (!ids.isEmpty()) {
+            for (int from = 0; from < ids.size(); from += sweepBatch) {
+                outboxRepo.markDispatched(ids.subList(from, Math.min(ids.size(), from + sweepBatch)), now);
+            }
+            dispatched.add(ids.size());
+        }
+        // only now: isIdle must not report true while acknowledged rows are still undispatched in the table
+        oldestInFlight = inFlight.isEmpty() ? null : inFlight.peek().recordedAt();
+    }
+
+    private DomainEvent read(OutboxEvent row) {
+        Class<? extends DomainEvent> type = TYPES.get(row.getType());
+        try {
+            if (type == null) throw new IllegalArgumentException("unknown event type");
+            return objectMapper.readValue(row.getPayload(), type);
+        } catch (Exception ex) {
+            unreadable.increment();
+            logger.error("Outbox event {} ({}) cannot be read and is dropped: {}", row.getId(), row.getType(), ex.getMessage());
+            return null;
+        }
+    }
+
+    private void deliver(DomainEventConsumer consumer, List<EventEnvelope> batch, Timer latency) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                consumer.onEvents(batch);
+                break;
+            } catch (Exception ex) {
+                if (attempt >= maxAttempts) {
+                    for (EventEnvelope envelope : batch) {
+                        givenUp.add(envelope.outboxId());
+                    }
+                    throw ex;
+                }
+                logger.warn("Consumer {} failed on {} events (attempt {}), retrying: {}",
+                        consumer.name(), batch.size(), attempt, ex.getMessage());
+                Thread.sleep(RETRY_BACKOFF_MS * attempt);
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (EventEnvelope envelope : batch) {
+            latency.record(Duration.between(envelope.recordedAt(), now));
+        }
+    }
+
+    private double lagSeconds() {
+        LocalDateTime oldest = oldestInFlight;
+        return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+
+    private void wakeUp() {
+        Thread thread = relayThread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private record InFlight(long sequence, Long outboxId, LocalDateTime recordedAt) {
+    }
+}
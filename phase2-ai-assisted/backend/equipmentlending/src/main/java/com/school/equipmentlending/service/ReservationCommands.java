@@ -0,0 +1,23 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.dto.BorrowRequest;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+
+/**
+ * Reservation writes of the borrow, return and approve endpoints. Selected by app.reservation.engine
+ * (locking = one transaction per request under the database's locks, actor = one in-memory writer per
+ * equipment, single node only). Both give the same outcomes and error statuses.
+ */
+public interface ReservationCommands {
+
+    LoanResponse borrow(String username, BorrowRequest req);
+
+    LoanResponse returnLoan(Long loanId, String username, boolean isAdmin);
+
+    BookingRequestDTO approve(Long bookingId, String adminUsername, String adminNote);
+
+    /** Units of the equipment reserved right now. */
+    ReservationStateDTO currentState(Long equipmentId);
+}
@@ -0,0 +1,122 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AvailableSlotDTO;
+import com.school.equipmentlending.repository.ReservationInterval;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Step function of reserved units over time for a single equipment.
+ * Stored as a sorted map of deltas (+qty at a loan's start, -qty at its due date);
+ * open-ended loans (dueAt == null) never release their units.
+ * Not thread-safe: build one per request / transaction.
+ */
+public class ReservationProfile {
+
+    private final int capacity;
+    private final TreeMap<LocalDateTime, Integer> deltas = new TreeMap<>();
+
+    public ReservationProfile(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public static ReservationProfile of(int capacity, Collection<ReservationInterval> reservations) {
+        ReservationProfile profile = new ReservationProfile(capacity);
+        for (ReservationInterval r : reservations) {
+            profile.reserve(r.borrowedAt(), r.dueAt(), r.quantity());
+        }
+        return profile;
+    }
+
+    public int getCapacity() { return capacity; }
+
+    /** Add a reservation of qty units over [start, end); end == null means open-ended. */
+    public void reserve(LocalDateTime start, LocalDateTime end, int qty) {
+        if (qty == 0 || (end != null && !end.isAfter(start))) return;
+        addDelta(start, qty);
+        if (end != null) addDelta(end, -qty);
+    }
+
+    /** Highest number of units reserved at any instant of [start, end). */
+    public int maxReserved(LocalDateTime start, LocalDateTime end) {
+        int level = levelAt(start);
+        int max = level;
+        for (int delta : deltas.subMap(start, false, end, false).values()) {
+            level += delta;
+            if (level > max) max = level;
+        }
+        return max;
+    }
+
+    /** Units still free for the whole window [start, end). */
+    public int availableUnits(LocalDateTime start, LocalDateTime end) {
+        return capacity - maxReserved(start, end);
+    }
+
+    /**
+     * Gap scan: walk the step function once from {@code from} and return the first {@code limit}
+     * free gaps that can hold {@code quantity} units for {@code duration}.
+     * Each slot starts at the beginning of its gap.
+     */
+    public List<AvailableSlotDTO> findSlots(LocalDateTime from, Duration duration, int quantity, int limit) {
+        List<AvailableSlotDTO> slots = new ArrayList<>();
+        int maxLevel = capacity - quantity; // highest reserved level that still leaves room
+        if (maxLevel < 0 || limit <= 0) return slots;
+
+        int level = levelAt(from);
+        LocalDateTime gapStart = level <= maxLevel ? from : null;
+        int gapPeak = level;
+
+        for (Map.Entry<LocalDateTime, Integer> e : deltas.tailMap(from, false).entrySet()) {
+            LocalDateTime t = e.getKey();
+            int next = level + e.getValue();
+
+            if (gapStart != null && next > maxLevel) {
+                // gap [gapStart, t) ends here
+                if (!gapStart.plus(duration).isAfter(t)) {
+                    slots.add(new AvailableSlotDTO(gapStart, gapStart.plus(duration), t, capacity - gapPeak));
+                    if (slots.size() >= limit) return slots;
+                }
+                gapStart = null;
+            } else if (gapStart == null && next <= maxLevel) {
+                gapStart = t;
+                gapPeak = next;
+            } else if (gapStart != null && next > gapPeak) {
+                gapPeak = next;
+            }
+            level = next;
+        }
+
+        if (gapStart != null) {
+            slots.add(new AvailableSlotDTO(gapStart, gapStart.plus(duration), null, capacity - gapPeak));
+        }
+        return slots;
+    }
+
+    /** First window from {@code from} that fits, or null. */
+    public AvailableSlotDTO nextSlot(LocalDateTime from, Duration duration, int quantity) {
+        List<AvailableSlotDTO> slots = findSlots(from, duration, quantity, 1);
+        return slots.isEmpty() ? null : slots.get(0);
+    }
+
+    private int levelAt(LocalDateTime t) {
+        int level = 0;
+        for (int delta : deltas.headMap(t, true).values()) {
+            level += delta;
+        }
+        return level;
+    }
+
+    private void addDelta(LocalDateTime at, int delta) {
+        deltas.merge(at, delta, (a, b) -> {
+            int sum = a + b;
+            return sum == 0 ? null : sum;
+        });
+    }
+}
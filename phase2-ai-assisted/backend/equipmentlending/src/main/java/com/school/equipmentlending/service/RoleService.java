@@ -0,0 +1,185 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BulkRoleRequest;
+import com.school.equipmentlending.dto.BulkRoleResult;
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.model.User;
+import com.school.equipmentlending.repository.RoleRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Role grants in bulk (POST /api/admin/roles/bulk). A grant or revoke for any number of users is one
+ * set-based INSERT ... SELECT or DELETE on user_roles, instead of loading and saving each user.
+ * Role ids are cached here (roles are never renamed or deleted); a missing role is created once even when
+ * several admins grant it at the same moment, relying on the unique role name.
+ * The SQL bypasses Hibernate, so the cached User.roles of the affected users (their authorities, read by
+ * JwtAuthFilter on every request) are evicted once the change commits.
+ */
+@Service
+public class RoleService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleService.class);
+
+    static final String USER_ROLES = User.class.getName() + ".roles";
+
+    private final RoleRepository roleRepository;
+    private final NamedParameterJdbcTemplate jdbc;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate newTx;
+    private final int maxUsernames;
+    private final Map<String, Long> roleIds = new ConcurrentHashMap<>();
+
+    public RoleService(RoleRepository roleRepository,
+                       NamedParameterJdbcTemplate jdbc,
+                       EntityManagerFactory entityManagerFactory,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${app.admin.bulk-roles.max-usernames:5000}") int maxUsernames) {
+        this.roleRepository = roleRepository;
+        this.jdbc = jdbc;
+        this.entityManagerFactory = entityManagerFactory;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.newTx = new TransactionTemplate(transactionManager);
+        this.newTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxUsernames = maxUsernames;
+    }
+
+    public BulkRoleResult apply(BulkRoleRequest request) {
+        Set<String> usernames = new LinkedHashSet<>();
+        for (String username : request.getUsernames()) {
+            if (username != null && !username.isBlank()) usernames.add(username.trim());
+        }
+        if (usernames.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "usernames are required");
+        }
+        if (usernames.size() > maxUsernames) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + maxUsernames + " usernames per request, got " + usernames.size());
+        }
+        String roleName = canonicalName(request.getRole());
+        boolean grant = request.getAction() == BulkRoleRequest.Action.GRANT;
+
+        BulkRoleResult result = new BulkRoleResult();
+        result.setAction(request.getAction());
+        result.setRole(roleName);
+        result.setRequested(usernames.size());
+
+        // revoking a role nobody can hold is a no-op, not a reason to create it
+        Optional<Long> roleId = grant ? Optional.of(resolveOrCreate(roleName)) : resolve(roleName);
+        Map<String, Long> userIds = tx.execute(status -> {
+            Map<String, Long> ids = userIds(usernames);
+            if (!ids.isEmpty() && roleId.isPresent()) {
+                int changed = grant ? grant(roleId.get(), ids.values()) : revoke(roleId.get(), ids.values());
+                result.setChanged(changed);
+                evictAuthoritiesAfterCommit(ids.values());
+            }
+            return ids;
+        });
+        result.setMatched(userIds.size());
+        for (String username : usernames) {
+            if (!userIds.containsKey(username)) result.getUnknownUsernames().add(username);
+        }
+        logger.info("Bulk {} of {}: {} requested, {} matched, {} changed", request.getAction(), roleName,
+                result.getRequested(), result.getMatched(), result.getChanged());
+        return result;
+    }
+
+    /** "admin", "ROLE_ADMIN" and "role_admin" all name ROLE_ADMIN; blank means ROLE_USER. */
+    public static String canonicalName(String value) {
+        if (value == null || value.isBlank()) return "ROLE_USER";
+        String name = value.trim().toUpperCase(Locale.ROOT);
+        return name.startsWith("ROLE_") ? name : "ROLE_" + name;
+    }
+
+    private Map<String, Long> userIds(Set<String> usernames) {
+        Map<String, Long> ids = new HashMap<>();
+        jdbc.query("select id, username from users where username in (:usernames)",
+                Map.of("usernames", usernames),
+                (ResultSet rs) -> {
+                    ids.put(rs.getString("username"), rs.getLong("id"));
+                });
+        return ids;
+    }
+
+    private int grant(Long roleId, Collection<Long> userIds) {
+        return jdbc.update("insert into user_roles (user_id, role_id) select u.id, :roleId from users u"
+                        + " where u.id in (:userIds) and not exists"
+                        + " (select 1 from user_roles ur where ur.user_id = u.id and ur.role_id = :roleId)",
+                Map.of("roleId", roleId, "userIds", userIds));
+    }
+
+    private int revoke(Long roleId, Collection<Long> userIds) {
+        return jdbc.update("delete from user_roles where role_id = :roleId and user_id in (:userIds)",
+                Map.of("roleId", roleId, "userIds", userIds));
+    }
+
+    private void evictAuthoritiesAfterCommit(Collection<Long> userIds) {
+        List<Long> owners = new ArrayList<>(userIds);
+        Runnable evict = () -> {
+            Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+            owners.forEach(id -> cache.evictCollectionData(USER_ROLES, id));
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();   // not before: a concurrent read could cache the old roles again until then
+            }
+        });
+    }
+
+    private Optional<Long> resolve(String name) {
+        Long id = roleIds.get(name);
+        if (id != null) return Optional.of(id);
+        Optional<Long> found = roleRepository.findByName(name).map(Role::getId);
+        found.ifPresent(roleId -> roleIds.put(name, roleId));
+        return found;
+    }
+
+    private Long resolveOrCreate(String name) {
+        return resolve(name).orElseGet(() -> {
+            try {
+                Long id = newTx.execute(status -> {
+                    Role role = new Role();
+                    role.setName(name);
+                    return roleRepository.save(role).getId();
+                });
+                logger.info("Created role {}", name);
+                roleIds.put(name, id);
+                return id;
+            } catch (DataIntegrityViolationException ex) {
+                // created concurrently: the unique name let exactly one insert win
+                return resolve(name).orElseThrow(() -> ex);
+            }
+        });
+    }
+}
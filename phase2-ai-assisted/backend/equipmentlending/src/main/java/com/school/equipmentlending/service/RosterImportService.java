@@ -0,0 +1,438 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.ImportRowError;
+import com.school.equipmentlending.dto.RosterImportResult;
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.model.User;
+import com.school.equipmentlending.repository.RoleRepository;
+import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.security.CostUpgradingPasswordEncoder;
+import com.school.equipmentlending.security.PasswordPolicy;
+import com.school.equipmentlending.util.CsvRecordReader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bulk roster import (POST /api/admin/users/import) from a CSV stream with the columns username, password
+ * and optionally role (default ROLE_USER). Only roles on the app.roster-import.roles allow-list that exist are
+ * accepted; ROLE_ADMIN can never be granted this way. Passwords must meet the signup {@link PasswordPolicy}.
+ * The request thread reads and validates the upload a chunk at a time and hands the chunks to a single
+ * writer over a bounded queue. Per chunk the writer runs one IN query for the usernames already taken (those
+ * rows are skipped, not overwritten), hashes the remaining passwords in parallel on a fork-join pool of half
+ * the cores by default (the rest keep serving logins and requests), and inserts the users and their user_roles rows in one transaction as JDBC batches.
+ * Hashing uses its own BCrypt encoder at app.security.bcrypt.strength rather than the bounded login pool,
+ * so an import never queues logins behind it or trips that pool's 429. Committed chunks stay committed if
+ * the upload breaks off. One import runs at a time; its progress is readable while it runs.
+ */
+@Service
+public class RosterImportService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RosterImportService.class);
+
+    static final List<String> CSV_COLUMNS = List.of("username", "password", "role");
+    static final String DEFAULT_ROLE = "ROLE_USER";
+    static final String ADMIN_ROLE = "ROLE_ADMIN";
+    private static final int MAX_USERNAME_LENGTH = 255;
+    private static final long POLL_MS = 100;
+
+    /** An upload row: valid (username, password and role set) or rejected with an error. */
+    private record RosterRow(long line, String username, String password, Role role, String error) {
+    }
+
+    private static final List<RosterRow> END = List.of();
+
+    private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final TransactionTemplate tx;
+    private final PasswordEncoder hasher;
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final int maxErrors;
+    private final Set<String> allowedRoles;
+    private final ForkJoinPool hashingPool;
+    private final ExecutorService writer;
+    private final ReentrantLock running = new ReentrantLock();
+    private final AtomicReference<RosterImportResult> latest = new AtomicReference<>();
+
+    private final LongAdder createdUsers = new LongAdder();
+    private final LongAdder skippedUsers = new LongAdder();
+    private final LongAdder rejectedUsers = new LongAdder();
+
+    public RosterImportService(UserRepository userRepository,
+                               RoleRepository roleRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.security.bcrypt.strength:10}") int strength,
+                               @Value("${app.roster-import.hash-threads:0}") int hashThreads,
+                               @Value("${app.roster-import.chunk-size:500}") int chunkSize,
+                               @Value("${app.roster-import.queue-capacity:4}") int queueCapacity,
+                               @Value("${app.roster-import.max-errors:1000}") int maxErrors,
+                               @Value("${app.roster-import.roles:ROLE_USER,ROLE_STAFF,ROLE_TEACHER}") List<String> roles) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.hasher = new CostUpgradingPasswordEncoder(strength);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxErrors = maxErrors;
+        this.allowedRoles = new HashSet<>();
+        for (String role : roles) {
+            if (role == null || role.isBlank()) continue;
+            String name = RoleService.canonicalName(role);
+            if (ADMIN_ROLE.equals(name)) {
+                throw new IllegalArgumentException("app.roster-import.roles must not include " + ADMIN_ROLE);
+            }
+            allowedRoles.add(name);
+        }
+        allowedRoles.add(DEFAULT_ROLE);
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashingPool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("roster-hash-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "roster-import-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Import a roster; blocks until every row is created, skipped or rejected. */
+    public RosterImportResult importRoster(InputStream upload) {
+        if (!running.tryLock()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Another roster import is running");
+        }
+        try {
+            return new ImportRun().run(upload);
+        } finally {
+            running.unlock();
+        }
+    }
+
+    /** The running import's progress, or the last import's result; empty before the first import. */
+    public Optional<RosterImportResult> progress() {
+        return Optional.ofNullable(latest.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("roster.import.users", createdUsers, LongAdder::sum).tag("outcome", "created")
+                .description("Rows processed by bulk roster imports").register(registry);
+        FunctionCounter.builder("roster.import.users", skippedUsers, LongAdder::sum).tag("outcome", "skipped")
+                .description("Rows processed by bulk roster imports").register(registry);
+        FunctionCounter.builder("roster.import.users", rejectedUsers, LongAdder::sum).tag("outcome", "rejected")
+                .description("Rows processed by bulk roster imports").register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+        hashingPool.shutdownNow();
+    }
+
+    /**
+     * State of one import. The reader owns the header, role and duplicate lookups; the writer owns the
+     * result, and the progress endpoint reads snapshots of it.
+     */
+    private final class ImportRun {
+        private final BlockingQueue<List<RosterRow>> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        private final RosterImportResult result = new RosterImportResult();
+        private final Set<String> seen = new HashSet<>();   // usernames earlier in the upload
+        private final Map<String, Optional<Role>> roles = new HashMap<>();
+        private volatile boolean aborted;
+        private Map<String, Integer> columns;
+        private long rowsRead;
+        private long start;
+        private long hashingNanos;
+
+        RosterImportResult run(InputStream upload) {
+            start = System.nanoTime();
+            result.setRunning(true);
+            result.setStartedAt(Instant.now());
+            publish();
+            Future<?> writing = writer.submit(this::writeLoop);
+            try {
+                read(upload);
+                writing.get();
+            } catch (IOException ex) {
+                abort(writing);
+                logger.warn("Roster import aborted after {} rows: upload broke off", rowsRead, ex);
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Upload broke off after " + rowsRead + " rows; committed users were kept");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException failure) throw failure;
+                throw new IllegalStateException("Roster import writer failed", ex.getCause());
+            } catch (InterruptedException ex) {
+                abort(writing);
+                Thread.currentThread().interrupt();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Roster import interrupted");
+            } catch (RuntimeException ex) {
+                Throwable writerFailure = abort(writing);
+                // the reader stopped because the writer failed: report the writer's error
+                if (ex instanceof CancellationException && writerFailure instanceof RuntimeException failure) {
+                    throw failure;
+                }
+                throw ex;
+            } finally {
+                result.setRunning(false);
+                publish();
+            }
+            logger.info("Roster import: {} rows, {} created, {} skipped, {} rejected in {} ms ({} hashing, {} users/s)",
+                    result.getRows(), result.getCreated(), result.getSkipped(), result.getRejected(),
+                    result.getElapsedMs(), result.getHashingMs(), Math.round(result.getUsersPerSecond()));
+            return result;
+        }
+
+        /** Stops the writer and waits for it, so the result is final; returns what the writer failed with. */
+        private Throwable abort(Future<?> writing) {
+            aborted = true;
+            try {
+                writing.get();   // polls the abort flag between chunks, so it stops promptly
+                return null;
+            } catch (ExecutionException ex) {
+                return ex.getCause();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                writing.cancel(true);
+                return null;
+            }
+        }
+
+        // ---------- read + validate (request thread) ----------
+
+        private void read(InputStream upload) throws IOException, InterruptedException {
+            CsvRecordReader reader = new CsvRecordReader(upload, true);
+            List<RosterRow> chunk = new ArrayList<>(chunkSize);
+            String record;
+            while ((record = reader.next()) != null) {
+                if (columns == null) {
+                    columns = header(record);
+                    continue;
+                }
+                rowsRead++;
+                chunk.add(parse(reader.line(), CsvRecordReader.split(record)));
+                if (chunk.size() == chunkSize) {
+                    put(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) put(chunk);
+            put(END);
+        }
+
+        private Map<String, Integer> header(String line) {
+            Map<String, Integer> index = new HashMap<>();
+            List<String> names = CsvRecordReader.split(line);
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+                if (CSV_COLUMNS.contains(name)) index.putIfAbsent(name, i);
+            }
+            if (!index.containsKey("username") || !index.containsKey("password")) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "CSV header must name the columns; username and password are required, known columns: "
+                                + String.join(",", CSV_COLUMNS));
+            }
+            return index;
+        }
+
+        private RosterRow parse(long line, List<String> fields) {
+            String username = column(fields, "username");
+            String password = column(fields, "password");
+            if (username == null) return rejected(line, "username is required");
+            if (username.length() > MAX_USERNAME_LENGTH) {
+                return rejected(line, "username must be at most " + MAX_USERNAME_LENGTH + " characters");
+            }
+            String passwordViolation = PasswordPolicy.violation(password);
+            if (passwordViolation != null) return rejected(line, passwordViolation);
+            String roleName = RoleService.canonicalName(column(fields, "role"));
+            if (!allowedRoles.contains(roleName)) {
+                return rejected(line, "role " + roleName + " cannot be granted by a roster import");
+            }
+            Optional<Role> role = roles.computeIfAbsent(roleName, this::findRole);
+            if (role.isEmpty()) return rejected(line, "unknown role " + roleName);
+            if (!seen.add(username)) return rejected(line, "username " + username + " appears earlier in the upload");
+            return new RosterRow(line, username, password, role.get(), null);
+        }
+
+        private RosterRow rejected(long line, String error) {
+            return new RosterRow(line, null, null, null, error);
+        }
+
+        private String column(List<String> fields, String name) {
+            Integer i = columns.get(name);
+            if (i == null || i >= fields.size()) return null;
+            String value = fields.get(i);
+            return value.isBlank() ? null : value.trim();
+        }
+
+        private Optional<Role> findRole(String name) {
+            Optional<Role> role = roleRepository.findByName(name);
+            if (role.isEmpty() && DEFAULT_ROLE.equals(name)) {
+                Role r = new Role();
+                r.setName(DEFAULT_ROLE);
+                return Optional.of(roleRepository.save(r));
+            }
+            return role;
+        }
+
+        private void put(List<RosterRow> chunk) throws InterruptedException {
+            while (!chunks.offer(chunk, POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (aborted) throw new CancellationException("Roster import aborted");
+            }
+        }
+
+        // ---------- check, hash, insert (writer) ----------
+
+        private void writeLoop() {
+            try {
+                List<RosterRow> chunk;
+                while (!aborted && (chunk = take()) != END) {
+                    write(chunk);
+                    publish();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                aborted = true;   // stops the reader at its next put
+                throw ex;
+            }
+        }
+
+        private List<RosterRow> take() throws InterruptedException {
+            List<RosterRow> chunk;
+            while ((chunk = chunks.poll(POLL_MS, TimeUnit.MILLISECONDS)) == null) {
+                if (aborted) throw new CancellationException("Roster import aborted");
+            }
+            return chunk;
+        }
+
+        private void write(List<RosterRow> chunk) {
+            result.setRows(result.getRows() + chunk.size());
+            List<RosterRow> valid = new ArrayList<>(chunk.size());
+            for (RosterRow row : chunk) {
+                if (row.error() != null) reject(row.line(), row.error());
+                else valid.add(row);
+            }
+            if (valid.isEmpty()) return;
+            List<RosterRow> fresh = withoutExisting(valid);
+            if (fresh.isEmpty()) return;
+            List<User> users = hash(fresh);
+            try {
+                save(users);
+            } catch (DataIntegrityViolationException ex) {
+                // a username was taken between the check and the insert: check again and retry the rest once
+                List<RosterRow> retry = withoutExisting(fresh);
+                Set<String> retained = new HashSet<>();
+                retry.forEach(row -> retained.add(row.username()));
+                List<User> remaining = users.stream().filter(u -> retained.contains(u.getUsername())).toList();
+                remaining.forEach(u -> u.setId(null));   // ids of the rolled-back insert; persist them afresh
+                try {
+                    if (!remaining.isEmpty()) save(remaining);
+                } catch (RuntimeException again) {
+                    logger.warn("Roster import: chunk starting at line {} not saved", retry.get(0).line(), again);
+                    for (RosterRow row : retry) reject(row.line(), "not saved: " + again.getMessage());
+                }
+            }
+        }
+
+        /** The rows whose usernames are still free, in one query; the others are counted as skipped. */
+        private List<RosterRow> withoutExisting(List<RosterRow> rows) {
+            Set<String> taken = new HashSet<>(userRepository.findExistingUsernames(
+                    rows.stream().map(RosterRow::username).toList()));
+            if (taken.isEmpty()) return rows;
+            List<RosterRow> fresh = new ArrayList<>(rows.size());
+            for (RosterRow row : rows) {
+                if (!taken.contains(row.username())) {
+                    fresh.add(row);
+                    continue;
+                }
+                result.setSkipped(result.getSkipped() + 1);
+                skippedUsers.increment();
+                error(row.line(), "username " + row.username() + " already exists; skipped");
+            }
+            return fresh;
+        }
+
+        private List<User> hash(List<RosterRow> rows) {
+            long hashStart = System.nanoTime();
+            try {
+                return hashingPool.submit(() -> rows.parallelStream().map(row -> {
+                    User user = new User();
+                    user.setUsername(row.username());
+                    user.setPassword(hasher.encode(row.password()));
+                    user.setRoles(Set.of(row.role()));
+                    return user;
+                }).toList()).join();
+            } finally {
+                hashingNanos += System.nanoTime() - hashStart;
+            }
+        }
+
+        private void save(List<User> users) {
+            tx.executeWithoutResult(status -> userRepository.saveAll(users));
+            result.setCreated(result.getCreated() + users.size());
+            createdUsers.add(users.size());
+        }
+
+        private void reject(long line, String message) {
+            result.setRejected(result.getRejected() + 1);
+            rejectedUsers.increment();
+            error(line, message);
+        }
+
+        private void error(long line, String message) {
+            if (result.getErrors().size() < maxErrors) {
+                result.getErrors().add(new ImportRowError(line, message));
+            } else {
+                result.setErrorsTruncated(true);
+            }
+        }
+
+        /** Publishes a snapshot; called by the writer after each chunk and by the request thread at start and end. */
+        private void publish() {
+            long elapsed = System.nanoTime() - start;
+            result.setElapsedMs(TimeUnit.NANOSECONDS.toMillis(elapsed));
+            result.setHashingMs(TimeUnit.NANOSECONDS.toMillis(hashingNanos));
+            result.setUsersPerSecond(elapsed == 0 ? 0 : result.getCreated() / (elapsed / 1e9));
+            latest.set(result.snapshot());
+        }
+    }
+}
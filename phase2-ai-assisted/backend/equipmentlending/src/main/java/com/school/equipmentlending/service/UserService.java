@@ -2,13 +2,15 @@ package com.school.equipmentlending.service;
 
 import com.school.equipmentlending.controller.EquipmentController;
 import com.school.equipmentlending.dto.SignupRequest;
+import com.school.equipmentlending.exception.BadRequestException;
 import com.school.equipmentlending.model.Role;
 import com.school.equipmentlending.model.User;
 import com.school.equipmentlending.repository.RoleRepository;
 import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.security.PasswordPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
@@ -18,18 +20,22 @@ public class UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
-    private final BCryptPasswordEncoder passwordEncoder;
+    private final PasswordEncoder passwordEncoder;
 
-    public UserService(UserRepository userRepository, RoleRepository roleRepository) {
+    public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
-        this.passwordEncoder = new BCryptPasswordEncoder();
+        this.passwordEncoder = passwordEncoder;
     }
 
     public User registerUser(SignupRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username already taken!");
         }
+        String passwordViolation = PasswordPolicy.violation(request.getPassword());
+        if (passwordViolation != null) {
+            throw new BadRequestException(passwordViolation);
+        }
 
         Role userRole = roleRepository.findByName("ROLE_USER")
                 .orElseGet(() -> {
@@ -0,0 +1,85 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Runs a waitlist promotion pass whenever capacity is released (return, cancellation,
+ * overdue resolution). Listens after commit on the async executor, so the returning
+ * request never waits for it; only waitlisted bookings overlapping the released window
+ * are examined (BookingService.promoteWaitlisted).
+ */
+@Service
+public class WaitlistPromoter {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistPromoter.class);
+
+    static final int MAX_ATTEMPTS = 3;
+    static final long RETRY_BACKOFF_MS = 200;
+
+    private final BookingService bookingService;
+    private final boolean enabled;
+
+    private final Counter promoted;
+    private final Timer promotionLatency;
+
+    public WaitlistPromoter(BookingService bookingService,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.booking.waitlist-enabled:true}") boolean enabled) {
+        this.bookingService = bookingService;
+        this.enabled = enabled;
+        this.promoted = meterRegistry.counter("booking.waitlist.promoted");
+        this.promotionLatency = Timer.builder("booking.waitlist.promotion.latency")
+                .description("Time from capacity release to the waitlisted booking being approved")
+                .register(meterRegistry);
+    }
+
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCapacityReleased(CapacityReleasedEvent event) {
+        if (!enabled) return;
+
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                List<Long> ids = bookingService.promoteWaitlisted(event.equipmentId(), event.from(), event.until());
+                if (!ids.isEmpty()) {
+                    Duration latency = Duration.between(event.releasedAt(), Instant.now());
+                    ids.forEach(id -> promotionLatency.record(latency));
+                    promoted.increment(ids.size());
+                    logger.info("Promoted waitlisted bookings {} of equipment {} after {} ({})",
+                            ids, event.equipmentId(), latency, event.reason());
+                }
+                return;
+            } catch (ResponseStatusException ex) {
+                if (ex.getStatusCode() != HttpStatus.CONFLICT || attempt == MAX_ATTEMPTS) {
+                    logger.warn("Waitlist pass for equipment {} failed: {}", event.equipmentId(), ex.getReason());
+                    return;
+                }
+                // give the lock holder time to finish instead of hitting the row again straight away
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (Exception ex) {
+                logger.error("Waitlist pass for equipment {} failed", event.equipmentId(), ex);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.school.equipmentlending.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that adapts to observed latency (AIMD).
+ * Every completed call reports its latency: a call slower than {@code latencyThreshold}, or one that
+ * failed because a resource was exhausted, multiplies the limit by {@code backoffRatio}; a fast call
+ * made while at least half the limit was in use adds {@code 1/limit}, i.e. about +1 per full window.
+ * Calls over the current limit are refused immediately instead of queueing.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long thresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits;
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      Duration latencyThreshold, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.thresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(initialLimit));
+    }
+
+    /**
+     * Take a slot if fewer than {@link #getLimit()} calls are in flight.
+     * Every successful acquire must be followed by exactly one {@link #release}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param latencyNanos how long the call held its slot
+     * @param dropped      the call failed for lack of a resource (lock or connection timeout)
+     */
+    public void release(long latencyNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        if (dropped || latencyNanos > thresholdNanos) {
+            limitBits.updateAndGet(bits -> Double.doubleToLongBits(
+                    Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio)));
+        } else {
+            limitBits.updateAndGet(bits -> {
+                double limit = Double.longBitsToDouble(bits);
+                if (inFlightBefore * 2 < limit) return bits;   // not using the limit: no evidence to grow
+                return Double.doubleToLongBits(Math.min(maxLimit, limit + 1.0 / limit));
+            });
+        }
+    }
+
+    /** Current limit, rounded down. */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
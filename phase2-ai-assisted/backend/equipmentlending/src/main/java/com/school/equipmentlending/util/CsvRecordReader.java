@@ -0,0 +1,91 @@
+package com.school.equipmentlending.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an upload one record at a time without holding it in memory. In CSV mode a quoted field may
+ * span lines (the record runs until its quotes balance); in line mode every line is a record (NDJSON).
+ * Blank records are skipped. Line numbers are 1-based and count every physical line.
+ */
+public class CsvRecordReader {
+
+    private final BufferedReader reader;
+    private final boolean csv;
+    private long lineNo;
+    private long recordLine;
+
+    public CsvRecordReader(InputStream in, boolean csv) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.csv = csv;
+    }
+
+    /** The next non-blank record, or null at the end of the upload. */
+    public String next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            recordLine = ++lineNo;
+            int quotes = csv ? quoteCount(line) : 0;
+            if (quotes % 2 != 0) {
+                // a quoted field spans lines: keep reading until the quotes balance
+                StringBuilder record = new StringBuilder(line);
+                String next;
+                while (quotes % 2 != 0 && (next = reader.readLine()) != null) {
+                    lineNo++;
+                    quotes += quoteCount(next);
+                    record.append('\n').append(next);
+                }
+                line = record.toString();
+            }
+            if (!line.isBlank()) return line;
+        }
+        return null;
+    }
+
+    /** Line the record last returned by {@link #next()} starts on. */
+    public long line() {
+        return recordLine;
+    }
+
+    /** Split one RFC 4180 record: comma-separated, fields optionally quoted, "" is a literal quote. */
+    public static List<String> split(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static int quoteCount(CharSequence s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '"') n++;
+        }
+        return n;
+    }
+}
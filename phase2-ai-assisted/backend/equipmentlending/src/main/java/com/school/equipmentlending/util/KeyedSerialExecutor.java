@@ -0,0 +1,122 @@
+package com.school.equipmentlending.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time per key, in submission order, on a small shared pool: tasks for different keys
+ * run in parallel, tasks for the same key never overlap. Each key with queued work has a lane that occupies
+ * at most one worker; a lane gives its worker back after {@code maxPerTurn} tasks so one busy key cannot
+ * starve the others. Idle lanes are dropped, so keys cost nothing while they have no work.
+ * <p>
+ * A task that throws is logged and the lane moves on; callers that report outcomes catch their own errors.
+ */
+public class KeyedSerialExecutor<K> {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    private final String name;
+    private final ThreadPoolExecutor workers;
+    private final int maxPerTurn;
+    private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public KeyedSerialExecutor(String name, int threads, int maxPerTurn) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.name = name;
+        this.maxPerTurn = Math.max(1, maxPerTurn);
+        AtomicInteger seq = new AtomicInteger();
+        // at most one queued entry per key, so the lane queue stays small
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /** Queue {@code task} behind every task already submitted for {@code key}. */
+    public void execute(K key, Runnable task) {
+        if (workers.isShutdown()) throw new IllegalStateException("executor " + name + " is shut down");
+        boolean[] schedule = new boolean[1];
+        // enqueue and lane removal both run under the key's map entry, so a key never has two live lanes
+        Lane lane = lanes.compute(key, (k, existing) -> {
+            Lane l = existing != null ? existing : new Lane(k);
+            l.tasks.add(task);
+            schedule[0] = l.queued.getAndIncrement() == 0;
+            return l;
+        });
+        pending.incrementAndGet();
+        if (schedule[0]) workers.execute(lane);
+    }
+
+    /** Tasks submitted and not finished yet, over all keys. */
+    public int pending() {
+        return pending.get();
+    }
+
+    /** Keys with queued or running work. */
+    public int activeKeys() {
+        return lanes.size();
+    }
+
+    /** Stop accepting work and wait up to {@code timeoutMs} for queued tasks to finish. */
+    public void shutdown(long timeoutMs) {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS)) {
+                logger.warn("Executor {} stopped with {} tasks left", name, pending.get());
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    private final class Lane implements Runnable {
+        final K key;
+        final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+
+        Lane(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                for (int i = 0; i < maxPerTurn; i++) {
+                    Runnable task = tasks.poll();
+                    try {
+                        task.run();
+                    } catch (RuntimeException ex) {
+                        logger.error("Task for key {} on {} failed", key, name, ex);
+                    }
+                    pending.decrementAndGet();
+                    if (queued.decrementAndGet() == 0) {
+                        lanes.computeIfPresent(key, (k, l) -> l == this && l.queued.get() == 0 ? null : l);
+                        return;
+                    }
+                }
+                // more work for this key: requeue behind the other lanes (or keep going while shutting down)
+                try {
+                    workers.execute(this);
+                    return;
+                } catch (RejectedExecutionException ex) {
+                    logger.debug("Executor {} shutting down, draining key {} in place", name, key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.school.equipmentlending.util;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HDR-style latency histogram for hot paths: log-linear buckets (32 per power of two, ~3% relative error)
+ * from 1 ns up to ~18 minutes. Recording is an index computation plus three uncontended atomic adds,
+ * with no locks and no allocation. Micrometer's client-side percentiles cost several hundred ns per event,
+ * which is too much to put on every service call.
+ * <p>
+ * Percentiles are computed when read, over the events recorded since the start of the current window.
+ * The window restarts once it is older than {@code window}, so readers see recent latency and writers
+ * never stop to rotate.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;   // 2^40 ns ~ 18 min; slower values land in the last bucket
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final long windowNanos;
+    private final ReentrantLock readLock = new ReentrantLock();
+    private long[] windowStart = new long[BUCKETS];
+    private long windowStartedAt = System.nanoTime();
+    private long[] previousWindow = new long[BUCKETS];
+
+    public LatencyHistogram(Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+        count.increment();
+        totalNanos.add(Math.max(0, nanos));
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public double totalTime(TimeUnit unit) {
+        return (double) totalNanos.sum() / unit.toNanos(1);
+    }
+
+    /**
+     * Value at quantile {@code phi} (0..1] in nanoseconds, over the current window (or the previous full
+     * window when the current one has no events yet). 0 when nothing was recorded.
+     */
+    public double percentile(double phi) {
+        readLock.lock();
+        try {
+            long now = System.nanoTime();
+            long[] current = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                current[i] = counts.get(i) - windowStart[i];
+                total += current[i];
+            }
+            if (now - windowStartedAt > windowNanos) {
+                previousWindow = current;
+                for (int i = 0; i < BUCKETS; i++) windowStart[i] += current[i];
+                windowStartedAt = now;
+            }
+            long[] source = current;
+            if (total == 0) {
+                source = previousWindow;
+                for (long c : source) total += c;
+                if (total == 0) return 0;
+            }
+            long rank = (long) Math.ceil(phi * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += source[i];
+                if (seen >= rank && source[i] > 0) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Register as a Micrometer timer ({@code name}, count and total time) plus {@code name.percentile}
+     * gauges tagged {@code phi}, the same shape Micrometer uses for published percentiles.
+     */
+    public static LatencyHistogram register(MeterRegistry registry, String name, String description, Tags tags,
+                                            double... percentiles) {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofMinutes(1));
+        FunctionTimer.builder(name, histogram, LatencyHistogram::count, h -> h.totalTime(TimeUnit.NANOSECONDS),
+                        TimeUnit.NANOSECONDS)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+        for (double phi : percentiles) {
+            Gauge.builder(name + ".percentile", histogram, h -> h.percentile(phi) / 1e9)
+                    .tags(tags)
+                    .tag("phi", String.valueOf(phi))
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+        return histogram;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_COUNT) return (int) Math.max(0, nanos);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** Largest value that falls in bucket {@code index}. */
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        long lower = (1L << exponent) + ((long) sub << (exponent - SUB_BITS));
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,198 @@
+package com.school.equipmentlending.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single-producer, multi-consumer ring buffer (Disruptor style).
+ * Every consumer sees every item in publish order on its own thread, and takes whatever has been published
+ * since its last call as one batch (up to {@code maxBatch}). The producer and consumers only coordinate
+ * through sequence counters: the producer publishes by advancing the cursor, each consumer by advancing its
+ * own sequence, and the producer parks when it would overwrite an item the slowest consumer has not seen.
+ * Idle threads park and are unparked by the other side, so nothing spins on a busy CPU.
+ * <p>
+ * {@link #publish} must only ever be called from one thread. A handler that throws is logged and counted;
+ * the consumer moves on, so handlers that must not lose items retry themselves, and record what they finally
+ * gave up on before throwing so the owner of the items does not treat them as handled.
+ */
+public class RingBufferBus<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RingBufferBus.class);
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @FunctionalInterface
+    public interface BatchHandler<T> {
+        void onBatch(List<T> batch) throws Exception;
+    }
+
+    private final String name;
+    private final Object[] slots;
+    private final int mask;
+    private final int maxBatch;
+    private final AtomicLong cursor = new AtomicLong(-1);   // last published sequence
+    private final Map<String, Consumer> consumers = new LinkedHashMap<>();
+
+    private long next;   // producer thread only
+    private volatile Thread waitingProducer;
+    private volatile boolean running;
+
+    public RingBufferBus(String name, int capacity, int maxBatch) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two, got " + capacity);
+        }
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be >= 1");
+        this.name = name;
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.maxBatch = maxBatch;
+    }
+
+    /** Register a consumer; only allowed before {@link #start()}. */
+    public void subscribe(String consumer, BatchHandler<T> handler) {
+        if (running) throw new IllegalStateException("bus " + name + " already started");
+        if (consumers.containsKey(consumer)) throw new IllegalArgumentException("duplicate consumer " + consumer);
+        consumers.put(consumer, new Consumer(consumer, handler));
+    }
+
+    public void start() {
+        running = true;
+        for (Consumer c : consumers.values()) {
+            c.thread = new Thread(c::run, name + "-" + c.name);
+            c.thread.setDaemon(true);
+            c.thread.start();
+        }
+    }
+
+    /** Stop the consumer threads; items they have not taken yet are left unconsumed. */
+    public void stop(long timeoutMs) {
+        running = false;
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        for (Consumer c : consumers.values()) {
+            if (c.thread == null) continue;
+            LockSupport.unpark(c.thread);
+            try {
+                c.thread.join(timeoutMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Append an item and return its sequence; parks while the ring is full.
+     * Single producer: callers must not publish concurrently.
+     *
+     * @throws IllegalStateException when the bus is stopped while waiting for room
+     */
+    public long publish(T item) {
+        long seq = next;
+        long wrapPoint = seq - slots.length;
+        while (wrapPoint >= consumed()) {
+            if (!running) throw new IllegalStateException("bus " + name + " stopped");
+            waitingProducer = Thread.currentThread();
+            if (wrapPoint >= consumed()) LockSupport.parkNanos(this, MAX_PARK_NANOS);
+            waitingProducer = null;
+        }
+        slots[(int) (seq & mask)] = item;
+        cursor.set(seq);   // volatile write publishes the slot
+        next = seq + 1;
+        for (Consumer c : consumers.values()) {
+            if (c.waiting) LockSupport.unpark(c.thread);
+        }
+        return seq;
+    }
+
+    /** Sequence of the last published item, -1 before the first. */
+    public long cursor() {
+        return cursor.get();
+    }
+
+    /** Highest sequence every consumer has finished with (the cursor when nobody subscribed). */
+    public long consumed() {
+        long min = cursor.get();
+        for (Consumer c : consumers.values()) {
+            min = Math.min(min, c.sequence.get());
+        }
+        return min;
+    }
+
+    /** Items published but not yet handled, per consumer. */
+    public Map<String, Long> lag() {
+        long published = cursor.get();
+        Map<String, Long> lag = new LinkedHashMap<>();
+        consumers.forEach((n, c) -> lag.put(n, published - c.sequence.get()));
+        return lag;
+    }
+
+    public long lag(String consumer) {
+        return cursor.get() - consumers.get(consumer).sequence.get();
+    }
+
+    public long failures(String consumer) {
+        return consumers.get(consumer).failures.sum();
+    }
+
+    public List<String> consumers() {
+        return new ArrayList<>(consumers.keySet());
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    private final class Consumer {
+        final String name;
+        final BatchHandler<T> handler;
+        final AtomicLong sequence = new AtomicLong(-1);   // last handled sequence
+        final LongAdder failures = new LongAdder();
+        volatile boolean waiting;
+        Thread thread;
+
+        Consumer(String name, BatchHandler<T> handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        @SuppressWarnings("unchecked")
+        void run() {
+            long done = sequence.get();
+            while (running) {
+                long available = cursor.get();
+                if (available <= done) {
+                    waiting = true;
+                    if (cursor.get() <= done && running) LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                    waiting = false;
+                    continue;
+                }
+                long end = Math.min(available, done + maxBatch);
+                List<T> batch = new ArrayList<>((int) (end - done));
+                for (long s = done + 1; s <= end; s++) {
+                    batch.add((T) slots[(int) (s & mask)]);
+                }
+                try {
+                    handler.onBatch(batch);
+                } catch (Exception ex) {
+                    failures.increment();
+                    logger.error("Consumer {} of bus {} failed on sequences {}..{}", name, RingBufferBus.this.name,
+                            done + 1, end, ex);
+                }
+                done = end;
+                sequence.set(done);
+                Thread producer = waitingProducer;
+                if (producer != null) LockSupport.unpark(producer);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.school.equipmentlending.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent calls for the same key into one execution.
+ * The first caller (leader) runs the loader on its own thread; callers arriving while it is
+ * in flight (followers) wait for and share its result or exception. Nothing is cached:
+ * once the leader finishes, the next call for the key starts a new flight.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+
+    public V execute(K key, Supplier<V> loader) {
+        return execute(key, loader, null);
+    }
+
+    /**
+     * @param timeout how long a follower waits for the leader (null = no limit);
+     *                the leader itself is never interrupted
+     * @throws FlightTimeoutException when a follower gives up waiting
+     */
+    public V execute(K key, Supplier<V> loader, Duration timeout) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            leaders.increment();
+            try {
+                V value = loader.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException | Error ex) {
+                flight.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlight.remove(key, flight);
+            }
+        }
+        followers.increment();
+        return await(key, existing, timeout);
+    }
+
+    public int inFlightCount() { return inFlight.size(); }
+
+    /** Calls that actually executed the loader. */
+    public long leaderCount() { return leaders.sum(); }
+
+    /** Calls that were served by another caller's execution. */
+    public long followerCount() { return followers.sum(); }
+
+    private V await(K key, CompletableFuture<V> flight, Duration timeout) {
+        try {
+            return timeout == null ? flight.get() : flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause);
+        } catch (java.util.concurrent.TimeoutException ex) {
+            throw new FlightTimeoutException("Timed out waiting for in-flight call " + key);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for in-flight call " + key, ex);
+        }
+    }
+
+    public static class FlightTimeoutException extends RuntimeException {
+        public FlightTimeoutException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.school.equipmentlending.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadDataSourceTest {
+
+    @Test
+    void closeReleasesPermitExactlyOnce() throws Exception {
+        BulkheadDataSource ds = new BulkheadDataSource(new FakeDataSource(), 1, 0, 10);
+
+        Connection c = ds.getConnection();
+        assertEquals(1, ds.inUse());
+        c.close();
+        c.close();
+        assertEquals(0, ds.inUse());
+
+        ds.getConnection().close();
+        assertEquals(0, ds.rejectedCount());
+    }
+
+    @Test
+    void fullBulkhead_withNoWaiterRoom_failsFast() throws Exception {
+        BulkheadDataSource ds = new BulkheadDataSource(new FakeDataSource(), 1, 0, 1000);
+        Connection held = ds.getConnection();
+
+        long start = System.nanoTime();
+        assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+        assertTrue(System.nanoTime() - start < 500_000_000L, "rejection should not wait for the timeout");
+        assertEquals(1, ds.rejectedCount());
+        held.close();
+    }
+
+    @Test
+    void waiterTimesOut() throws Exception {
+        BulkheadDataSource ds = new BulkheadDataSource(new FakeDataSource(), 1, 5, 50);
+        Connection held = ds.getConnection();
+
+        assertThrows(SQLTransientConnectionException.class, ds::getConnection);
+        assertEquals(0, ds.waiting());
+        held.close();
+    }
+
+    @Test
+    void failingTarget_doesNotLeakPermit() {
+        FakeDataSource target = new FakeDataSource();
+        target.fail = true;
+        BulkheadDataSource ds = new BulkheadDataSource(target, 1, 0, 10);
+
+        assertThrows(SQLException.class, ds::getConnection);
+        assertEquals(0, ds.inUse());
+    }
+
+    /** Minimal DataSource handing out no-op connections and tracking how many are open. */
+    static class FakeDataSource extends AbstractDataSource {
+        final AtomicInteger open = new AtomicInteger();
+        final AtomicInteger maxOpen = new AtomicInteger();
+        boolean fail;
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (fail) throw new SQLException("down");
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) open.decrementAndGet();
+                        return null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.school.equipmentlending.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EquipmentNameKeyMigrationTest {
+
+    private JdbcTemplate jdbc;
+    private EquipmentNameKeyMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:namekeymigration;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2);
+        jdbc.execute("drop all objects");
+        jdbc.execute("create table equipment (id bigint primary key, name varchar(255), name_key varchar(255))");
+        migration = new EquipmentNameKeyMigration(jdbc);
+    }
+
+    @Test
+    void rowsWithoutKey_getTheTrimmedLowerCasedName_keyedRowsAreLeftAlone() {
+        jdbc.update("insert into equipment values (1, ' Tripod ', null), (2, 'Camera', 'kept'), (3, 'LENS', null)");
+
+        migration.afterSingletonsInstantiated();
+        migration.afterSingletonsInstantiated();   // idempotent
+
+        assertEquals(List.of("tripod", "kept", "lens"),
+                jdbc.queryForList("select name_key from equipment order by id", String.class));
+    }
+}
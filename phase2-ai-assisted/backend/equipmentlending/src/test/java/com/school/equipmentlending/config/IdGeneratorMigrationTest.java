@@ -0,0 +1,63 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.model.IdGenerators;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdGeneratorMigrationTest {
+
+    private JdbcTemplate jdbc;
+    private IdGeneratorMigration migration;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:idmigration;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(h2);
+        jdbc.execute("drop all objects");
+        jdbc.execute("create table id_generators (table_name varchar(255) primary key, next_val bigint)");
+        for (String table : IdGenerators.TABLES) {
+            jdbc.execute("create table " + table + " (id bigint primary key)");
+        }
+        migration = new IdGeneratorMigration(jdbc);
+    }
+
+    @Test
+    void missingRow_startsPastExistingIds() {
+        jdbc.update("insert into loans values (7), (120)");
+
+        migration.migrate("loans");
+
+        assertEquals(171L, nextVal("loans"));
+    }
+
+    @Test
+    void emptyTable_startsPastOneBlock() {
+        migration.afterSingletonsInstantiated();
+
+        assertEquals(51L, nextVal("equipment"));
+        assertEquals(51L, nextVal("loans"));
+        assertEquals(51L, nextVal("booking_requests"));
+        assertEquals(51L, nextVal("users"));
+    }
+
+    @Test
+    void lowRow_isRaised_higherRowIsLeftAlone() {
+        jdbc.update("insert into equipment values (300)");
+        jdbc.update("insert into id_generators values ('equipment', 1), ('loans', 5000)");
+
+        migration.afterSingletonsInstantiated();
+        migration.afterSingletonsInstantiated();   // idempotent
+
+        assertEquals(351L, nextVal("equipment"));
+        assertEquals(5000L, nextVal("loans"));
+    }
+
+    private Long nextVal(String table) {
+        return jdbc.queryForObject("select next_val from id_generators where table_name = ?", Long.class, table);
+    }
+}
@@ -0,0 +1,154 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bulk loan inserts with table-generated ids: one JDBC batch per 50 rows instead of one statement per row.
+ * The throughput of 100k loans next to the same inserts with batching switched off is tagged benchmark
+ * (mvn -Pbenchmarks test).
+ */
+@SpringBootTest
+class JdbcBatchingIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcBatchingIntegrationTest.class);
+
+    private static final int LOANS = 5_000;
+    private static final int BENCHMARK_LOANS = 100_000;
+    private static final int UNBATCHED_LOANS = 20_000;
+    private static final int WARM_UP_LOANS = 10_000;
+    private static final int PER_TRANSACTION = 1_000;
+
+    @Autowired private UserRepository userRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private SlowQueryLog slowQueryLog;
+
+    private User borrower;
+    private Equipment equipment;
+
+    @BeforeEach
+    void seed() {
+        User u = new User();
+        u.setUsername("batch-borrower");
+        u.setPassword("x");
+        borrower = userRepo.save(u);
+        Equipment e = new Equipment();
+        e.setName("Batch laptop");
+        e.setCategory("IT");
+        e.setQuantity(1);
+        equipment = equipmentRepo.save(e);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from loans where equipment_id = ?", equipment.getId());
+        equipmentRepo.delete(equipment);
+        userRepo.delete(borrower);
+    }
+
+    @Test
+    void loanInserts_areBatched() {
+        long before = loanInsertExecutions();
+        insertLoans(LOANS, null);
+        long executions = loanInsertExecutions() - before;
+
+        assertEquals(LOANS / IdGenerators.ALLOCATION_SIZE, executions);
+        assertEquals(LOANS, jdbcTemplate.queryForObject(
+                "select count(*) from loans where equipment_id = ?", Long.class, equipment.getId()));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void loanInserts_batchedThroughputVsOneStatementPerRow() {
+        insertLoans(WARM_UP_LOANS, null);
+        insertLoans(WARM_UP_LOANS, 1);
+
+        long start = System.nanoTime();
+        insertLoans(UNBATCHED_LOANS, 1);
+        double unbatchedPerSecond = UNBATCHED_LOANS / ((System.nanoTime() - start) / 1e9);
+
+        long before = loanInsertExecutions();
+        start = System.nanoTime();
+        insertLoans(BENCHMARK_LOANS, null);
+        double batchedPerSecond = BENCHMARK_LOANS / ((System.nanoTime() - start) / 1e9);
+        long executions = loanInsertExecutions() - before;
+
+        logger.info("loan inserts: {} rows/s batched ({} loans in {} statements), {} rows/s one statement per row",
+                Math.round(batchedPerSecond), BENCHMARK_LOANS, executions, Math.round(unbatchedPerSecond));
+        assertEquals(BENCHMARK_LOANS / IdGenerators.ALLOCATION_SIZE, executions);
+        assertEquals(BENCHMARK_LOANS + UNBATCHED_LOANS + 2 * WARM_UP_LOANS, jdbcTemplate.queryForObject(
+                "select count(*) from loans where equipment_id = ?", Long.class, equipment.getId()));
+    }
+
+    @Test
+    void newIds_comeFromPooledBlocks() {
+        List<Long> ids = new TransactionTemplate(transactionManager).execute(s ->
+                loanRepo.saveAll(loans(3)).stream().map(Loan::getId).toList());
+
+        assertNotNull(ids);
+        assertEquals(ids.get(0) + 1, ids.get(1));
+        assertEquals(ids.get(0) + 2, ids.get(2));
+    }
+
+    private void insertLoans(int count, Integer jdbcBatchSize) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        for (int done = 0; done < count; done += PER_TRANSACTION) {
+            int n = Math.min(PER_TRANSACTION, count - done);
+            tx.executeWithoutResult(s -> {
+                if (jdbcBatchSize != null) entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+                loanRepo.saveAll(loans(n));
+            });
+        }
+    }
+
+    private List<Loan> loans(int n) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Loan> loans = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Loan loan = new Loan();
+            loan.setEquipment(equipment);
+            loan.setBorrower(borrower);
+            loan.setBorrowedAt(now.minusDays(30));
+            loan.setDueAt(now.minusDays(29));
+            loan.setReturnedAt(now.minusDays(29));
+            loan.setStatus(LoanStatus.RETURNED);
+            loan.setQuantity(1);
+            loans.add(loan);
+        }
+        return loans;
+    }
+
+    private long loanInsertExecutions() {
+        return slowQueryLog.slowest(Integer.MAX_VALUE).stream()
+                .filter(s -> s.getStatement().startsWith("insert into loans"))
+                .mapToLong(SlowQueryDTO::getExecutions)
+                .findFirst()
+                .orElse(0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MethodMetricsPostProcessorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MethodMetricsPostProcessorTest.class);
+
+    public static class SampleService {
+        public String greet(String name) { return "hi " + name; }
+        public void fail() { throw new IllegalStateException("boom"); }
+        public String caller() { return MethodMetricsPostProcessor.currentServiceMethod(); }
+    }
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MethodMetricsPostProcessor postProcessor = new MethodMetricsPostProcessor(
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class),
+            Set.of(SampleService.class));
+
+    @Test
+    void serviceMethods_areTimedByOutcome_withPercentiles() {
+        SampleService service = (SampleService) postProcessor.postProcessAfterInitialization(new SampleService(), "sample");
+        assertTrue(AopUtils.isAopProxy(service));
+
+        assertEquals("hi bob", service.greet("bob"));
+        assertThrows(IllegalStateException.class, service::fail);
+
+        FunctionTimer greet = registry.get("service.method")
+                .tags("class", "SampleService", "method", "greet", "outcome", "success").functionTimer();
+        assertEquals(1, greet.count());
+        assertThat(registry.get("service.method.percentile").tags("method", "greet", "outcome", "success").gauges()).hasSize(3);
+        assertThat(registry.get("service.method.percentile").tags("method", "greet", "outcome", "success", "phi", "0.99").gauge().value())
+                .isPositive();
+        assertEquals(1, registry.get("service.method")
+                .tags("method", "fail", "outcome", "error").functionTimer().count());
+    }
+
+    @Test
+    void currentServiceMethod_isSetOnlyInsideTheCall() {
+        SampleService service = (SampleService) postProcessor.postProcessAfterInitialization(new SampleService(), "sample");
+
+        assertEquals("SampleService.caller", service.caller());
+        assertNull(MethodMetricsPostProcessor.currentServiceMethod());
+    }
+
+    @Test
+    void otherBeans_areLeftAlone() {
+        Object other = new Object();
+        assertSame(other, postProcessor.postProcessAfterInitialization(other, "other"));
+    }
+
+    @Test
+    void equipmentLock_waitIsTimed_andFailuresCounted() {
+        EquipmentRepository target = mock(EquipmentRepository.class);
+        when(target.findByIdForUpdate(1L)).thenReturn(Optional.of(new Equipment()));
+        when(target.findByIdForUpdate(2L)).thenThrow(new PessimisticLockingFailureException("lock timeout"));
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.addInterface(EquipmentRepository.class);
+        EquipmentRepository repo = (EquipmentRepository) postProcessor
+                .postProcessAfterInitialization(factory.getProxy(), "equipmentRepository");
+
+        repo.findByIdForUpdate(1L);
+        assertThrows(PessimisticLockingFailureException.class, () -> repo.findByIdForUpdate(2L));
+        repo.findById(1L);
+
+        assertEquals(1, registry.get("db.lock.wait").tag("outcome", "acquired").functionTimer().count());
+        assertEquals(1, registry.get("db.lock.wait").tag("outcome", "failed").functionTimer().count());
+        assertEquals(1.0, registry.get("db.lock.failures").counter().count());
+    }
+}
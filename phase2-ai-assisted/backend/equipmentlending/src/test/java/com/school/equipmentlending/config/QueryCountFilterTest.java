@@ -0,0 +1,89 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.exception.QueryBudgetExceededException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCountFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StatementCounter inspector = new StatementCounter();
+
+    @Test
+    void statementsIssuedDuringTheRequest_areRecordedPerRoute() throws Exception {
+        QueryCountFilter filter = filter(QueryBudget.Mode.FAIL, 10, 3, Map.of());
+
+        run(filter, "/api/bookings/my", "select * from booking_requests", "select * from equipment", "select * from users");
+
+        DistributionSummary summary = registry.get("http.server.db.statements")
+                .tags("method", "GET", "uri", "/api/bookings/my").summary();
+        assertEquals(1, summary.count());
+        assertEquals(3.0, summary.totalAmount());
+        assertEquals(0, StatementCounter.current());
+    }
+
+    @Test
+    void repeatedStatement_isReportedAsNPlusOne() {
+        QueryCountFilter filter = filter(QueryBudget.Mode.FAIL, 10, 3, Map.of());
+
+        QueryBudgetExceededException ex = assertThrows(QueryBudgetExceededException.class, () ->
+                run(filter, "/api/loans", "select * from loans", "select * from users where id=?",
+                        "select * from users where id=?", "select * from users where id=?"));
+
+        assertThat(ex.getMessage()).contains("N+1", "GET /api/loans", "3 times", "select * from users where id=?");
+        assertEquals(1.0, registry.get("http.server.db.budget.exceeded").tag("reason", "repeated").counter().count());
+    }
+
+    @Test
+    void endpointOverride_tightensTheBudget() throws Exception {
+        QueryCountFilter filter = filter(QueryBudget.Mode.FAIL, 10, 5, Map.of("GET /api/equipments", 1));
+
+        run(filter, "/api/bookings/my", "select 1", "select 2");
+        QueryBudgetExceededException ex = assertThrows(QueryBudgetExceededException.class, () ->
+                run(filter, "/api/equipments", "select 1", "select 2"));
+        assertThat(ex.getMessage()).contains("issued 2 SQL statements (budget 1)");
+    }
+
+    @Test
+    void logMode_neverFailsTheRequest() throws Exception {
+        QueryCountFilter filter = filter(QueryBudget.Mode.LOG, 1, 2, Map.of());
+        run(filter, "/api/loans", "select 1", "select 1", "select 2");
+        assertEquals(1.0, registry.get("http.server.db.budget.exceeded").counter().count());
+    }
+
+    @Test
+    void statementsOutsideARequest_areNotCounted() {
+        inspector.inspect("select 1");
+        assertEquals(0, StatementCounter.current());
+    }
+
+    @Test
+    void parseEndpoints() {
+        assertEquals(Map.of("GET /api/loans", 6, "GET /api/equipments", 3),
+                QueryBudget.parseEndpoints("GET  /api/loans=6, GET /api/equipments = 3"));
+        assertTrue(QueryBudget.parseEndpoints(" ").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> QueryBudget.parseEndpoints("GET /api/loans"));
+    }
+
+    private QueryCountFilter filter(QueryBudget.Mode mode, int max, int repeat, Map<String, Integer> endpoints) {
+        return new QueryCountFilter(registry, new QueryBudget(mode, max, repeat, endpoints));
+    }
+
+    private void run(QueryCountFilter filter, String route, String... statements) throws Exception {
+        FilterChain chain = (req, res) -> {
+            for (String sql : statements) inspector.inspect(sql);
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+        };
+        filter.doFilter(new MockHttpServletRequest("GET", route), new MockHttpServletResponse(), chain);
+    }
+}
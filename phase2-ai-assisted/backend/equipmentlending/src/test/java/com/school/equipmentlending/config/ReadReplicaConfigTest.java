@@ -0,0 +1,48 @@
+package com.school.equipmentlending.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The full context with a second H2 database as the replica. */
+@SpringBootTest(properties = {
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.url=jdbc:h2:mem:replica_ctx;DB_CLOSE_DELAY=-1;INIT=create table if not exists whoami (name varchar(40))"
+})
+class ReadReplicaConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replica;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void jpaReadOnlyTransactions_areServedByTheReplica() {
+        assertInstanceOf(ReadWriteRoutingDataSource.class, dataSource);
+        assertInstanceOf(SlowQueryDataSource.class, replica, "each pool is still timed by the slow-query log");
+
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.update("delete from whoami");
+        replicaJdbc.update("insert into whoami values ('replica')");
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        String served = tx.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select name from whoami", String.class));
+
+        assertEquals("replica", served);
+    }
+}
@@ -0,0 +1,106 @@
+package com.school.equipmentlending.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Routing between two separate H2 databases, each of which says which one it is. */
+class ReadWriteRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("routing_primary");
+        replica = database("routing_replica");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaReadDataSource.unpin();
+    }
+
+    @Test
+    void readOnlyTransactions_goToReplica_othersToPrimary() {
+        ReadWriteRoutingDataSource routing = routing(new ReplicaLagMonitor(replica, "", Duration.ofSeconds(2)));
+
+        assertEquals("routing_replica", whoAmI(routing, true));
+        assertEquals("routing_primary", whoAmI(routing, false));
+        assertEquals("routing_primary", new JdbcTemplate(routing).queryForObject("select name from whoami", String.class));
+        assertEquals(1, routing.getReplicaReads().replicaReadCount());
+    }
+
+    @Test
+    void pinnedThread_readsFromPrimary() {
+        ReadWriteRoutingDataSource routing = routing(new ReplicaLagMonitor(replica, "", Duration.ofSeconds(2)));
+
+        ReplicaReadDataSource.pinToPrimary();
+        assertEquals("routing_primary", whoAmI(routing, true));
+        ReplicaReadDataSource.unpin();
+        assertEquals("routing_replica", whoAmI(routing, true));
+        assertEquals(1, routing.getReplicaReads().pinnedReadCount());
+    }
+
+    @Test
+    void laggingReplica_isSkipped_untilItCatchesUp() {
+        new JdbcTemplate(replica).execute("create table lag_probe (seconds double)");
+        new JdbcTemplate(replica).execute("insert into lag_probe values (30)");
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "select seconds from lag_probe", Duration.ofSeconds(2));
+        ReadWriteRoutingDataSource routing = routing(monitor);
+
+        assertFalse(monitor.isUsable(), "not trusted before the first probe");
+        monitor.check();
+        assertFalse(monitor.isUsable());
+        assertEquals(30_000_000_000L, monitor.lagNanos());
+        assertEquals("routing_primary", whoAmI(routing, true));
+        assertEquals(1, routing.getReplicaReads().laggingReadCount());
+
+        new JdbcTemplate(replica).update("update lag_probe set seconds = 0.5");
+        monitor.check();
+        assertTrue(monitor.isUsable());
+        assertEquals("routing_replica", whoAmI(routing, true));
+
+        new JdbcTemplate(replica).update("update lag_probe set seconds = null");   // replication stopped
+        monitor.check();
+        assertFalse(monitor.isUsable());
+    }
+
+    @Test
+    void failingLagProbe_makesReplicaUnusable() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "select seconds from no_such_table", Duration.ofSeconds(2));
+
+        monitor.check();
+
+        assertFalse(monitor.isUsable());
+    }
+
+    private ReadWriteRoutingDataSource routing(ReplicaLagMonitor monitor) {
+        return new ReadWriteRoutingDataSource(primary, new ReplicaReadDataSource(replica, primary, monitor));
+    }
+
+    private static String whoAmI(DataSource routing, boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(new DataSourceTransactionManager(routing));
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> new JdbcTemplate(routing).queryForObject("select name from whoami", String.class));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("drop all objects");
+        jdbc.execute("create table whoami (name varchar(40))");
+        jdbc.update("insert into whoami values (?)", name);
+        return ds;
+    }
+}
@@ -0,0 +1,80 @@
+package com.school.equipmentlending.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.security.Principal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadYourWritesInterceptorTest {
+
+    private final ReplicaLagMonitor inSync = new ReplicaLagMonitor(null, "", Duration.ofSeconds(2));
+
+    @AfterEach
+    void tearDown() {
+        ReplicaReadDataSource.unpin();
+    }
+
+    @Test
+    void writes_arePinnedToPrimary_andPinIsClearedAfterwards() {
+        ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(inSync, Duration.ofSeconds(5), 100);
+
+        assertTrue(pinnedDuring(interceptor, request("POST", "alice")));
+        assertFalse(ReplicaReadDataSource.isPinned());
+    }
+
+    @Test
+    void readsAfterOwnWrite_arePinned_butOtherCallersAreNot() {
+        ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(inSync, Duration.ofSeconds(5), 100);
+
+        assertFalse(pinnedDuring(interceptor, request("GET", "alice")));
+        pinnedDuring(interceptor, request("POST", "alice"));
+
+        assertTrue(pinnedDuring(interceptor, request("GET", "alice")));
+        assertFalse(pinnedDuring(interceptor, request("GET", "bob")));
+        assertFalse(pinnedDuring(interceptor, request("GET", null)));
+    }
+
+    @Test
+    void pinExpires_afterWindow() throws Exception {
+        ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(inSync, Duration.ofMillis(20), 100);
+
+        pinnedDuring(interceptor, request("POST", "alice"));
+        Thread.sleep(50);
+
+        assertFalse(pinnedDuring(interceptor, request("GET", "alice")));
+        assertEquals(0, interceptor.trackedCallers());
+    }
+
+    @Test
+    void trackedCallers_areBounded() {
+        ReadYourWritesInterceptor interceptor = new ReadYourWritesInterceptor(inSync, Duration.ofSeconds(5), 3);
+
+        for (int i = 0; i < 10; i++) {
+            pinnedDuring(interceptor, request("POST", "user" + i));
+        }
+
+        assertTrue(interceptor.trackedCallers() <= 3);
+    }
+
+    private static boolean pinnedDuring(ReadYourWritesInterceptor interceptor, MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, new Object());
+        boolean pinned = ReplicaReadDataSource.isPinned();
+        interceptor.afterCompletion(request, response, new Object(), null);
+        return pinned;
+    }
+
+    private static MockHttpServletRequest request(String method, String username) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/loans/my");
+        if (username != null) {
+            Principal principal = () -> username;
+            request.setUserPrincipal(principal);
+        }
+        return request;
+    }
+}
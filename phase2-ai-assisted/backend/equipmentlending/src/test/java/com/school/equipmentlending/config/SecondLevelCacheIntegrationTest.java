@@ -0,0 +1,202 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.security.JwtUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Second-level cache over the real stack: selects per approval with a cold vs a warm cache, and the
+ * locked equipment reads (by id and by category) never trusting (and evicting) the cached row.
+ * Statements are counted from the slow-query table, which sees every JDBC execution.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SecondLevelCacheIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCacheIntegrationTest.class);
+
+    private static final int ROUNDS = 5;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private BookingRequestRepository bookingRepo;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+    @Autowired private SlowQueryLog slowQueryLog;
+
+    private final List<User> users = new ArrayList<>();
+    private Equipment equipment;
+
+    @BeforeEach
+    void seed() {
+        users.add(user("l2c-admin", role("ROLE_ADMIN")));
+        users.add(user("l2c-student", role("ROLE_USER")));
+        Equipment e = new Equipment();
+        e.setName("L2C projector");
+        e.setCategory("AV");
+        e.setQuantity(100);
+        equipment = equipmentRepo.save(e);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookingRepo.deleteAll();
+        loanRepo.deleteAll();
+        equipmentRepo.delete(equipment);
+        userRepo.deleteAll(users);
+    }
+
+    @Test
+    void approval_withWarmCache_runsFewerSelects() throws Exception {
+        long cold = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            Long bookingId = pendingBooking();
+            entityManagerFactory.getCache().evictAll();
+            cold += selectsDuring(() -> approve(bookingId));
+        }
+
+        approve(pendingBooking());   // warm-up
+        long warm = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            Long bookingId = pendingBooking();
+            warm += selectsDuring(() -> approve(bookingId));
+        }
+
+        logger.info("selects per approval: cold cache {}, warm cache {}",
+                (double) cold / ROUNDS, (double) warm / ROUNDS);
+        assertTrue(warm < cold, "warm " + warm + " vs cold " + cold);
+    }
+
+    @Test
+    void lockedRead_bypassesCachedEquipment_andEvictsIt() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = equipment.getId();
+        tx.executeWithoutResult(s -> equipmentRepo.findById(id).orElseThrow());
+        assertTrue(entityManagerFactory.getCache().contains(Equipment.class, id));
+
+        // changed behind Hibernate's back (another node, a manual fix): the cached copy is now stale
+        jdbcTemplate.update("update equipment set quantity = 3 where id = ?", id);
+
+        Integer locked = tx.execute(s -> equipmentRepo.findByIdForUpdate(id).orElseThrow().getQuantity());
+        assertEquals(3, locked);
+        assertFalse(entityManagerFactory.getCache().contains(Equipment.class, id));
+
+        Integer reloaded = tx.execute(s -> equipmentRepo.findById(id).orElseThrow().getQuantity());
+        assertEquals(3, reloaded);
+        long selects = selectsDuring(() -> tx.executeWithoutResult(s -> equipmentRepo.findById(id).orElseThrow()));
+        assertEquals(0, selects, "fresh state is cached again by the next unlocked read");
+    }
+
+    @Test
+    void lockedCategoryRead_bypassesCachedEquipment_andEvictsIt() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long id = equipment.getId();
+        tx.executeWithoutResult(s -> equipmentRepo.findById(id).orElseThrow());
+        jdbcTemplate.update("update equipment set quantity = 3 where id = ?", id);
+
+        List<Equipment> locked = tx.execute(s -> equipmentRepo.findAllByCategoryForUpdate("av"));
+        assertNotNull(locked);
+        assertEquals(locked.stream().map(Equipment::getId).sorted().toList(),
+                locked.stream().map(Equipment::getId).toList());
+        assertEquals(3, locked.stream().filter(e -> e.getId().equals(id)).findFirst().orElseThrow().getQuantity());
+        assertFalse(entityManagerFactory.getCache().contains(Equipment.class, id));
+    }
+
+    @Test
+    void roleByName_isServedFromQueryCache() {
+        roleRepo.findByName("ROLE_ADMIN").orElseThrow();
+
+        long selects = selectsDuring(() -> assertTrue(roleRepo.findByName("ROLE_ADMIN").isPresent()));
+
+        assertEquals(0, selects);
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private long selectsDuring(Action action) {
+        long before = selects();
+        try {
+            action.run();
+        } catch (Exception ex) {
+            throw new AssertionError(ex);
+        }
+        return selects() - before;
+    }
+
+    private long selects() {
+        return slowQueryLog.slowest(Integer.MAX_VALUE).stream()
+                .filter(s -> s.getStatement().regionMatches(true, 0, "select", 0, 6))
+                .mapToLong(SlowQueryDTO::getExecutions)
+                .sum();
+    }
+
+    private void approve(Long bookingId) throws Exception {
+        mockMvc.perform(post("/api/bookings/{id}/approve", bookingId)
+                        .header("Authorization", bearer("l2c-admin", "ROLE_ADMIN")))
+                .andExpect(status().isOk());
+    }
+
+    private Long pendingBooking() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingRequest b = new BookingRequest();
+        b.setEquipment(equipment);
+        b.setRequester(users.get(1));
+        b.setStartAt(start);
+        b.setEndAt(start.plusHours(2));
+        b.setQuantityRequested(1);
+        return bookingRepo.save(b).getId();
+    }
+
+    private Role role(String name) {
+        return roleRepo.findByName(name).orElseGet(() -> {
+            Role r = new Role();
+            r.setName(name);
+            return roleRepo.save(r);
+        });
+    }
+
+    private User user(String username, Role role) {
+        User u = new User();
+        u.setUsername(username);
+        u.setPassword("x");
+        u.setRoles(Set.of(role));
+        return userRepo.save(u);
+    }
+
+    private String bearer(String username, String role) {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken(username, null,
+                List.of(new SimpleGrantedAuthority(role))));
+    }
+}
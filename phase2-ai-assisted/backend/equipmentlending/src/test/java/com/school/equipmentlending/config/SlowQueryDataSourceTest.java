@@ -0,0 +1,112 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.security.TokenBucketLimiter.Budget;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryDataSourceTest {
+
+    private SlowQueryLog log;
+    private SlowQueryDataSource ds;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:slowquery;DB_CLOSE_DELAY=-1");
+        log = new SlowQueryLog(Duration.ZERO, new Budget(100, 100), 64, 100);
+        ds = new SlowQueryDataSource(h2, log);
+        try (Connection c = h2.getConnection(); Statement s = c.createStatement()) {
+            s.execute("create table if not exists items (id bigint primary key, name varchar(50))");
+            s.execute("create table if not exists users (id bigint primary key, password varchar(60))");
+            s.execute("delete from items");
+            s.execute("delete from users");
+            s.execute("insert into items values (1, 'a'), (2, 'b'), (3, 'c')");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        log.shutdown();
+    }
+
+    @Test
+    void query_reportsRowsReadAndBinds_whenResultSetIsClosed() throws SQLException {
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement("select * from items where id >= ? and name <> ?")) {
+            ps.setLong(1, 2);
+            ps.setString(2, "z");
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { }
+                assertTrue(byStatement().isEmpty(), "reported before the result set was closed");
+            }
+        }
+
+        SlowQueryDTO query = byStatement().get("select * from items where id >= ? and name <> ?");
+        assertEquals(1, query.getExecutions());
+        assertEquals(2L, query.getLastSlowRows());
+        assertEquals("[2, 'z']", query.getLastSlowBinds());
+    }
+
+    @Test
+    void update_reportsRowsChanged_andUsersBindsAreRedacted() throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("update items set name = ? where id < ?")) {
+                ps.setString(1, "x");
+                ps.setInt(2, 3);
+                assertEquals(2, ps.executeUpdate());
+            }
+            try (PreparedStatement ps = c.prepareStatement("insert into users values (?, ?)")) {
+                ps.setLong(1, 1);
+                ps.setString(2, "$2a$10$secret");
+                ps.executeUpdate();
+            }
+        }
+
+        assertEquals(2L, byStatement().get("update items set name = ? where id < ?").getLastSlowRows());
+        assertEquals(SlowQueryLog.REDACTED, byStatement().get("insert into users values (?)").getLastSlowBinds());
+    }
+
+    @Test
+    void failedStatement_isReportedWithoutRows() throws SQLException {
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            assertThrows(SQLException.class, () -> s.executeQuery("select * from missing_table"));
+        }
+
+        assertEquals(-1L, byStatement().get("select * from missing_table").getLastSlowRows());
+    }
+
+    @Test
+    void unclosedResultSet_isReportedWhenTheStatementCloses() throws SQLException {
+        try (Connection c = ds.getConnection(); Statement s = c.createStatement()) {
+            ResultSet rs = s.executeQuery("select id from items");
+            rs.next();
+        }
+
+        assertEquals(1L, byStatement().get("select id from items").getLastSlowRows());
+    }
+
+    @Test
+    void unwrap_reachesTheDriverConnection() throws SQLException {
+        try (Connection c = ds.getConnection()) {
+            assertTrue(c.unwrap(org.h2.jdbc.JdbcConnection.class) != null);
+        }
+    }
+
+    private Map<String, SlowQueryDTO> byStatement() {
+        return log.slowest(100).stream().collect(Collectors.toMap(SlowQueryDTO::getStatement, q -> q));
+    }
+}
@@ -0,0 +1,122 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.security.TokenBucketLimiter.Budget;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryLogTest {
+
+    private SlowQueryLog log;
+
+    @AfterEach
+    void tearDown() {
+        if (log != null) log.shutdown();
+    }
+
+    @Test
+    void normalize_collapsesLiteralsInListsAndWhitespace_butKeepsAliases() {
+        assertEquals("select e1_0.id from equipment e1_0 where e1_0.id in (?) and e1_0.name=?",
+                SlowQueryLog.normalize("select e1_0.id from equipment e1_0\n  where e1_0.id in (?, ?,?) and e1_0.name='It''s'"));
+        assertEquals("select * from loans where id=? limit ?",
+                SlowQueryLog.normalize("select * from loans where id=42 limit 10"));
+    }
+
+    @Test
+    void fastStatements_areCounted_butNotLogged() {
+        log = new SlowQueryLog(Duration.ofSeconds(1), new Budget(100, 100), 16, 100);
+
+        log.record("select * from equipment where id=?", 1_000_000, 1, new Object[]{1L}, null);
+        log.record("select * from equipment where id=?", 3_000_000, 1, new Object[]{2L}, null);
+
+        SlowQueryDTO top = log.slowest(10).get(0);
+        assertEquals(2, top.getExecutions());
+        assertEquals(0, top.getSlowExecutions());
+        assertEquals(3.0, top.getMaxMs(), 1e-9);
+        assertEquals(2.0, top.getMeanMs(), 1e-9);
+        assertNull(top.getLastSlowBinds());
+        assertEquals(0, log.loggedCount() + log.rateLimitedCount());
+    }
+
+    @Test
+    void slowStatement_keepsBindsRowsAndCaller_exceptOnUsersTable() throws Exception {
+        log = new SlowQueryLog(Duration.ZERO, new Budget(100, 100), 16, 100);
+
+        log.record("select * from loans where borrower_id=? and note=?", 5_000_000, 3,
+                new Object[]{7L, "late", null}, "LoanService.getLoans");
+        log.record("select u1_0.password from users u1_0 where u1_0.username=?", 9_000_000, 1,
+                new Object[]{"alice"}, "UserService.findByUsername");
+
+        List<SlowQueryDTO> slowest = log.slowest(10);
+        assertThat(slowest).extracting(SlowQueryDTO::getMaxMs).containsExactly(9.0, 5.0);
+        assertEquals(SlowQueryLog.REDACTED, slowest.get(0).getLastSlowBinds());
+        assertEquals("[7, 'late']", slowest.get(1).getLastSlowBinds());
+        assertEquals(3L, slowest.get(1).getLastSlowRows());
+        assertEquals("LoanService.getLoans", slowest.get(1).getLastSlowServiceMethod());
+
+        waitFor(() -> log.loggedCount() == 2);
+    }
+
+    @Test
+    void longBindLists_keepTheFirstTwenty_andCountTheRest() {
+        Object[] binds = new Object[500];
+        for (int i = 0; i < binds.length; i++) binds[i] = "import item " + i;
+
+        String formatted = SlowQueryLog.formatBinds(binds);
+
+        assertTrue(formatted.startsWith("['import item 0', 'import item 1', "), formatted);
+        assertTrue(formatted.endsWith("'import item 19', \u2026(+480 more)]"), formatted);
+        assertEquals("[1, 'x']", SlowQueryLog.formatBinds(new Object[]{1, "x", null, null}));
+    }
+
+    @Test
+    void lockingReads_areFlagged() {
+        log = new SlowQueryLog(Duration.ZERO, new Budget(100, 100), 16, 100);
+
+        log.record("select * from equipment where id=? for update", 1, 1, new Object[]{1L}, null);
+
+        assertTrue(log.slowest(1).get(0).isLocking());
+    }
+
+    @Test
+    void burstOfSlowStatements_isRateLimited_withoutBlockingTheCaller() throws Exception {
+        log = new SlowQueryLog(Duration.ZERO, new Budget(0.001, 5), 16, 100);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            log.record("select * from equipment where id=?", 1_000_000, 1, new Object[]{(long) i}, null);
+        }
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+
+        waitFor(() -> log.loggedCount() == 5);
+        assertEquals(95, log.rateLimitedCount());
+        assertEquals(100, log.slowest(1).get(0).getSlowExecutions());
+    }
+
+    @Test
+    void statementsBeyondTheTableLimit_areNotTracked() {
+        log = new SlowQueryLog(Duration.ofSeconds(1), new Budget(100, 100), 16, 2);
+
+        log.record("select 1", 1, 1, new Object[0], null);
+        log.record("select 2", 1, 1, new Object[0], null);   // same normalized form, second raw string
+        log.record("select 3", 1, 1, new Object[0], null);
+
+        assertEquals(1, log.trackedStatements());
+        assertEquals(1, log.untrackedCount());
+        assertEquals(2, log.slowest(10).get(0).getExecutions());
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.school.equipmentlending.config;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks backing the "virtual" profile: no monitor pinning in our code, the connection bulkhead holding
+ * at 2,000 concurrent virtual-thread users, and (tagged benchmark, run with -Pbenchmarks) a platform vs
+ * virtual thread timing comparison.
+ */
+class VirtualThreadReadinessTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadReadinessTest.class);
+
+    private static final int USERS = 2_000;
+    private static final int TOMCAT_MAX_THREADS = 200;  // Tomcat default
+    private static final int POOL_SIZE = 20;           // hikari size in the virtual profile
+
+    /** synchronized blocks pin the carrier thread on Java 21; use ReentrantLock / concurrent collections instead. */
+    @Test
+    void mainSources_doNotUseSynchronized() throws IOException {
+        Pattern sync = Pattern.compile("\\bsynchronized\\b");
+        try (Stream<Path> files = Files.walk(Path.of("src/main/java"))) {
+            List<Path> offenders = files.filter(p -> p.toString().endsWith(".java"))
+                    .filter(p -> {
+                        try {
+                            return sync.matcher(Files.readString(p)).find();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .toList();
+            assertThat(offenders).isEmpty();
+        }
+    }
+
+    @Test
+    void bulkhead_capsConnections_atTwoThousandVirtualUsers() throws Exception {
+        long virtualMs = run(Executors.newVirtualThreadPerTaskExecutor(), "virtual");
+        logger.info("{} virtual users: {} ms", USERS, virtualMs);
+    }
+
+    /**
+     * Each simulated request blocks 200 ms outside the database (lock wait / remote call) and holds a
+     * connection for 1 ms. Platform threads are capped at Tomcat's 200; virtual threads are not, and the
+     * bulkhead keeps the pool at POOL_SIZE connections in both cases. When connection hold time dominates,
+     * the pool is the bottleneck and virtual threads do not help; this models the request mix where
+     * waiting outside the pool dominates.
+     */
+    @Test
+    @Tag("benchmark")
+    void virtualThreads_outperformPlatformPool_atTwoThousandUsers() throws Exception {
+        long platformMs = run(Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), "platform");
+        long virtualMs = run(Executors.newVirtualThreadPerTaskExecutor(), "virtual");
+
+        logger.info("{} users: platform={} ms, virtual={} ms", USERS, platformMs, virtualMs);
+        assertThat(virtualMs).isLessThan(platformMs);
+    }
+
+    private long run(ExecutorService executor, String mode) throws Exception {
+        BulkheadDataSourceTest.FakeDataSource pool = new BulkheadDataSourceTest.FakeDataSource();
+        BulkheadDataSource ds = new BulkheadDataSource(pool, POOL_SIZE, USERS, 10_000);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> requests = new ArrayList<>(USERS);
+        try (executor) {
+            for (int i = 0; i < USERS; i++) {
+                requests.add(executor.submit(() -> {
+                    go.await();
+                    Thread.sleep(200);
+                    try (Connection c = ds.getConnection()) {
+                        Thread.sleep(1);
+                    }
+                    return null;
+                }));
+            }
+            long start = System.nanoTime();
+            go.countDown();
+            for (Future<?> f : requests) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertThat(pool.maxOpen.get()).as(mode + " connections").isLessThanOrEqualTo(POOL_SIZE);
+            assertThat(ds.rejectedCount()).as(mode + " rejections").isZero();
+            return elapsedMs;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.school.equipmentlending.config;
+
+import com.school.equipmentlending.exception.GlobalExceptionHandler;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.util.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WriteConcurrencyInterceptorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteConcurrencyInterceptorTest.class);
+
+    @Test
+    void readsAreNeverLimited() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, Duration.ofSeconds(1), 0.5);
+        WriteConcurrencyInterceptor interceptor = new WriteConcurrencyInterceptor(limiter);
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("POST", "/api/loans/borrow"), new MockHttpServletResponse(), null));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(interceptor.preHandle(new MockHttpServletRequest("GET", "/api/loans/my"), new MockHttpServletResponse(), null));
+        }
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void writeOverLimit_isRefusedWith503() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 1, Duration.ofSeconds(1), 0.5);
+        WriteConcurrencyInterceptor interceptor = new WriteConcurrencyInterceptor(limiter);
+        interceptor.preHandle(new MockHttpServletRequest("POST", "/api/bookings/1/approve"), new MockHttpServletResponse(), null);
+
+        ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class, () ->
+                interceptor.preHandle(new MockHttpServletRequest("POST", "/api/bookings/2/approve"), new MockHttpServletResponse(), null));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+        assertEquals(1, ex.getRetryAfterSeconds());
+    }
+
+    @Test
+    void lockTimeoutThroughTheExceptionHandler_countsAsDropped_andShrinksTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 8, Duration.ofSeconds(10), 0.5);
+        MockMvc mockMvc = mockMvc(limiter);
+
+        mockMvc.perform(post("/writes/lock-timeout")).andExpect(status().isConflict());
+        assertEquals(4, limiter.getLimit());
+
+        // a service that translated the lock timeout itself, keeping it as the cause
+        mockMvc.perform(post("/writes/translated-lock-timeout")).andExpect(status().isConflict());
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void businessErrorsThroughTheExceptionHandler_doNotShrinkTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 8, Duration.ofSeconds(10), 0.5);
+        MockMvc mockMvc = mockMvc(limiter);
+
+        mockMvc.perform(post("/writes/bad-request")).andExpect(status().isBadRequest());
+        mockMvc.perform(post("/writes/conflict")).andExpect(status().isConflict());
+
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void afterCompletion_releasesOncePerRequest() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 8, Duration.ofSeconds(10), 0.5);
+        WriteConcurrencyInterceptor interceptor = new WriteConcurrencyInterceptor(limiter);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/bookings/1/approve");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Load test: 40 writers contend for one row lock while holding a connection from an 8-connection pool;
+     * 4 readers need a connection for 2 ms. Without a limit the writers take every connection and reads
+     * queue behind them; with the adaptive limit excess writes are shed and reads stay near their idle latency.
+     */
+    @Test
+    @Tag("benchmark")
+    void loadTest_readsKeepTheirLatencyWhileWritesAreShed() throws Exception {
+        long idle = runLoad(null, 0)[0];
+        long[] unlimited = runLoad(null, 40);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 40, Duration.ofMillis(50), 0.9);
+        long[] limited = runLoad(new WriteConcurrencyInterceptor(limiter), 40);
+
+        logger.info("Read p95: idle={}ms, 40 writers unlimited={}ms, 40 writers limited={}ms (limit {}, writes ok={} shed={})",
+                idle, unlimited[0], limited[0], limiter.getLimit(), limited[1], limited[2]);
+        assertThat(limited[2]).isPositive();
+        assertThat(limited[0]).isLessThan(unlimited[0] / 2);
+        assertThat(limited[0]).isLessThan(idle + 20);
+    }
+
+    private static MockMvc mockMvc(AdaptiveConcurrencyLimiter limiter) {
+        return MockMvcBuilders.standaloneSetup(new FailingWrites())
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .addInterceptors(new WriteConcurrencyInterceptor(limiter))
+                .build();
+    }
+
+    @RestController
+    static class FailingWrites {
+
+        @PostMapping("/writes/{failure}")
+        void fail(@PathVariable String failure) {
+            switch (failure) {
+                case "lock-timeout" -> throw new CannotAcquireLockException("lock wait timeout");
+                case "translated-lock-timeout" -> throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Could not acquire lock, please try again", new CannotAcquireLockException("lock wait timeout"));
+                case "conflict" -> throw new IllegalStateException("Equipment has loans");
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Quantity must be at least 1");
+            }
+        }
+    }
+
+    /** @return {read p95 ms, completed writes, shed writes} */
+    private long[] runLoad(WriteConcurrencyInterceptor interceptor, int writers) throws Exception {
+        Semaphore pool = new Semaphore(8, true);
+        ReentrantLock rowLock = new ReentrantLock(true);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger writesOk = new AtomicInteger();
+        AtomicInteger writesShed = new AtomicInteger();
+        List<Long> readLatencies = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService threads = Executors.newFixedThreadPool(writers + 4);
+
+        for (int w = 0; w < writers; w++) {
+            threads.submit(() -> {
+                while (running.get()) {
+                    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/bookings/1/approve");
+                    MockHttpServletResponse response = new MockHttpServletResponse();
+                    try {
+                        if (interceptor != null) interceptor.preHandle(request, response, null);
+                    } catch (ServiceOverloadedException shed) {
+                        writesShed.incrementAndGet();
+                        Thread.sleep(5);   // client backs off briefly
+                        continue;
+                    }
+                    pool.acquire();
+                    try {
+                        rowLock.lock();
+                        try {
+                            Thread.sleep(10);
+                        } finally {
+                            rowLock.unlock();
+                        }
+                    } finally {
+                        pool.release();
+                    }
+                    if (interceptor != null) interceptor.afterCompletion(request, response, null, null);
+                    writesOk.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        for (int r = 0; r < 4; r++) {
+            threads.submit(() -> {
+                Thread.sleep(300);   // let the limit settle
+                while (running.get()) {
+                    long start = System.nanoTime();
+                    pool.acquire();
+                    try {
+                        Thread.sleep(2);
+                    } finally {
+                        pool.release();
+                    }
+                    readLatencies.add(System.nanoTime() - start);
+                }
+                return null;
+            });
+        }
+
+        Thread.sleep(1500);
+        running.set(false);
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+
+        List<Long> sorted = new ArrayList<>(readLatencies);
+        Collections.sort(sorted);
+        long p95 = sorted.isEmpty() ? Long.MAX_VALUE : sorted.get((int) (sorted.size() * 0.95)) / 1_000_000;
+        return new long[]{p95, writesOk.get(), writesShed.get()};
+    }
+}
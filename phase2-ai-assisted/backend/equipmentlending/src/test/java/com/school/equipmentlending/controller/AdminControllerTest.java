@@ -1,9 +1,16 @@
 package com.school.equipmentlending.controller;
 
+import com.school.equipmentlending.config.SlowQueryLog;
+import com.school.equipmentlending.dto.BulkRoleRequest;
+import com.school.equipmentlending.dto.BulkRoleResult;
+import com.school.equipmentlending.dto.RosterImportResult;
+import com.school.equipmentlending.dto.SlowQueryDTO;
 import com.school.equipmentlending.model.Role;
 import com.school.equipmentlending.model.User;
 import com.school.equipmentlending.repository.RoleRepository;
 import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.service.RoleService;
+import com.school.equipmentlending.service.RosterImportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -11,6 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -18,6 +26,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -29,6 +38,15 @@ class AdminControllerTest {
     @Mock
     private RoleRepository roleRepo;
 
+    @Mock
+    private SlowQueryLog slowQueryLog;
+
+    @Mock
+    private RosterImportService rosterImportService;
+
+    @Mock
+    private RoleService roleService;
+
     @InjectMocks
     private AdminController controller;
 
@@ -124,4 +142,71 @@ class AdminControllerTest {
         assertTrue(root.getMessage().contains("User not found: " + username));
     }
 
+    @Test
+    void slowQueries_returnsSlowestStatements_withCappedLimit() throws Exception {
+        SlowQueryDTO dto = new SlowQueryDTO();
+        dto.setStatement("select * from loans where id=?");
+        dto.setMaxMs(412.5);
+        dto.setLastSlowServiceMethod("LoanService.getLoans");
+        when(slowQueryLog.slowest(200)).thenReturn(List.of(dto));
+
+        mockMvc.perform(get("/api/admin/slow-queries").param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].statement").value("select * from loans where id=?"))
+                .andExpect(jsonPath("$[0].maxMs").value(412.5))
+                .andExpect(jsonPath("$[0].lastSlowServiceMethod").value("LoanService.getLoans"));
+    }
+
+    @Test
+    void importRoster_streamsCsvToService_andReturnsCounts() throws Exception {
+        RosterImportResult result = new RosterImportResult();
+        result.setRows(3);
+        result.setCreated(2);
+        result.setSkipped(1);
+        when(rosterImportService.importRoster(any())).thenReturn(result);
+
+        mockMvc.perform(post("/api/admin/users/import")
+                        .contentType("text/csv")
+                        .content("username,password\na,x\nb,y\nc,z\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.skipped").value(1));
+        verify(rosterImportService).importRoster(any());
+    }
+
+    @Test
+    void rosterImportProgress_beforeAnyImport_is404() throws Exception {
+        when(rosterImportService.progress()).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/admin/users/import"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void bulkRoles_passesRequestToService() throws Exception {
+        BulkRoleResult result = new BulkRoleResult();
+        result.setRole("ROLE_STAFF");
+        result.setChanged(2);
+        when(roleService.apply(any())).thenReturn(result);
+
+        mockMvc.perform(post("/api/admin/roles/bulk")
+                        .contentType("application/json")
+                        .content("{\"action\":\"GRANT\",\"role\":\"staff\",\"usernames\":[\"ann\",\"ben\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed").value(2));
+
+        ArgumentCaptor<BulkRoleRequest> captor = ArgumentCaptor.forClass(BulkRoleRequest.class);
+        verify(roleService).apply(captor.capture());
+        assertEquals(BulkRoleRequest.Action.GRANT, captor.getValue().getAction());
+        assertEquals(List.of("ann", "ben"), captor.getValue().getUsernames());
+    }
+
+    @Test
+    void bulkRoles_withoutUsernames_is400() throws Exception {
+        mockMvc.perform(post("/api/admin/roles/bulk")
+                        .contentType("application/json")
+                        .content("{\"action\":\"REVOKE\",\"role\":\"staff\",\"usernames\":[]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(roleService);
+    }
 }
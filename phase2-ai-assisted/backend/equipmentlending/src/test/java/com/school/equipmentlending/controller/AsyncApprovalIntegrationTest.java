@@ -0,0 +1,249 @@
+package com.school.equipmentlending.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.security.JwtUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Admins approving a backlog of bookings for a few popular equipments from several browsers at once:
+ * synchronous approvals queue on the equipment row lock inside their requests, async approvals return
+ * as soon as the job is queued. The latency comparison is tagged benchmark (mvn -Pbenchmarks test).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AsyncApprovalIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncApprovalIntegrationTest.class);
+
+    private static final int EQUIPMENTS = 3;
+    private static final int BOOKINGS = 90;
+    private static final int CLIENTS = 8;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private BookingRequestRepository bookingRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private final List<Equipment> equipments = new ArrayList<>();
+    private User student;
+    private String adminToken;
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepo.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepo.save(r);
+        });
+        User u = new User();
+        u.setUsername("async-student");
+        u.setPassword("x");
+        u.setRoles(Set.of(userRole));
+        student = userRepo.save(u);
+        for (int i = 0; i < EQUIPMENTS; i++) {
+            Equipment e = new Equipment();
+            e.setName("Popular kit " + i);
+            e.setCategory("Lab");
+            e.setQuantity(4 * BOOKINGS);
+            equipments.add(equipmentRepo.save(e));
+        }
+        adminToken = "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken("admin", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        loanRepo.deleteAll();
+        bookingRepo.deleteAll();
+        equipmentRepo.deleteAll(equipments);
+        userRepo.delete(student);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void asyncApproval_approvesEverything() throws Exception {
+        ConcurrentLinkedQueue<Long> asyncLatencies = new ConcurrentLinkedQueue<>();
+        List<Long> asyncBookings = pendingBookings(BOOKINGS);
+        long start = System.nanoTime();
+        List<JsonNode> jobs = approveAsync(asyncBookings, asyncLatencies);
+        long asyncNanos = System.nanoTime() - start;
+
+        logger.info("{} async approvals from {} clients on {} equipments: accept p50={}us p99={}us, all done in {}ms",
+                BOOKINGS, CLIENTS, EQUIPMENTS, percentile(asyncLatencies, 0.5) / 1000,
+                percentile(asyncLatencies, 0.99) / 1000, asyncNanos / 1_000_000);
+
+        assertTrue(jobs.stream().allMatch(j -> "SUCCEEDED".equals(j.get("state").asText())),
+                "some async approvals failed");
+        assertEquals(BOOKINGS, bookingRepo.findAllById(asyncBookings).stream()
+                .filter(b -> b.getStatus() == BookingStatus.APPROVED).count());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void asyncApproval_answersTheAdminFasterThanSyncApproval() throws Exception {
+        approveSync(pendingBookings(BOOKINGS / 3), new ConcurrentLinkedQueue<>());   // warm-up
+        approveAsync(pendingBookings(BOOKINGS / 3), new ConcurrentLinkedQueue<>());
+
+        ConcurrentLinkedQueue<Long> syncLatencies = new ConcurrentLinkedQueue<>();
+        List<Long> syncBookings = pendingBookings(BOOKINGS);
+        long start = System.nanoTime();
+        int syncApproved = approveSync(syncBookings, syncLatencies);
+        long syncNanos = System.nanoTime() - start;
+
+        ConcurrentLinkedQueue<Long> asyncLatencies = new ConcurrentLinkedQueue<>();
+        List<Long> asyncBookings = pendingBookings(BOOKINGS);
+        start = System.nanoTime();
+        List<JsonNode> jobs = approveAsync(asyncBookings, asyncLatencies);
+        long asyncNanos = System.nanoTime() - start;
+
+        long syncP50 = percentile(syncLatencies, 0.5);
+        long asyncP50 = percentile(asyncLatencies, 0.5);
+        logger.info("{} approvals from {} clients on {} equipments: sync p50={}us p99={}us total={}ms ({} ok); "
+                        + "async accept p50={}us p99={}us, all done in {}ms",
+                BOOKINGS, CLIENTS, EQUIPMENTS, syncP50 / 1000, percentile(syncLatencies, 0.99) / 1000,
+                syncNanos / 1_000_000, syncApproved, asyncP50 / 1000, percentile(asyncLatencies, 0.99) / 1000,
+                asyncNanos / 1_000_000);
+
+        assertTrue(jobs.stream().allMatch(j -> "SUCCEEDED".equals(j.get("state").asText())),
+                "some async approvals failed");
+        assertTrue(asyncP50 < syncP50, "async accept p50 " + asyncP50 + "ns not below sync p50 " + syncP50 + "ns");
+    }
+
+    @Test
+    void asyncApproval_reportsWhyABookingCouldNotBeApproved() throws Exception {
+        Long bookingId = pendingBookings(1).get(0);
+        approveSync(List.of(bookingId), new ConcurrentLinkedQueue<>());
+
+        JsonNode job = approveAsync(List.of(bookingId), new ConcurrentLinkedQueue<>()).get(0);
+
+        assertEquals("FAILED", job.get("state").asText());
+        assertEquals(400, job.get("httpStatus").asInt());
+        assertEquals("Only PENDING bookings can be approved", job.get("message").asText());
+    }
+
+    /** One overlapping PENDING booking per slot, spread round-robin over the equipments. */
+    private List<Long> pendingBookings(int count) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingRequest> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookingRequest b = new BookingRequest();
+            b.setEquipment(equipments.get(i % EQUIPMENTS));
+            b.setRequester(student);
+            b.setStartAt(start);
+            b.setEndAt(start.plusHours(2));
+            b.setQuantityRequested(1);
+            b.setStatus(BookingStatus.PENDING);
+            bookings.add(b);
+        }
+        return bookingRepo.saveAll(bookings).stream().map(BookingRequest::getId).toList();
+    }
+
+    private int approveSync(List<Long> bookingIds, ConcurrentLinkedQueue<Long> latencies) throws Exception {
+        AtomicInteger approved = new AtomicInteger();
+        runClients(bookingIds, id -> {
+            long t0 = System.nanoTime();
+            MvcResult result = mockMvc.perform(post("/api/bookings/{id}/approve", id)
+                    .header("Authorization", adminToken)).andReturn();
+            latencies.add(System.nanoTime() - t0);
+            if (result.getResponse().getStatus() == 200) approved.incrementAndGet();
+            return null;
+        });
+        return approved.get();
+    }
+
+    /** Submit every approval, then poll until each job has finished; returns the final job states. */
+    private List<JsonNode> approveAsync(List<Long> bookingIds, ConcurrentLinkedQueue<Long> latencies) throws Exception {
+        List<String> jobIds = Collections.synchronizedList(new ArrayList<>());
+        runClients(bookingIds, id -> {
+            long t0 = System.nanoTime();
+            MvcResult result;
+            // the write limiter may shed a submission after slow sync approvals; retry like a client would
+            while ((result = mockMvc.perform(post("/api/bookings/{id}/approve", id).param("async", "true")
+                    .header("Authorization", adminToken)).andReturn()).getResponse().getStatus() == 503) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+            }
+            latencies.add(System.nanoTime() - t0);
+            assertEquals(202, result.getResponse().getStatus(), result.getResponse().getContentAsString());
+            jobIds.add(objectMapper.readTree(result.getResponse().getContentAsString()).get("jobId").asText());
+            return null;
+        });
+
+        List<JsonNode> finished = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (String jobId : jobIds) {
+            while (true) {
+                JsonNode job = objectMapper.readTree(mockMvc.perform(get("/api/bookings/jobs/{id}", jobId)
+                        .header("Authorization", adminToken)).andReturn().getResponse().getContentAsString());
+                String state = job.get("state").asText();
+                if ("SUCCEEDED".equals(state) || "FAILED".equals(state)) {
+                    finished.add(job);
+                    break;
+                }
+                assertTrue(System.nanoTime() < deadline, "job " + jobId + " still " + state);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            }
+        }
+        return finished;
+    }
+
+    private void runClients(List<Long> bookingIds, Request request) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (Long id : bookingIds) {
+                results.add(clients.submit(() -> request.send(id)));
+            }
+            for (Future<Object> f : results) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private interface Request {
+        Object send(Long bookingId) throws Exception;
+    }
+
+    private static long percentile(ConcurrentLinkedQueue<Long> samples, double p) {
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1));
+    }
+}
@@ -8,6 +8,7 @@ import com.school.equipmentlending.model.User;
 import com.school.equipmentlending.repository.UserRepository;
 import com.school.equipmentlending.security.JwtUtils;
 import com.school.equipmentlending.service.UserService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -16,6 +17,7 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
@@ -59,6 +61,12 @@ class AuthControllerTest {
         mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
     }
 
+    @AfterEach
+    void clearSecurityContext() {
+        // login stores the authentication on this thread; later full-stack MockMvc tests would inherit it
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     void authenticateUser_success_returnsTokenAndUserDto() throws Exception {
         // Arrange
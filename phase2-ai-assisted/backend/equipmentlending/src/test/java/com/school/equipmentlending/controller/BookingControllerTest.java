@@ -3,12 +3,19 @@ package com.school.equipmentlending.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.school.equipmentlending.dto.ApprovalJobDTO;
+import com.school.equipmentlending.dto.AvailableSlotDTO;
 import com.school.equipmentlending.dto.BookingDecisionDTO;
 import com.school.equipmentlending.dto.BookingRequestDTO;
 import com.school.equipmentlending.dto.CreateBookingRequestDTO;
+import com.school.equipmentlending.mapper.BookingMapper;
 import com.school.equipmentlending.model.*;
-import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.service.ApprovalJobService;
+import com.school.equipmentlending.service.AvailabilityService;
 import com.school.equipmentlending.service.BookingService;
+import com.school.equipmentlending.service.IdempotencyService;
+import com.school.equipmentlending.service.ReservationCommands;
+import com.school.equipmentlending.service.InMemoryIdempotencyStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -18,9 +25,11 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -30,7 +39,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 /**
  * Unit tests for the original BookingController implementation which:
  * - delegates to BookingService for create/approve/reject
- * - reads from BookingRequestRepository for myBookings and pending
+ * - reads myBookings and pending through BookingService's read-only queries
  * - checks ROLE_ADMIN for admin endpoints
  */
 class BookingControllerTest {
@@ -41,7 +50,17 @@ class BookingControllerTest {
     private BookingService bookingService;
 
     @Mock
-    private BookingRequestRepository bookingRepo;
+    private AvailabilityService availabilityService;
+
+    @Mock
+    private ApprovalJobService approvalJobService;
+
+    @Mock
+    private ReservationCommands reservationCommands;
+
+    @Spy
+    private IdempotencyService idempotencyService = new IdempotencyService(new InMemoryIdempotencyStore(),
+            new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofHours(1));
 
     @InjectMocks
     private BookingController controller;
@@ -88,6 +107,35 @@ class BookingControllerTest {
         verify(bookingService).createBooking(eq("alice"), any(CreateBookingRequestDTO.class));
     }
 
+    @Test
+    void createBooking_retryWithSameIdempotencyKey_replaysWithoutCreatingAgain() throws Exception {
+        CreateBookingRequestDTO req = new CreateBookingRequestDTO();
+        req.setEquipmentId(1L);
+        req.setStartAt(LocalDateTime.of(2030, 1, 10, 9, 0));
+        req.setEndAt(LocalDateTime.of(2030, 1, 10, 11, 0));
+        req.setQuantityRequested(1);
+
+        BookingRequestDTO dto = new BookingRequestDTO();
+        dto.setId(124L);
+        dto.setRequesterUsername("alice");
+
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("alice");
+        when(bookingService.createBooking(eq("alice"), any(CreateBookingRequestDTO.class))).thenReturn(dto);
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            mockMvc.perform(post("/api/bookings")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .header(IdempotencyService.HEADER, "req-abc")
+                            .principal(auth)
+                            .content(mapper.writeValueAsString(req)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(124));
+        }
+
+        verify(bookingService, times(1)).createBooking(eq("alice"), any(CreateBookingRequestDTO.class));
+    }
+
     @Test
     void createBooking_serviceThrowsIllegalArgument_returnsBadRequestWithErrorBody() throws Exception {
         CreateBookingRequestDTO req = new CreateBookingRequestDTO();
@@ -133,7 +181,7 @@ class BookingControllerTest {
     // ---------------- myBookings ----------------
 
     @Test
-    void myBookings_returnsListMappedFromRepo() throws Exception {
+    void myBookings_returnsTheUsersBookings() throws Exception {
         Authentication auth = mock(Authentication.class);
         when(auth.getName()).thenReturn("alice");
 
@@ -151,7 +199,7 @@ class BookingControllerTest {
         br.setQuantityRequested(1);
         br.setStatus(BookingStatus.PENDING);
 
-        when(bookingRepo.findByRequester_Username("alice")).thenReturn(List.of(br));
+        when(bookingService.getBookingsForUser("alice")).thenReturn(List.of(BookingMapper.toDTO(br)));
 
         mockMvc.perform(get("/api/bookings/my").principal(auth))
                 .andExpect(status().isOk())
@@ -161,6 +209,36 @@ class BookingControllerTest {
                 .andExpect(jsonPath("$[0].requesterUsername").value("alice"));
     }
 
+    // ---------------- next available slots ----------------
+
+    @Test
+    void nextAvailableSlots_delegatesToAvailabilityService() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2025, 3, 3, 9, 0);
+        AvailableSlotDTO slot = new AvailableSlotDTO(from.plusHours(2), from.plusHours(4), null, 3);
+        when(availabilityService.findNextSlots(4L, 2, Duration.ofMinutes(120), from, 3)).thenReturn(List.of(slot));
+
+        mockMvc.perform(get("/api/bookings/slots")
+                        .param("equipmentId", "4")
+                        .param("quantity", "2")
+                        .param("durationMinutes", "120")
+                        .param("from", "2025-03-03T09:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].availableUnits").value(3));
+
+        verify(availabilityService).findNextSlots(4L, 2, Duration.ofMinutes(120), from, 3);
+    }
+
+    @Test
+    void nextAvailableSlots_hugeDuration_isBadRequest() throws Exception {
+        mockMvc.perform(get("/api/bookings/slots")
+                        .param("equipmentId", "4")
+                        .param("durationMinutes", String.valueOf(Long.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(availabilityService);
+    }
+
     // ---------------- pendingBookings (admin only) ----------------
 
     @Test
@@ -191,7 +269,7 @@ class BookingControllerTest {
         br.setRequester(u);
         br.setStatus(BookingStatus.PENDING);
 
-        when(bookingRepo.findByStatus(BookingStatus.PENDING)).thenReturn(List.of(br));
+        when(bookingService.getPendingBookings()).thenReturn(List.of(BookingMapper.toDTO(br)));
 
         mockMvc.perform(get("/api/bookings/pending").principal(auth))
                 .andExpect(status().isOk())
@@ -222,14 +300,14 @@ class BookingControllerTest {
         BookingRequestDTO resp = new BookingRequestDTO();
         resp.setId(10L);
         resp.setRequesterUsername("alice");
-        when(bookingService.approveBooking(eq(10L), eq("adminUser"), isNull())).thenReturn(resp);
+        when(reservationCommands.approve(eq(10L), eq("adminUser"), isNull())).thenReturn(resp);
 
         mockMvc.perform(post("/api/bookings/10/approve").principal(auth))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(10))
                 .andExpect(jsonPath("$.requesterUsername").value("alice"));
 
-        verify(bookingService).approveBooking(10L, "adminUser", null);
+        verify(reservationCommands).approve(10L, "adminUser", null);
     }
 
     @Test
@@ -255,4 +333,60 @@ class BookingControllerTest {
 
         verify(bookingService).rejectBooking(99L, "adminUser", "Not enough stock");
     }
+
+    // ---------------- async approval ----------------
+
+    @Test
+    void approveBooking_async_returnsAcceptedWithJobLocation() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("adminUser");
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                .when(auth).getAuthorities();
+
+        ApprovalJobDTO job = new ApprovalJobDTO();
+        job.setJobId("job-1");
+        job.setBookingId(10L);
+        job.setState(ApprovalJobDTO.State.QUEUED);
+        when(approvalJobService.submit(10L, "adminUser", null)).thenReturn(job);
+
+        mockMvc.perform(post("/api/bookings/10/approve").param("async", "true").principal(auth))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/bookings/jobs/job-1"))
+                .andExpect(jsonPath("$.state").value("QUEUED"));
+
+        verify(bookingService, never()).approveBooking(any(), any(), any());
+        verify(reservationCommands, never()).approve(any(), any(), any());
+    }
+
+    @Test
+    void approvalJob_admin_returnsJob_unknownIsNotFound() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                .when(auth).getAuthorities();
+
+        ApprovalJobDTO job = new ApprovalJobDTO();
+        job.setJobId("job-1");
+        job.setState(ApprovalJobDTO.State.FAILED);
+        job.setHttpStatus(400);
+        when(approvalJobService.find("job-1")).thenReturn(Optional.of(job));
+        when(approvalJobService.find("gone")).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/bookings/jobs/job-1").principal(auth))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("FAILED"))
+                .andExpect(jsonPath("$.httpStatus").value(400));
+        mockMvc.perform(get("/api/bookings/jobs/gone").principal(auth))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void approvalJob_nonAdmin_returnsForbidden() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")))
+                .when(auth).getAuthorities();
+
+        mockMvc.perform(get("/api/bookings/jobs/job-1").principal(auth))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(approvalJobService);
+    }
 }
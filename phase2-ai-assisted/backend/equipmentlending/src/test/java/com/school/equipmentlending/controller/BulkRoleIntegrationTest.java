@@ -0,0 +1,165 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.config.SlowQueryLog;
+import com.school.equipmentlending.dto.BulkRoleRequest;
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.model.User;
+import com.school.equipmentlending.repository.RoleRepository;
+import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.security.JwtUtils;
+import com.school.equipmentlending.service.RoleService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * POST /api/admin/roles/bulk over the full stack: one user_roles statement per request, and the
+ * authorities JwtAuthFilter reads through the second-level cache see the change immediately.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BulkRoleIntegrationTest {
+
+    private static final int USERS = 200;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserRepository userRepository;
+    @Autowired private RoleRepository roleRepository;
+    @Autowired private RoleService roleService;
+    @Autowired private UserDetailsService userDetailsService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private SlowQueryLog slowQueryLog;
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepository.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepository.save(r);
+        });
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User u = new User();
+            u.setUsername("bulk-role-" + i);
+            u.setPassword("x");
+            u.setRoles(new java.util.HashSet<>(Set.of(userRole)));
+            users.add(u);
+        }
+        userRepository.saveAll(users);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from user_roles where user_id in (select id from users where username like 'bulk-role-%')");
+        jdbcTemplate.update("delete from users where username like 'bulk-role-%'");
+        jdbcTemplate.update("delete from role where name in ('ROLE_MONITOR', 'ROLE_RACE')");
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void grantAndRevoke_areOneStatementEach_andCachedAuthoritiesFollow() throws Exception {
+        assertFalse(authorities("bulk-role-7").contains("ROLE_MONITOR"));   // caches the current roles
+
+        StringBuilder body = new StringBuilder("{\"action\":\"GRANT\",\"role\":\"monitor\",\"usernames\":[");
+        for (int i = 0; i < USERS; i++) body.append("\"bulk-role-").append(i).append("\",");
+        body.append("\"bulk-role-missing\"]}");
+
+        long inserts = executions("insert into user_roles");
+        mockMvc.perform(post("/api/admin/roles/bulk")
+                        .header("Authorization", bearer())
+                        .contentType("application/json")
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("ROLE_MONITOR"))
+                .andExpect(jsonPath("$.matched").value(USERS))
+                .andExpect(jsonPath("$.changed").value(USERS))
+                .andExpect(jsonPath("$.unknownUsernames[0]").value("bulk-role-missing"));
+        assertEquals(1, executions("insert into user_roles") - inserts);
+        assertTrue(authorities("bulk-role-7").containsAll(Set.of("ROLE_USER", "ROLE_MONITOR")));
+
+        // granting again changes nothing
+        mockMvc.perform(post("/api/admin/roles/bulk")
+                        .header("Authorization", bearer())
+                        .contentType("application/json")
+                        .content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed").value(0));
+
+        long deletes = executions("delete from user_roles");
+        mockMvc.perform(post("/api/admin/roles/bulk")
+                        .header("Authorization", bearer())
+                        .contentType("application/json")
+                        .content(body.toString().replace("GRANT", "REVOKE")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed").value(USERS));
+        assertEquals(1, executions("delete from user_roles") - deletes);
+        assertEquals(Set.of("ROLE_USER"), authorities("bulk-role-7"));
+    }
+
+    @Test
+    void concurrentGrantsOfANewRole_createItOnce() throws Exception {
+        int admins = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(admins);
+        try {
+            List<Future<?>> grants = new ArrayList<>();
+            for (int i = 0; i < admins; i++) {
+                BulkRoleRequest req = new BulkRoleRequest();
+                req.setAction(BulkRoleRequest.Action.GRANT);
+                req.setRole("race");
+                req.setUsernames(List.of("bulk-role-" + i));
+                grants.add(pool.submit(() -> roleService.apply(req)));
+            }
+            for (Future<?> grant : grants) grant.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from role where name = 'ROLE_RACE'", Integer.class));
+        assertEquals(admins, jdbcTemplate.queryForObject("select count(*) from user_roles ur join role r on r.id = ur.role_id"
+                + " where r.name = 'ROLE_RACE'", Integer.class));
+    }
+
+    private Set<String> authorities(String username) {
+        Set<String> names = new java.util.HashSet<>();
+        for (GrantedAuthority a : userDetailsService.loadUserByUsername(username).getAuthorities()) {
+            names.add(a.getAuthority());
+        }
+        return names;
+    }
+
+    private long executions(String prefix) {
+        return slowQueryLog.slowest(Integer.MAX_VALUE).stream()
+                .filter(s -> s.getStatement().regionMatches(true, 0, prefix, 0, prefix.length()))
+                .mapToLong(SlowQueryDTO::getExecutions)
+                .sum();
+    }
+
+    private String bearer() {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken("admin", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+}
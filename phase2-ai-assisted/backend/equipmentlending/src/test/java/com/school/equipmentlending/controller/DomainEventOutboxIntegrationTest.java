@@ -0,0 +1,182 @@
+package com.school.equipmentlending.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.event.EquipmentChanged;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.security.JwtUtils;
+import com.school.equipmentlending.service.OutboxRelay;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Outbox over the full stack: events are written with the change they describe, relayed to the
+ * consumers after commit and marked dispatched; a rolled-back request leaves no event behind.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class DomainEventOutboxIntegrationTest {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private OutboxEventRepository outboxRepo;
+    @Autowired private OutboxRelay relay;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Equipment equipment;
+    private User student;
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepo.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepo.save(r);
+        });
+        User u = new User();
+        u.setUsername("outbox-student");
+        u.setPassword("x");
+        u.setRoles(Set.of(userRole));
+        student = userRepo.save(u);
+        Equipment e = new Equipment();
+        e.setName("Outbox scope");
+        e.setCategory("Lab");
+        e.setQuantity(2);
+        equipment = equipmentRepo.save(e);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        await(relay::isIdle);
+        loanRepo.deleteAll();
+        equipmentRepo.delete(equipment);
+        userRepo.delete(student);
+        outboxRepo.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void borrowAndReturn_recordEvents_thatAreDeliveredAndMarkedDispatched() throws Exception {
+        double created = delivered("LoanCreated");
+        double returned = delivered("LoanReturned");
+
+        String body = mockMvc.perform(post("/api/loans/borrow")
+                        .header("Authorization", bearer())
+                        .contentType("application/json")
+                        .content("{\"equipmentId\":" + equipment.getId() + ",\"quantity\":1,\"days\":2}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Long loanId = objectMapper.readTree(body).get("id").asLong();
+        mockMvc.perform(post("/api/loans/{id}/return", loanId).header("Authorization", bearer()))
+                .andExpect(status().isOk());
+
+        await(() -> delivered("LoanReturned") > returned);
+        await(relay::isIdle);
+        List<OutboxEvent> rows = outboxRepo.findAll().stream()
+                .filter(r -> r.getAggregateId().equals(loanId))
+                .sorted(Comparator.comparing(OutboxEvent::getId))
+                .toList();
+        assertEquals(List.of("LoanCreated", "LoanReturned"), rows.stream().map(OutboxEvent::getType).toList());
+        assertTrue(rows.stream().allMatch(r -> r.getDispatchedAt() != null));
+        assertEquals(created + 1, delivered("LoanCreated"));
+    }
+
+    @Test
+    void rejectedRequest_recordsNoEvent() throws Exception {
+        long before = outboxRepo.count();
+
+        mockMvc.perform(post("/api/loans/borrow")
+                        .header("Authorization", bearer())
+                        .contentType("application/json")
+                        .content("{\"equipmentId\":" + equipment.getId() + ",\"quantity\":3,\"days\":2}"))
+                .andExpect(result -> assertNotEquals(200, result.getResponse().getStatus()));
+
+        assertEquals(before, outboxRepo.count());
+    }
+
+    @Test
+    void eventWhoseHandOffWasLost_isRecoveredBySweep() throws Exception {
+        double changed = delivered("EquipmentChanged");
+        String payload = objectMapper.writeValueAsString(
+                new EquipmentChanged(equipment.getId(), EquipmentChanged.Change.UPDATED));
+        OutboxEvent orphan = outboxRepo.save(new OutboxEvent("EquipmentChanged", equipment.getId(), payload,
+                LocalDateTime.now().minusMinutes(5)));
+
+        relay.requestSweep();
+
+        await(() -> outboxRepo.findById(orphan.getId()).map(OutboxEvent::getDispatchedAt).isPresent());
+        assertEquals(changed + 1, delivered("EquipmentChanged"));
+    }
+
+    @Test
+    void eventThatKeepsFailingDelivery_isDeadLettered_notDispatched() throws Exception {
+        String payload = objectMapper.writeValueAsString(
+                new EquipmentChanged(equipment.getId(), EquipmentChanged.Change.UPDATED));
+        // recorded just now, so the running relay's sweep leaves it alone during the test
+        OutboxEvent row = outboxRepo.save(new OutboxEvent("EquipmentChanged", equipment.getId(), payload,
+                LocalDateTime.now()));
+        LocalDateTime later = LocalDateTime.now().plusMinutes(1);
+
+        outboxRepo.recordDeliveryFailure(List.of(row.getId()), 2, LocalDateTime.now());
+        OutboxEvent once = outboxRepo.findById(row.getId()).orElseThrow();
+        assertEquals(1, once.getDeliveryFailures());
+        assertNull(once.getDeadLetteredAt());
+        assertTrue(outboxRepo.findUndispatched(0L, later, PageRequest.of(0, 1000)).stream()
+                .anyMatch(r -> r.getId().equals(row.getId())));
+
+        outboxRepo.recordDeliveryFailure(List.of(row.getId()), 2, LocalDateTime.now());
+        OutboxEvent twice = outboxRepo.findById(row.getId()).orElseThrow();
+        assertEquals(2, twice.getDeliveryFailures());
+        assertNotNull(twice.getDeadLetteredAt());
+        assertNull(twice.getDispatchedAt());
+        assertTrue(outboxRepo.findUndispatched(0L, later, PageRequest.of(0, 1000)).stream()
+                .noneMatch(r -> r.getId().equals(row.getId())));
+    }
+
+    private double delivered(String type) {
+        Counter counter = meterRegistry.find("domain.events").tag("type", type).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private String bearer() {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken("outbox-student", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+}
@@ -3,7 +3,11 @@ package com.school.equipmentlending.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.school.equipmentlending.dto.EquipmentDTO;
 import com.school.equipmentlending.exception.GlobalExceptionHandler;
+import com.school.equipmentlending.dto.EquipmentImportResult;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import com.school.equipmentlending.service.EquipmentImportService;
 import com.school.equipmentlending.service.EquipmentService;
+import com.school.equipmentlending.service.ReservationCommands;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -28,6 +32,12 @@ class EquipmentControllerTest {
     @Mock
     private EquipmentService equipmentService; // replace with actual service class
 
+    @Mock
+    private EquipmentImportService equipmentImportService;
+
+    @Mock
+    private ReservationCommands reservationCommands;
+
     @InjectMocks
     private EquipmentController controller; // replace with your controller class
 
@@ -90,6 +100,18 @@ class EquipmentControllerTest {
                 .andExpect(jsonPath("$.id").value(1));
     }
 
+    @Test
+    void getCurrentAvailability_returnsReservationState() throws Exception {
+        when(reservationCommands.currentState(1L))
+                .thenReturn(new ReservationStateDTO(1L, 10, 7, LocalDateTime.now(), 42L));
+
+        mockMvc.perform(get("/api/equipments/1/availability"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reservedNow").value(7))
+                .andExpect(jsonPath("$.availableNow").value(3))
+                .andExpect(jsonPath("$.version").value(42));
+    }
+
     @Test
     void createEquipment_valid_returnsOk() throws Exception {
         ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
@@ -134,5 +156,24 @@ class EquipmentControllerTest {
                 .andExpect(status().isNoContent());
         verify(equipmentService).deleteEquipment(5L);
     }
-}
 
+    @Test
+    void importEquipments_picksFormatFromContentType() throws Exception {
+        EquipmentImportResult result = new EquipmentImportResult();
+        result.setCreated(2);
+        when(equipmentImportService.importEquipment(any(), any())).thenReturn(result);
+
+        mockMvc.perform(post("/api/equipments/import")
+                        .contentType("text/csv")
+                        .content("name,quantity\nA,1\nB,1\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
+        verify(equipmentImportService).importEquipment(any(), eq(EquipmentImportService.Format.CSV));
+
+        mockMvc.perform(post("/api/equipments/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"A\",\"quantity\":1}\n"))
+                .andExpect(status().isOk());
+        verify(equipmentImportService).importEquipment(any(), eq(EquipmentImportService.Format.NDJSON));
+    }
+}
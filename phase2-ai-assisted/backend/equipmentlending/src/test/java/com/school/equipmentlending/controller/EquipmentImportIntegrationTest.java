@@ -0,0 +1,110 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.security.JwtUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * POST /api/equipments/import over the full stack: a CSV upload of a few chunks, then the same file again
+ * (every row now an update), each recording one EquipmentChanged per item. That a 20k-row file clears
+ * 50k rows per minute both ways is tagged benchmark (mvn -Pbenchmarks test).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class EquipmentImportIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(EquipmentImportIntegrationTest.class);
+
+    private static final int ROWS = 2_000;
+    private static final int BENCHMARK_ROWS = 20_000;
+    private static final double MIN_ROWS_PER_MINUTE = 50_000;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from outbox_events where event_type = 'EquipmentChanged' and aggregate_id in "
+                + "(select id from equipment where name like 'Import item %')");
+        jdbcTemplate.update("delete from equipment where name like 'Import item %'");
+        entityManagerFactory.getCache().evict(Equipment.class);
+    }
+
+    @Test
+    void csvImport_createsThenUpdates() throws Exception {
+        byte[] upload = upload(ROWS);
+
+        importRate(upload, ROWS, "$.created");
+        importRate(upload, ROWS, "$.updated");
+
+        assertEquals(ROWS, jdbcTemplate.queryForObject(
+                "select count(*) from equipment where name like 'Import item %' and name_key = lower(name)",
+                Integer.class));
+        // one EquipmentChanged per item and import: CREATED by the first, UPDATED by the second
+        assertEquals(List.of(ROWS, ROWS), jdbcTemplate.queryForList(
+                "select count(*) from outbox_events o join equipment e on e.id = o.aggregate_id"
+                        + " where o.event_type = 'EquipmentChanged' and e.name like 'Import item %'"
+                        + " group by o.payload like '%CREATED%'", Integer.class));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void csvImport_createsThenUpdates_above50kRowsPerMinute() throws Exception {
+        byte[] upload = upload(BENCHMARK_ROWS);
+
+        double created = importRate(upload, BENCHMARK_ROWS, "$.created");
+        double updated = importRate(upload, BENCHMARK_ROWS, "$.updated");
+
+        logger.info("equipment import: {} rows/min creating, {} rows/min updating ({} rows)",
+                Math.round(created), Math.round(updated), BENCHMARK_ROWS);
+        assertTrue(created >= MIN_ROWS_PER_MINUTE, "create rate " + created);
+        assertTrue(updated >= MIN_ROWS_PER_MINUTE, "update rate " + updated);
+    }
+
+    private static byte[] upload(int rows) {
+        StringBuilder csv = new StringBuilder("name,category,condition,quantity\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("Import item ").append(i).append(",Category ").append(i % 40).append(",GOOD,").append(1 + i % 5)
+                    .append('\n');
+        }
+        return csv.toString().getBytes();
+    }
+
+    /** Posts the upload and returns the rows imported per minute. */
+    private double importRate(byte[] upload, int rows, String countPath) throws Exception {
+        long start = System.nanoTime();
+        mockMvc.perform(post("/api/equipments/import")
+                        .header("Authorization", bearer())
+                        .contentType("text/csv")
+                        .content(upload))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath(countPath).value(rows))
+                .andExpect(jsonPath("$.rejected").value(0));
+        return rows / ((System.nanoTime() - start) / 6e10);
+    }
+
+    private String bearer() {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken("admin", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+}
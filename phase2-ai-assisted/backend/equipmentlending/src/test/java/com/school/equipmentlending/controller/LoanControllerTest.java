@@ -5,7 +5,12 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.school.equipmentlending.dto.BorrowRequest;
 import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.LoanReturnResult;
+import com.school.equipmentlending.model.LoanStatus;
+import com.school.equipmentlending.service.IdempotencyService;
+import com.school.equipmentlending.service.InMemoryIdempotencyStore;
 import com.school.equipmentlending.service.LoanService;
+import com.school.equipmentlending.service.ReservationCommands;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
@@ -15,6 +20,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
@@ -34,6 +40,13 @@ class LoanControllerTest {
     @Mock
     private LoanService loanService;
 
+    @Mock
+    private ReservationCommands reservationCommands;
+
+    @Spy
+    private IdempotencyService idempotencyService = new IdempotencyService(new InMemoryIdempotencyStore(),
+            new ObjectMapper().registerModule(new JavaTimeModule()), Duration.ofHours(1));
+
     @InjectMocks
     private LoanController controller;
 
@@ -66,7 +79,7 @@ class LoanControllerTest {
         resp.setDueAt(LocalDateTime.now().plusDays(3));
         resp.setQuantity(2);
 
-        when(loanService.borrowNow(eq("alice"), any(BorrowRequest.class))).thenReturn(resp);
+        when(reservationCommands.borrow(eq("alice"), any(BorrowRequest.class))).thenReturn(resp);
 
         mockMvc.perform(post("/api/loans/borrow")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -77,7 +90,41 @@ class LoanControllerTest {
                 .andExpect(jsonPath("$.equipmentId").value(5))
                 .andExpect(jsonPath("$.borrowerUsername").value("alice"));
 
-        verify(loanService).borrowNow(eq("alice"), any(BorrowRequest.class));
+        verify(reservationCommands).borrow(eq("alice"), any(BorrowRequest.class));
+    }
+
+    @Test
+    void borrowNow_replayedKey_returnsOriginalLoanAndMarksReplay() throws Exception {
+        BorrowRequest req = new BorrowRequest();
+        req.setEquipmentId(5L);
+        req.setQuantity(1);
+
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("alice");
+
+        LoanResponse resp = new LoanResponse();
+        resp.setId(43L);
+        resp.setEquipmentId(5L);
+        when(reservationCommands.borrow(eq("alice"), any(BorrowRequest.class))).thenReturn(resp);
+
+        mockMvc.perform(post("/api/loans/borrow")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(IdempotencyService.HEADER, "borrow-1")
+                        .principal(auth)
+                        .content(mapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER));
+
+        mockMvc.perform(post("/api/loans/borrow")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(IdempotencyService.HEADER, "borrow-1")
+                        .principal(auth)
+                        .content(mapper.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.id").value(43));
+
+        verify(reservationCommands, times(1)).borrow(eq("alice"), any(BorrowRequest.class));
     }
 
     @Test
@@ -94,14 +141,64 @@ class LoanControllerTest {
         resp.setReturnedAt(LocalDateTime.now());
         resp.setStatus(null); // not asserting status here
 
-        when(loanService.markLoanReturned(eq(10L), eq("bob"), eq(false))).thenReturn(resp);
+        when(reservationCommands.returnLoan(eq(10L), eq("bob"), eq(false))).thenReturn(resp);
 
         mockMvc.perform(post("/api/loans/10/return").principal(auth))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(10))
                 .andExpect(jsonPath("$.borrowerUsername").value("bob"));
 
-        verify(loanService).markLoanReturned(10L, "bob", false);
+        verify(reservationCommands).returnLoan(10L, "bob", false);
+    }
+
+    @Test
+    void returnBatch_callsServiceWithIdsAndReturnsOutcomes() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("lab");
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                .when(auth).getAuthorities();
+
+        when(loanService.returnLoans(List.of(10L, 12L), "lab", true)).thenReturn(List.of(
+                new LoanReturnResult(10L, LoanReturnResult.Outcome.RETURNED, null),
+                new LoanReturnResult(12L, LoanReturnResult.Outcome.NOT_FOUND, "Loan not found with id 12")));
+
+        mockMvc.perform(post("/api/loans/return-batch").principal(auth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"loanIds\":[10,12]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].outcome").value("RETURNED"))
+                .andExpect(jsonPath("$[1].outcome").value("NOT_FOUND"));
+    }
+
+    @Test
+    void returnBatch_withoutIds_is400() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("lab");
+
+        mockMvc.perform(post("/api/loans/return-batch").principal(auth)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"loanIds\":[]}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(loanService);
+    }
+
+    @Test
+    void cancelLoan_callsServiceAndReturnsOk() throws Exception {
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("bob");
+        doReturn(Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER")))
+                .when(auth).getAuthorities();
+
+        LoanResponse resp = new LoanResponse();
+        resp.setId(11L);
+        resp.setStatus(LoanStatus.CANCELLED);
+        when(loanService.cancelLoan(11L, "bob", false)).thenReturn(resp);
+
+        mockMvc.perform(post("/api/loans/11/cancel").principal(auth))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+
+        verify(loanService).cancelLoan(11L, "bob", false);
     }
 
     @Test
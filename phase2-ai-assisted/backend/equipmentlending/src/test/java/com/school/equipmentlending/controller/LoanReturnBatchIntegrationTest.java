@@ -0,0 +1,185 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.config.SlowQueryLog;
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.security.JwtUtils;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Scanner check-in over the full stack: a class worth of loans returned one POST per item vs one
+ * POST /api/loans/return-batch. The batch has to stay inside the per-request statement budget;
+ * the timing comparison is tagged benchmark (mvn -Pbenchmarks test).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoanReturnBatchIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoanReturnBatchIntegrationTest.class);
+
+    private static final int EQUIPMENTS = 4;
+    private static final int CLASS_SIZE = 40;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private SlowQueryLog slowQueryLog;
+
+    private final List<Equipment> equipments = new ArrayList<>();
+    private User student;
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepo.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepo.save(r);
+        });
+        User u = new User();
+        u.setUsername("scan-student");
+        u.setPassword("x");
+        u.setRoles(Set.of(userRole));
+        student = userRepo.save(u);
+        for (int i = 0; i < EQUIPMENTS; i++) {
+            Equipment e = new Equipment();
+            e.setName("Scan kit " + i);
+            e.setCategory("Lab");
+            e.setQuantity(CLASS_SIZE);
+            equipments.add(equipmentRepo.save(e));
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        loanRepo.deleteAll();
+        equipmentRepo.deleteAll(equipments);
+        userRepo.delete(student);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void classCheckIn_batchIsOneLoanUpdate() throws Exception {
+        List<Long> batchLoans = borrowClass();
+        long loanUpdates = executions("update loans");
+        long start = System.nanoTime();
+        returnBatch(batchLoans);
+        long batchNanos = System.nanoTime() - start;
+        loanUpdates = executions("update loans") - loanUpdates;
+
+        logger.info("check-in of {} loans batched: {} ms, {} loan update statements",
+                CLASS_SIZE, batchNanos / 1_000_000, loanUpdates);
+        assertEquals(1, loanUpdates);
+        assertEquals(CLASS_SIZE, loanRepo.findAllById(batchLoans).stream()
+                .filter(l -> l.getStatus() == LoanStatus.RETURNED && l.getReturnedAt() != null).count());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void classCheckIn_batchIsFasterThanOnePostPerItem() throws Exception {
+        returnOneByOne(borrowClass());   // warm-up
+        returnBatch(borrowClass());
+
+        List<Long> serialLoans = borrowClass();
+        long start = System.nanoTime();
+        returnOneByOne(serialLoans);
+        long serialNanos = System.nanoTime() - start;
+
+        List<Long> batchLoans = borrowClass();
+        start = System.nanoTime();
+        returnBatch(batchLoans);
+        long batchNanos = System.nanoTime() - start;
+
+        double speedup = (double) serialNanos / batchNanos;
+        logger.info("check-in of {} loans: {} ms one by one, {} ms batched ({}x)",
+                CLASS_SIZE, serialNanos / 1_000_000, batchNanos / 1_000_000, Math.round(speedup * 10) / 10.0);
+        assertTrue(speedup > 5, "batch only " + speedup + "x faster");
+    }
+
+    @Test
+    void batch_reportsLoansThatCannotBeReturned() throws Exception {
+        List<Long> loans = borrowClass().subList(0, 2);
+        returnBatch(loans.subList(0, 1));
+
+        mockMvc.perform(post("/api/loans/return-batch")
+                        .header("Authorization", bearer("scan-student", "ROLE_USER"))
+                        .contentType("application/json")
+                        .content("{\"loanIds\":[" + loans.get(0) + "," + loans.get(1) + ",-1]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].outcome").value("NOT_ACTIVE"))
+                .andExpect(jsonPath("$[1].outcome").value("RETURNED"))
+                .andExpect(jsonPath("$[1].loan.borrowerUsername").value("scan-student"))
+                .andExpect(jsonPath("$[2].outcome").value("NOT_FOUND"));
+    }
+
+    private List<Long> borrowClass() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Loan> loans = new ArrayList<>();
+        for (int i = 0; i < CLASS_SIZE; i++) {
+            Loan loan = new Loan();
+            loan.setEquipment(equipments.get(i % EQUIPMENTS));
+            loan.setBorrower(student);
+            loan.setBorrowedAt(now.minusHours(1));
+            loan.setDueAt(now.plusDays(2));
+            loan.setQuantity(1);
+            loans.add(loan);
+        }
+        return loanRepo.saveAll(loans).stream().map(Loan::getId).collect(Collectors.toList());
+    }
+
+    private void returnOneByOne(List<Long> loanIds) throws Exception {
+        for (Long id : loanIds) {
+            mockMvc.perform(post("/api/loans/{id}/return", id)
+                            .header("Authorization", bearer("admin", "ROLE_ADMIN")))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private void returnBatch(List<Long> loanIds) throws Exception {
+        String ids = loanIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        mockMvc.perform(post("/api/loans/return-batch")
+                        .header("Authorization", bearer("admin", "ROLE_ADMIN"))
+                        .contentType("application/json")
+                        .content("{\"loanIds\":[" + ids + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(loanIds.size()));
+    }
+
+    private long executions(String prefix) {
+        return slowQueryLog.slowest(Integer.MAX_VALUE).stream()
+                .filter(s -> s.getStatement().regionMatches(true, 0, prefix, 0, prefix.length()))
+                .mapToLong(SlowQueryDTO::getExecutions)
+                .sum();
+    }
+
+    private String bearer(String username, String role) {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken(username, null,
+                List.of(new SimpleGrantedAuthority(role))));
+    }
+}
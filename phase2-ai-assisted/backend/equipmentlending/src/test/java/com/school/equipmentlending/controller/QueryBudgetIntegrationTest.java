@@ -0,0 +1,151 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.security.JwtUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Full-stack list endpoints over real data with app.query-budget.mode=fail (test properties):
+ * any lazy-loading N+1 or statement-budget overrun fails the request and therefore the test.
+ * Runs without a test transaction on purpose, so each request loads through its own persistence context.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class QueryBudgetIntegrationTest {
+
+    private static final int ITEMS = 6;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private BookingRequestRepository bookingRepo;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<Equipment> equipment = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepo.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepo.save(r);
+        });
+        for (int i = 0; i < ITEMS; i++) {
+            User u = new User();
+            u.setUsername("qb-student-" + i);
+            u.setPassword("x");
+            u.setRoles(Set.of(userRole));
+            users.add(userRepo.save(u));
+
+            Equipment e = new Equipment();
+            e.setName("QB camera " + i);
+            e.setCategory(i % 2 == 0 ? "Photo" : "Lab");
+            e.setQuantity(5);
+            equipment.add(equipmentRepo.save(e));
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < ITEMS; i++) {
+            Loan loan = new Loan();
+            loan.setEquipment(equipment.get(i));
+            loan.setBorrower(users.get(i));
+            loan.setBorrowedAt(now.minusHours(1));
+            loan.setDueAt(now.plusDays(1));
+            loan.setQuantity(1);
+            loanRepo.save(loan);
+
+            BookingRequest b = new BookingRequest();
+            b.setEquipment(equipment.get(i));
+            b.setRequester(users.get(i == 0 ? 0 : i));
+            b.setStartAt(now.plusDays(2));
+            b.setEndAt(now.plusDays(3));
+            b.setQuantityRequested(1);
+            bookingRepo.save(b);
+        }
+        // the first student also has loans and bookings on every other item
+        for (int i = 1; i < ITEMS; i++) {
+            Loan loan = new Loan();
+            loan.setEquipment(equipment.get(i));
+            loan.setBorrower(users.get(0));
+            loan.setBorrowedAt(now.minusHours(2));
+            loan.setDueAt(now.plusDays(2));
+            loan.setQuantity(1);
+            loanRepo.save(loan);
+
+            BookingRequest b = new BookingRequest();
+            b.setEquipment(equipment.get(i));
+            b.setRequester(users.get(0));
+            b.setStartAt(now.plusDays(4));
+            b.setEndAt(now.plusDays(5));
+            b.setQuantityRequested(1);
+            bookingRepo.save(b);
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookingRepo.deleteAll();
+        loanRepo.deleteAll();
+        equipmentRepo.deleteAll(equipment);
+        userRepo.deleteAll(users);
+    }
+
+    @Test
+    void equipmentCatalog_staysWithinBudget() throws Exception {
+        mockMvc.perform(get("/api/equipments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(ITEMS)));
+        mockMvc.perform(get("/api/equipments/search").param("category", "Photo").param("available", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(ITEMS / 2)));
+    }
+
+    @Test
+    void loanLists_loadBorrowerAndEquipmentWithoutNPlusOne() throws Exception {
+        String admin = bearer("admin", "ROLE_ADMIN");
+        mockMvc.perform(get("/api/loans").header("Authorization", admin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2 * ITEMS - 1)));
+        mockMvc.perform(get("/api/loans/active").header("Authorization", admin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2 * ITEMS - 1)));
+        mockMvc.perform(get("/api/loans/my").header("Authorization", bearer("qb-student-0", "ROLE_USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(ITEMS)));
+    }
+
+    @Test
+    void bookingLists_loadRequesterAndEquipmentWithoutNPlusOne() throws Exception {
+        mockMvc.perform(get("/api/bookings/pending").header("Authorization", bearer("admin", "ROLE_ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2 * ITEMS - 1)));
+        mockMvc.perform(get("/api/bookings/my").header("Authorization", bearer("qb-student-0", "ROLE_USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(ITEMS)));
+    }
+
+    private String bearer(String username, String role) {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken(username, null,
+                List.of(new SimpleGrantedAuthority(role))));
+    }
+}
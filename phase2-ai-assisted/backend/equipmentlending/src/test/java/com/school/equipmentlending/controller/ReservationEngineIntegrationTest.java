@@ -0,0 +1,273 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.dto.BorrowRequest;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import com.school.equipmentlending.exception.BadRequestException;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.*;
+import com.school.equipmentlending.service.ActorReservationCommands;
+import com.school.equipmentlending.service.BookingService;
+import com.school.equipmentlending.service.ReservationCommands;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The actor reservation engine against the database-lock path on one popular equipment, with its own
+ * H2 database so the engine's in-memory state only ever sees its own writes. The timing comparison is
+ * tagged benchmark (mvn -Pbenchmarks test).
+ */
+@SpringBootTest(properties = {
+        "app.reservation.engine=actor",
+        "spring.datasource.url=jdbc:h2:mem:reservation_actors;DB_CLOSE_DELAY=-1"
+})
+class ReservationEngineIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationEngineIntegrationTest.class);
+
+    private static final int BOOKINGS = 80;
+    private static final int CLIENTS = 8;
+
+    @Autowired private ReservationCommands reservationCommands;
+    @Autowired private BookingService bookingService;
+    @Autowired private ApplicationContext applicationContext;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private UserRepository userRepo;
+    @Autowired private RoleRepository roleRepo;
+    @Autowired private EquipmentRepository equipmentRepo;
+    @Autowired private BookingRequestRepository bookingRepo;
+    @Autowired private LoanRepository loanRepo;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private Equipment equipment;
+    private User student;
+
+    @BeforeEach
+    void seed() {
+        Role userRole = roleRepo.findByName("ROLE_USER").orElseGet(() -> {
+            Role r = new Role();
+            r.setName("ROLE_USER");
+            return roleRepo.save(r);
+        });
+        User u = new User();
+        u.setUsername("actor-student");
+        u.setPassword("x");
+        u.setRoles(Set.of(userRole));
+        student = userRepo.save(u);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        loanRepo.deleteAll();
+        bookingRepo.deleteAll();
+        if (equipment != null) equipmentRepo.delete(equipment);
+        userRepo.delete(student);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void actorEngine_batchesApprovalsOfAHotEquipment() throws Exception {
+        equipment = equipment(BOOKINGS);
+        assertInstanceOf(ActorReservationCommands.class, reservationCommands);
+        double batchesBefore = meterRegistry.get("reservation.actor.batch").summary().count();
+
+        List<Long> actorBookings = pendingBookings(BOOKINGS);
+        long start = System.nanoTime();
+        int actorApproved = approveAll(actorBookings, id -> reservationCommands.approve(id, "admin", null));
+        long actorNanos = System.nanoTime() - start;
+
+        double batches = meterRegistry.get("reservation.actor.batch").summary().count() - batchesBefore;
+        logger.info("{} actor approvals of one equipment from {} clients: {}ms in {} batches",
+                BOOKINGS, CLIENTS, actorNanos / 1_000_000, (long) batches);
+
+        assertEquals(BOOKINGS, actorApproved);
+        assertEquals(BOOKINGS, bookingRepo.findAllById(actorBookings).stream()
+                .filter(b -> b.getStatus() == BookingStatus.APPROVED).count());
+        assertTrue(batches < BOOKINGS, "approvals were not batched: " + batches + " transactions");
+        // capacity is exhausted now: one more booking is refused from the in-memory profile
+        Long extra = pendingBookings(1).get(0);
+        assertThrows(ResponseStatusException.class, () -> reservationCommands.approve(extra, "admin", null));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void actorEngine_outrunsTheLockPath() throws Exception {
+        equipment = equipment(4 * BOOKINGS);
+        assertInstanceOf(ActorReservationCommands.class, reservationCommands);
+        approveAll(pendingBookings(BOOKINGS / 4), id -> bookingService.approveBooking(id, "admin", null));   // warm-up
+        approveAll(pendingBookings(BOOKINGS / 4), id -> reservationCommands.approve(id, "admin", null));
+        double batchesBefore = meterRegistry.get("reservation.actor.batch").summary().count();
+
+        List<Long> lockBookings = pendingBookings(BOOKINGS);
+        long start = System.nanoTime();
+        int lockApproved = approveAll(lockBookings, id -> bookingService.approveBooking(id, "admin", null));
+        long lockNanos = System.nanoTime() - start;
+
+        List<Long> actorBookings = pendingBookings(BOOKINGS);
+        start = System.nanoTime();
+        int actorApproved = approveAll(actorBookings, id -> reservationCommands.approve(id, "admin", null));
+        long actorNanos = System.nanoTime() - start;
+
+        double batches = meterRegistry.get("reservation.actor.batch").summary().count() - batchesBefore;
+        logger.info("{} approvals of one equipment from {} clients: row lock {}ms ({} ok), actor {}ms ({} ok) in {} batches",
+                BOOKINGS, CLIENTS, lockNanos / 1_000_000, lockApproved, actorNanos / 1_000_000, actorApproved,
+                (long) batches);
+
+        assertEquals(BOOKINGS, actorApproved);
+        assertTrue(actorNanos < lockNanos, "actor path " + actorNanos + "ns not faster than lock path " + lockNanos + "ns");
+    }
+
+    @Test
+    void concurrentBorrowsAndReturns_neverHoldMoreUnitsThanExist() throws Exception {
+        int capacity = 3;
+        equipment = equipment(capacity);
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger maxHeld = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                results.add(clients.submit((Callable<Void>) () -> {
+                    for (int i = 0; i < 15; i++) {
+                        LoanResponse loan;
+                        try {
+                            loan = reservationCommands.borrow(student.getUsername(), borrow(1));
+                        } catch (BadRequestException ex) {
+                            assertTrue(ex.getMessage().startsWith("Not enough units available now"), ex.getMessage());
+                            refused.incrementAndGet();
+                            continue;
+                        }
+                        // counted only between the borrow's and the return's commits, so never above the truth
+                        maxHeld.accumulateAndGet(held.incrementAndGet(), Math::max);
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                        held.decrementAndGet();
+                        reservationCommands.returnLoan(loan.getId(), student.getUsername(), false);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : results) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdownNow();
+        }
+
+        logger.info("{} clients borrowing 1 of {} units: {} refused, at most {} held at once",
+                CLIENTS, capacity, refused.get(), maxHeld.get());
+        assertTrue(maxHeld.get() <= capacity, "held " + maxHeld.get() + " of " + capacity + " units");
+        assertEquals(0L, loanRepo.sumCurrentlyReserved(equipment.getId(), LocalDateTime.now()));
+        ReservationStateDTO state = reservationCommands.currentState(equipment.getId());
+        assertEquals(capacity, state.getAvailableNow());
+        assertNotNull(state.getVersion(), "state should come from the actor, not the database");
+        // every returned window was released exactly: the whole stock can go out again
+        assertEquals(capacity, reservationCommands.borrow(student.getUsername(), borrow(capacity)).getQuantity());
+    }
+
+    @Test
+    void freshEngine_rebuildsReservationsFromTheLoansTable() {
+        equipment = equipment(3);
+        reservationCommands.borrow(student.getUsername(), borrow(2));
+
+        // a second engine stands in for the node after a restart: it has nothing in memory yet
+        ActorReservationCommands restarted = applicationContext.getAutowireCapableBeanFactory()
+                .createBean(ActorReservationCommands.class);
+        try {
+            assertThrows(BadRequestException.class, () -> restarted.borrow(student.getUsername(), borrow(2)));
+            assertEquals(1, restarted.borrow(student.getUsername(), borrow(1)).getQuantity());
+        } finally {
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    void approvalOfAnUnknownBooking_isNotFound() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> reservationCommands.approve(-1L, "admin", null));
+        assertEquals(404, ex.getStatusCode().value());
+    }
+
+    private Equipment equipment(int quantity) {
+        Equipment e = new Equipment();
+        e.setName("Hot kit");
+        e.setCategory("Lab");
+        e.setQuantity(quantity);
+        return equipmentRepo.save(e);
+    }
+
+    private BorrowRequest borrow(int quantity) {
+        BorrowRequest req = new BorrowRequest();
+        req.setEquipmentId(equipment.getId());
+        req.setQuantity(quantity);
+        req.setDays(2);
+        return req;
+    }
+
+    /** Overlapping PENDING bookings of the equipment, one unit each. */
+    private List<Long> pendingBookings(int count) {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingRequest> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BookingRequest b = new BookingRequest();
+            b.setEquipment(equipment);
+            b.setRequester(student);
+            b.setStartAt(start);
+            b.setEndAt(start.plusHours(2));
+            b.setQuantityRequested(1);
+            b.setStatus(BookingStatus.PENDING);
+            bookings.add(b);
+        }
+        return bookingRepo.saveAll(bookings).stream().map(BookingRequest::getId).toList();
+    }
+
+    /** Approve every booking from {@link #CLIENTS} threads; returns how many were approved. */
+    private int approveAll(List<Long> bookingIds, Approval approval) throws Exception {
+        AtomicInteger approved = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Long id : bookingIds) {
+                results.add(clients.submit(() -> {
+                    try {
+                        approval.approve(id);
+                        approved.incrementAndGet();
+                    } catch (ResponseStatusException ex) {
+                        logger.debug("Approval of {} refused: {}", id, ex.getReason());
+                    }
+                }));
+            }
+            for (Future<?> f : results) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdownNow();
+        }
+        return approved.get();
+    }
+
+    private interface Approval {
+        void approve(Long bookingId);
+    }
+}
@@ -0,0 +1,145 @@
+package com.school.equipmentlending.controller;
+
+import com.school.equipmentlending.config.SlowQueryLog;
+import com.school.equipmentlending.dto.SignupRequest;
+import com.school.equipmentlending.dto.SlowQueryDTO;
+import com.school.equipmentlending.security.JwtUtils;
+import com.school.equipmentlending.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * POST /api/admin/users/import over the full stack with a 1k-student roster. The comparison of a 10k
+ * roster against one-by-one registration is tagged benchmark (mvn -Pbenchmarks test). BCrypt runs at cost 4 here so the
+ * benchmark measures the import path, not the hash cost; both sides hash at the same cost.
+ */
+@SpringBootTest(properties = "app.security.bcrypt.strength=4")
+@AutoConfigureMockMvc
+class RosterImportIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RosterImportIntegrationTest.class);
+
+    private static final int USERS = 1_000;
+    private static final int BENCHMARK_USERS = 10_000;
+    private static final int BASELINE_USERS = 300;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private JwtUtils jwtUtils;
+    @Autowired private UserService userService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private SlowQueryLog slowQueryLog;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from user_roles where user_id in (select id from users where username like 'roster-%')");
+        jdbcTemplate.update("delete from users where username like 'roster-%'");
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void roster_importsInBatches() throws Exception {
+        registerOneByOne(1);
+        StringBuilder csv = roster(USERS);
+        csv.append("roster-serial-0,taken-password\n");   // already registered: skipped
+
+        long userInserts = executions("insert into users");
+        long roleInserts = executions("insert into user_roles");
+        double importRate = importRoster(csv, USERS, 1);
+        userInserts = executions("insert into users") - userInserts;
+        roleInserts = executions("insert into user_roles") - roleInserts;
+
+        logger.info("roster import: {} users/s ({} users, {} user inserts, {} user_roles inserts)",
+                Math.round(importRate), USERS, userInserts, roleInserts);
+        assertEquals(USERS, jdbcTemplate.queryForObject(
+                "select count(*) from users where username like 'roster-student-%'", Integer.class));
+        assertEquals(USERS, jdbcTemplate.queryForObject("select count(*) from user_roles where user_id in"
+                + " (select id from users where username like 'roster-student-%')", Integer.class));
+        assertTrue(userInserts <= USERS / 50 + 20, "user inserts not batched: " + userInserts);
+        assertTrue(roleInserts <= USERS / 50 + 20, "user_roles inserts not batched: " + roleInserts);
+
+        mockMvc.perform(get("/api/admin/users/import").header("Authorization", bearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.running").value(false))
+                .andExpect(jsonPath("$.created").value(USERS));
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"roster-student-42\",\"password\":\"password-42\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void tenThousandStudents_importFasterThanOneByOneSignup() throws Exception {
+        long baselineStart = System.nanoTime();
+        registerOneByOne(BASELINE_USERS);
+        double serialRate = BASELINE_USERS / ((System.nanoTime() - baselineStart) / 1e9);
+
+        double importRate = importRoster(roster(BENCHMARK_USERS), BENCHMARK_USERS, 0);
+
+        logger.info("roster import: {} users/s vs {} users/s one by one", Math.round(importRate), Math.round(serialRate));
+        assertTrue(importRate > serialRate, "import " + importRate + "/s vs one by one " + serialRate + "/s");
+    }
+
+    private void registerOneByOne(int count) {
+        for (int i = 0; i < count; i++) {
+            SignupRequest req = new SignupRequest();
+            req.setUsername("roster-serial-" + i);
+            req.setPassword("password-" + i);
+            userService.registerUser(req);
+        }
+    }
+
+    private static StringBuilder roster(int users) {
+        StringBuilder csv = new StringBuilder("username,password\n");
+        for (int i = 0; i < users; i++) {
+            csv.append("roster-student-").append(i).append(",password-").append(i).append('\n');
+        }
+        return csv;
+    }
+
+    /** Posts the roster and returns the created users per second. */
+    private double importRoster(StringBuilder csv, int users, int skipped) throws Exception {
+        long start = System.nanoTime();
+        mockMvc.perform(post("/api/admin/users/import")
+                        .header("Authorization", bearer())
+                        .contentType("text/csv")
+                        .content(csv.toString().getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(users + skipped))
+                .andExpect(jsonPath("$.created").value(users))
+                .andExpect(jsonPath("$.skipped").value(skipped))
+                .andExpect(jsonPath("$.rejected").value(0));
+        return users / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private long executions(String prefix) {
+        return slowQueryLog.slowest(Integer.MAX_VALUE).stream()
+                .filter(s -> s.getStatement().regionMatches(true, 0, prefix, 0, prefix.length()))
+                .mapToLong(SlowQueryDTO::getExecutions)
+                .sum();
+    }
+
+    private String bearer() {
+        return "Bearer " + jwtUtils.generateToken(new UsernamePasswordAuthenticationToken("admin", null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+}
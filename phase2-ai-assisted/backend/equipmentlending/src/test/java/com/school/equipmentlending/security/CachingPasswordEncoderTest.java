@@ -0,0 +1,79 @@
+package com.school.equipmentlending.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CachingPasswordEncoderTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordEncoder delegate = mock(PasswordEncoder.class);
+
+    @Test
+    void successfulVerification_isServedFromCacheUntilItExpires() throws Exception {
+        when(delegate.matches("secret", "$2a$10$hash")).thenReturn(true);
+        CachingPasswordEncoder encoder = new CachingPasswordEncoder(delegate, Duration.ofMillis(100), 10, registry);
+
+        assertTrue(encoder.matches("secret", "$2a$10$hash"));
+        assertTrue(encoder.matches("secret", "$2a$10$hash"));
+        verify(delegate, times(1)).matches(any(), anyString());
+        assertEquals(1.0, registry.counter("security.password.cache", "result", "hit").count());
+
+        Thread.sleep(150);
+        assertTrue(encoder.matches("secret", "$2a$10$hash"));
+        verify(delegate, times(2)).matches(any(), anyString());
+    }
+
+    @Test
+    void failedVerification_isNeverCached() {
+        when(delegate.matches("wrong", "$2a$10$hash")).thenReturn(false);
+        CachingPasswordEncoder encoder = new CachingPasswordEncoder(delegate, Duration.ofMinutes(5), 10, registry);
+
+        assertFalse(encoder.matches("wrong", "$2a$10$hash"));
+        assertFalse(encoder.matches("wrong", "$2a$10$hash"));
+        verify(delegate, times(2)).matches("wrong", "$2a$10$hash");
+        assertEquals(0, encoder.size());
+    }
+
+    @Test
+    void changedStoredHash_missesTheCache() {
+        when(delegate.matches(eq("secret"), anyString())).thenReturn(true);
+        CachingPasswordEncoder encoder = new CachingPasswordEncoder(delegate, Duration.ofMinutes(5), 10, registry);
+
+        encoder.matches("secret", "$2a$10$old");
+        encoder.matches("secret", "$2a$12$new");
+
+        verify(delegate).matches("secret", "$2a$10$old");
+        verify(delegate).matches("secret", "$2a$12$new");
+    }
+
+    @Test
+    void cacheNeverGrowsBeyondMaxEntries() {
+        when(delegate.matches(any(), anyString())).thenReturn(true);
+        CachingPasswordEncoder encoder = new CachingPasswordEncoder(delegate, Duration.ofMinutes(5), 3, registry);
+
+        for (int i = 0; i < 10; i++) {
+            encoder.matches("pw" + i, "$2a$10$hash" + i);
+        }
+
+        assertEquals(3, encoder.size());
+    }
+
+    @Test
+    void encodeAndUpgradeEncoding_delegate() {
+        when(delegate.encode("x")).thenReturn("h");
+        when(delegate.upgradeEncoding("h")).thenReturn(true);
+        CachingPasswordEncoder encoder = new CachingPasswordEncoder(delegate, Duration.ofMinutes(5), 3, registry);
+
+        assertEquals("h", encoder.encode("x"));
+        assertTrue(encoder.upgradeEncoding("h"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.school.equipmentlending.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CostUpgradingPasswordEncoderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CostUpgradingPasswordEncoderTest.class);
+
+    @Test
+    void hashAtAnotherCost_needsUpgrade_inBothDirections() {
+        CostUpgradingPasswordEncoder encoder = new CostUpgradingPasswordEncoder(5);
+
+        assertFalse(encoder.upgradeEncoding(encoder.encode("pw")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("pw")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("pw")));
+        assertFalse(encoder.upgradeEncoding("not-a-bcrypt-hash"));
+        assertFalse(encoder.upgradeEncoding(null));
+    }
+
+    @Test
+    void costOf_readsTheHashPrefix() {
+        assertEquals(10, CostUpgradingPasswordEncoder.costOf("$2a$10$abcdefghijklmnopqrstuv"));
+        assertEquals(12, CostUpgradingPasswordEncoder.costOf("$2b$12$abcdefghijklmnopqrstuv"));
+        assertEquals(-1, CostUpgradingPasswordEncoder.costOf("plain"));
+    }
+
+    @Test
+    void olderHashes_stillVerify() {
+        CostUpgradingPasswordEncoder encoder = new CostUpgradingPasswordEncoder(6);
+        assertTrue(encoder.matches("pw", new BCryptPasswordEncoder(4).encode("pw")));
+    }
+
+    /**
+     * Login throughput (verifications per second, one thread) at cost 10 and cost 12, and with the
+     * verification cache in front: cost 12 is about four times as expensive as cost 10, and cached
+     * re-logins do not pay BCrypt at all. Timing-based, so tagged benchmark (mvn -Pbenchmarks test).
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmark_loginThroughputAtCost10And12() {
+        int logins = 5;
+        double cost10 = loginsPerSecond(new CostUpgradingPasswordEncoder(10), logins);
+        double cost12 = loginsPerSecond(new CostUpgradingPasswordEncoder(12), logins);
+        double cached12 = loginsPerSecond(new CachingPasswordEncoder(new CostUpgradingPasswordEncoder(12),
+                Duration.ofMinutes(5), 100, new SimpleMeterRegistry()), logins);
+
+        logger.info("Login throughput: cost10={}/s cost12={}/s cost12+cache={}/s",
+                String.format("%.1f", cost10), String.format("%.1f", cost12), String.format("%.0f", cached12));
+        assertThat(cost10).isGreaterThan(cost12 * 2);
+        assertThat(cached12).isGreaterThan(cost10 * 10);
+    }
+
+    private static double loginsPerSecond(PasswordEncoder encoder, int logins) {
+        String hash = encoder.encode("correct horse");
+        encoder.matches("correct horse", hash);   // warm-up
+        long start = System.nanoTime();
+        for (int i = 0; i < logins; i++) {
+            assertTrue(encoder.matches("correct horse", hash));
+        }
+        return logins / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,143 @@
+package com.school.equipmentlending.security;
+
+import com.school.equipmentlending.security.RateLimitFilter.EndpointClass;
+import com.school.equipmentlending.security.TokenBucketLimiter.Budget;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilterTest.class);
+
+    private final JwtUtils jwtUtils = new JwtUtils("devtestdevtestdevtestdevtestdevtest!!", 60_000);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FilterChain chain = mock(FilterChain.class);
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils.init();
+        filter = new RateLimitFilter(new TokenBucketLimiter(16, Duration.ofMinutes(10)), jwtUtils,
+                Map.of(EndpointClass.SEARCH, new Budget(0.01, 2), EndpointClass.WRITE, new Budget(0.01, 1)),
+                100, registry);
+    }
+
+    @Test
+    void overBudget_returns429WithRetryAfter() throws Exception {
+        assertEquals(200, run(search("10.0.0.1", null)).getStatus());
+        assertEquals(200, run(search("10.0.0.1", null)).getStatus());
+
+        MockHttpServletResponse rejected = run(search("10.0.0.1", null));
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("100", rejected.getHeader("Retry-After"));
+        assertThat(rejected.getContentAsString()).contains("\"status\":429", "/api/equipments/search");
+        verify(chain, times(2)).doFilter(any(), any());
+        assertEquals(1.0, registry.counter("http.ratelimit.requests", "class", "search", "outcome", "rejected").count());
+    }
+
+    @Test
+    void authenticatedCaller_isLimitedBySubjectAcrossIps() throws Exception {
+        String token = token("alice");
+
+        assertEquals(200, run(search("10.0.0.1", token)).getStatus());
+        assertEquals(200, run(search("10.0.0.2", token)).getStatus());
+        assertEquals(429, run(search("10.0.0.3", token)).getStatus());
+        // another user and anonymous callers on the same IP keep their own budget
+        assertEquals(200, run(search("10.0.0.3", token("bob"))).getStatus());
+        assertEquals(200, run(search("10.0.0.3", null)).getStatus());
+    }
+
+    @Test
+    void invalidToken_fallsBackToClientIp() throws Exception {
+        assertEquals(200, run(search("10.0.0.1", "garbage")).getStatus());
+        assertEquals(200, run(search("10.0.0.1", null)).getStatus());
+        assertEquals(429, run(search("10.0.0.1", "other-garbage")).getStatus());
+    }
+
+    @Test
+    void endpointClasses_haveSeparateBudgets_andUnconfiguredClassesAreUnlimited() throws Exception {
+        MockHttpServletRequest post = new MockHttpServletRequest("POST", "/api/bookings");
+        post.setRemoteAddr("10.0.0.1");
+        assertEquals(200, run(post).getStatus());
+        assertEquals(429, run(post).getStatus());
+
+        assertEquals(200, run(search("10.0.0.1", null)).getStatus());
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest read = new MockHttpServletRequest("GET", "/api/bookings/me");
+            read.setRemoteAddr("10.0.0.1");
+            assertEquals(200, run(read).getStatus());
+        }
+    }
+
+    @Test
+    void classify() {
+        assertEquals(EndpointClass.AUTH, RateLimitFilter.classify(new MockHttpServletRequest("POST", "/api/auth/login")));
+        assertEquals(EndpointClass.SEARCH, RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/equipments/search")));
+        assertEquals(EndpointClass.READ, RateLimitFilter.classify(new MockHttpServletRequest("GET", "/api/equipments")));
+        assertEquals(EndpointClass.WRITE, RateLimitFilter.classify(new MockHttpServletRequest("DELETE", "/api/equipments/1")));
+        assertNull(RateLimitFilter.classify(new MockHttpServletRequest("OPTIONS", "/api/bookings")));
+        assertNull(RateLimitFilter.classify(new MockHttpServletRequest("GET", "/actuator/health")));
+    }
+
+    /** Average cost of the filter on an allowed, authenticated request (token subject already cached). */
+    @Test
+    @Tag("benchmark")
+    void benchmark_filterAddsUnderOneMicrosecond() throws Exception {
+        RateLimitFilter fast = new RateLimitFilter(new TokenBucketLimiter(16, Duration.ofMinutes(10)), jwtUtils,
+                Map.of(EndpointClass.SEARCH, new Budget(1e9, 1_000_000)), 100, registry);
+        MockHttpServletRequest request = search("10.0.0.1", token("alice"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain noop = (req, res) -> { };
+
+        int iterations = 500_000;
+        for (int i = 0; i < iterations; i++) fast.doFilter(request, response, noop);   // warm-up
+        double nanosPerRequest = Double.MAX_VALUE;
+        // best round: ignores GC, scheduler and JIT-queue noise from other tests (CI boxes may have one core)
+        for (int round = 0; round < 15; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) fast.doFilter(request, response, noop);
+            nanosPerRequest = Math.min(nanosPerRequest, (System.nanoTime() - start) / (double) iterations);
+        }
+
+        logger.info("Rate limit filter: {} ns/request", String.format("%.0f", nanosPerRequest));
+        assertEquals(200, response.getStatus());
+        assertThat(nanosPerRequest).isLessThan(1_000);
+    }
+
+    private MockHttpServletResponse run(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest search(String ip, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/equipments/search");
+        request.setRemoteAddr(ip);
+        if (token != null) request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    private String token(String username) {
+        return jwtUtils.generateToken(new UsernamePasswordAuthenticationToken(username, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+    }
+}
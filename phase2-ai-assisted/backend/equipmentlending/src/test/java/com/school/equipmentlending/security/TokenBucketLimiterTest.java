@@ -0,0 +1,102 @@
+package com.school.equipmentlending.security;
+
+import com.school.equipmentlending.security.TokenBucketLimiter.Budget;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(4, Duration.ofSeconds(60), now::get);
+
+    @Test
+    void allowsBurstThenRejectsWithWaitTime() {
+        Budget budget = new Budget(2, 3);   // one token every 500 ms, 3 in the bucket
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("alice", budget));
+        }
+        long wait = limiter.tryAcquire("alice", budget);
+        assertEquals(500_000_000L, wait);
+
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("alice", budget));
+        assertTrue(limiter.tryAcquire("alice", budget) > 0);
+    }
+
+    @Test
+    void keysAreIndependent() {
+        Budget budget = new Budget(1, 1);
+        assertEquals(0, limiter.tryAcquire("alice", budget));
+        assertTrue(limiter.tryAcquire("alice", budget) > 0);
+        assertEquals(0, limiter.tryAcquire("bob", budget));
+    }
+
+    @Test
+    void idleBuckets_areEvicted_andComeBackFull() {
+        Budget budget = new Budget(1, 2);
+        limiter.tryAcquire("alice", budget);
+        limiter.tryAcquire("bob", budget);
+        assertEquals(2, limiter.size());
+
+        now.addAndGet(Duration.ofSeconds(120).toNanos());
+        limiter.evictIdle();
+
+        assertEquals(0, limiter.size());
+        assertEquals(0, limiter.tryAcquire("alice", budget));
+        assertEquals(0, limiter.tryAcquire("alice", budget));
+    }
+
+    @Test
+    void trafficSweepsIdleStripesWithoutExplicitEviction() {
+        Budget budget = new Budget(100, 10);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("user-" + i, budget);
+        }
+        // four stripes, each visited once per 15 s of traffic
+        for (int i = 0; i < 8; i++) {
+            now.addAndGet(Duration.ofSeconds(61).toNanos());
+            limiter.tryAcquire("active", budget);
+        }
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void concurrentCallers_neverGetMoreThanTheBurst() throws Exception {
+        TokenBucketLimiter frozenClock = new TokenBucketLimiter(16, Duration.ofMinutes(10), () -> 42L);
+        Budget budget = new Budget(1, 50);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 16; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    if (frozenClock.tryAcquire("shared", budget) == 0) granted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(50, granted.get());
+    }
+
+    @Test
+    void budgetParse() {
+        assertEquals(new Budget(20, 40), Budget.parse(" 20 / 40 "));
+        assertEquals(new Budget(0.5, 1), Budget.parse("0.5/1"));
+        assertThrows(IllegalArgumentException.class, () -> Budget.parse("20"));
+        assertThrows(IllegalArgumentException.class, () -> Budget.parse("0/5"));
+    }
+}
@@ -0,0 +1,200 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.dto.BorrowRequest;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.ReservationStateDTO;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.event.CapacityReservedEvent;
+import com.school.equipmentlending.exception.BadRequestException;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ActorReservationCommandsTest {
+
+    @Mock private EquipmentRepository equipmentRepo;
+    @Mock private LoanRepository loanRepo;
+    @Mock private BookingRequestRepository bookingRepo;
+    @Mock private UserRepository userRepo;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private DomainEventOutbox outbox;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong ids = new AtomicLong(100);
+    private Equipment equipment;
+    private ActorReservationCommands engine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        equipment = new Equipment();
+        equipment.setId(1L);
+        equipment.setName("Camera");
+        equipment.setQuantity(2);
+        equipment.setAvailable(true);
+        when(equipmentRepo.findByIdForUpdate(1L)).thenReturn(Optional.of(equipment));
+        when(loanRepo.findActiveReservations(eq(1L), any())).thenReturn(List.of());
+        when(loanRepo.save(any(Loan.class))).thenAnswer(inv -> {
+            Loan loan = inv.getArgument(0);
+            if (loan.getId() == null) loan.setId(ids.incrementAndGet());
+            return loan;
+        });
+        User alice = new User();
+        alice.setId(7L);
+        alice.setUsername("alice");
+        when(userRepo.findByUsername("alice")).thenReturn(Optional.of(alice));
+
+        AvailabilityService availabilityService = new AvailabilityService(equipmentRepo, loanRepo);
+        LoanService loanService = new LoanService(loanRepo, equipmentRepo, userRepo, eventPublisher, outbox);
+        BookingService bookingService = new BookingService(bookingRepo, equipmentRepo, userRepo, loanRepo,
+                availabilityService, eventPublisher, outbox, meterRegistry);
+        engine = new ActorReservationCommands(loanService, bookingService, availabilityService, equipmentRepo,
+                loanRepo, bookingRepo, userRepo, eventPublisher, outbox, transactionManager, meterRegistry,
+                2, 16, 100, Duration.ofSeconds(5), Duration.ofMinutes(10), Duration.ofSeconds(30),
+                Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void borrow_checksTheInMemoryProfile_loadedOnceFromTheLoansTable() {
+        LoanResponse first = engine.borrow("alice", borrow(2, 3));
+        assertEquals(LoanStatus.BORROWED, first.getStatus());
+        assertEquals(2, first.getQuantity());
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> engine.borrow("alice", borrow(1, 1)));
+        assertTrue(ex.getMessage().contains("Available: 0"));
+
+        verify(loanRepo, times(1)).findActiveReservations(eq(1L), any());
+        verify(loanRepo, never()).sumOverlappingReserved(any(), any(), any());
+        verify(equipmentRepo, times(2)).findByIdForUpdate(1L);   // one locked transaction per batch
+    }
+
+    @Test
+    void return_releasesTheUnitsInMemory_andPublishesTheRelease() {
+        LoanResponse loan = engine.borrow("alice", borrow(2, 3));
+        Loan stored = new Loan();
+        stored.setId(loan.getId());
+        stored.setEquipment(equipment);
+        stored.setBorrower(userRepo.findByUsername("alice").orElseThrow());
+        stored.setBorrowedAt(loan.getBorrowedAt());
+        stored.setDueAt(loan.getDueAt());
+        stored.setQuantity(2);
+        stored.setStatus(LoanStatus.BORROWED);
+        when(loanRepo.findEquipmentIdById(loan.getId())).thenReturn(Optional.of(1L));
+        when(loanRepo.findByIdIn(List.of(loan.getId()))).thenReturn(List.of(stored));
+
+        LoanResponse returned = engine.returnLoan(loan.getId(), "alice", false);
+
+        assertEquals(LoanStatus.RETURNED, returned.getStatus());
+        assertNotNull(returned.getReturnedAt());
+        assertEquals(2, engine.borrow("alice", borrow(2, 1)).getQuantity());
+        verify(eventPublisher).publishEvent(any(CapacityReleasedEvent.class));
+        verify(loanRepo, times(1)).findActiveReservations(eq(1L), any());
+    }
+
+    @Test
+    void approve_grantsThePendingBooking() {
+        BookingRequest booking = pendingBooking(20L, 1);
+        when(bookingRepo.findEquipmentIdById(20L)).thenReturn(Optional.of(1L));
+        when(bookingRepo.findAllById(List.of(20L))).thenReturn(List.of(booking));
+
+        BookingRequestDTO dto = engine.approve(20L, "admin", null);
+
+        assertEquals(BookingStatus.APPROVED, dto.getStatus());
+        assertEquals("Approved by admin", dto.getAdminNote());
+        verify(loanRepo).save(argThat(l -> l.getQuantity() == 1 && l.getStatus() == LoanStatus.BORROWED));
+        assertEquals(1.0, meterRegistry.get("booking.approval").tag("outcome", "approved").counter().count());
+    }
+
+    @Test
+    void grantOutsideTheEngine_marksTheActorStale_soTheNextBatchReloads() {
+        engine.borrow("alice", borrow(1, 3));
+        engine.onCapacityReserved(new CapacityReservedEvent(1L));
+        engine.borrow("alice", borrow(1, 3));
+
+        verify(loanRepo, times(2)).findActiveReservations(eq(1L), any());
+    }
+
+    @Test
+    void failedCommit_failsTheBatch_andRebuildsStateFromTheLoansTable() {
+        when(loanRepo.save(any(Loan.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenAnswer(inv -> {
+                    Loan loan = inv.getArgument(0);
+                    loan.setId(ids.incrementAndGet());
+                    return loan;
+                });
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> engine.borrow("alice", borrow(2, 3)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatusCode());
+
+        // the failed reservation was forgotten: the whole capacity is free again
+        assertEquals(2, engine.borrow("alice", borrow(2, 3)).getQuantity());
+        verify(loanRepo, times(2)).findActiveReservations(eq(1L), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void currentState_isServedFromTheActorSnapshot() {
+        engine.borrow("alice", borrow(1, 3));
+
+        ReservationStateDTO state = engine.currentState(1L);
+
+        assertEquals(2, state.getCapacity());
+        assertEquals(1, state.getReservedNow());
+        assertEquals(1, state.getAvailableNow());
+        assertEquals(1L, state.getVersion());
+        verify(loanRepo, never()).sumCurrentlyReserved(any(), any());
+    }
+
+    private static BorrowRequest borrow(int quantity, int days) {
+        BorrowRequest req = new BorrowRequest();
+        req.setEquipmentId(1L);
+        req.setQuantity(quantity);
+        req.setDays(days);
+        return req;
+    }
+
+    private BookingRequest pendingBooking(Long id, int quantity) {
+        User requester = new User();
+        requester.setId(8L);
+        requester.setUsername("bob");
+        BookingRequest booking = new BookingRequest();
+        booking.setId(id);
+        booking.setEquipment(equipment);
+        booking.setRequester(requester);
+        booking.setStartAt(LocalDateTime.now().plusDays(1));
+        booking.setEndAt(LocalDateTime.now().plusDays(2));
+        booking.setQuantityRequested(quantity);
+        booking.setStatus(BookingStatus.PENDING);
+        return booking;
+    }
+}
@@ -0,0 +1,127 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AllocationPlanDTO;
+import com.school.equipmentlending.dto.BatchApprovalResult;
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.model.BookingStatus;
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import com.school.equipmentlending.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AllocationServiceTest {
+
+    @Mock private BookingRequestRepository bookingRepo;
+    @Mock private EquipmentRepository equipmentRepo;
+    @Mock private LoanRepository loanRepo;
+    @Mock private BookingService bookingService;
+
+    @InjectMocks private AllocationService allocationService;
+
+    private final LocalDateTime t0 = LocalDateTime.now().plusDays(1);
+    private Equipment laptop;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        laptop = new Equipment();
+        laptop.setId(1L);
+        laptop.setName("Laptop");
+        laptop.setQuantity(1);
+        when(equipmentRepo.findById(1L)).thenReturn(Optional.of(laptop));
+        when(equipmentRepo.findByIdForUpdate(1L)).thenReturn(Optional.of(laptop));
+        when(bookingRepo.findByEquipment_IdAndStatus(1L, BookingStatus.PENDING)).thenReturn(List.of(
+                booking(10L, 0, 6), booking(11L, 0, 2), booking(12L, 2, 4)));
+    }
+
+    @Test
+    void preview_selectsMaximumSetWithoutWriting() {
+        AllocationPlanDTO plan = allocationService.preview(1L, null, BookingAllocator.Objective.COUNT);
+
+        assertFalse(plan.isCommitted());
+        assertThat(plan.getEquipment()).hasSize(1);
+        assertThat(plan.getEquipment().get(0).getSelectedBookingIds()).containsExactly(11L, 12L);
+        assertEquals(3, plan.getEquipment().get(0).getPendingCount());
+        verify(equipmentRepo, never()).findByIdForUpdate(any());
+        verifyNoInteractions(bookingService);
+    }
+
+    @Test
+    void commit_locksApprovesSelectionAndRejectsTheRest() {
+        when(bookingService.approveBatch(eq(1L), eq(List.of(11L, 12L)), any(), eq("admin"))).thenAnswer(inv -> {
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getApproved().addAll(inv.getArgument(1));
+            return r;
+        });
+
+        AllocationPlanDTO plan = allocationService.commit(1L, null, BookingAllocator.Objective.COUNT, true, "admin");
+
+        assertTrue(plan.isCommitted());
+        assertEquals(2, plan.getTotalSelected());
+        verify(equipmentRepo).findByIdForUpdate(1L);
+        verify(bookingService).rejectBooking(eq(10L), eq("admin"), anyString());
+        verify(bookingService, never()).rejectBooking(eq(11L), any(), any());
+    }
+
+    @Test
+    void commitByCategory_locksEveryRowBeforeReadingBookings() {
+        Equipment projector = new Equipment();
+        projector.setId(2L);
+        projector.setQuantity(1);
+        when(equipmentRepo.findAllByCategoryForUpdate("IT")).thenReturn(List.of(laptop, projector));
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenAnswer(inv -> {
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getApproved().addAll(inv.getArgument(1));
+            return r;
+        });
+
+        AllocationPlanDTO plan = allocationService.commit(null, "IT", BookingAllocator.Objective.COUNT, false, "admin");
+
+        assertThat(plan.getEquipment()).extracting(AllocationPlanDTO.EquipmentAllocation::getEquipmentId)
+                .containsExactly(1L, 2L);
+        InOrder order = inOrder(equipmentRepo, bookingRepo);
+        order.verify(equipmentRepo).findAllByCategoryForUpdate("IT");
+        order.verify(bookingRepo).findByEquipment_IdAndStatus(1L, BookingStatus.PENDING);
+        verify(equipmentRepo, never()).findByCategoryIgnoreCase(any());
+        verify(equipmentRepo, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void commit_partialApproval_abortsTransaction() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenReturn(new BatchApprovalResult());
+
+        assertThrows(IllegalStateException.class,
+                () -> allocationService.commit(1L, null, BookingAllocator.Objective.COUNT, false, "admin"));
+    }
+
+    @Test
+    void neitherEquipmentNorCategory_isBadRequest() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> allocationService.preview(null, " ", BookingAllocator.Objective.COUNT));
+        assertEquals(400, ex.getStatusCode().value());
+    }
+
+    private BookingRequest booking(Long id, int startHour, int endHour) {
+        BookingRequest b = new BookingRequest();
+        b.setId(id);
+        b.setEquipment(laptop);
+        b.setStatus(BookingStatus.PENDING);
+        b.setStartAt(t0.plusHours(startHour));
+        b.setEndAt(t0.plusHours(endHour));
+        b.setQuantityRequested(1);
+        return b;
+    }
+}
@@ -0,0 +1,160 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.ApprovalJobDTO;
+import com.school.equipmentlending.dto.ApprovalJobDTO.State;
+import com.school.equipmentlending.dto.BookingRequestDTO;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ApprovalJobServiceTest {
+
+    @Mock private BookingService bookingService;
+    @Mock private BookingRequestRepository bookingRepo;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ApprovalJobService jobs;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(bookingRepo.findEquipmentIdById(anyLong())).thenReturn(Optional.of(3L));
+        jobs = new ApprovalJobService(bookingService, bookingRepo, meterRegistry, 2, 2, 3, Duration.ofMinutes(15));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobs.shutdown();
+    }
+
+    @Test
+    void submit_returnsQueuedJob_thatSucceedsWithTheApprovedBooking() {
+        BookingRequestDTO approved = new BookingRequestDTO();
+        approved.setId(10L);
+        when(bookingService.approveBooking(10L, "admin", "ok")).thenReturn(approved);
+
+        ApprovalJobDTO job = jobs.submit(10L, "admin", "ok");
+
+        assertNotNull(job.getJobId());
+        assertEquals(3L, job.getEquipmentId());
+        ApprovalJobDTO done = awaitFinished(job.getJobId());
+        assertEquals(State.SUCCEEDED, done.getState());
+        assertEquals(10L, done.getBooking().getId());
+        assertEquals(1.0, meterRegistry.get("booking.approval.jobs").tag("outcome", "succeeded").counter().count());
+    }
+
+    @Test
+    void rejectedApproval_failsTheJobWithTheSynchronousStatusAndReason() {
+        when(bookingService.approveBooking(anyLong(), any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not enough units available"));
+
+        ApprovalJobDTO done = awaitFinished(jobs.submit(11L, "admin", null).getJobId());
+
+        assertEquals(State.FAILED, done.getState());
+        assertEquals(400, done.getHttpStatus());
+        assertEquals("Not enough units available", done.getMessage());
+        assertNull(done.getBooking());
+    }
+
+    @Test
+    void lockConflict_isRetriedInTheLane() {
+        when(bookingService.approveBooking(anyLong(), any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Could not acquire lock"))
+                .thenReturn(new BookingRequestDTO());
+
+        ApprovalJobDTO done = awaitFinished(jobs.submit(12L, "admin", null).getJobId());
+
+        assertEquals(State.SUCCEEDED, done.getState());
+        verify(bookingService, times(2)).approveBooking(12L, "admin", null);
+    }
+
+    @Test
+    void temporaryFailures_areRetriedInTheLane() {
+        when(bookingService.approveBooking(anyLong(), any(), any()))
+                .thenThrow(new CannotCreateTransactionException("no connection"))
+                .thenThrow(new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1, "bulkhead full"))
+                .thenReturn(new BookingRequestDTO());
+
+        ApprovalJobDTO done = awaitFinished(jobs.submit(13L, "admin", null).getJobId());
+
+        assertEquals(State.SUCCEEDED, done.getState());
+        verify(bookingService, times(3)).approveBooking(13L, "admin", null);
+    }
+
+    @Test
+    void persistentUnavailability_failsTheJobWith503_notAServerError() {
+        when(bookingService.approveBooking(anyLong(), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        ApprovalJobDTO done = awaitFinished(jobs.submit(14L, "admin", null).getJobId());
+
+        assertEquals(State.FAILED, done.getState());
+        assertEquals(503, done.getHttpStatus());
+        assertEquals("Service busy, please retry", done.getMessage());
+        verify(bookingService, times(3)).approveBooking(14L, "admin", null);
+    }
+
+    @Test
+    void unknownBooking_isRefusedUpFront() {
+        when(bookingRepo.findEquipmentIdById(99L)).thenReturn(Optional.empty());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> jobs.submit(99L, "admin", null));
+
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verifyNoInteractions(bookingService);
+    }
+
+    @Test
+    void fullQueue_shedsNewJobs() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookingService.approveBooking(anyLong(), any(), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new BookingRequestDTO();
+        });
+        jobs.submit(1L, "admin", null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        jobs.submit(2L, "admin", null);
+        jobs.submit(3L, "admin", null);   // queue-capacity 2 is now full
+
+        ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class,
+                () -> jobs.submit(4L, "admin", null));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ex.getStatus());
+        release.countDown();
+    }
+
+    @Test
+    void unknownJob_isNotFound() {
+        assertTrue(jobs.find("nope").isEmpty());
+    }
+
+    private ApprovalJobDTO awaitFinished(String jobId) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            ApprovalJobDTO job = jobs.find(jobId).orElseThrow();
+            if (job.getState() == State.SUCCEEDED || job.getState() == State.FAILED) return job;
+            assertTrue(System.nanoTime() < deadline, "job still " + job.getState());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
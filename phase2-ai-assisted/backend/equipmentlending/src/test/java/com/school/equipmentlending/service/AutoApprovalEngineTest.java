@@ -0,0 +1,220 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BatchApprovalResult;
+import com.school.equipmentlending.event.BookingSubmittedEvent;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.exception.ServiceOverloadedException;
+import com.school.equipmentlending.model.*;
+import com.school.equipmentlending.repository.BookingRequestRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AutoApprovalEngineTest {
+
+    @Mock private BookingService bookingService;
+    @Mock private BookingRequestRepository bookingRepo;
+
+    private SimpleMeterRegistry registry;
+    private AutoApprovalEngine engine;
+
+    private final LocalDateTime t0 = LocalDateTime.now().plusDays(1);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        engine = new AutoApprovalEngine(bookingService, bookingRepo, registry, true, 10, 2, List.of(), List.of());
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenAnswer(inv -> {
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getApproved().addAll(inv.getArgument(1));
+            return r;
+        });
+    }
+
+    @Test
+    void drain_groupsByEquipmentInStartThenCreatedOrder() {
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0.plusHours(3), t0.minusDays(1)));
+        engine.onBookingSubmitted(new BookingSubmittedEvent(2L, 20L, t0, t0.minusDays(1)));
+        engine.onBookingSubmitted(new BookingSubmittedEvent(3L, 10L, t0.plusHours(1), t0.minusHours(1)));
+        engine.onBookingSubmitted(new BookingSubmittedEvent(4L, 10L, t0.plusHours(1), t0.minusHours(2)));
+
+        engine.drain();
+
+        InOrder order = inOrder(bookingService);
+        order.verify(bookingService).approveBatch(eq(20L), eq(List.of(2L)), any(), eq(AutoApprovalEngine.APPROVER));
+        order.verify(bookingService).approveBatch(eq(10L), eq(List.of(4L, 3L, 1L)), any(), eq(AutoApprovalEngine.APPROVER));
+        assertEquals(0, engine.queueSize());
+        assertEquals(4.0, registry.counter("booking.auto_approval.approved").count());
+        assertEquals(4L, registry.timer("booking.auto_approval.queue.lag").count());
+    }
+
+    @Test
+    void enqueue_ignoresDuplicates() {
+        BookingSubmittedEvent e = new BookingSubmittedEvent(1L, 10L, t0, t0);
+        engine.onBookingSubmitted(e);
+        engine.onBookingSubmitted(e);
+        assertEquals(1, engine.queueSize());
+    }
+
+    @Test
+    void drain_lockConflict_requeuesForNextTick() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString()))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "lock"));
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+
+        engine.drain();
+
+        assertEquals(1, engine.queueSize());
+    }
+
+    @Test
+    void drain_transientFailure_requeuesInsteadOfDropping() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString()))
+                .thenThrow(new CannotCreateTransactionException("pool exhausted"))
+                .thenThrow(new ServiceOverloadedException(HttpStatus.SERVICE_UNAVAILABLE, 1, "busy"))
+                .thenThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "shed"))
+                .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "gone"));
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+
+        engine.drain();
+        assertEquals(1, engine.queueSize());
+        engine.drain();
+        assertEquals(1, engine.queueSize());
+        engine.drain();
+        assertEquals(1, engine.queueSize());
+
+        // a permanent error drops the booking, and it can be queued again later
+        engine.drain();
+        assertEquals(0, engine.queueSize());
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+        assertEquals(1, engine.queueSize());
+    }
+
+    @Test
+    void drain_noCapacity_parksUntilThatEquipmentReleasesUnits() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenAnswer(inv -> {
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getSkippedNoCapacity().addAll(inv.getArgument(1));
+            return r;
+        });
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+
+        engine.drain();
+        assertEquals(0, engine.queueSize());
+        assertEquals(1, engine.parkedSize());
+
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));   // still tracked, not queued twice
+        engine.onCapacityReleased(new CapacityReleasedEvent(20L, t0, null, "returned", Instant.now()));
+        assertEquals(0, engine.queueSize());
+
+        engine.onCapacityReleased(new CapacityReleasedEvent(10L, t0, null, "returned", Instant.now()));
+        assertEquals(1, engine.queueSize());
+        assertEquals(0, engine.parkedSize());
+
+        engine.drain();
+        verify(bookingService, times(2)).approveBatch(eq(10L), eq(List.of(1L)), any(), eq(AutoApprovalEngine.APPROVER));
+        assertEquals(2.0, registry.counter("booking.auto_approval.skipped", "reason", "capacity").count());
+    }
+
+    @Test
+    void drain_releaseDuringTheBatch_requeuesInsteadOfParking() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenAnswer(inv -> {
+            engine.onCapacityReleased(new CapacityReleasedEvent(10L, t0, null, "returned", Instant.now()));
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getSkippedNoCapacity().addAll(inv.getArgument(1));
+            return r;
+        });
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+
+        engine.drain();
+
+        assertEquals(1, engine.queueSize());
+        assertEquals(0, engine.parkedSize());
+    }
+
+    @Test
+    void drain_policySkipped_isLeftForAnAdmin() {
+        when(bookingService.approveBatch(anyLong(), anyList(), any(), anyString())).thenAnswer(inv -> {
+            BatchApprovalResult r = new BatchApprovalResult();
+            r.getSkippedByPolicy().addAll(inv.getArgument(1));
+            return r;
+        });
+        engine.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+
+        engine.drain();
+        engine.onCapacityReleased(new CapacityReleasedEvent(10L, t0, null, "returned", Instant.now()));
+
+        assertEquals(0, engine.queueSize());
+        assertEquals(0, engine.parkedSize());
+    }
+
+    @Test
+    void loadPending_seedsQueueOnce() {
+        Equipment eq = new Equipment();
+        eq.setId(10L);
+        BookingRequest b = new BookingRequest();
+        b.setId(7L);
+        b.setEquipment(eq);
+        b.setStartAt(t0);
+        when(bookingRepo.findByStatus(BookingStatus.PENDING)).thenReturn(List.of(b));
+
+        engine.loadPending();
+
+        assertEquals(1, engine.queueSize());
+        verify(bookingRepo, times(1)).findByStatus(BookingStatus.PENDING);
+    }
+
+    @Test
+    void disabled_engineIgnoresEvents() {
+        AutoApprovalEngine off = new AutoApprovalEngine(bookingService, bookingRepo, registry, false, 10, 0, List.of(), List.of());
+        off.onBookingSubmitted(new BookingSubmittedEvent(1L, 10L, t0, t0));
+        off.drain();
+        assertEquals(0, off.queueSize());
+        verifyNoInteractions(bookingService);
+    }
+
+    @Test
+    void policy_appliesQuantityCategoryAndRole() {
+        AutoApprovalPolicy policy = new AutoApprovalPolicy(2, List.of("Sports"), List.of("ROLE_USER"));
+
+        Equipment ball = new Equipment();
+        ball.setCategory("sports ");
+        Role userRole = new Role();
+        userRole.setName("ROLE_USER");
+        User student = new User();
+        student.setRoles(Set.of(userRole));
+
+        BookingRequest ok = new BookingRequest();
+        ok.setEquipment(ball);
+        ok.setRequester(student);
+        ok.setQuantityRequested(2);
+        assertTrue(policy.test(ok));
+
+        ok.setQuantityRequested(3);
+        assertFalse(policy.test(ok));
+
+        Equipment laptop = new Equipment();
+        laptop.setCategory("Electronics");
+        ok.setQuantityRequested(1);
+        ok.setEquipment(laptop);
+        assertFalse(policy.test(ok));
+
+        ok.setEquipment(ball);
+        ok.setRequester(new User());
+        assertFalse(policy.test(ok));
+    }
+}
@@ -0,0 +1,131 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.BookingRequest;
+import com.school.equipmentlending.repository.ReservationInterval;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingAllocatorTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingAllocatorTest.class);
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 2, 3, 8, 0);
+
+    @Test
+    void count_prefersEarlyFinishingRequestsOverOneLongRequest() {
+        // capacity 1: one long request blocks three short ones
+        List<BookingRequest> pending = List.of(
+                booking(1L, 0, 6, 1),
+                booking(2L, 0, 2, 1),
+                booking(3L, 2, 4, 1),
+                booking(4L, 4, 6, 1));
+
+        List<Long> selected = BookingAllocator.allocate(1, List.of(), pending, BookingAllocator.Objective.COUNT);
+
+        assertThat(selected).containsExactly(2L, 3L, 4L);
+    }
+
+    @Test
+    void units_prefersLargerRequests() {
+        List<BookingRequest> pending = List.of(
+                booking(1L, 0, 2, 1),
+                booking(2L, 0, 2, 1),
+                booking(3L, 0, 2, 3));
+
+        List<Long> selected = BookingAllocator.allocate(3, List.of(), pending, BookingAllocator.Objective.UNITS);
+
+        assertThat(selected).containsExactly(3L);
+    }
+
+    @Test
+    void existingLoansReduceCapacity_includingOpenEndedOnes() {
+        List<ReservationInterval> existing = List.of(
+                new ReservationInterval(T0.minusDays(1), T0.plusHours(1), 1),
+                new ReservationInterval(T0.plusHours(3), null, 1));
+        List<BookingRequest> pending = List.of(
+                booking(1L, 0, 1, 2),   // only 1 free in [0,1)
+                booking(2L, 1, 3, 2),   // fully free
+                booking(3L, 4, 5, 2));  // open-ended loan holds 1
+
+        List<Long> selected = BookingAllocator.allocate(2, existing, pending, BookingAllocator.Objective.COUNT);
+
+        assertThat(selected).containsExactly(2L);
+    }
+
+    @Test
+    void requestsLargerThanCapacity_areNeverSelected() {
+        List<Long> selected = BookingAllocator.allocate(2, List.of(), List.of(booking(1L, 0, 1, 3)),
+                BookingAllocator.Objective.UNITS);
+        assertThat(selected).isEmpty();
+    }
+
+    /**
+     * Benchmark-style check at 10k requests: 40 laptops, random overlapping windows.
+     * The plan must respect capacity everywhere and approve at least as many bookings as first-come order.
+     */
+    @Test
+    void tenThousandRequests_feasibleAndBeatsFirstComeFirstServed() {
+        Random rnd = new Random(42);
+        int capacity = 40;
+        List<BookingRequest> pending = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            int start = rnd.nextInt(24 * 14);           // two weeks, hourly
+            int length = 1 + rnd.nextInt(48);
+            pending.add(booking(id, start, start + length, 1 + rnd.nextInt(3)));
+        }
+
+        long t = System.nanoTime();
+        List<Long> selected = BookingAllocator.allocate(capacity, List.of(), pending, BookingAllocator.Objective.COUNT);
+        long elapsedMs = (System.nanoTime() - t) / 1_000_000;
+        logger.info("Allocated {} of {} requests in {} ms", selected.size(), pending.size(), elapsedMs);
+
+        assertFeasible(capacity, pending, selected);
+        assertThat(selected.size()).isGreaterThanOrEqualTo(firstComeFirstServed(capacity, pending));
+        assertEquals(selected.size(), new HashSet<>(selected).size());
+    }
+
+    private static void assertFeasible(int capacity, List<BookingRequest> pending, List<Long> selected) {
+        Map<Long, BookingRequest> byId = pending.stream().collect(Collectors.toMap(BookingRequest::getId, Function.identity()));
+        ReservationProfile profile = new ReservationProfile(capacity);
+        for (Long id : selected) {
+            BookingRequest b = byId.get(id);
+            profile.reserve(b.getStartAt(), b.getEndAt(), b.getQuantityRequested());
+        }
+        assertThat(profile.maxReserved(T0.minusDays(1), T0.plusDays(30))).isLessThanOrEqualTo(capacity);
+    }
+
+    private static int firstComeFirstServed(int capacity, List<BookingRequest> pending) {
+        ReservationProfile profile = new ReservationProfile(capacity);
+        int approved = 0;
+        for (BookingRequest b : pending) {
+            if (profile.availableUnits(b.getStartAt(), b.getEndAt()) >= b.getQuantityRequested()) {
+                profile.reserve(b.getStartAt(), b.getEndAt(), b.getQuantityRequested());
+                approved++;
+            }
+        }
+        return approved;
+    }
+
+    private static BookingRequest booking(Long id, int startHour, int endHour, int qty) {
+        BookingRequest b = new BookingRequest();
+        b.setId(id);
+        b.setStartAt(T0.plusHours(startHour));
+        b.setEndAt(T0.plusHours(endHour));
+        b.setQuantityRequested(qty);
+        b.setCreatedAt(T0.minusDays(1).plusSeconds(id));
+        return b;
+    }
+}
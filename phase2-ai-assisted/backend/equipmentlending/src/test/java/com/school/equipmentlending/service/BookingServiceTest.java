@@ -1,20 +1,30 @@
 package com.school.equipmentlending.service;
 
+import com.school.equipmentlending.dto.BatchApprovalResult;
 import com.school.equipmentlending.dto.BookingRequestDTO;
 import com.school.equipmentlending.dto.CreateBookingRequestDTO;
+import com.school.equipmentlending.event.BookingCreated;
+import com.school.equipmentlending.event.BookingSubmittedEvent;
 import com.school.equipmentlending.model.*;
 import com.school.equipmentlending.repository.BookingRequestRepository;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
 import com.school.equipmentlending.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,12 +44,26 @@ class BookingServiceTest {
     @Mock
     private LoanRepository loanRepo;
 
+    @Mock
+    private AvailabilityService availabilityService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DomainEventOutbox outbox;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private BookingService bookingService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(availabilityService.loadProfile(any(), any()))
+                .thenAnswer(inv -> new ReservationProfile(((Equipment) inv.getArgument(0)).getQuantity()));
     }
 
     // ---------- createBooking tests ----------
@@ -178,13 +202,136 @@ class BookingServiceTest {
         assertEquals("carol", dto.getRequesterUsername());
 
         verify(bookingRepo, times(1)).save(any(BookingRequest.class));
+        verify(eventPublisher).publishEvent(any(BookingSubmittedEvent.class));
+        verify(outbox).record(any(BookingCreated.class));
+    }
+
+    @Test
+    void createBooking_windowAlreadyFull_isWaitlistedNotPending() {
+        CreateBookingRequestDTO req = new CreateBookingRequestDTO();
+        req.setEquipmentId(3L);
+        req.setStartAt(LocalDateTime.now().plusDays(1));
+        req.setEndAt(LocalDateTime.now().plusDays(2));
+        req.setQuantityRequested(2);
+
+        Equipment eq = new Equipment();
+        eq.setId(3L);
+        eq.setQuantity(3);
+        when(equipmentRepo.findById(3L)).thenReturn(Optional.of(eq));
+        when(userRepo.findByUsername("erin")).thenReturn(Optional.of(new User()));
+        when(availabilityService.loadProfile(eq, req.getStartAt()))
+                .thenReturn(reserved(3, 2, req.getStartAt(), req.getEndAt()));
+        when(bookingRepo.save(any(BookingRequest.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        BookingRequestDTO dto = bookingService.createBooking("erin", req);
+
+        assertEquals(BookingStatus.WAITLISTED, dto.getStatus());
+        assertTrue(dto.getAdminNote().contains("only 1 of 3 units free"));
+        assertTrue(dto.getAdminNote().contains("Next available slot: " + req.getEndAt()));
+        // the shortfall and the hint come from the same profile: one reservation query in total
+        verify(availabilityService, times(1)).loadProfile(any(), any());
+        verify(loanRepo, never()).sumOverlappingReserved(any(), any(), any());
+        verify(equipmentRepo, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void createBooking_windowFull_waitlistDisabled_isRejectedAsInfeasible() {
+        ReflectionTestUtils.setField(bookingService, "waitlistEnabled", false);
+        CreateBookingRequestDTO req = new CreateBookingRequestDTO();
+        req.setEquipmentId(3L);
+        req.setStartAt(LocalDateTime.now().plusDays(1));
+        req.setEndAt(LocalDateTime.now().plusDays(2));
+        req.setQuantityRequested(1);
+
+        Equipment eq = new Equipment();
+        eq.setId(3L);
+        eq.setQuantity(1);
+        when(equipmentRepo.findById(3L)).thenReturn(Optional.of(eq));
+        when(userRepo.findByUsername("erin")).thenReturn(Optional.of(new User()));
+        when(availabilityService.loadProfile(eq, req.getStartAt()))
+                .thenReturn(reserved(1, 1, req.getStartAt(), req.getEndAt()));
+        when(bookingRepo.save(any(BookingRequest.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        BookingRequestDTO dto = bookingService.createBooking("erin", req);
+
+        assertEquals(BookingStatus.REJECTED, dto.getStatus());
+        assertTrue(dto.getAdminNote().startsWith("Infeasible"));
+    }
+
+    /**
+     * Load simulation: 300 students ask for one of 40 laptops in the same window while an admin
+     * works through the pending queue every 10 requests. Without the create-time check every
+     * request beyond capacity would become a failed (locked) approval; with it they are waitlisted.
+     */
+    @Test
+    void createBooking_contendedWindow_capacityCheckCutsFailedApprovals() {
+        int capacity = 40;
+        int students = 300;
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        LocalDateTime end = start.plusHours(2);
+
+        Equipment eq = new Equipment();
+        eq.setId(9L);
+        eq.setQuantity(capacity);
+        when(equipmentRepo.findById(9L)).thenReturn(Optional.of(eq));
+        when(equipmentRepo.findByIdForUpdate(9L)).thenReturn(Optional.of(eq));
+        when(userRepo.findByUsername(anyString())).thenReturn(Optional.of(new User()));
+
+        AtomicLong reserved = new AtomicLong();
+        Map<Long, BookingRequest> store = new HashMap<>();
+        when(availabilityService.loadProfile(eq, start))
+                .thenAnswer(inv -> reserved(capacity, (int) reserved.get(), start, end));
+        when(loanRepo.save(any(Loan.class))).thenAnswer(inv -> {
+            reserved.addAndGet(((Loan) inv.getArgument(0)).getQuantity());
+            return inv.getArgument(0);
+        });
+        when(bookingRepo.save(any(BookingRequest.class))).thenAnswer(inv -> {
+            BookingRequest b = inv.getArgument(0);
+            if (b.getId() == null) b.setId((long) store.size() + 1);
+            store.put(b.getId(), b);
+            return b;
+        });
+        when(bookingRepo.findEquipmentIdById(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.get((Long) inv.getArgument(0)))
+                .map(b -> b.getEquipment().getId()));
+        when(bookingRepo.findByIdForUpdate(anyLong())).thenAnswer(inv -> Optional.ofNullable(store.get((Long) inv.getArgument(0))));
+
+        int approvalAttempts = 0;
+        int failedApprovals = 0;
+        for (int i = 0; i < students; i++) {
+            CreateBookingRequestDTO req = new CreateBookingRequestDTO();
+            req.setEquipmentId(9L);
+            req.setStartAt(start);
+            req.setEndAt(end);
+            req.setQuantityRequested(1);
+            bookingService.createBooking("student" + i, req);
+
+            if (i % 10 == 9) {
+                for (BookingRequest pending : store.values().stream()
+                        .filter(b -> b.getStatus() == BookingStatus.PENDING).toList()) {
+                    approvalAttempts++;
+                    try {
+                        bookingService.approveBooking(pending.getId(), "admin", null);
+                    } catch (ResponseStatusException ex) {
+                        failedApprovals++;
+                        pending.setStatus(BookingStatus.REJECTED);
+                    }
+                }
+            }
+        }
+
+        int failedWithoutCheck = students - capacity; // every request past capacity would have been attempted and failed
+        assertEquals(capacity, reserved.get());
+        assertThat(approvalAttempts).isLessThan(students);
+        assertThat(failedApprovals).isLessThan(failedWithoutCheck / 10);
+        assertThat(store.values().stream().filter(b -> b.getStatus() == BookingStatus.WAITLISTED).count())
+                .isGreaterThanOrEqualTo(students - capacity - failedApprovals);
     }
 
     // ---------- approveBooking tests ----------
 
     @Test
     void approveBooking_notFound_throwsNotFound() {
-        when(bookingRepo.findById(9L)).thenReturn(Optional.empty());
+        when(bookingRepo.findEquipmentIdById(9L)).thenReturn(Optional.empty());
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> bookingService.approveBooking(9L, "admin", null));
         assertEquals(404, ex.getStatusCode().value());
@@ -195,7 +342,11 @@ class BookingServiceTest {
         BookingRequest b = new BookingRequest();
         b.setId(10L);
         b.setStatus(BookingStatus.APPROVED);
-        when(bookingRepo.findById(10L)).thenReturn(Optional.of(b));
+        Equipment eq = new Equipment();
+        eq.setId(51L);
+        b.setEquipment(eq);
+        stubBooking(b);
+        when(equipmentRepo.findByIdForUpdate(51L)).thenReturn(Optional.of(eq));
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> bookingService.approveBooking(10L, "admin", null));
@@ -211,7 +362,7 @@ class BookingServiceTest {
         Equipment eqRef = new Equipment();
         eqRef.setId(50L);
         b.setEquipment(eqRef);
-        when(bookingRepo.findById(20L)).thenReturn(Optional.of(b));
+        stubBooking(b);
         when(equipmentRepo.findByIdForUpdate(50L)).thenReturn(Optional.empty());
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
@@ -232,14 +383,13 @@ class BookingServiceTest {
         eqRef.setId(60L);
         b.setEquipment(eqRef);
 
-        when(bookingRepo.findById(30L)).thenReturn(Optional.of(b));
+        stubBooking(b);
         Equipment eq = new Equipment();
         eq.setId(60L);
         eq.setQuantity(3);
         when(equipmentRepo.findByIdForUpdate(60L)).thenReturn(Optional.of(eq));
 
-        // no existing reserved -> sumOverlappingReserved returns 0 -> availableUnits = 3 < requested 5
-        when(loanRepo.sumOverlappingReserved(60L, b.getStartAt(), b.getEndAt())).thenReturn(0L);
+        // nothing reserved -> availableUnits = 3 < requested 5
 
         ResponseStatusException ex = assertThrows(ResponseStatusException.class,
                 () -> bookingService.approveBooking(30L, "admin", null));
@@ -247,6 +397,33 @@ class BookingServiceTest {
         assertTrue(ex.getReason().contains("Not enough units available"));
     }
 
+    @Test
+    void approveBooking_notEnoughUnits_messageSuggestsNextSlot() {
+        BookingRequest b = new BookingRequest();
+        b.setId(32L);
+        b.setStatus(BookingStatus.PENDING);
+        LocalDateTime s = LocalDateTime.now().plusDays(1);
+        b.setStartAt(s);
+        b.setEndAt(s.plusHours(2));
+        b.setQuantityRequested(2);
+        Equipment eqRef = new Equipment();
+        eqRef.setId(62L);
+        b.setEquipment(eqRef);
+
+        stubBooking(b);
+        Equipment eq = new Equipment();
+        eq.setId(62L);
+        eq.setQuantity(2);
+        when(equipmentRepo.findByIdForUpdate(62L)).thenReturn(Optional.of(eq));
+        LocalDateTime next = s.plusHours(5);
+        when(availabilityService.loadProfile(eq, s)).thenReturn(reserved(2, 1, s, next));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> bookingService.approveBooking(32L, "admin", null));
+        assertEquals(400, ex.getStatusCode().value());
+        assertTrue(ex.getReason().contains("Next available slot: " + next));
+    }
+
     @Test
     void approveBooking_lockFailure_translatesToConflict() {
         BookingRequest b = new BookingRequest();
@@ -259,7 +436,7 @@ class BookingServiceTest {
         eqRef.setId(61L);
         b.setEquipment(eqRef);
 
-        when(bookingRepo.findById(31L)).thenReturn(Optional.of(b));
+        stubBooking(b);
         // simulate pessimistic lock exception from equipmentRepo
         when(equipmentRepo.findByIdForUpdate(61L)).thenThrow(new PessimisticLockingFailureException("lock failed"));
 
@@ -267,6 +444,7 @@ class BookingServiceTest {
                 () -> bookingService.approveBooking(31L, "admin", null));
         assertEquals(409, ex.getStatusCode().value());
         assertTrue(ex.getReason().contains("Could not acquire lock"));
+        assertEquals(1.0, meterRegistry.counter("booking.approval", "outcome", "lock_failed").count());
     }
 
     @Test
@@ -289,7 +467,7 @@ class BookingServiceTest {
         requester.setUsername("dude");
         b.setRequester(requester);
 
-        when(bookingRepo.findById(40L)).thenReturn(Optional.of(b));
+        stubBooking(b);
 
         Equipment eq = new Equipment();
         eq.setId(70L);
@@ -297,7 +475,7 @@ class BookingServiceTest {
         when(equipmentRepo.findByIdForUpdate(70L)).thenReturn(Optional.of(eq));
 
         // reserved 3 => availableUnits = 7 >= requested 2
-        when(loanRepo.sumOverlappingReserved(70L, s, e)).thenReturn(3L);
+        when(availabilityService.loadProfile(eq, s)).thenReturn(reserved(10, 3, s, e));
 
         // mock loanRepo.save
         when(loanRepo.save(any())).thenAnswer(inv -> {
@@ -319,6 +497,143 @@ class BookingServiceTest {
 
         verify(loanRepo).save(any(Loan.class));
         verify(bookingRepo, atLeastOnce()).save(any(BookingRequest.class));
+        assertEquals(1.0, meterRegistry.counter("booking.approval", "outcome", "approved").count());
+    }
+
+    @Test
+    void approveBooking_grantedWhileWaitingForTheLock_isRefused() {
+        Equipment eq = new Equipment();
+        eq.setId(71L);
+        eq.setQuantity(10);
+        BookingRequest b = pendingBooking(41L, eq, LocalDateTime.now().plusDays(1), 1);
+        stubBooking(b);
+        // a racing approver commits while this one waits on the equipment row
+        when(equipmentRepo.findByIdForUpdate(71L)).thenAnswer(inv -> {
+            b.setStatus(BookingStatus.APPROVED);
+            return Optional.of(eq);
+        });
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> bookingService.approveBooking(41L, "admin", null));
+        assertEquals(400, ex.getStatusCode().value());
+        verify(loanRepo, never()).save(any());
+        InOrder order = inOrder(equipmentRepo, bookingRepo);
+        order.verify(equipmentRepo).findByIdForUpdate(71L);
+        order.verify(bookingRepo).findByIdForUpdate(41L);
+        verify(bookingRepo, never()).findById(anyLong());
+    }
+
+    // ---------- approveBatch tests ----------
+
+    @Test
+    void approveBatch_locksOnceAndTracksCapacityAcrossBookings() {
+        LocalDateTime s = LocalDateTime.now().plusDays(1);
+        Equipment eq = new Equipment();
+        eq.setId(80L);
+        eq.setQuantity(3);
+        when(equipmentRepo.findByIdForUpdate(80L)).thenReturn(Optional.of(eq));
+        when(availabilityService.loadProfile(eq, s)).thenReturn(new ReservationProfile(3));
+
+        BookingRequest first = pendingBooking(1L, eq, s, 2);
+        BookingRequest second = pendingBooking(2L, eq, s, 2);   // would exceed 3 once the first is granted
+        BookingRequest third = pendingBooking(3L, eq, s, 1);
+        BookingRequest bigOne = pendingBooking(4L, eq, s, 5);   // rejected by policy
+        BookingRequest approved = pendingBooking(5L, eq, s, 1);
+        approved.setStatus(BookingStatus.APPROVED);
+        when(bookingRepo.findAllByIdForUpdate(List.of(1L, 2L, 3L, 4L, 5L)))
+                .thenReturn(List.of(first, second, third, bigOne, approved));
+
+        BatchApprovalResult result = bookingService.approveBatch(80L, List.of(1L, 2L, 3L, 4L, 5L),
+                b -> b.getQuantityRequested() <= 2, "auto");
+
+        assertThat(result.getApproved()).containsExactly(1L, 3L);
+        assertThat(result.getSkippedNoCapacity()).containsExactly(2L);
+        assertThat(result.getSkippedByPolicy()).containsExactly(4L);
+        assertThat(result.getNotPending()).containsExactly(5L);
+        assertEquals(BookingStatus.APPROVED, first.getStatus());
+        assertEquals(BookingStatus.PENDING, second.getStatus());
+
+        verify(equipmentRepo, times(1)).findByIdForUpdate(80L);
+        verify(availabilityService, times(1)).loadProfile(eq, s);
+        verify(loanRepo, times(2)).save(any(Loan.class));
+        verify(loanRepo, never()).sumOverlappingReserved(any(), any(), any());
+    }
+
+    // approveBooking finds the equipment without loading the booking, then reads the booking under the lock
+    private void stubBooking(BookingRequest b) {
+        when(bookingRepo.findEquipmentIdById(b.getId())).thenReturn(Optional.of(b.getEquipment().getId()));
+        when(bookingRepo.findByIdForUpdate(b.getId())).thenReturn(Optional.of(b));
+    }
+
+    private static ReservationProfile reserved(int capacity, int units, LocalDateTime start, LocalDateTime end) {
+        ReservationProfile profile = new ReservationProfile(capacity);
+        profile.reserve(start, end, units);
+        return profile;
+    }
+
+    private static BookingRequest pendingBooking(Long id, Equipment eq, LocalDateTime start, int qty) {
+        BookingRequest b = new BookingRequest();
+        b.setId(id);
+        b.setEquipment(eq);
+        b.setRequester(requester(id));
+        b.setStatus(BookingStatus.PENDING);
+        b.setStartAt(start);
+        b.setEndAt(start.plusHours(2));
+        b.setQuantityRequested(qty);
+        return b;
+    }
+
+    private static User requester(Long bookingId) {
+        User u = new User();
+        u.setId(100L + bookingId);
+        u.setUsername("student" + bookingId);
+        return u;
+    }
+
+    // ---------- promoteWaitlisted tests ----------
+
+    @Test
+    void promoteWaitlisted_fifoWithoutQueueJumping() {
+        LocalDateTime s = LocalDateTime.now().plusDays(1);
+        Equipment eq = new Equipment();
+        eq.setId(90L);
+        eq.setQuantity(2);
+        when(equipmentRepo.findByIdForUpdate(90L)).thenReturn(Optional.of(eq));
+        ReservationProfile profile = new ReservationProfile(2);
+        profile.reserve(s, s.plusHours(2), 1);      // one unit still out in the first window
+        when(availabilityService.loadProfile(eq, s)).thenReturn(profile);
+
+        BookingRequest head = waitlistedBooking(1L, eq, s, 2);               // needs both units: keeps waiting
+        BookingRequest behindHead = waitlistedBooking(2L, eq, s, 1);         // would fit, but head is first in line
+        BookingRequest otherWindow = waitlistedBooking(3L, eq, s.plusHours(4), 2); // disjoint window: promoted
+        when(bookingRepo.findWaitlistedOverlapping(eq(90L), any(), any()))
+                .thenReturn(List.of(head, behindHead, otherWindow));
+
+        List<Long> promoted = bookingService.promoteWaitlisted(90L, s.minusHours(1), null);
+
+        assertThat(promoted).containsExactly(3L);
+        assertEquals(BookingStatus.WAITLISTED, head.getStatus());
+        assertEquals(BookingStatus.WAITLISTED, behindHead.getStatus());
+        assertEquals(BookingStatus.APPROVED, otherWindow.getStatus());
+        verify(loanRepo, times(1)).save(any(Loan.class));
+    }
+
+    @Test
+    void promoteWaitlisted_nothingWaiting_isNoOp() {
+        Equipment eq = new Equipment();
+        eq.setId(91L);
+        when(equipmentRepo.findByIdForUpdate(91L)).thenReturn(Optional.of(eq));
+        when(bookingRepo.findWaitlistedOverlapping(eq(91L), any(), any())).thenReturn(List.of());
+
+        assertThat(bookingService.promoteWaitlisted(91L, LocalDateTime.now(), null)).isEmpty();
+        verifyNoInteractions(availabilityService);
+        verify(loanRepo, never()).save(any());
+    }
+
+    private static BookingRequest waitlistedBooking(Long id, Equipment eq, LocalDateTime start, int qty) {
+        BookingRequest b = pendingBooking(id, eq, start, qty);
+        b.setStatus(BookingStatus.WAITLISTED);
+        return b;
     }
 
     // ---------- rejectBooking tests ----------
@@ -0,0 +1,87 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.school.equipmentlending.event.EquipmentChanged;
+import com.school.equipmentlending.event.EventEnvelope;
+import com.school.equipmentlending.event.LoanReturned;
+import com.school.equipmentlending.model.LoanStatus;
+import com.school.equipmentlending.model.OutboxEvent;
+import com.school.equipmentlending.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DomainEventOutboxTest {
+
+    @Mock private OutboxEventRepository outboxRepo;
+    @Mock private OutboxRelay relay;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final AtomicLong ids = new AtomicLong(100);
+    private DomainEventOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(outboxRepo.save(any(OutboxEvent.class))).thenAnswer(inv -> {
+            OutboxEvent row = inv.getArgument(0);
+            row.setId(ids.incrementAndGet());
+            return row;
+        });
+        outbox = new DomainEventOutbox(outboxRepo, objectMapper, relay);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void record_writesTypedJsonRow_andHandsEventsToTheRelayOnlyAfterCommit() throws Exception {
+        LoanReturned returned = new LoanReturned(7L, 3L, LoanStatus.OVERDUE, LocalDateTime.of(2026, 3, 1, 10, 0));
+        outbox.record(returned);
+        outbox.record(new EquipmentChanged(3L, EquipmentChanged.Change.UPDATED));
+
+        ArgumentCaptor<OutboxEvent> rows = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxRepo, times(2)).save(rows.capture());
+        OutboxEvent row = rows.getAllValues().get(0);
+        assertEquals("LoanReturned", row.getType());
+        assertEquals(7L, row.getAggregateId());
+        assertEquals(returned, objectMapper.readValue(row.getPayload(), LoanReturned.class));
+        verifyNoInteractions(relay);
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertEquals(1, synchronizations.size());
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EventEnvelope>> handed = ArgumentCaptor.forClass(List.class);
+        verify(relay).committed(handed.capture());
+        assertEquals(List.of(101L, 102L), handed.getValue().stream().map(EventEnvelope::outboxId).toList());
+        assertSame(returned, handed.getValue().get(0).event());
+    }
+
+    @Test
+    void rolledBackTransaction_handsNothingOver() {
+        outbox.record(new EquipmentChanged(3L, EquipmentChanged.Change.DELETED));
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verifyNoInteractions(relay);
+        assertNull(TransactionSynchronizationManager.getResource(outbox));
+    }
+}
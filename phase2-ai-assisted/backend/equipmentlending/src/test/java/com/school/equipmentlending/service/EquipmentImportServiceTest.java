@@ -0,0 +1,200 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.school.equipmentlending.dto.EquipmentImportResult;
+import com.school.equipmentlending.dto.ImportRowError;
+import com.school.equipmentlending.event.EquipmentChanged;
+import com.school.equipmentlending.model.Equipment;
+import com.school.equipmentlending.repository.EquipmentRepository;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EquipmentImportServiceTest {
+
+    @Mock private EquipmentRepository equipmentRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private DomainEventOutbox outbox;
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final List<String> saved = new ArrayList<>();
+    private final List<EquipmentChanged> events = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong(100);
+    private EquipmentImportService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(equipmentRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Equipment> batch = inv.getArgument(0);
+            batch.forEach(e -> {
+                saved.add(e.getName());
+                e.setId(ids.incrementAndGet());
+            });
+            return batch;
+        });
+        doAnswer(inv -> events.add(inv.getArgument(0))).when(outbox).record(any());
+        service = service(2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void csv_createsNewRows_updatesMatches_andReportsBadRowsByLine() {
+        Equipment existing = new Equipment();
+        existing.setId(5L);
+        existing.setName("Tripod");
+        existing.setCategory("Photo");
+        existing.setQuantity(1);
+        when(equipmentRepository.findByNameKeyIn(anyCollection()))
+                .thenAnswer(inv -> inv.<List<String>>getArgument(0).contains("tripod") ? List.of(existing) : List.of());
+
+        EquipmentImportResult result = service.importEquipment(csv("""
+                name,category,quantity,condition
+                Camera,Photo,3,GOOD
+                TRIPOD,photo,7,
+                ,Photo,2,
+                Lens,Photo,many,
+                Drone,Photo,-1,
+                """), EquipmentImportService.Format.CSV);
+
+        assertEquals(5, result.getRows());
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(3, result.getRejected());
+        assertEquals(List.of("Camera"), saved);
+        assertEquals(7, existing.getQuantity());
+        assertEquals(List.of(4L, 5L, 6L), result.getErrors().stream().map(ImportRowError::getLine).toList());
+        assertEquals("name is required", result.getErrors().get(0).getMessage());
+        assertTrue(result.getErrors().get(1).getMessage().contains("whole number"));
+        assertEquals("quantity must be >= 0", result.getErrors().get(2).getMessage());
+        assertEquals(List.of(new EquipmentChanged(101L, EquipmentChanged.Change.CREATED),
+                new EquipmentChanged(5L, EquipmentChanged.Change.UPDATED)), events);
+    }
+
+    @Test
+    void csv_quotedFields_mayHoldCommasQuotesAndLineBreaks() {
+        EquipmentImportResult result = service.importEquipment(
+                csv("name,quantity\n\"Projector, HD \"\"4K\"\"\",2\n\"Cable\nkit\",1\nSpeaker,1\n"),
+                EquipmentImportService.Format.CSV);
+
+        assertEquals(3, result.getCreated());
+        assertEquals(List.of("Projector, HD \"4K\"", "Cable\nkit", "Speaker"), saved);
+    }
+
+    @Test
+    void ndjson_rowsAreParsedAsEquipmentRequests() {
+        EquipmentImportResult result = service.importEquipment(csv("""
+                {"name":"Microscope","category":"Lab","quantity":4}
+                {"name":"Beaker","quantity":
+                {"name":"Scale","quantity":1,"available":false}
+                """), EquipmentImportService.Format.NDJSON);
+
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getRejected());
+        assertEquals(2L, result.getErrors().get(0).getLine());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("invalid JSON"));
+    }
+
+    @Test
+    void chunks_areWrittenInUploadOrder_evenWithParallelWorkers() {
+        service.shutdown();
+        service = service(4, 1);
+        String rows = IntStream.range(0, 200).mapToObj(i -> "Item " + i + ",1").collect(Collectors.joining("\n"));
+
+        EquipmentImportResult result = service.importEquipment(csv("name,quantity\n" + rows),
+                EquipmentImportService.Format.CSV);
+
+        assertEquals(200, result.getCreated());
+        assertEquals(IntStream.range(0, 200).mapToObj(i -> "Item " + i).toList(), saved);
+    }
+
+    @Test
+    void duplicateKeysInOneChunk_laterRowWins() {
+        EquipmentImportResult result = service.importEquipment(csv("""
+                name,quantity
+                Ball,1
+                ball,9
+                """), EquipmentImportService.Format.CSV);
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getUpdated());
+        assertEquals(List.of("ball"), saved);
+        assertEquals(List.of(new EquipmentChanged(101L, EquipmentChanged.Change.CREATED)), events);
+    }
+
+    @Test
+    void failedChunk_rejectsItsRows_andLaterChunksStillWrite() {
+        when(equipmentRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("boom"))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        EquipmentImportResult result = service.importEquipment(csv("""
+                name,quantity
+                A,1
+                B,1
+                C,1
+                """), EquipmentImportService.Format.CSV);
+
+        assertEquals(1, result.getCreated());
+        assertEquals(2, result.getRejected());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("not saved"));
+        assertEquals(1, events.size());   // only the committed chunk's item
+    }
+
+    @Test
+    void errorList_isCapped_butCountIsExact() {
+        service.shutdown();
+        service = new EquipmentImportService(equipmentRepository, outbox, transactionManager, validator, new ObjectMapper(),
+                2, 10, 2, 3);
+        String rows = IntStream.range(0, 20).mapToObj(i -> ",1").collect(Collectors.joining("\n"));
+
+        EquipmentImportResult result = service.importEquipment(csv("name,quantity\n" + rows),
+                EquipmentImportService.Format.CSV);
+
+        assertEquals(20, result.getRejected());
+        assertEquals(3, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+    }
+
+    @Test
+    void csvWithoutRequiredColumns_isRejected() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.importEquipment(csv("title,count\nX,1\n"), EquipmentImportService.Format.CSV));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(equipmentRepository);
+    }
+
+    private EquipmentImportService service(int workers, int chunkSize) {
+        return new EquipmentImportService(equipmentRepository, outbox, transactionManager, validator, new ObjectMapper(),
+                workers, chunkSize, 2, 100);
+    }
+
+    private static InputStream csv(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
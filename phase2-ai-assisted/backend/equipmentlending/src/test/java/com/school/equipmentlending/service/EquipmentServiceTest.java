@@ -7,24 +7,44 @@ import com.school.equipmentlending.exception.ResourceNotFoundException;
 import com.school.equipmentlending.model.Equipment;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.ReservedUnits;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 class EquipmentServiceTest {
 
+    private static final Logger logger = LoggerFactory.getLogger(EquipmentServiceTest.class);
+
     @Mock
     private EquipmentRepository equipmentRepository;
 
     @Mock
     private LoanRepository loanRepository;
 
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private DomainEventOutbox outbox;
+
     @InjectMocks
     private EquipmentService equipmentService;
 
@@ -35,6 +55,15 @@ class EquipmentServiceTest {
 
     // ---------- getAllEquipment ----------
 
+    @Test
+    void getAllEquipment_runsInReadOnlyTransaction() {
+        when(equipmentRepository.findAll()).thenReturn(List.of());
+
+        equipmentService.getAllEquipment();
+
+        verify(transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+    }
+
     @Test
     void getAllEquipment_computesAvailability() {
         Equipment e1 = new Equipment();
@@ -48,9 +77,9 @@ class EquipmentServiceTest {
         e2.setQuantity(2);
 
         when(equipmentRepository.findAll()).thenReturn(List.of(e1, e2));
-        // simulate reserved quantities
-        when(loanRepository.sumCurrentlyReserved(eq(1L), any(LocalDateTime.class))).thenReturn(3L);
-        when(loanRepository.sumCurrentlyReserved(eq(2L), any(LocalDateTime.class))).thenReturn(2L);
+        // simulate reserved quantities (one grouped query for the whole list)
+        when(loanRepository.sumCurrentlyReservedByEquipment(eq(List.of(1L, 2L)), any(LocalDateTime.class)))
+                .thenReturn(List.of(new ReservedUnits(1L, 3L), new ReservedUnits(2L, 2L)));
 
         List<EquipmentDTO> list = equipmentService.getAllEquipment();
 
@@ -84,10 +113,10 @@ class EquipmentServiceTest {
         eqB.setQuantity(1);
 
         when(equipmentRepository.findAll()).thenReturn(List.of(eqA, eqB));
-        when(equipmentRepository.findByCategoryIgnoreCase("Photo")).thenReturn(List.of(eqA));
-        // Use matchers for all args — wrap the id with eq(...)
-        when(loanRepository.sumCurrentlyReserved(eq(eqA.getId()), any(LocalDateTime.class))).thenReturn(0L);
-        when(loanRepository.sumCurrentlyReserved(eq(eqB.getId()), any(LocalDateTime.class))).thenReturn(1L);
+        when(equipmentRepository.findByCategoryIgnoreCase("photo")).thenReturn(List.of(eqA));
+        // eqA has nothing reserved, so it is absent from the grouped result
+        when(loanRepository.sumCurrentlyReservedByEquipment(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(new ReservedUnits(eqB.getId(), 1L)));
 
         // search by category "Photo" -> returns eqA
         List<EquipmentDTO> byCategory = equipmentService.search(null, "Photo", null);
@@ -104,6 +133,84 @@ class EquipmentServiceTest {
     }
 
 
+    // ---------- catalog request coalescing ----------
+
+    /**
+     * Load-style check: bursts of 10, 50 and 200 identical concurrent catalog reads.
+     * With coalescing the number of findAll() queries per burst stays flat instead of growing with concurrency.
+     */
+    @Test
+    void concurrentIdenticalCatalogReads_queryVolumeStaysFlat() throws Exception {
+        Equipment e = new Equipment();
+        e.setId(1L);
+        e.setName("Laptop");
+        e.setCategory("IT");
+        e.setQuantity(40);
+        AtomicInteger findAllCalls = new AtomicInteger();
+        when(equipmentRepository.findAll()).thenAnswer(inv -> {
+            findAllCalls.incrementAndGet();
+            Thread.sleep(100);   // simulated slow catalog query
+            return List.of(e);
+        });
+        when(loanRepository.sumCurrentlyReservedByEquipment(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        for (int concurrency : new int[]{10, 50, 200}) {
+            findAllCalls.set(0);
+            CountDownLatch go = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+            try {
+                List<Future<List<EquipmentDTO>>> results = new ArrayList<>();
+                for (int i = 0; i < concurrency; i++) {
+                    boolean viaSearch = i % 2 == 0;
+                    results.add(pool.submit(() -> {
+                        go.await();
+                        return viaSearch ? equipmentService.search("  ", null, null) : equipmentService.getAllEquipment();
+                    }));
+                }
+                go.countDown();
+                for (Future<List<EquipmentDTO>> f : results) {
+                    assertThat(f.get(10, TimeUnit.SECONDS)).extracting(EquipmentDTO::getId).containsExactly(1L);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            logger.info("concurrency={} -> findAll queries={}", concurrency, findAllCalls.get());
+            assertThat(findAllCalls.get()).isLessThanOrEqualTo(3);
+        }
+        assertThat(equipmentService.collapseRatio()).isGreaterThan(0.9);
+    }
+
+    @Test
+    void differentSearchParameters_areNotCollapsed() {
+        when(equipmentRepository.findAll()).thenReturn(List.of());
+        when(equipmentRepository.findByCategoryIgnoreCase("av")).thenReturn(List.of());
+
+        equipmentService.search(null, "AV", null);
+        equipmentService.search(null, null, true);
+
+        verify(equipmentRepository).findByCategoryIgnoreCase("av");
+        verify(equipmentRepository).findAll();
+    }
+
+    @Test
+    void search_runsOnTheNormalisedKey_soEverySpellingSharingItGetsTheSameResult() {
+        Equipment e = new Equipment();
+        e.setId(3L);
+        e.setName("ThinkPad");
+        e.setCategory("Laptops");
+        e.setQuantity(2);
+        when(equipmentRepository.findByCategoryIgnoreCase("laptops")).thenReturn(List.of(e));
+        when(loanRepository.sumCurrentlyReservedByEquipment(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of());
+
+        assertThat(equipmentService.search(" THINK ", " Laptops", null)).extracting(EquipmentDTO::getId).containsExactly(3L);
+        assertThat(equipmentService.search("think", "laptops", null)).extracting(EquipmentDTO::getId).containsExactly(3L);
+
+        verify(equipmentRepository, times(2)).findByCategoryIgnoreCase("laptops");
+        verify(equipmentRepository, never()).findByCategoryIgnoreCase(" Laptops");
+    }
+
     // ---------- getById ----------
 
     @Test
@@ -0,0 +1,144 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.model.IdempotencyRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+
+    private InMemoryIdempotencyStore store;
+    private IdempotencyService service;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryIdempotencyStore();
+        service = new IdempotencyService(store, new ObjectMapper().registerModule(new JavaTimeModule()),
+                Duration.ofHours(1));
+    }
+
+    @Test
+    void noKey_alwaysRunsAction() {
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            service.execute("scope", "alice", null, Map.of("q", 1), LoanResponse.class,
+                    () -> ResponseEntity.ok(loan(calls.incrementAndGet())));
+        }
+        assertEquals(2, calls.get());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void concurrentDuplicates_runActionOnce_andShareTheResponse() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<LoanResponse>>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> service.execute("scope", "alice", "k1", Map.of("q", 1),
+                        LoanResponse.class, () -> {
+                            calls.incrementAndGet();
+                            await(release);
+                            return ResponseEntity.ok(loan(7L));
+                        })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<ResponseEntity<LoanResponse>> f : results) {
+                assertEquals(7L, f.get(5, TimeUnit.SECONDS).getBody().getId());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void sameKeyDifferentBody_isRejected() {
+        service.execute("scope", "alice", "k2", Map.of("q", 1), LoanResponse.class, () -> ResponseEntity.ok(loan(1L)));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.execute("scope", "alice", "k2", Map.of("q", 2), LoanResponse.class,
+                        () -> ResponseEntity.ok(loan(2L))));
+        assertEquals(422, ex.getStatusCode().value());
+    }
+
+    @Test
+    void keysAreScopedPerUser() {
+        AtomicInteger calls = new AtomicInteger();
+        service.execute("scope", "alice", "k3", Map.of(), LoanResponse.class, () -> ResponseEntity.ok(loan(calls.incrementAndGet())));
+        service.execute("scope", "bob", "k3", Map.of(), LoanResponse.class, () -> ResponseEntity.ok(loan(calls.incrementAndGet())));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void failedAction_releasesKeySoRetryRuns() {
+        assertThrows(ResponseStatusException.class, () -> service.execute("scope", "alice", "k4", Map.of(),
+                LoanResponse.class, () -> { throw new ResponseStatusException(HttpStatus.BAD_REQUEST); }));
+
+        ResponseEntity<LoanResponse> retry = service.execute("scope", "alice", "k4", Map.of(), LoanResponse.class,
+                () -> ResponseEntity.ok(loan(9L)));
+        assertEquals(9L, retry.getBody().getId());
+    }
+
+    @Test
+    void claimHeldByAnotherNode_returnsConflict() {
+        String storeKey = "scope|alice|k5";
+        LocalDateTime now = LocalDateTime.now();
+        // fingerprint of Map.of() serialised as "{}"
+        String fingerprint = "44136fa355b3678a1146ad16f7e8649e94fb4fc21fe77e8310c060f61caaff8a";
+        store.claim(new IdempotencyRecord(storeKey, fingerprint, now, now.plusHours(1)), now);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> service.execute("scope", "alice", "k5", Map.of(), LoanResponse.class,
+                        () -> ResponseEntity.ok(loan(1L))));
+        assertEquals(409, ex.getStatusCode().value());
+    }
+
+    @Test
+    void expiredEntries_arePurged() {
+        LocalDateTime now = LocalDateTime.now();
+        store.claim(new IdempotencyRecord("old", "f", now.minusHours(2), now.minusHours(1)), now.minusHours(2));
+        service.execute("scope", "alice", "k6", Map.of(), LoanResponse.class, () -> ResponseEntity.ok(loan(1L)));
+
+        service.purgeExpired();
+
+        assertEquals(1, store.size());
+        assertThat(store.find("old", now)).isEmpty();
+    }
+
+    private static LoanResponse loan(long id) {
+        LoanResponse r = new LoanResponse();
+        r.setId(id);
+        return r;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,15 +2,23 @@ package com.school.equipmentlending.service;
 
 import com.school.equipmentlending.dto.BorrowRequest;
 import com.school.equipmentlending.dto.LoanResponse;
+import com.school.equipmentlending.dto.LoanReturnResult;
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import com.school.equipmentlending.event.LoanCreated;
+import com.school.equipmentlending.event.LoanReturned;
 import com.school.equipmentlending.exception.BadRequestException;
 import com.school.equipmentlending.exception.ResourceNotFoundException;
 import com.school.equipmentlending.model.*;
 import com.school.equipmentlending.repository.EquipmentRepository;
 import com.school.equipmentlending.repository.LoanRepository;
+import com.school.equipmentlending.repository.ReservedUnits;
 import com.school.equipmentlending.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +31,8 @@ class LoanServiceTest {
     @Mock private LoanRepository loanRepo;
     @Mock private EquipmentRepository equipmentRepo;
     @Mock private UserRepository userRepo;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private DomainEventOutbox outbox;
 
     @InjectMocks private LoanService loanService;
 
@@ -104,6 +114,7 @@ class LoanServiceTest {
         assertEquals(2, resp.getQuantity());
 
         verify(loanRepo).save(any(Loan.class));
+        verify(outbox).record(new LoanCreated(500L, 3L, 7L, 2, resp.getBorrowedAt(), resp.getDueAt()));
     }
 
     // ---------- markLoanReturned tests ----------
@@ -140,6 +151,20 @@ class LoanServiceTest {
         assertTrue(ex.getMessage().contains("Loan already returned"));
     }
 
+    @Test
+    void markLoanReturned_cancelledLoan_isRefusedLikeInABatchReturn() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        Loan loan = activeLoan(48L, eq, "sam", LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(2));
+        loan.setStatus(LoanStatus.CANCELLED);
+        when(loanRepo.findById(48L)).thenReturn(Optional.of(loan));
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> loanService.markLoanReturned(48L, "sam", false));
+        assertEquals("Loan is CANCELLED", ex.getMessage());
+        assertNull(loan.getReturnedAt());
+        verify(loanRepo, never()).save(any());
+        verifyNoInteractions(eventPublisher, outbox);
+    }
+
     @Test
     void markLoanReturned_success_byBorrower_updatesLoanAndEquipment() {
         Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5); eq.setAvailable(true);
@@ -166,6 +191,166 @@ class LoanServiceTest {
 
         verify(loanRepo).save(loan);
         verify(equipmentRepo).save(eq);
+        verify(outbox).record(new LoanReturned(45L, 8L, loan.getStatus(), loan.getReturnedAt()));
+    }
+
+    @Test
+    void markLoanReturned_releasesRestOfWindowToWaitlist() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        LocalDateTime due = LocalDateTime.now().plusDays(1);
+        Loan loan = activeLoan(46L, eq, "sam", LocalDateTime.now().minusDays(1), due);
+        when(loanRepo.findById(46L)).thenReturn(Optional.of(loan));
+        when(loanRepo.sumCurrentlyReserved(eq(8L), any(LocalDateTime.class))).thenReturn(0L);
+
+        loanService.markLoanReturned(46L, "sam", false);
+
+        ArgumentCaptor<CapacityReleasedEvent> captor = ArgumentCaptor.forClass(CapacityReleasedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals(8L, captor.getValue().equipmentId());
+        assertEquals(due, captor.getValue().until());
+        assertEquals("returned", captor.getValue().reason());
+    }
+
+    @Test
+    void markLoanReturned_overdue_releasesOpenEndedWindow() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        Loan loan = activeLoan(47L, eq, "sam", LocalDateTime.now().minusDays(3), LocalDateTime.now().minusDays(1));
+        when(loanRepo.findById(47L)).thenReturn(Optional.of(loan));
+        when(loanRepo.sumCurrentlyReserved(eq(8L), any(LocalDateTime.class))).thenReturn(0L);
+
+        loanService.markLoanReturned(47L, "sam", false);
+
+        assertEquals(LoanStatus.OVERDUE, loan.getStatus());
+        ArgumentCaptor<CapacityReleasedEvent> captor = ArgumentCaptor.forClass(CapacityReleasedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertNull(captor.getValue().until());
+        assertEquals("overdue-resolved", captor.getValue().reason());
+    }
+
+    // ---------- cancelLoan tests ----------
+
+    @Test
+    void cancelLoan_futureLoan_cancelsAndReleasesItsWindow() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        LocalDateTime start = LocalDateTime.now().plusDays(2);
+        Loan loan = activeLoan(48L, eq, "sam", start, start.plusHours(3));
+        when(loanRepo.findById(48L)).thenReturn(Optional.of(loan));
+
+        LoanResponse resp = loanService.cancelLoan(48L, "sam", false);
+
+        assertEquals(LoanStatus.CANCELLED, resp.getStatus());
+        ArgumentCaptor<CapacityReleasedEvent> captor = ArgumentCaptor.forClass(CapacityReleasedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals(start, captor.getValue().from());
+        assertEquals(start.plusHours(3), captor.getValue().until());
+        assertEquals("cancelled", captor.getValue().reason());
+    }
+
+    @Test
+    void cancelLoan_alreadyStarted_throwsBadRequest() {
+        Equipment eq = new Equipment(); eq.setId(8L);
+        Loan loan = activeLoan(49L, eq, "sam", LocalDateTime.now().minusHours(1), null);
+        when(loanRepo.findById(49L)).thenReturn(Optional.of(loan));
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> loanService.cancelLoan(49L, "sam", false));
+        assertTrue(ex.getMessage().contains("already started"));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void cancelLoan_notBorrowerOrAdmin_throwsBadRequest() {
+        Equipment eq = new Equipment(); eq.setId(8L);
+        Loan loan = activeLoan(50L, eq, "sam", LocalDateTime.now().plusDays(1), null);
+        when(loanRepo.findById(50L)).thenReturn(Optional.of(loan));
+
+        assertThrows(BadRequestException.class, () -> loanService.cancelLoan(50L, "intruder", false));
+        assertEquals(LoanStatus.BORROWED, loan.getStatus());
+    }
+
+    // ---------- returnLoans tests ----------
+
+    @Test
+    void returnLoans_mixedBatch_oneUpdate_outcomePerLoan_inRequestOrder() {
+        Equipment cam = new Equipment(); cam.setId(8L); cam.setQuantity(1); cam.setAvailable(false);
+        Equipment tripod = new Equipment(); tripod.setId(9L); tripod.setQuantity(3);
+        LocalDateTime due = LocalDateTime.now().plusDays(1);
+        Loan onTime = activeLoan(50L, cam, "sam", LocalDateTime.now().minusDays(1), due);
+        Loan late = activeLoan(51L, tripod, "sam", LocalDateTime.now().minusDays(3), LocalDateTime.now().minusDays(1));
+        Loan someoneElses = activeLoan(52L, tripod, "kim", LocalDateTime.now().minusDays(1), due);
+        Loan done = activeLoan(53L, tripod, "sam", LocalDateTime.now().minusDays(2), due);
+        done.setStatus(LoanStatus.RETURNED);
+        done.setReturnedAt(LocalDateTime.now().minusDays(1));
+        when(loanRepo.findByIdIn(anyList())).thenReturn(List.of(onTime, late, someoneElses, done));
+        when(loanRepo.markReturned(anyList(), any(LocalDateTime.class))).thenReturn(2);
+        when(loanRepo.sumCurrentlyReservedByEquipment(anyCollection(), any(LocalDateTime.class)))
+                .thenReturn(List.of(new ReservedUnits(9L, 3L)));
+        when(equipmentRepo.findAllById(anyCollection())).thenReturn(List.of(cam, tripod));
+
+        List<LoanReturnResult> results = loanService.returnLoans(List.of(53L, 50L, 99L, 51L, 52L, 50L), "sam", false);
+
+        assertEquals(List.of(53L, 50L, 99L, 51L, 52L), results.stream().map(LoanReturnResult::getLoanId).toList());
+        assertEquals(List.of(LoanReturnResult.Outcome.NOT_ACTIVE, LoanReturnResult.Outcome.RETURNED,
+                        LoanReturnResult.Outcome.NOT_FOUND, LoanReturnResult.Outcome.OVERDUE,
+                        LoanReturnResult.Outcome.NOT_ALLOWED),
+                results.stream().map(LoanReturnResult::getOutcome).toList());
+        assertEquals(LoanStatus.RETURNED, results.get(1).getLoan().getStatus());
+        assertNotNull(results.get(1).getLoan().getReturnedAt());
+        assertNull(results.get(2).getLoan());
+
+        verify(loanRepo).markReturned(List.of(50L, 51L), results.get(1).getLoan().getReturnedAt());
+        verify(loanRepo, never()).save(any());
+        verify(loanRepo, never()).sumCurrentlyReserved(any(), any());
+        assertTrue(cam.isAvailable());
+        assertFalse(tripod.isAvailable());
+
+        ArgumentCaptor<CapacityReleasedEvent> captor = ArgumentCaptor.forClass(CapacityReleasedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(captor.capture());
+        assertEquals(due, captor.getAllValues().get(0).until());
+        assertNull(captor.getAllValues().get(1).until());   // overdue: open-ended
+    }
+
+    @Test
+    void returnLoans_severalLoansOfOneEquipment_releaseTheirCombinedWindowOnce() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        LocalDateTime now = LocalDateTime.now();
+        Loan a = activeLoan(60L, eq, "sam", now.minusDays(1), now.plusDays(1));
+        Loan b = activeLoan(61L, eq, "sam", now.minusDays(1), now.plusDays(4));
+        when(loanRepo.findByIdIn(anyList())).thenReturn(List.of(a, b));
+        when(loanRepo.markReturned(anyList(), any(LocalDateTime.class))).thenReturn(2);
+        when(equipmentRepo.findAllById(anyCollection())).thenReturn(List.of(eq));
+
+        loanService.returnLoans(List.of(60L, 61L), "admin", true);
+
+        ArgumentCaptor<CapacityReleasedEvent> captor = ArgumentCaptor.forClass(CapacityReleasedEvent.class);
+        verify(eventPublisher).publishEvent(captor.capture());
+        assertEquals(b.getDueAt(), captor.getValue().until());
+        verify(equipmentRepo, times(1)).findAllById(argThat(ids -> ids.iterator().next().equals(8L)));
+    }
+
+    @Test
+    void returnLoans_returnedConcurrently_conflicts() {
+        Equipment eq = new Equipment(); eq.setId(8L); eq.setQuantity(5);
+        Loan a = activeLoan(60L, eq, "sam", LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1));
+        when(loanRepo.findByIdIn(anyList())).thenReturn(List.of(a));
+        when(loanRepo.markReturned(anyList(), any(LocalDateTime.class))).thenReturn(0);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                () -> loanService.returnLoans(List.of(60L), "sam", false));
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private static Loan activeLoan(Long id, Equipment eq, String borrowerName, LocalDateTime borrowedAt, LocalDateTime dueAt) {
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setEquipment(eq);
+        User borrower = new User(); borrower.setUsername(borrowerName);
+        loan.setBorrower(borrower);
+        loan.setBorrowedAt(borrowedAt);
+        loan.setDueAt(dueAt);
+        loan.setQuantity(1);
+        loan.setStatus(LoanStatus.BORROWED);
+        return loan;
     }
 
     // ---------- simple passthrough methods ----------
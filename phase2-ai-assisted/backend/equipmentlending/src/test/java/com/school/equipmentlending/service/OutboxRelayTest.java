@@ -0,0 +1,194 @@
+package com.school.equipmentlending.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.school.equipmentlending.event.DomainEventConsumer;
+import com.school.equipmentlending.event.EquipmentChanged;
+import com.school.equipmentlending.event.EventEnvelope;
+import com.school.equipmentlending.model.OutboxEvent;
+import com.school.equipmentlending.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    @Mock private OutboxEventRepository outboxRepo;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Long> dispatched = new CopyOnWriteArrayList<>();
+    private final List<EventEnvelope> received = new CopyOnWriteArrayList<>();
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(outboxRepo.findUndispatched(anyLong(), any(), any(Pageable.class))).thenReturn(List.of());
+        when(outboxRepo.markDispatched(anyCollection(), any())).thenAnswer(inv -> {
+            dispatched.addAll(inv.<Collection<Long>>getArgument(0));
+            return 1;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (relay != null) relay.stop();
+    }
+
+    @Test
+    void committedEvents_reachEveryConsumer_thenAreMarkedDispatched() {
+        List<EventEnvelope> other = new CopyOnWriteArrayList<>();
+        relay = relay(consumer("a", received::addAll), consumer("b", other::addAll));
+        relay.start();
+
+        relay.committed(List.of(envelope(1L), envelope(2L)));
+        relay.committed(List.of(envelope(3L)));
+
+        await(() -> dispatched.size() == 3);
+        assertEquals(List.of(1L, 2L, 3L), received.stream().map(EventEnvelope::outboxId).toList());
+        assertEquals(3, other.size());
+        assertEquals(List.of(1L, 2L, 3L), dispatched);
+        await(relay::isIdle);
+        assertEquals(3.0, meterRegistry.get("outbox.events").tag("state", "dispatched").functionCounter().count());
+        assertEquals(3, meterRegistry.get("outbox.delivery.latency").tag("consumer", "a").timer().count());
+    }
+
+    @Test
+    void failingConsumer_isRetried_beforeTheEventCountsAsDispatched() {
+        AtomicInteger calls = new AtomicInteger();
+        relay = relay(consumer("flaky", batch -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("downstream unavailable");
+            received.addAll(batch);
+        }));
+        relay.start();
+
+        relay.committed(List.of(envelope(1L)));
+
+        await(() -> dispatched.size() == 1);
+        assertEquals(2, calls.get());
+        assertEquals(1, received.size());
+        assertEquals(0.0, meterRegistry.get("outbox.delivery.failures").functionCounter().count());
+    }
+
+    @Test
+    void consumerThatGivesUp_leavesTheBatchUndispatched_forTheSweepToRelayAgain() throws Exception {
+        List<Long> failed = new CopyOnWriteArrayList<>();
+        when(outboxRepo.recordDeliveryFailure(anyCollection(), anyInt(), any())).thenAnswer(inv -> {
+            failed.addAll(inv.<Collection<Long>>getArgument(0));
+            return 1;
+        });
+        AtomicInteger calls = new AtomicInteger();
+        relay = relay(consumer("down", batch -> {
+            if (calls.incrementAndGet() <= 2) throw new IllegalStateException("downstream unavailable");
+            received.addAll(batch);
+        }));
+        relay.start();
+
+        relay.committed(List.of(envelope(1L)));
+
+        await(() -> failed.contains(1L));
+        await(relay::isIdle);
+        assertFalse(dispatched.contains(1L), "an event no consumer handled must not count as dispatched");
+        verify(outboxRepo).recordDeliveryFailure(eq(List.of(1L)), eq(3), any());
+        assertEquals(1.0, meterRegistry.get("outbox.delivery.failures").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("outbox.events").tag("state", "undelivered").functionCounter().count());
+
+        // the row is still undispatched, so the next sweep relays it again and this time it gets through
+        OutboxEvent row = row(1L, "EquipmentChanged",
+                objectMapper.writeValueAsString(new EquipmentChanged(1L, EquipmentChanged.Change.UPDATED)));
+        when(outboxRepo.findUndispatched(eq(0L), any(), any(Pageable.class))).thenReturn(List.of(row));
+        relay.requestSweep();
+
+        await(() -> dispatched.contains(1L));
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    void sweep_relaysUndispatchedRows_andDropsUnreadableOnes() throws Exception {
+        OutboxEvent stale = row(40L, "EquipmentChanged",
+                objectMapper.writeValueAsString(new EquipmentChanged(9L, EquipmentChanged.Change.CREATED)));
+        OutboxEvent unknown = row(41L, "SomethingRemoved", "{}");
+        when(outboxRepo.findUndispatched(eq(0L), any(), any(Pageable.class))).thenReturn(List.of(stale, unknown));
+        relay = relay(consumer("a", received::addAll));
+
+        relay.start();   // sweeps once on start
+
+        await(() -> dispatched.contains(40L));
+        assertEquals(new EquipmentChanged(9L, EquipmentChanged.Change.CREATED), received.get(0).event());
+        assertTrue(dispatched.contains(41L));
+        assertEquals(1, received.size());
+        assertEquals(1.0, meterRegistry.get("outbox.events").tag("state", "unreadable").functionCounter().count());
+    }
+
+    @Test
+    void eventAlreadyOnTheBus_isNotRelayedTwice() {
+        relay = relay(consumer("a", received::addAll));
+        relay.start();
+
+        EventEnvelope e = envelope(5L);
+        relay.committed(List.of(e, e));
+
+        await(() -> dispatched.contains(5L));
+        await(relay::isIdle);
+        assertEquals(1, received.size());
+    }
+
+    private OutboxRelay relay(DomainEventConsumer... consumers) {
+        return new OutboxRelay(outboxRepo, objectMapper, List.of(consumers), meterRegistry,
+                true, 8, 4, 2, 3, Duration.ofHours(1), 100, Duration.ofSeconds(30), Duration.ofDays(1));
+    }
+
+    private static DomainEventConsumer consumer(String name, ThrowingHandler handler) {
+        return new DomainEventConsumer() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void onEvents(List<EventEnvelope> events) throws Exception {
+                handler.handle(events);
+            }
+        };
+    }
+
+    private interface ThrowingHandler {
+        void handle(List<EventEnvelope> events) throws Exception;
+    }
+
+    private static EventEnvelope envelope(Long id) {
+        return new EventEnvelope(id, LocalDateTime.now(), new EquipmentChanged(id, EquipmentChanged.Change.UPDATED));
+    }
+
+    private static OutboxEvent row(Long id, String type, String payload) {
+        OutboxEvent row = new OutboxEvent(type, 9L, payload, LocalDateTime.now().minusMinutes(5));
+        row.setId(id);
+        return row;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+}
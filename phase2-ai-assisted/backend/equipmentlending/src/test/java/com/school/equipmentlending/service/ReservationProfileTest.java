@@ -0,0 +1,107 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.AvailableSlotDTO;
+import com.school.equipmentlending.repository.ReservationInterval;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReservationProfileTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 6, 8, 0);
+
+    @Test
+    void maxReserved_usesPeakNotSumOfOverlaps() {
+        // two loans of 2 units that touch but never overlap
+        ReservationProfile p = ReservationProfile.of(5, List.of(
+                new ReservationInterval(T0, T0.plusHours(2), 2),
+                new ReservationInterval(T0.plusHours(2), T0.plusHours(4), 2)));
+
+        assertEquals(2, p.maxReserved(T0, T0.plusHours(4)));
+        assertEquals(3, p.availableUnits(T0, T0.plusHours(4)));
+    }
+
+    @Test
+    void maxReserved_openEndedLoanNeverReleases() {
+        ReservationProfile p = ReservationProfile.of(3, List.of(new ReservationInterval(T0, null, 1)));
+        assertEquals(1, p.maxReserved(T0.plusYears(5), T0.plusYears(6)));
+    }
+
+    @Test
+    void findSlots_freeNow_returnsWindowAtFrom() {
+        ReservationProfile p = ReservationProfile.of(2, List.of());
+
+        List<AvailableSlotDTO> slots = p.findSlots(T0, Duration.ofHours(1), 2, 3);
+
+        assertThat(slots).hasSize(1);
+        assertEquals(T0, slots.get(0).getStartAt());
+        assertEquals(T0.plusHours(1), slots.get(0).getEndAt());
+        assertNull(slots.get(0).getFreeUntil());
+        assertEquals(2, slots.get(0).getAvailableUnits());
+    }
+
+    @Test
+    void findSlots_skipsGapsTooShortForDuration() {
+        // capacity 1: busy 8-10, free 10-11 (1h gap), busy 11-13, free after 13
+        ReservationProfile p = ReservationProfile.of(1, List.of(
+                new ReservationInterval(T0, T0.plusHours(2), 1),
+                new ReservationInterval(T0.plusHours(3), T0.plusHours(5), 1)));
+
+        List<AvailableSlotDTO> slots = p.findSlots(T0, Duration.ofHours(2), 1, 3);
+
+        assertThat(slots).hasSize(1);
+        assertEquals(T0.plusHours(5), slots.get(0).getStartAt());
+    }
+
+    @Test
+    void findSlots_returnsEarliestKGapsInOrder() {
+        // capacity 1, a 1h loan every 3h -> 2h gaps between them
+        List<ReservationInterval> loans = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            loans.add(new ReservationInterval(T0.plusHours(3L * i), T0.plusHours(3L * i + 1), 1));
+        }
+        ReservationProfile p = ReservationProfile.of(1, loans);
+
+        List<AvailableSlotDTO> slots = p.findSlots(T0, Duration.ofHours(2), 1, 3);
+
+        assertThat(slots).extracting(AvailableSlotDTO::getStartAt)
+                .containsExactly(T0.plusHours(1), T0.plusHours(4), T0.plusHours(7));
+        assertEquals(T0.plusHours(3), slots.get(0).getFreeUntil());
+    }
+
+    @Test
+    void findSlots_partialCapacityCountsAsFreeWhenEnoughUnitsRemain() {
+        // capacity 5, 3 units out 8-12: a request for 2 fits right away, a request for 3 must wait
+        ReservationProfile p = ReservationProfile.of(5, List.of(new ReservationInterval(T0, T0.plusHours(4), 3)));
+
+        assertEquals(T0, p.findSlots(T0, Duration.ofHours(1), 2, 1).get(0).getStartAt());
+        assertEquals(T0.plusHours(4), p.findSlots(T0, Duration.ofHours(1), 3, 1).get(0).getStartAt());
+    }
+
+    @Test
+    void findSlots_quantityAboveCapacity_returnsNothing() {
+        ReservationProfile p = ReservationProfile.of(2, List.of());
+        assertThat(p.findSlots(T0, Duration.ofHours(1), 3, 3)).isEmpty();
+    }
+
+    @Test
+    void findSlots_thousandsOfLoans_singlePassFindsLateGap() {
+        // 5,000 back-to-back loans fully booking capacity 1, then a free tail
+        List<ReservationInterval> loans = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            loans.add(new ReservationInterval(T0.plusHours(i), T0.plusHours(i + 1), 1));
+        }
+        ReservationProfile p = ReservationProfile.of(1, loans);
+
+        List<AvailableSlotDTO> slots = p.findSlots(T0, Duration.ofMinutes(30), 1, 5);
+
+        assertThat(slots).hasSize(1);
+        assertEquals(T0.plusHours(5_000), slots.get(0).getStartAt());
+    }
+}
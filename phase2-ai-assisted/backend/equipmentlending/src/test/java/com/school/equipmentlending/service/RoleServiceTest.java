@@ -0,0 +1,142 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.BulkRoleRequest;
+import com.school.equipmentlending.dto.BulkRoleResult;
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.repository.RoleRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RoleServiceTest {
+
+    @Mock private RoleRepository roleRepository;
+    @Mock private NamedParameterJdbcTemplate jdbc;
+    @Mock private EntityManagerFactory entityManagerFactory;
+    @Mock private jakarta.persistence.Cache jpaCache;
+    @Mock private Cache cache;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private RoleService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(entityManagerFactory.getCache()).thenReturn(jpaCache);
+        when(jpaCache.unwrap(Cache.class)).thenReturn(cache);
+        existingUsers(Map.of("ann", 10L, "ben", 11L));
+        service = new RoleService(roleRepository, jdbc, entityManagerFactory, transactionManager, 3);
+    }
+
+    @Test
+    void grant_isOneInsert_reportsUnknownNames_andEvictsCachedRoles() {
+        when(roleRepository.findByName("ROLE_STAFF")).thenReturn(Optional.of(role(7L, "ROLE_STAFF")));
+        when(jdbc.update(startsWith("insert into user_roles"), anyMap())).thenReturn(1);
+
+        BulkRoleResult result = service.apply(request(BulkRoleRequest.Action.GRANT, "staff", "ann", "ben", "cat"));
+
+        assertEquals("ROLE_STAFF", result.getRole());
+        assertEquals(3, result.getRequested());
+        assertEquals(2, result.getMatched());
+        assertEquals(1, result.getChanged());
+        assertEquals(List.of("cat"), result.getUnknownUsernames());
+        verify(jdbc, times(1)).update(anyString(), anyMap());
+        verify(cache).evictCollectionData(RoleService.USER_ROLES, 10L);
+        verify(cache).evictCollectionData(RoleService.USER_ROLES, 11L);
+    }
+
+    @Test
+    void revoke_ofUnknownRole_changesNothing_andCreatesNothing() {
+        BulkRoleResult result = service.apply(request(BulkRoleRequest.Action.REVOKE, "ghost", "ann"));
+
+        assertEquals(0, result.getChanged());
+        assertEquals(1, result.getMatched());
+        verify(roleRepository, never()).save(any());
+        verify(jdbc, never()).update(anyString(), anyMap());
+    }
+
+    @Test
+    void roleIds_areCached() {
+        when(roleRepository.findByName("ROLE_STAFF")).thenReturn(Optional.of(role(7L, "ROLE_STAFF")));
+
+        service.apply(request(BulkRoleRequest.Action.GRANT, "ROLE_STAFF", "ann"));
+        service.apply(request(BulkRoleRequest.Action.REVOKE, "role_staff", "ann"));
+
+        verify(roleRepository, times(1)).findByName("ROLE_STAFF");
+    }
+
+    @Test
+    void missingRole_createdConcurrently_isReadBackInsteadOfFailing() {
+        when(roleRepository.findByName("ROLE_COACH"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(role(9L, "ROLE_COACH")));
+        when(roleRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate name"));
+
+        service.apply(request(BulkRoleRequest.Action.GRANT, "coach", "ann"));
+
+        verify(jdbc).update(startsWith("insert into user_roles"), argThat((Map<String, ?> p) -> p.get("roleId").equals(9L)));
+    }
+
+    @Test
+    void tooManyUsernames_isRejected() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.apply(request(BulkRoleRequest.Action.GRANT, "staff", "a", "b", "c", "d")));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void canonicalName_acceptsShortAndPrefixedNames() {
+        assertEquals("ROLE_USER", RoleService.canonicalName(null));
+        assertEquals("ROLE_ADMIN", RoleService.canonicalName("admin"));
+        assertEquals("ROLE_ADMIN", RoleService.canonicalName(" role_admin "));
+    }
+
+    private void existingUsers(Map<String, Long> users) throws Exception {
+        doAnswer(inv -> {
+            RowCallbackHandler handler = inv.getArgument(2);
+            Map<String, ?> params = inv.getArgument(1);
+            for (Object name : (Iterable<?>) params.get("usernames")) {
+                Long id = users.get((String) name);
+                if (id == null) continue;
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("username")).thenReturn((String) name);
+                when(rs.getLong("id")).thenReturn(id);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbc).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    private static BulkRoleRequest request(BulkRoleRequest.Action action, String role, String... usernames) {
+        BulkRoleRequest req = new BulkRoleRequest();
+        req.setAction(action);
+        req.setRole(role);
+        req.setUsernames(List.of(usernames));
+        return req;
+    }
+
+    private static Role role(Long id, String name) {
+        Role r = new Role();
+        r.setId(id);
+        r.setName(name);
+        return r;
+    }
+}
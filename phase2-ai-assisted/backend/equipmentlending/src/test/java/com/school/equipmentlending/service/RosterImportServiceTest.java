@@ -0,0 +1,177 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.dto.ImportRowError;
+import com.school.equipmentlending.dto.RosterImportResult;
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.model.User;
+import com.school.equipmentlending.repository.RoleRepository;
+import com.school.equipmentlending.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RosterImportServiceTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private RoleRepository roleRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final List<User> saved = new ArrayList<>();
+    private final Role userRole = role(1L, "ROLE_USER");
+    private final Role adminRole = role(2L, "ROLE_ADMIN");
+    private final Role staffRole = role(3L, "ROLE_STAFF");
+    private RosterImportService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(roleRepository.findByName("ROLE_USER")).thenReturn(Optional.of(userRole));
+        when(roleRepository.findByName("ROLE_ADMIN")).thenReturn(Optional.of(adminRole));
+        when(roleRepository.findByName("ROLE_STAFF")).thenReturn(Optional.of(staffRole));
+        when(userRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<User> batch = inv.getArgument(0);
+            saved.addAll(batch);
+            return batch;
+        });
+        service = service(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void csv_createsNewUsers_skipsTakenNames_andReportsBadRowsByLine() {
+        when(userRepository.findExistingUsernames(anyCollection()))
+                .thenAnswer(inv -> inv.<Collection<String>>getArgument(0).contains("bob") ? List.of("bob") : List.of());
+
+        RosterImportResult result = service.importRoster(csv("""
+                username,password,role
+                alice,secret-one,
+                bob,secret-two,
+                ,secret-three,
+                carol,,
+                dave,secret-four,teacher
+                alice,again-alice,
+                erin,secret-five,admin
+                frank,short,
+                gina,secret-six,staff
+                """));
+
+        assertEquals(9, result.getRows());
+        assertEquals(2, result.getCreated());
+        assertEquals(1, result.getSkipped());
+        assertEquals(6, result.getRejected());
+        assertFalse(result.isRunning());
+        assertEquals(List.of(3L, 4L, 5L, 6L, 7L, 8L, 9L),
+                result.getErrors().stream().map(ImportRowError::getLine).toList());
+        assertTrue(result.getErrors().get(0).getMessage().contains("already exists"));
+        assertEquals("username is required", result.getErrors().get(1).getMessage());
+        assertEquals("password is required", result.getErrors().get(2).getMessage());
+        assertEquals("unknown role ROLE_TEACHER", result.getErrors().get(3).getMessage());
+        assertTrue(result.getErrors().get(4).getMessage().contains("earlier in the upload"));
+        assertEquals("role ROLE_ADMIN cannot be granted by a roster import", result.getErrors().get(5).getMessage());
+        assertEquals("password must be at least 8 characters", result.getErrors().get(6).getMessage());
+
+        assertEquals(List.of("alice", "gina"), saved.stream().map(User::getUsername).toList());
+        assertEquals(Set.of(staffRole), saved.get(1).getRoles());
+        assertTrue(new BCryptPasswordEncoder().matches("secret-one", saved.get(0).getPassword()));
+        verify(roleRepository, never()).findByName("ROLE_ADMIN");
+        verify(roleRepository, times(1)).findByName("ROLE_USER");
+    }
+
+    @Test
+    void usernames_areCheckedWithOneQueryPerChunk() {
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of());
+
+        RosterImportResult result = service.importRoster(csv("username,password\na,password1\nb,password2\nc,password3\nd,password4\ne,password5\n"));
+
+        assertEquals(5, result.getCreated());
+        verify(userRepository, times(3)).findExistingUsernames(anyCollection());
+        verify(userRepository, times(3)).saveAll(anyList());
+        verify(userRepository, never()).existsByUsername(any());
+    }
+
+    @Test
+    void nameTakenDuringChunk_isSkipped_andTheRestRetried() {
+        when(userRepository.findExistingUsernames(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of("b"));
+        when(userRepository.saveAll(anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenAnswer(inv -> {
+                    List<User> batch = inv.getArgument(0);
+                    saved.addAll(batch);
+                    return batch;
+                });
+
+        RosterImportResult result = service.importRoster(csv("username,password\na,password1\nb,password2\n"));
+
+        assertEquals(1, result.getCreated());
+        assertEquals(1, result.getSkipped());
+        assertEquals(List.of("a"), saved.stream().map(User::getUsername).toList());
+    }
+
+    @Test
+    void progress_holdsTheLastResult() {
+        when(userRepository.findExistingUsernames(anyCollection())).thenReturn(List.of());
+        assertTrue(service.progress().isEmpty());
+
+        service.importRoster(csv("username,password\na,password1\n"));
+
+        RosterImportResult progress = service.progress().orElseThrow();
+        assertFalse(progress.isRunning());
+        assertEquals(1, progress.getCreated());
+        assertNotNull(progress.getStartedAt());
+    }
+
+    @Test
+    void adminRole_cannotBeAllowListed() {
+        assertThrows(IllegalArgumentException.class, () -> new RosterImportService(userRepository, roleRepository,
+                transactionManager, 4, 2, 2, 2, 100, List.of("ROLE_USER", "admin")));
+    }
+
+    @Test
+    void csvWithoutRequiredColumns_isRejected() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+                service.importRoster(csv("user,pass\nx,1\n")));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+        verifyNoInteractions(userRepository);
+    }
+
+    private RosterImportService service(int chunkSize) {
+        return new RosterImportService(userRepository, roleRepository, transactionManager, 4, 2, chunkSize, 2, 100,
+                List.of("ROLE_USER", "ROLE_STAFF", "ROLE_TEACHER"));
+    }
+
+    private static Role role(Long id, String name) {
+        Role r = new Role();
+        r.setId(id);
+        r.setName(name);
+        return r;
+    }
+
+    private static InputStream csv(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,77 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.model.Role;
+import com.school.equipmentlending.model.User;
+import com.school.equipmentlending.repository.UserRepository;
+import com.school.equipmentlending.security.CostUpgradingPasswordEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserDetailsServiceImplTest {
+
+    @Mock private UserRepository userRepository;
+    @InjectMocks private UserDetailsServiceImpl userDetailsService;
+
+    private User alice;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Role role = new Role();
+        role.setName("ROLE_USER");
+        alice = new User();
+        alice.setUsername("alice");
+        alice.setPassword(new BCryptPasswordEncoder(4).encode("secret"));
+        alice.setRoles(Set.of(role));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+    }
+
+    @Test
+    void loadUserByUsername_mapsRoles() {
+        UserDetails details = userDetailsService.loadUserByUsername("alice");
+        assertThat(details.getAuthorities()).extracting(Object::toString).containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void loadUserByUsername_unknown_throws() {
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+    }
+
+    @Test
+    void successfulLogin_withOldCost_rehashesAndPersists() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new CostUpgradingPasswordEncoder(5));
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+        String oldHash = alice.getPassword();
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        assertNotEquals(oldHash, alice.getPassword());
+        assertEquals(5, CostUpgradingPasswordEncoder.costOf(alice.getPassword()));
+        verify(userRepository).save(alice);
+    }
+
+    @Test
+    void successfulLogin_atCurrentCost_doesNotWrite() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(new CostUpgradingPasswordEncoder(4));
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(userDetailsService);
+
+        provider.authenticate(new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        verify(userRepository, never()).save(any());
+    }
+}
@@ -1,6 +1,7 @@
 package com.school.equipmentlending.service;
 
 import com.school.equipmentlending.dto.SignupRequest;
+import com.school.equipmentlending.exception.BadRequestException;
 import com.school.equipmentlending.model.Role;
 import com.school.equipmentlending.model.User;
 import com.school.equipmentlending.repository.RoleRepository;
@@ -9,6 +10,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 import java.util.Set;
@@ -21,6 +23,7 @@ class UserServiceTest {
 
     @Mock private UserRepository userRepository;
     @Mock private RoleRepository roleRepository;
+    @Spy private PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(4);
     @InjectMocks private UserService userService;
 
     @Captor ArgumentCaptor<User> userCaptor;
@@ -51,7 +54,7 @@ class UserServiceTest {
     void registerUser_withExistingRole_reusesRoleAndSavesUser() {
         SignupRequest req = new SignupRequest();
         req.setUsername("bob");
-        req.setPassword("secret");
+        req.setPassword("secret-pass");
 
         Role existingRole = new Role();
         existingRole.setId(1L);
@@ -73,8 +76,8 @@ class UserServiceTest {
         assertThat(result.getRoles()).contains(existingRole);
 
         // ensure password encoded
-        assertNotEquals("secret", result.getPassword());
-        assertTrue(new BCryptPasswordEncoder().matches("secret", result.getPassword()));
+        assertNotEquals("secret-pass", result.getPassword());
+        assertTrue(new BCryptPasswordEncoder().matches("secret-pass", result.getPassword()));
 
         verify(roleRepository, never()).save(any(Role.class)); // reused existing role
         verify(userRepository).save(any(User.class));
@@ -84,7 +87,7 @@ class UserServiceTest {
     void registerUser_whenRoleNotExists_createsAndSavesNewRole() {
         SignupRequest req = new SignupRequest();
         req.setUsername("newuser");
-        req.setPassword("pass123");
+        req.setPassword("pass1234");
 
         when(userRepository.existsByUsername("newuser")).thenReturn(false);
         when(roleRepository.findByName("ROLE_USER")).thenReturn(Optional.empty());
@@ -111,6 +114,20 @@ class UserServiceTest {
         verify(userRepository).save(any(User.class));
     }
 
+    @Test
+    void registerUser_withTooShortPassword_throwsBadRequest() {
+        SignupRequest req = new SignupRequest();
+        req.setUsername("shorty");
+        req.setPassword("pass");
+
+        when(userRepository.existsByUsername("shorty")).thenReturn(false);
+
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> userService.registerUser(req));
+
+        assertEquals("password must be at least 8 characters", ex.getMessage());
+        verify(userRepository, never()).save(any());
+    }
+
     @Test
     void registerUser_encodesPasswordBeforeSaving() {
         SignupRequest req = new SignupRequest();
@@ -0,0 +1,69 @@
+package com.school.equipmentlending.service;
+
+import com.school.equipmentlending.event.CapacityReleasedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class WaitlistPromoterTest {
+
+    @Mock private BookingService bookingService;
+
+    private SimpleMeterRegistry registry;
+    private WaitlistPromoter promoter;
+
+    private final LocalDateTime now = LocalDateTime.now();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        registry = new SimpleMeterRegistry();
+        promoter = new WaitlistPromoter(bookingService, registry, true);
+    }
+
+    @Test
+    void release_promotesAndRecordsLatency() {
+        when(bookingService.promoteWaitlisted(5L, now, null)).thenReturn(List.of(1L, 2L));
+
+        promoter.onCapacityReleased(new CapacityReleasedEvent(5L, now, null, "returned", Instant.now().minusSeconds(1)));
+
+        assertEquals(2.0, registry.counter("booking.waitlist.promoted").count());
+        assertEquals(2, registry.timer("booking.waitlist.promotion.latency").count());
+    }
+
+    @Test
+    void lockConflict_isRetriedWithBackoffThenGivesUp() {
+        when(bookingService.promoteWaitlisted(any(), any(), any()))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "busy"));
+
+        long start = System.nanoTime();
+        promoter.onCapacityReleased(new CapacityReleasedEvent(5L, now, null, "returned", Instant.now()));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        verify(bookingService, times(WaitlistPromoter.MAX_ATTEMPTS)).promoteWaitlisted(5L, now, null);
+        // 200 ms after the first conflict, 400 ms after the second, none after the last
+        assertTrue(elapsedMs >= WaitlistPromoter.RETRY_BACKOFF_MS * 3, "elapsed " + elapsedMs + " ms");
+        assertEquals(0.0, registry.counter("booking.waitlist.promoted").count());
+    }
+
+    @Test
+    void disabledWaitlist_doesNothing() {
+        promoter = new WaitlistPromoter(bookingService, registry, false);
+
+        promoter.onCapacityReleased(new CapacityReleasedEvent(5L, now, null, "returned", Instant.now()));
+
+        verifyNoInteractions(bookingService);
+    }
+}
@@ -0,0 +1,65 @@
+package com.school.equipmentlending.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = Duration.ofMillis(10).toNanos();
+    private static final long SLOW = Duration.ofMillis(500).toNanos();
+
+    private final AdaptiveConcurrencyLimiter limiter =
+            new AdaptiveConcurrencyLimiter(4, 2, 8, Duration.ofMillis(100), 0.5);
+
+    @Test
+    void refusesCallsOverTheLimit() {
+        for (int i = 0; i < 4; i++) assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejectedCount());
+
+        limiter.release(FAST, false);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void slowOrDroppedCalls_shrinkTheLimit_downToMin() {
+        limiter.tryAcquire();
+        limiter.release(SLOW, false);
+        assertEquals(2, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(FAST, true);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void fastCallsUnderLoad_growTheLimitAdditively_upToMax() {
+        for (int round = 0; round < 100; round++) {
+            int limit = limiter.getLimit();
+            for (int i = 0; i < limit; i++) assertTrue(limiter.tryAcquire());
+            for (int i = 0; i < limit; i++) limiter.release(FAST, false);
+        }
+        assertEquals(8, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void fastCallsWithSpareCapacity_doNotGrowTheLimit() {
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.release(FAST, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void invalidConfiguration_isRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiter(1, 2, 8, Duration.ofMillis(100), 0.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveConcurrencyLimiter(4, 2, 8, Duration.ofMillis(100), 1.0));
+    }
+}
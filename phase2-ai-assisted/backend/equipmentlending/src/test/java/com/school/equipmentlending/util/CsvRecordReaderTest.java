@@ -0,0 +1,44 @@
+package com.school.equipmentlending.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void split_handlesEmptyAndQuotedFields() {
+        assertEquals(List.of("a", "", "b,c", "d\"e", ""), CsvRecordReader.split("a,,\"b,c\",\"d\"\"e\","));
+    }
+
+    @Test
+    void csv_quotedLineBreaksJoinLines_andLineNumbersCountEveryLine() throws IOException {
+        CsvRecordReader reader = reader("h1,h2\n\n\"a\nb\",1\nc,2\n", true);
+
+        assertEquals("h1,h2", reader.next());
+        assertEquals(1, reader.line());
+        assertEquals("\"a\nb\",1", reader.next());
+        assertEquals(3, reader.line());
+        assertEquals("c,2", reader.next());
+        assertEquals(5, reader.line());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void lineMode_ignoresQuotes() throws IOException {
+        CsvRecordReader reader = reader("{\"a\":\"x\\\"\"}\n{\"b\":1}\n", false);
+
+        assertEquals("{\"a\":\"x\\\"\"}", reader.next());
+        assertEquals("{\"b\":1}", reader.next());
+        assertEquals(2, reader.line());
+    }
+
+    private static CsvRecordReader reader(String text, boolean csv) {
+        return new CsvRecordReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), csv);
+    }
+}
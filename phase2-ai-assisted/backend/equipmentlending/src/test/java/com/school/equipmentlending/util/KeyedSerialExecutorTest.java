@@ -0,0 +1,107 @@
+package com.school.equipmentlending.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedSerialExecutorTest {
+
+    private final KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>("test", 4, 3);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown(1000);
+    }
+
+    @Test
+    void tasksOfOneKey_runInOrder_andNeverOverlap() {
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            int key = i % 5;
+            int n = i;
+            executor.execute(key, () -> {
+                if (running.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() > 1) overlaps.incrementAndGet();
+                seen.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(n);
+                running.get(key).decrementAndGet();
+            });
+        }
+        awaitIdle();
+
+        assertEquals(0, overlaps.get());
+        for (int key = 0; key < 5; key++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int n = key; n < 200; n += 5) expected.add(n);
+            assertEquals(expected, seen.get(key));
+        }
+        assertEquals(0, executor.activeKeys());
+    }
+
+    @Test
+    void busyKey_doesNotBlockOtherKeys() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        executor.execute(1, () -> await(release));
+        executor.execute(1, () -> { });
+        executor.execute(2, otherRan::countDown);
+
+        assertTrue(otherRan.await(5, TimeUnit.SECONDS));
+        awaitPending(2);   // key 1 is still on its first task
+        release.countDown();
+        awaitIdle();
+    }
+
+    @Test
+    void failingTask_isSkipped_andTheKeyKeepsGoing() {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        executor.execute(1, () -> seen.add("a"));
+        executor.execute(1, () -> { throw new IllegalStateException("boom"); });
+        executor.execute(1, () -> seen.add("c"));
+        awaitIdle();
+
+        assertEquals(List.of("a", "c"), seen);
+    }
+
+    @Test
+    void shutdown_finishesQueuedWork_thenRefusesNewTasks() {
+        AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 20; i++) executor.execute(1, ran::incrementAndGet);
+
+        executor.shutdown(5000);
+
+        assertEquals(20, ran.get());
+        assertThrows(IllegalStateException.class, () -> executor.execute(1, ran::incrementAndGet));
+    }
+
+    private void awaitIdle() {
+        awaitPending(0);
+    }
+
+    private void awaitPending(int expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.pending() != expected) {
+            assertTrue(System.nanoTime() < deadline, executor.pending() + " tasks still pending");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
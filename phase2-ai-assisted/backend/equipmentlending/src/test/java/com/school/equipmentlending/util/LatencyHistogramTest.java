@@ -0,0 +1,92 @@
+package com.school.equipmentlending.util;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyHistogramTest.class);
+
+    @Test
+    void bucketsCoverEveryValue_withinThreePercent() {
+        long[] samples = {0, 1, 31, 32, 33, 63, 64, 1_000, 123_456, 5_000_000, 987_654_321L, 1L << 39};
+        for (long v : samples) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.bucketOf(v));
+            assertThat(upper).isGreaterThanOrEqualTo(v);
+            assertThat((double) upper).isCloseTo(v, within(Math.max(1, v * 0.032)));
+        }
+        assertEquals(LatencyHistogram.bucketOf(Long.MAX_VALUE), LatencyHistogram.bucketOf(1L << 50));
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+    }
+
+    @Test
+    void percentiles_matchTheRecordedDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofMinutes(1));
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));   // uniform 1 us .. 10 ms
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertThat(histogram.percentile(0.5)).isCloseTo(5_000_000, within(160_000.0));
+        assertThat(histogram.percentile(0.99)).isCloseTo(9_900_000, within(310_000.0));
+        assertThat(histogram.percentile(0.999)).isCloseTo(9_990_000, within(310_000.0));
+        assertThat(histogram.totalTime(TimeUnit.SECONDS)).isCloseTo(50.005, within(0.001));
+    }
+
+    @Test
+    void newWindow_reportsRecentLatencyOnly() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofMillis(50));
+        for (int i = 0; i < 1_000; i++) histogram.record(1_000_000_000L);
+        assertThat(histogram.percentile(0.5)).isGreaterThan(9e8);
+
+        Thread.sleep(60);
+        histogram.percentile(0.5);   // closes the slow window
+        for (int i = 0; i < 10; i++) histogram.record(1_000);
+
+        assertThat(histogram.percentile(0.99)).isLessThan(1_100);
+        assertEquals(1_010, histogram.count());
+    }
+
+    @Test
+    void register_exposesTimerAndPercentileGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LatencyHistogram histogram = LatencyHistogram.register(registry, "demo", "demo", Tags.of("k", "v"), 0.5, 0.99);
+        histogram.record(2_000_000);
+
+        assertEquals(1, registry.get("demo").tag("k", "v").functionTimer().count());
+        assertThat(registry.get("demo.percentile").tag("phi", "0.99").gauge().value()).isCloseTo(0.002, within(0.0001));
+    }
+
+    /** Cost of one {@link LatencyHistogram#record(long)}: the overhead added to every timed call. */
+    @Test
+    @Tag("benchmark")
+    void benchmark_recordCostsUnder100Nanoseconds() {
+        LatencyHistogram histogram = new LatencyHistogram(Duration.ofMinutes(1));
+        long[] values = new long[4096];
+        for (int i = 0; i < values.length; i++) values[i] = ThreadLocalRandom.current().nextLong(1_000, 50_000_000);
+
+        int events = 2_000_000;
+        for (int i = 0; i < events; i++) histogram.record(values[i & 4095]);   // warm-up
+        double nanosPerEvent = Double.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {   // best round: ignores GC / scheduler noise from other tests
+            long start = System.nanoTime();
+            for (int i = 0; i < events; i++) histogram.record(values[i & 4095]);
+            nanosPerEvent = Math.min(nanosPerEvent, (System.nanoTime() - start) / (double) events);
+        }
+
+        logger.info("LatencyHistogram.record: {} ns/event", String.format("%.1f", nanosPerEvent));
+        assertThat(nanosPerEvent).isLessThan(100);
+    }
+}
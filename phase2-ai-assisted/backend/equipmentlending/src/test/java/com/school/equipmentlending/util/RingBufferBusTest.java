@@ -0,0 +1,123 @@
+package com.school.equipmentlending.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferBusTest {
+
+    private RingBufferBus<Integer> bus;
+
+    @AfterEach
+    void tearDown() {
+        if (bus != null) bus.stop(1000);
+    }
+
+    @Test
+    void everyConsumerSeesEveryItemInOrder_pastManyWraps() {
+        bus = new RingBufferBus<>("test", 8, 3);
+        List<Integer> a = new CopyOnWriteArrayList<>();
+        List<Integer> b = new CopyOnWriteArrayList<>();
+        bus.subscribe("a", a::addAll);
+        bus.subscribe("b", b::addAll);
+        bus.start();
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            bus.publish(i);
+            expected.add(i);
+        }
+        awaitConsumed(999);
+
+        assertEquals(expected, a);
+        assertEquals(expected, b);
+        assertEquals(0L, bus.lag("a"));
+    }
+
+    @Test
+    void busyConsumer_getsTheBacklogAsOneBatch() throws Exception {
+        bus = new RingBufferBus<>("test", 16, 10);
+        CountDownLatch firstTaken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> sizes = new CopyOnWriteArrayList<>();
+        bus.subscribe("slow", batch -> {
+            sizes.add(batch.size());
+            firstTaken.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        });
+        bus.start();
+
+        bus.publish(0);
+        assertTrue(firstTaken.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 12; i++) bus.publish(i);
+        assertEquals(13L, bus.lag("slow"));   // item 0 is still being handled
+        release.countDown();
+        awaitConsumed(12);
+
+        assertEquals(List.of(1, 10, 2), sizes);
+    }
+
+    @Test
+    void fullRing_parksTheProducerUntilTheSlowestConsumerCatchesUp() throws Exception {
+        bus = new RingBufferBus<>("test", 4, 4);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        bus.subscribe("fast", batch -> { });
+        bus.subscribe("slow", batch -> {
+            release.await(5, TimeUnit.SECONDS);
+            seen.addAll(batch);
+        });
+        bus.start();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10; i++) bus.publish(i);
+        });
+        producer.start();
+        producer.join(300);
+        assertTrue(producer.isAlive(), "producer should wait for room");
+        assertTrue(bus.cursor() - bus.consumed() <= bus.capacity());
+
+        release.countDown();
+        producer.join(5000);
+        awaitConsumed(9);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), seen);
+    }
+
+    @Test
+    void failingHandler_isCounted_andTheConsumerMovesOn() {
+        bus = new RingBufferBus<>("test", 8, 1);
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+        bus.subscribe("flaky", batch -> {
+            if (batch.contains(1)) throw new IllegalStateException("boom");
+            seen.addAll(batch);
+        });
+        bus.start();
+
+        for (int i = 0; i < 3; i++) bus.publish(i);
+        awaitConsumed(2);
+
+        assertEquals(List.of(0, 2), seen);
+        assertEquals(1, bus.failures("flaky"));
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RingBufferBus<Integer>("test", 12, 1));
+    }
+
+    private void awaitConsumed(long sequence) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bus.consumed() < sequence) {
+            assertTrue(System.nanoTime() < deadline, "consumers stuck at " + bus.consumed());
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
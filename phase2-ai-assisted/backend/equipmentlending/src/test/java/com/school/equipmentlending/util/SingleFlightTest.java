@@ -0,0 +1,86 @@
+package com.school.equipmentlending.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, Integer> flight = new SingleFlight<>();
+
+    @Test
+    void followerSharesLeaderResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(release);
+            return 42;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Integer> follower = CompletableFuture.supplyAsync(() -> flight.execute("k", calls::incrementAndGet));
+        while (flight.followerCount() == 0) Thread.onSpinWait();
+        release.countDown();
+
+        assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+        assertEquals(42, follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertEquals(1, flight.leaderCount());
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    void leaderExceptionIsSharedAndNextCallStartsFresh() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalArgumentException("boom");
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        CompletableFuture<Integer> follower = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> 1));
+        while (flight.followerCount() == 0) Thread.onSpinWait();
+        release.countDown();
+
+        Exception ex = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertEquals(7, flight.execute("k", () -> 7));
+    }
+
+    @Test
+    void followerTimesOut() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flight.execute("k", () -> {
+            started.countDown();
+            await(release);
+            return 1;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThrows(SingleFlight.FlightTimeoutException.class,
+                () -> flight.execute("k", () -> 2, Duration.ofMillis(50)));
+        release.countDown();
+        assertEquals(1, leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}